@@ -38,11 +38,27 @@ android {
 
     buildFeatures {
         compose = true
+        // BuildConfig.DEBUG gates the node-handle tracker
+        buildConfig = true
     }
 
     composeOptions {
         kotlinCompilerExtensionVersion = "1.5.3"
     }
+
+    // MigrationTestHelper reads the exported schemas as assets
+    sourceSets {
+        getByName("test").assets.srcDir("$projectDir/schemas")
+    }
+
+    testOptions {
+        unitTests.isIncludeAndroidResources = true
+    }
+}
+
+ksp {
+    // Room writes every schema version here; keep them so each migration can be checked against both ends
+    arg("room.schemaLocation", "$projectDir/schemas")
 }
 
 dependencies {
@@ -63,11 +79,23 @@ dependencies {
     implementation("androidx.room:room-runtime:2.6.1")
     implementation("androidx.room:room-ktx:2.6.1")
     ksp("androidx.room:room-compiler:2.6.1")
+    // Periodic retention job
+    implementation("androidx.work:work-runtime-ktx:2.9.0")
+
+    // PagingSource for the keyset-paged notification list
+    implementation("androidx.paging:paging-common-ktx:3.2.1")
+
+    implementation(project(":parser"))
 
     // Testing
     implementation("com.squareup.okhttp3:okhttp:4.12.0")
 
     testImplementation("junit:junit:4.13.2")
+    testImplementation(testFixtures(project(":parser")))
+    // Room on a real SQLite for the write-behind stress test
+    testImplementation("org.robolectric:robolectric:4.11.1")
+    testImplementation("androidx.test:core:1.5.0")
+    testImplementation("androidx.room:room-testing:2.6.1")
     androidTestImplementation("androidx.test.ext:junit:1.1.5")
     androidTestImplementation("androidx.test.espresso:espresso-core:3.5.1")
     androidTestImplementation(platform("androidx.compose:compose-bom:2023.10.01"))
@@ -0,0 +1,141 @@
+package com.example.myapp
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.util.Log
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * On-device timings for the two schemas DictionaryEncodingTest compares: 50k messages across 40
+ * chats with the chat and sender strings on every row (version 4), and through [CaptureStore] with
+ * lookup ids. Times one chat's rows, as the conversation queries read them, and a walk of the
+ * whole (chat_id, captured_at) index, as the chat list and retention do. Results go to logcat
+ * under [TAG].
+ */
+@RunWith(AndroidJUnit4::class)
+class DictionaryEncodingBenchmark {
+    private val encodedName = "dictionary_encoded_benchmark.db"
+    private val legacyName = "string_keyed_benchmark.db"
+    private val total = 50_000
+    private val chats = (0 until 40).map {
+        if (it % 4 == 0) "Family & Friends Group $it (Mumbai)" else String.format("+91 93061 %05d", it)
+    }
+    private val senders = (0 until 200).map { "Group Member Name $it" }
+    private lateinit var context: Context
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        context.deleteDatabase(encodedName)
+        context.deleteDatabase(legacyName)
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(encodedName)
+        context.deleteDatabase(legacyName)
+    }
+
+    private fun message(i: Int) = ChatMessage().apply {
+        chatId = chats[i % chats.size]
+        sender = if (i % 4 == 0) senders[i % senders.size] else null
+        isGroup = sender != null
+        timestamp = 1_700_000_000_000L + i
+        message = "ok $i"
+        messageTimestamp = "10:15 am"
+        status = "Read"
+    }
+
+    private fun writeLegacy(): SQLiteDatabase {
+        val db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(legacyName), null)
+        db.execSQL(
+            "CREATE TABLE messages (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                "fingerprint INTEGER NOT NULL, chat_id TEXT NOT NULL, is_group INTEGER NOT NULL, " +
+                "kind TEXT NOT NULL, sender TEXT, text TEXT, is_sent INTEGER NOT NULL, " +
+                "message_timestamp TEXT, status TEXT, captured_at INTEGER NOT NULL)"
+        )
+        db.execSQL("CREATE UNIQUE INDEX index_messages_fingerprint ON messages (fingerprint)")
+        db.execSQL("CREATE INDEX index_messages_chat_id_captured_at ON messages (chat_id, captured_at)")
+        db.execSQL("CREATE INDEX index_messages_captured_at ON messages (captured_at)")
+        val insert = db.compileStatement(
+            "INSERT INTO messages (fingerprint, chat_id, is_group, kind, sender, text, is_sent, " +
+                "message_timestamp, status, captured_at) VALUES (?, ?, ?, 'message', ?, ?, 0, ?, ?, ?)"
+        )
+        db.beginTransaction()
+        try {
+            for (i in 0 until total) {
+                val row = message(i)
+                insert.clearBindings()
+                insert.bindLong(1, i.toLong())
+                insert.bindString(2, row.chatId)
+                insert.bindLong(3, if (row.isGroup) 1 else 0)
+                row.sender?.let { insert.bindString(4, it) }
+                insert.bindString(5, row.message)
+                insert.bindString(6, row.messageTimestamp)
+                insert.bindString(7, row.status)
+                insert.bindLong(8, row.timestamp)
+                insert.executeInsert()
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+        return db
+    }
+
+    @Test
+    fun perChatAndFullIndexScans() {
+        val legacy = writeLegacy()
+        val encoded = AppDatabase.create(context, encodedName)
+        try {
+            val store = CaptureStore(encoded)
+            for (i in 0 until total) {
+                store.onMessage(message(i), i.toLong())
+                // Stay under the buffer's pending limit instead of dropping rows
+                while (store.writeBehind.pendingRows() > 2_000) Thread.sleep(1)
+            }
+            assertTrue(store.writeBehind.close(30_000))
+
+            val sqlite = encoded.openHelper.writableDatabase
+            sqlite.query("PRAGMA wal_checkpoint(TRUNCATE)").use { it.moveToFirst() }
+            fun encodedLong(sql: String, vararg args: Any): Long =
+                sqlite.query(sql, args).use { it.moveToFirst(); it.getLong(0) }
+            fun legacyLong(sql: String, vararg args: String): Long =
+                legacy.rawQuery(sql, args).use { it.moveToFirst(); it.getLong(0) }
+
+            val chat = chats[1]
+            val chatId = encodedLong("SELECT id FROM chats WHERE name = ?", chat)
+            val perChat = "SELECT COUNT(*) FROM messages WHERE chat_id = ? AND captured_at > 0"
+            val fullIndex = "SELECT COUNT(*) FROM (SELECT chat_id, MAX(captured_at) FROM messages GROUP BY chat_id)"
+            assertEquals(legacyLong(perChat, chat), encodedLong(perChat, chatId))
+            assertEquals(legacyLong(fullIndex), encodedLong(fullIndex))
+
+            val legacyChat = Timings.bestMicros(20) { legacyLong(perChat, chat) }
+            val encodedChat = Timings.bestMicros(20) { encodedLong(perChat, chatId) }
+            val legacyScan = Timings.bestMicros(5) { legacyLong(fullIndex) }
+            val encodedScan = Timings.bestMicros(5) { encodedLong(fullIndex) }
+            Log.i(
+                TAG, "50k messages: one chat $legacyChat us with strings vs $encodedChat us with lookup ids, " +
+                    "full index scan $legacyScan us vs $encodedScan us; intern caches ${store.internStats()}"
+            )
+
+            // The integer index is a fraction of the string one, so walking it is no slower; generous
+            // for a busy device
+            assertTrue("index scan $encodedScan us vs $legacyScan us", encodedScan < legacyScan * 2)
+        } finally {
+            encoded.close()
+            legacy.close()
+        }
+    }
+
+    private companion object {
+        const val TAG = "DictionaryEncodingBenchmark"
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.myapp
+
+/** Wall-clock timing for the on-device benchmarks, which run against the real SQLite. */
+object Timings {
+    /** Best of [runs] after one warm-up run, in microseconds; the best run is the one least disturbed. */
+    fun bestMicros(runs: Int, block: () -> Unit): Long {
+        block()
+        var best = Long.MAX_VALUE
+        repeat(runs) {
+            val start = System.nanoTime()
+            block()
+            best = minOf(best, System.nanoTime() - start)
+        }
+        return best / 1000
+    }
+}
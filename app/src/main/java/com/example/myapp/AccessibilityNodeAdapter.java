@@ -0,0 +1,52 @@
+package com.example.myapp;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.List;
+
+public final class AccessibilityNodeAdapter implements NodeAdapter<AccessibilityNodeInfo> {
+    public static final AccessibilityNodeAdapter INSTANCE = new AccessibilityNodeAdapter();
+
+    private AccessibilityNodeAdapter() {
+    }
+
+    @Override
+    public int getChildCount(AccessibilityNodeInfo node) {
+        return node.getChildCount();
+    }
+
+    @Override
+    public AccessibilityNodeInfo getChild(AccessibilityNodeInfo node, int index) {
+        return node.getChild(index);
+    }
+
+    @Override
+    public CharSequence getClassName(AccessibilityNodeInfo node) {
+        return node.getClassName();
+    }
+
+    @Override
+    public CharSequence getText(AccessibilityNodeInfo node) {
+        return node.getText();
+    }
+
+    @Override
+    public CharSequence getContentDescription(AccessibilityNodeInfo node) {
+        return node.getContentDescription();
+    }
+
+    @Override
+    public String getViewIdResourceName(AccessibilityNodeInfo node) {
+        return node.getViewIdResourceName();
+    }
+
+    @Override
+    public List<AccessibilityNodeInfo> findByViewId(AccessibilityNodeInfo root, String viewId) {
+        return root.findAccessibilityNodeInfosByViewId(viewId);
+    }
+
+    @Override
+    public void recycle(AccessibilityNodeInfo node) {
+        node.recycle();
+    }
+}
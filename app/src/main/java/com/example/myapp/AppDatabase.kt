@@ -3,30 +3,274 @@ package com.example.myapp
 import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
 import android.content.Context
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicLong
 
 @Database(
-    entities = [NotificationEntity::class],
-    version = 1,
-    exportSchema = false
+    entities = [
+        NotificationEntity::class,
+        ChatEntity::class,
+        MessageEntity::class,
+        CallEntity::class,
+        PackageEntity::class,
+        SenderEntity::class,
+        ArchivedFingerprintEntity::class
+    ],
+    version = 6,
+    exportSchema = true
 )
 abstract class AppDatabase : RoomDatabase() {
     abstract fun notificationDao(): NotificationDao
+    abstract fun captureDao(): CaptureDao
+    abstract fun dictionaryDao(): DictionaryDao
+
+    private val chatDeletions = AtomicLong()
+
+    /** How many transactions in this process have deleted [ChatEntity] rows; see [onChatsDeleted]. */
+    val chatsDeleted: Long get() = chatDeletions.get()
+
+    /**
+     * Records that the current transaction deleted [ChatEntity] rows, so an [IdInterner] of chat
+     * ids drops ids that no longer exist. Call it inside that transaction: the interner checks
+     * [chatsDeleted] inside the writer's, which can't begin until this one has committed.
+     */
+    fun onChatsDeleted() {
+        chatDeletions.incrementAndGet()
+    }
 
     companion object {
         @Volatile
         private var INSTANCE: AppDatabase? = null
 
+        // WAL lets reads run next to the write-behind flushes, so give them a small pool of their
+        // own; transactions are serialised by Room anyway and get one thread
+        private val queryExecutor: Executor by lazy { Executors.newFixedThreadPool(2, named("room-query")) }
+        private val transactionExecutor: Executor by lazy { Executors.newSingleThreadExecutor(named("room-transaction")) }
+
+        /**
+         * Opens files with `auto_vacuum = INCREMENTAL`, so [DatabaseRetention] can hand freed pages
+         * back a few at a time. The mode can only be set before the first table is created, and the
+         * helper has already switched the file to WAL by then, which fixes its header until a VACUUM;
+         * on a file Room has not created its tables in yet, that VACUUM has nothing to copy.
+         */
+        private val openHelperFactory = SupportSQLiteOpenHelper.Factory { configuration ->
+            FrameworkSQLiteOpenHelperFactory().create(
+                SupportSQLiteOpenHelper.Configuration.builder(configuration.context)
+                    .name(configuration.name)
+                    .callback(IncrementalVacuumCallback(configuration.callback))
+                    .noBackupDirectory(configuration.useNoBackupDirectory)
+                    .allowDataLossOnRecovery(configuration.allowDataLossOnRecovery)
+                    .build()
+            )
+        }
+
+        /** Adds the capture tables next to the notifications. */
+        val MIGRATION_1_2 = object : Migration(1, 2) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS chats (chat_id TEXT NOT NULL, is_group INTEGER NOT NULL, " +
+                        "captured_at INTEGER NOT NULL, PRIMARY KEY(chat_id))"
+                )
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS messages (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                        "fingerprint INTEGER NOT NULL, chat_id TEXT NOT NULL, is_group INTEGER NOT NULL, " +
+                        "kind TEXT NOT NULL, sender TEXT, text TEXT, is_sent INTEGER NOT NULL, " +
+                        "message_timestamp TEXT, status TEXT, captured_at INTEGER NOT NULL)"
+                )
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_messages_fingerprint ON messages (fingerprint)")
+                db.execSQL(
+                    "CREATE INDEX IF NOT EXISTS index_messages_chat_id_captured_at ON messages (chat_id, captured_at)"
+                )
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS calls (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                        "fingerprint INTEGER NOT NULL, chat_id TEXT NOT NULL, phone_number TEXT, call_type TEXT, " +
+                        "call_timestamp TEXT, captured_at INTEGER NOT NULL)"
+                )
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_calls_fingerprint ON calls (fingerprint)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_calls_chat_id_captured_at ON calls (chat_id, captured_at)")
+            }
+        }
+
+        /** Indexes notifications by timestamp for keyset paging. */
+        val MIGRATION_2_3 = object : Migration(2, 3) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_notifications_timestamp ON notifications (timestamp)")
+            }
+        }
+
+        /** Indexes the columns [DatabaseRetention] and [NotificationDao.deleteByPackage] filter on. */
+        val MIGRATION_3_4 = object : Migration(3, 4) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_notifications_packageName ON notifications (packageName)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_messages_captured_at ON messages (captured_at)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_calls_captured_at ON calls (captured_at)")
+            }
+        }
+
+        /**
+         * Replaces the package, chat and sender strings on every row with ids into lookup tables.
+         * SQLite cannot change a column's type in place, so each table is rebuilt and copied.
+         */
+        val MIGRATION_4_5 = object : Migration(4, 5) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS packages (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, name TEXT NOT NULL)"
+                )
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_packages_name ON packages (name)")
+                db.execSQL("INSERT OR IGNORE INTO packages (name) SELECT DISTINCT packageName FROM notifications")
+                db.execSQL(
+                    "CREATE TABLE notifications_new (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                        "package_id INTEGER NOT NULL, title TEXT, text TEXT, timestamp INTEGER NOT NULL, " +
+                        "isSensitive INTEGER NOT NULL)"
+                )
+                db.execSQL(
+                    "INSERT INTO notifications_new (id, package_id, title, text, timestamp, isSensitive) " +
+                        "SELECT n.id, p.id, n.title, n.text, n.timestamp, n.isSensitive " +
+                        "FROM notifications n JOIN packages p ON p.name = n.packageName"
+                )
+                db.execSQL("DROP TABLE notifications")
+                db.execSQL("ALTER TABLE notifications_new RENAME TO notifications")
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_notifications_timestamp ON notifications (timestamp)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_notifications_package_id ON notifications (package_id)")
+
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS senders (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, name TEXT NOT NULL)"
+                )
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_senders_name ON senders (name)")
+                db.execSQL("INSERT OR IGNORE INTO senders (name) SELECT DISTINCT sender FROM messages WHERE sender IS NOT NULL")
+
+                // Calls never created chat rows before, so their contacts are added here
+                db.execSQL(
+                    "CREATE TABLE chats_new (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, name TEXT NOT NULL, " +
+                        "is_group INTEGER NOT NULL, captured_at INTEGER NOT NULL)"
+                )
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_chats_name ON chats_new (name)")
+                db.execSQL(
+                    "INSERT OR IGNORE INTO chats_new (name, is_group, captured_at) " +
+                        "SELECT chat_id, is_group, captured_at FROM chats"
+                )
+                db.execSQL(
+                    "INSERT OR IGNORE INTO chats_new (name, is_group, captured_at) " +
+                        "SELECT chat_id, MAX(is_group), MAX(captured_at) FROM messages GROUP BY chat_id"
+                )
+                db.execSQL(
+                    "INSERT OR IGNORE INTO chats_new (name, is_group, captured_at) " +
+                        "SELECT chat_id, 0, MAX(captured_at) FROM calls GROUP BY chat_id"
+                )
+
+                db.execSQL(
+                    "CREATE TABLE messages_new (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                        "fingerprint INTEGER NOT NULL, chat_id INTEGER NOT NULL, is_group INTEGER NOT NULL, " +
+                        "kind TEXT NOT NULL, sender_id INTEGER, text TEXT, is_sent INTEGER NOT NULL, " +
+                        "message_timestamp TEXT, status TEXT, captured_at INTEGER NOT NULL)"
+                )
+                db.execSQL(
+                    "INSERT INTO messages_new (id, fingerprint, chat_id, is_group, kind, sender_id, text, is_sent, " +
+                        "message_timestamp, status, captured_at) " +
+                        "SELECT m.id, m.fingerprint, c.id, m.is_group, m.kind, s.id, m.text, m.is_sent, " +
+                        "m.message_timestamp, m.status, m.captured_at " +
+                        "FROM messages m JOIN chats_new c ON c.name = m.chat_id LEFT JOIN senders s ON s.name = m.sender"
+                )
+                db.execSQL("DROP TABLE messages")
+                db.execSQL("ALTER TABLE messages_new RENAME TO messages")
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_messages_fingerprint ON messages (fingerprint)")
+                db.execSQL(
+                    "CREATE INDEX IF NOT EXISTS index_messages_chat_id_captured_at ON messages (chat_id, captured_at)"
+                )
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_messages_captured_at ON messages (captured_at)")
+
+                db.execSQL(
+                    "CREATE TABLE calls_new (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                        "fingerprint INTEGER NOT NULL, chat_id INTEGER NOT NULL, phone_number TEXT, call_type TEXT, " +
+                        "call_timestamp TEXT, captured_at INTEGER NOT NULL)"
+                )
+                db.execSQL(
+                    "INSERT INTO calls_new (id, fingerprint, chat_id, phone_number, call_type, call_timestamp, captured_at) " +
+                        "SELECT l.id, l.fingerprint, c.id, l.phone_number, l.call_type, l.call_timestamp, l.captured_at " +
+                        "FROM calls l JOIN chats_new c ON c.name = l.chat_id"
+                )
+                db.execSQL("DROP TABLE calls")
+                db.execSQL("ALTER TABLE calls_new RENAME TO calls")
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_calls_fingerprint ON calls (fingerprint)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_calls_chat_id_captured_at ON calls (chat_id, captured_at)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_calls_captured_at ON calls (captured_at)")
+
+                db.execSQL("DROP TABLE chats")
+                db.execSQL("ALTER TABLE chats_new RENAME TO chats")
+            }
+        }
+
+        /** Adds the fingerprints of archived messages, so they are not captured again. */
+        val MIGRATION_5_6 = object : Migration(5, 6) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS archived_fingerprints (fingerprint INTEGER NOT NULL, " +
+                        "captured_at INTEGER NOT NULL, PRIMARY KEY(fingerprint))"
+                )
+                db.execSQL(
+                    "CREATE INDEX IF NOT EXISTS index_archived_fingerprints_captured_at ON archived_fingerprints (captured_at)"
+                )
+            }
+        }
+
         fun getDatabase(context: Context): AppDatabase {
             return INSTANCE ?: synchronized(this) {
-                val instance = Room.databaseBuilder(
-                    context.applicationContext,
-                    AppDatabase::class.java,
-                    "app_database"
-                ).build()
+                val instance = create(context, "app_database")
                 INSTANCE = instance
                 instance
             }
         }
+
+        /** Builds a database file with the app's journal mode and executors. */
+        internal fun create(context: Context, name: String): AppDatabase {
+            return Room.databaseBuilder(
+                context.applicationContext,
+                AppDatabase::class.java,
+                name
+            )
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6)
+                .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                .setQueryExecutor(queryExecutor)
+                .setTransactionExecutor(transactionExecutor)
+                .openHelperFactory(openHelperFactory)
+                .build()
+        }
+
+        private fun named(name: String) = ThreadFactory { runnable ->
+            Thread(runnable, name).apply { isDaemon = true }
+        }
+    }
+
+    /** Room's open callback, preceded on new files by the switch to incremental auto-vacuum. */
+    private class IncrementalVacuumCallback(
+        private val delegate: SupportSQLiteOpenHelper.Callback
+    ) : SupportSQLiteOpenHelper.Callback(delegate.version) {
+        override fun onConfigure(db: SupportSQLiteDatabase) {
+            // user_version stays 0 until onCreate has run, so only new files are converted
+            if (db.version == 0) {
+                db.execSQL("PRAGMA auto_vacuum = INCREMENTAL")
+                db.execSQL("VACUUM")
+            }
+            delegate.onConfigure(db)
+        }
+
+        override fun onCreate(db: SupportSQLiteDatabase) = delegate.onCreate(db)
+
+        override fun onUpgrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) =
+            delegate.onUpgrade(db, oldVersion, newVersion)
+
+        override fun onDowngrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) =
+            delegate.onDowngrade(db, oldVersion, newVersion)
+
+        override fun onOpen(db: SupportSQLiteDatabase) = delegate.onOpen(db)
+
+        override fun onCorruption(db: SupportSQLiteDatabase) = delegate.onCorruption(db)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.example.myapp
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+/** Archived messages are indexed by chat id and capture time. */
+object MessageArchiveCodec : ArchiveSegment.Codec<MessageEntity> {
+    override fun keyOf(row: MessageEntity): Long = row.chatId
+
+    override fun timeOf(row: MessageEntity): Long = row.capturedAt
+
+    override fun write(out: DataOutputStream, row: MessageEntity) {
+        out.writeLong(row.id)
+        out.writeLong(row.fingerprint)
+        out.writeLong(row.chatId)
+        out.writeBoolean(row.isGroup)
+        out.writeUTF(row.kind)
+        out.writeLong(row.senderId ?: -1)
+        NullableStrings.write(out, row.text)
+        out.writeBoolean(row.isSent)
+        NullableStrings.write(out, row.messageTimestamp)
+        NullableStrings.write(out, row.status)
+        out.writeLong(row.capturedAt)
+    }
+
+    override fun read(input: DataInputStream): MessageEntity = MessageEntity(
+        id = input.readLong(),
+        fingerprint = input.readLong(),
+        chatId = input.readLong(),
+        isGroup = input.readBoolean(),
+        kind = input.readUTF(),
+        senderId = input.readLong().takeIf { it >= 0 },
+        text = NullableStrings.read(input),
+        isSent = input.readBoolean(),
+        messageTimestamp = NullableStrings.read(input),
+        status = NullableStrings.read(input),
+        capturedAt = input.readLong()
+    )
+}
+
+/** Archived notifications are indexed by package id and post time. */
+object NotificationArchiveCodec : ArchiveSegment.Codec<NotificationEntity> {
+    override fun keyOf(row: NotificationEntity): Long = row.packageId
+
+    override fun timeOf(row: NotificationEntity): Long = row.timestamp
+
+    override fun write(out: DataOutputStream, row: NotificationEntity) {
+        out.writeInt(row.id)
+        out.writeLong(row.packageId)
+        NullableStrings.write(out, row.title)
+        NullableStrings.write(out, row.text)
+        out.writeLong(row.timestamp)
+        out.writeBoolean(row.isSensitive)
+    }
+
+    override fun read(input: DataInputStream): NotificationEntity = NotificationEntity(
+        id = input.readInt(),
+        packageId = input.readLong(),
+        title = NullableStrings.read(input),
+        text = NullableStrings.read(input),
+        timestamp = input.readLong(),
+        isSensitive = input.readBoolean()
+    )
+}
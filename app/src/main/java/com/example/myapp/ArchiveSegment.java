@@ -0,0 +1,284 @@
+package com.example.myapp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Immutable file of archived rows, written once by {@link ColdArchive}. Rows are grouped into
+ * deflated blocks of about {@link #DEFAULT_BLOCK_BYTES}; a sparse index at the end records each
+ * block's key range (chat or package id) and time range, so a reader inflates only the blocks
+ * that can hold what it asks for, one at a time.
+ *
+ * <p>Layout: magic, version, blocks, then the index ({@code count} entries of key range, time
+ * range, offset, compressed length, rows) and a 12-byte trailer of index offset and magic. The
+ * writer fills a temporary file and renames it into place on close, so a segment is either
+ * complete or absent.
+ */
+public final class ArchiveSegment {
+    static final int MAGIC = 0x57414353; // "WACS"
+    static final int VERSION = 1;
+    /** Rows should be appended in key, then time order, so blocks cover narrow ranges. */
+    static final int DEFAULT_BLOCK_BYTES = 32 * 1024;
+    private static final int TRAILER_BYTES = 12;
+
+    private ArchiveSegment() {
+    }
+
+    /** Serialises one row type and tells the index where it belongs. */
+    public interface Codec<T> {
+        long keyOf(T row);
+
+        long timeOf(T row);
+
+        void write(DataOutputStream out, T row) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /** Receives rows as they are decoded. */
+    public interface Sink<T> {
+        /** @return {@code false} to stop reading */
+        boolean accept(T row);
+    }
+
+    /** Index entry for one compressed block. */
+    public static final class Block {
+        public final long minKey;
+        public final long maxKey;
+        public final long minTime;
+        public final long maxTime;
+        final long offset;
+        final int compressedLength;
+        public final int rows;
+
+        Block(long minKey, long maxKey, long minTime, long maxTime, long offset, int compressedLength, int rows) {
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rows = rows;
+        }
+
+        boolean overlaps(long fromKey, long toKey, long fromTime, long toTime) {
+            return minKey <= toKey && maxKey >= fromKey && minTime <= toTime && maxTime >= fromTime;
+        }
+    }
+
+    /** Builds one segment. Not thread-safe. */
+    public static final class Writer<T> implements Closeable {
+        private final Codec<T> codec;
+        private final File file;
+        private final File tmp;
+        private final FileOutputStream fileStream;
+        private final DataOutputStream out;
+        private final int blockBytes;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        private final DataOutputStream blockOut = new DataOutputStream(block);
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final List<Block> index = new ArrayList<>();
+        private long minKey;
+        private long maxKey;
+        private long minTime;
+        private long maxTime;
+        private int blockRows;
+        private long rows;
+        private boolean closed;
+
+        public Writer(File file, Codec<T> codec) throws IOException {
+            this(file, codec, DEFAULT_BLOCK_BYTES);
+        }
+
+        Writer(File file, Codec<T> codec, int blockBytes) throws IOException {
+            this.codec = codec;
+            this.file = file;
+            this.tmp = new File(file.getPath() + ".tmp");
+            this.blockBytes = blockBytes;
+            fileStream = new FileOutputStream(tmp);
+            out = new DataOutputStream(new BufferedOutputStream(fileStream, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+        }
+
+        public void append(T row) throws IOException {
+            long key = codec.keyOf(row);
+            long time = codec.timeOf(row);
+            if (blockRows == 0) {
+                minKey = maxKey = key;
+                minTime = maxTime = time;
+            } else {
+                minKey = Math.min(minKey, key);
+                maxKey = Math.max(maxKey, key);
+                minTime = Math.min(minTime, time);
+                maxTime = Math.max(maxTime, time);
+            }
+            codec.write(blockOut, row);
+            blockRows++;
+            rows++;
+            if (block.size() >= blockBytes) {
+                flushBlock();
+            }
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /** Writes the index, syncs and moves the segment into place. */
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                flushBlock();
+                long indexOffset = out.size();
+                out.writeInt(index.size());
+                for (Block b : index) {
+                    out.writeLong(b.minKey);
+                    out.writeLong(b.maxKey);
+                    out.writeLong(b.minTime);
+                    out.writeLong(b.maxTime);
+                    out.writeLong(b.offset);
+                    out.writeInt(b.compressedLength);
+                    out.writeInt(b.rows);
+                }
+                out.writeLong(indexOffset);
+                out.writeInt(MAGIC);
+                out.flush();
+                // The caller deletes the rows from the database next; they must be on disk first
+                fileStream.getFD().sync();
+            } finally {
+                deflater.end();
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot move " + tmp + " to " + file);
+            }
+        }
+
+        /** Drops a segment that will not be completed. */
+        public void abort() {
+            closed = true;
+            deflater.end();
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // Deleting it anyway
+            }
+            tmp.delete();
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockRows == 0) return;
+            long offset = out.size();
+            deflater.reset();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(block.size() / 4);
+            try (DeflaterOutputStream deflating = new DeflaterOutputStream(compressed, deflater)) {
+                block.writeTo(deflating);
+            }
+            compressed.writeTo(out);
+            index.add(new Block(minKey, maxKey, minTime, maxTime, offset, compressed.size(), blockRows));
+            block.reset();
+            blockRows = 0;
+        }
+    }
+
+    /** Reads a segment's index up front and inflates blocks on demand. */
+    public static final class Reader<T> implements Closeable {
+        private final Codec<T> codec;
+        private final RandomAccessFile file;
+        private final List<Block> index;
+        private long blocksRead;
+
+        public Reader(File file, Codec<T> codec) throws IOException {
+            this.codec = codec;
+            this.file = new RandomAccessFile(file, "r");
+            try {
+                if (this.file.readInt() != MAGIC) {
+                    throw new IOException("Not an archive segment: " + file);
+                }
+                int version = this.file.readUnsignedShort();
+                if (version > VERSION) {
+                    throw new IOException("Segment version " + version + " is newer than " + VERSION);
+                }
+                long length = this.file.length();
+                this.file.seek(length - TRAILER_BYTES);
+                long indexOffset = this.file.readLong();
+                if (this.file.readInt() != MAGIC) {
+                    throw new IOException("Segment has no index: " + file);
+                }
+                this.file.seek(indexOffset);
+                int count = this.file.readInt();
+                List<Block> blocks = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    blocks.add(new Block(this.file.readLong(), this.file.readLong(), this.file.readLong(),
+                            this.file.readLong(), this.file.readLong(), this.file.readInt(), this.file.readInt()));
+                }
+                index = Collections.unmodifiableList(blocks);
+            } catch (IOException e) {
+                this.file.close();
+                throw e;
+            }
+        }
+
+        public List<Block> getIndex() {
+            return index;
+        }
+
+        /** Blocks inflated so far; shows how selective the index was. */
+        public long getBlocksRead() {
+            return blocksRead;
+        }
+
+        /**
+         * Streams rows whose key is in [{@code fromKey}, {@code toKey}] and time in
+         * [{@code fromTime}, {@code toTime}] to {@code sink}, holding one block in memory at a time.
+         *
+         * @return {@code false} if the sink stopped the scan
+         */
+        public boolean scan(long fromKey, long toKey, long fromTime, long toTime, Sink<T> sink) throws IOException {
+            for (Block block : index) {
+                if (!block.overlaps(fromKey, toKey, fromTime, toTime)) continue;
+                byte[] compressed = new byte[block.compressedLength];
+                file.seek(block.offset);
+                file.readFully(compressed);
+                blocksRead++;
+                Inflater inflater = new Inflater();
+                try (DataInputStream in = new DataInputStream(
+                        new InflaterInputStream(new ByteArrayInputStream(compressed), inflater, 8 * 1024))) {
+                    for (int i = 0; i < block.rows; i++) {
+                        T row = codec.read(in);
+                        long key = codec.keyOf(row);
+                        long time = codec.timeOf(row);
+                        if (key < fromKey || key > toKey || time < fromTime || time > toTime) continue;
+                        if (!sink.accept(row)) return false;
+                    }
+                } finally {
+                    inflater.end();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.myapp
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * The [MessageEntity.fingerprint] of a message [ColdArchive] moved out of the database. Deleting
+ * the row would otherwise let the same message, captured again while it is still on screen, be
+ * inserted anew; [CaptureStore] skips fingerprints found here.
+ */
+@Entity(
+    tableName = "archived_fingerprints",
+    // Retention drops tombstones past the messages TTL
+    indices = [Index(value = ["captured_at"])]
+)
+data class ArchivedFingerprintEntity(
+    @PrimaryKey
+    val fingerprint: Long,
+    /** [MessageEntity.capturedAt] of the archived row. */
+    @ColumnInfo(name = "captured_at")
+    val capturedAt: Long
+)
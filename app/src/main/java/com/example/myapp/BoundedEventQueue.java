@@ -0,0 +1,92 @@
+package com.example.myapp;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Fixed-capacity hand-off between the capture thread and the parse worker. When full, the oldest
+ * entry the {@link DropPolicy} allows is dropped: a newer snapshot of the same screen supersedes
+ * it anyway. Entries it does not allow, such as the capture that opens a chat, are never dropped;
+ * if nothing queued may go, a droppable newcomer is dropped instead, and one that may not is
+ * queued past the capacity.
+ */
+public class BoundedEventQueue<T> {
+    /** Tells entries that may be dropped to make room from those whose loss would misparse later ones. */
+    public interface DropPolicy<T> {
+        boolean isDroppable(T item);
+    }
+
+    private final int capacity;
+    private final DropPolicy<T> dropPolicy;
+    private final ArrayDeque<T> items;
+    private long enqueued;
+    private long dropped;
+    private long processed;
+
+    /** A queue whose every entry may be dropped. */
+    public BoundedEventQueue(int capacity) {
+        this(capacity, item -> true);
+    }
+
+    public BoundedEventQueue(int capacity, DropPolicy<T> dropPolicy) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.dropPolicy = dropPolicy;
+        this.items = new ArrayDeque<>(capacity);
+    }
+
+    /** @return {@code true} if an entry, queued or this one, had to be dropped to make room */
+    public synchronized boolean offer(T item) {
+        enqueued++;
+        boolean droppedOne = false;
+        if (items.size() >= capacity) {
+            if (dropOldestDroppable()) {
+                droppedOne = true;
+            } else if (dropPolicy.isDroppable(item)) {
+                dropped++;
+                return true;
+            }
+        }
+        items.addLast(item);
+        return droppedOne;
+    }
+
+    public synchronized T poll() {
+        return items.pollFirst();
+    }
+
+    public synchronized void markProcessed() {
+        processed++;
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+
+    public synchronized long getEnqueued() {
+        return enqueued;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    public synchronized long getProcessed() {
+        return processed;
+    }
+
+    public synchronized String stats() {
+        return "enqueued=" + enqueued + " dropped=" + dropped + " processed=" + processed + " pending=" + items.size();
+    }
+
+    private boolean dropOldestDroppable() {
+        for (Iterator<T> it = items.iterator(); it.hasNext(); ) {
+            if (dropPolicy.isDroppable(it.next())) {
+                it.remove();
+                dropped++;
+                return true;
+            }
+        }
+        return false;
+    }
+}
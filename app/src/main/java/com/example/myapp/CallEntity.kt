@@ -0,0 +1,36 @@
+package com.example.myapp
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * One row of the Calls tab. [chatId] is the [ChatEntity.id] of the contact, so calls and messages
+ * with the same person share a chat; [fingerprint] makes re-capturing the tab idempotent.
+ */
+@Entity(
+    tableName = "calls",
+    indices = [
+        Index(value = ["fingerprint"], unique = true),
+        Index(value = ["chat_id", "captured_at"]),
+        // Retention deletes by age across all chats
+        Index(value = ["captured_at"])
+    ]
+)
+data class CallEntity(
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0,
+    val fingerprint: Long,
+    @ColumnInfo(name = "chat_id")
+    val chatId: Long,
+    @ColumnInfo(name = "phone_number")
+    val phoneNumber: String?,
+    @ColumnInfo(name = "call_type")
+    val callType: String?,
+    /** Time as the Calls tab shows it, e.g. "Yesterday, 9:41 pm". */
+    @ColumnInfo(name = "call_timestamp")
+    val callTimestamp: String?,
+    @ColumnInfo(name = "captured_at")
+    val capturedAt: Long
+)
@@ -0,0 +1,51 @@
+package com.example.myapp
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+
+/** Blocking writes are for [CaptureStore]'s writer thread, which wraps each batch in one transaction. */
+@Dao
+abstract class CaptureDao {
+    /** Rows whose fingerprint is already stored are skipped. */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract fun insertMessages(messages: List<MessageEntity>)
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract fun insertCalls(calls: List<CallEntity>)
+
+    /** Of [fingerprints], at most 999, those of messages [ColdArchive] has moved out. */
+    @Query("SELECT fingerprint FROM archived_fingerprints WHERE fingerprint IN (:fingerprints)")
+    abstract fun archivedAmong(fingerprints: List<Long>): List<Long>
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract fun insertArchivedFingerprints(rows: List<ArchivedFingerprintEntity>)
+
+    /** Records that rows were captured from the chat; [capturedAt] never moves backwards. */
+    @Query("UPDATE chats SET is_group = :isGroup, captured_at = MAX(captured_at, :capturedAt) WHERE id = :chatId")
+    abstract fun touchChat(chatId: Long, isGroup: Boolean, capturedAt: Long)
+
+    /** Oldest rows captured before [before], for [ColdArchive]. */
+    @Query("SELECT * FROM messages WHERE captured_at < :before ORDER BY captured_at, id LIMIT :limit")
+    abstract fun agedMessages(before: Long, limit: Int): List<MessageEntity>
+
+    /** At most 999 ids, SQLite's bound-parameter limit. */
+    @Query("DELETE FROM messages WHERE id IN (:ids)")
+    abstract fun deleteMessages(ids: List<Long>)
+
+    @Query(
+        "SELECT m.* FROM messages m JOIN chats c ON c.id = m.chat_id WHERE c.name = :chat " +
+            "ORDER BY m.captured_at, m.id"
+    )
+    abstract suspend fun messagesFor(chat: String): List<MessageEntity>
+
+    @Query("SELECT * FROM chats ORDER BY captured_at DESC")
+    abstract suspend fun chats(): List<ChatEntity>
+
+    @Query("SELECT COUNT(*) FROM messages")
+    abstract suspend fun messageCount(): Int
+
+    @Query("SELECT COUNT(*) FROM calls")
+    abstract suspend fun callCount(): Int
+}
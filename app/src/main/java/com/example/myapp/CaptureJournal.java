@@ -0,0 +1,380 @@
+package com.example.myapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Fixed-size, memory-mapped ring of captured rows that have not reached the database yet.
+ * {@link WriteBehindBuffer} appends every row it accepts and {@link #commit commits} each batch once
+ * its transaction is in; whatever lies between the read cursor and the end of the written frames
+ * when the journal is opened is handed back by {@link #takeRecovered} and written again.
+ *
+ * <p>An append is a copy into the mapping, with no system call, and the kernel owns the page as
+ * soon as it is written, so rows survive the process being killed. Power loss can still take
+ * frames written since the last {@link #close}, as it can the database's own WAL.
+ *
+ * <p>Layout: a 64-byte header of magic, version and data capacity plus two read-cursor slots
+ * ({@code position, sequence, crc}, written alternately so one is always intact), then the ring.
+ * Each frame is {@code length, crc, sequence, payload}, padded to 8 bytes; the CRC covers the
+ * sequence and payload. Frames never wrap: the tail of the ring is skipped with a padding frame.
+ * Recovery follows frames from the read cursor while the sequence numbers run on; a frame whose
+ * sequence matches but whose CRC does not is a torn write and ends the journal.
+ */
+public final class CaptureJournal<T> implements Closeable {
+    static final int MAGIC = 0x5741434A; // "WACJ"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int FRAME_HEADER_BYTES = 16;
+    /** Enough for a few thousand rows, more than the write-behind buffer holds. */
+    public static final int DEFAULT_CAPACITY_BYTES = 2 * 1024 * 1024;
+    private static final int SLOT_A = 16;
+    private static final int SLOT_B = 40;
+    private static final int PADDING = -1;
+
+    /** Serialises the journaled row type. */
+    public interface Codec<T> {
+        void write(DataOutputStream out, T row) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /** Exposes the buffer so frames are copied into the mapping without another array. */
+    private static final class Encoder extends ByteArrayOutputStream {
+        Encoder() {
+            super(256);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+
+    private final File file;
+    private final Codec<T> codec;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer map;
+    private final int capacity;
+    private final CRC32 crc = new CRC32();
+    private final byte[] scratch = new byte[8];
+    private final Encoder encoded = new Encoder();
+    private final DataOutputStream encodedOut = new DataOutputStream(encoded);
+
+    private long readPosition;
+    private long readSequence;
+    private long writePosition;
+    private long writeSequence;
+    private int lastSlot = SLOT_B;
+    private List<T> recovered;
+    private boolean tornTail;
+    private int undecodable;
+    private long appended;
+    private long rejected;
+    private boolean closed;
+
+    /**
+     * Opens {@code file}, creating it with {@code capacityBytes} of ring if it is missing or not a
+     * journal, and reads back what was not committed. An existing journal keeps its own capacity.
+     */
+    public CaptureJournal(File file, int capacityBytes, Codec<T> codec) throws IOException {
+        if (capacityBytes < 4096) throw new IllegalArgumentException("capacity too small: " + capacityBytes);
+        this.file = file;
+        this.codec = codec;
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            int existing = existingCapacity();
+            if (existing < 0) {
+                capacity = capacityBytes & ~7;
+                allocate();
+            } else {
+                capacity = existing;
+            }
+            map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + capacity);
+            if (existing < 0) {
+                map.putInt(0, MAGIC);
+                map.putInt(4, VERSION);
+                map.putInt(8, capacity);
+                // Sequences start at 1 so the zeroed ring of a new file never reads as a frame
+                writeCursor(SLOT_A, 0, 1);
+                writeCursor(SLOT_B, 0, 1);
+            }
+            recover();
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies {@code row} into the ring.
+     *
+     * @return {@code false} if the ring has no room for it; the row was not journaled
+     */
+    public synchronized boolean append(T row) {
+        if (closed) return false;
+        encoded.reset();
+        try {
+            codec.write(encodedOut, row);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode " + row, e);
+        }
+        int length = encoded.size();
+        int frame = align(FRAME_HEADER_BYTES + length);
+        long position = writePosition;
+        int offset = offsetOf(position);
+        int remaining = capacity - offset;
+        int skip = remaining < frame ? remaining : 0;
+        if (frame > capacity || position + skip + frame - readPosition > capacity) {
+            rejected++;
+            return false;
+        }
+        if (skip > 0) {
+            if (remaining >= FRAME_HEADER_BYTES) {
+                putFrame(offset, PADDING, writeSequence++, null, 0);
+            }
+            position += skip;
+            offset = 0;
+        }
+        putFrame(offset, length, writeSequence++, encoded.bytes(), length);
+        writePosition = position + frame;
+        appended++;
+        return true;
+    }
+
+    /** End of the written frames; pass it to {@link #commit} once they are all in the database. */
+    public synchronized long position() {
+        return writePosition;
+    }
+
+    /** Moves the persisted read cursor up to {@code position}, freeing the frames before it. */
+    public synchronized void commit(long position) {
+        if (closed || position <= readPosition) return;
+        if (position > writePosition) {
+            throw new IllegalArgumentException("commit past the write position: " + position + " > " + writePosition);
+        }
+        long at = readPosition;
+        long sequence = readSequence;
+        // Walk the frame headers for the sequence number the cursor must carry
+        while (at < position) {
+            int offset = offsetOf(at);
+            int remaining = capacity - offset;
+            if (remaining < FRAME_HEADER_BYTES) {
+                at += remaining;
+                continue;
+            }
+            int length = map.getInt(HEADER_BYTES + offset);
+            at += length == PADDING ? remaining : align(FRAME_HEADER_BYTES + length);
+            sequence++;
+        }
+        int slot = lastSlot == SLOT_A ? SLOT_B : SLOT_A;
+        writeCursor(slot, at, sequence);
+        lastSlot = slot;
+        readPosition = at;
+        readSequence = sequence;
+    }
+
+    /** Rows that were journaled but not committed when the journal was opened; once only. */
+    public synchronized List<T> takeRecovered() {
+        List<T> rows = recovered;
+        recovered = Collections.emptyList();
+        return rows;
+    }
+
+    /** Whether opening found a frame cut short by the previous process. */
+    public synchronized boolean hadTornTail() {
+        return tornTail;
+    }
+
+    /** Bytes appended but not committed. */
+    public synchronized long usedBytes() {
+        return writePosition - readPosition;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Forces the mapping to disk; appends afterwards are refused. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            map.force();
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s: %d appended, %d rejected, %d/%d bytes used%s%s",
+                file.getName(), appended, rejected, writePosition - readPosition, capacity,
+                tornTail ? ", torn tail dropped" : "",
+                undecodable > 0 ? ", " + undecodable + " undecodable rows skipped" : "");
+    }
+
+    /** @return the stored capacity, or -1 if the file is not a usable journal */
+    private int existingCapacity() throws IOException {
+        if (raf.length() < HEADER_BYTES) return -1;
+        raf.seek(0);
+        if (raf.readInt() != MAGIC || raf.readInt() != VERSION) return -1;
+        int stored = raf.readInt();
+        if (stored <= 0 || (stored & 7) != 0 || raf.length() != HEADER_BYTES + (long) stored) return -1;
+        return stored;
+    }
+
+    /**
+     * Writes the whole file out. A sparse file would fault with SIGBUS on a write to the mapping
+     * once the disk is full; this way it fails here, with an exception.
+     */
+    private void allocate() throws IOException {
+        raf.setLength(0);
+        byte[] zeros = new byte[64 * 1024];
+        long total = HEADER_BYTES + (long) capacity;
+        for (long written = 0; written < total; written += zeros.length) {
+            raf.write(zeros, 0, (int) Math.min(zeros.length, total - written));
+        }
+        raf.getFD().sync();
+    }
+
+    private void recover() {
+        long[] a = readCursor(SLOT_A);
+        long[] b = readCursor(SLOT_B);
+        long[] cursor;
+        if (a != null && (b == null || a[1] >= b[1])) {
+            cursor = a;
+            lastSlot = SLOT_A;
+        } else {
+            cursor = b != null ? b : new long[] {0, 1};
+            lastSlot = SLOT_B;
+        }
+        readPosition = cursor[0];
+        readSequence = cursor[1];
+
+        List<T> rows = new ArrayList<>();
+        long at = readPosition;
+        long sequence = readSequence;
+        while (at - readPosition < capacity) {
+            int offset = offsetOf(at);
+            int remaining = capacity - offset;
+            if (remaining < FRAME_HEADER_BYTES) {
+                at += remaining;
+                continue;
+            }
+            int base = HEADER_BYTES + offset;
+            int length = map.getInt(base);
+            int stored = map.getInt(base + 4);
+            // A frame from an earlier lap: the clean end of the journal
+            if (map.getLong(base + 8) != sequence) break;
+            if (length == PADDING) {
+                if (checksum(sequence, offset, 0) != stored) {
+                    tornTail = true;
+                    break;
+                }
+                at += remaining;
+                sequence++;
+                continue;
+            }
+            if (length < 0 || FRAME_HEADER_BYTES + length > remaining || checksum(sequence, offset, length) != stored) {
+                tornTail = true;
+                break;
+            }
+            byte[] payload = new byte[length];
+            map.position(base + FRAME_HEADER_BYTES);
+            map.get(payload);
+            try {
+                rows.add(codec.read(new DataInputStream(new ByteArrayInputStream(payload))));
+            } catch (IOException e) {
+                // Intact but unreadable, e.g. written by a different codec; skip the row
+                undecodable++;
+            }
+            at += align(FRAME_HEADER_BYTES + length);
+            sequence++;
+        }
+        writePosition = at;
+        writeSequence = sequence;
+        recovered = rows;
+    }
+
+    private void putFrame(int offset, int length, long sequence, byte[] payload, int payloadLength) {
+        int base = HEADER_BYTES + offset;
+        if (payloadLength > 0) {
+            map.position(base + FRAME_HEADER_BYTES);
+            map.put(payload, 0, payloadLength);
+        }
+        map.putInt(base, length);
+        map.putInt(base + 4, crcOf(sequence, payload, payloadLength));
+        // Last, so a frame interrupted before this point still carries an old lap's sequence
+        map.putLong(base + 8, sequence);
+    }
+
+    private int crcOf(long sequence, byte[] payload, int length) {
+        crc.reset();
+        putSequence(sequence);
+        if (length > 0) crc.update(payload, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private int checksum(long sequence, int offset, int length) {
+        crc.reset();
+        putSequence(sequence);
+        int base = HEADER_BYTES + offset + FRAME_HEADER_BYTES;
+        byte[] chunk = new byte[Math.min(length, 4096)];
+        for (int done = 0; done < length; done += chunk.length) {
+            int n = Math.min(chunk.length, length - done);
+            map.position(base + done);
+            map.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return (int) crc.getValue();
+    }
+
+    private void putSequence(long sequence) {
+        for (int i = 0; i < 8; i++) {
+            scratch[i] = (byte) (sequence >>> (56 - 8 * i));
+        }
+        crc.update(scratch, 0, 8);
+    }
+
+    private void writeCursor(int slot, long position, long sequence) {
+        map.putLong(slot, position);
+        map.putLong(slot + 8, sequence);
+        map.putInt(slot + 16, cursorCrc(position, sequence));
+    }
+
+    /** @return {@code {position, sequence}}, or {@code null} if the slot is torn */
+    private long[] readCursor(int slot) {
+        long position = map.getLong(slot);
+        long sequence = map.getLong(slot + 8);
+        if (map.getInt(slot + 16) != cursorCrc(position, sequence) || position < 0 || sequence < 1) return null;
+        return new long[] {position, sequence};
+    }
+
+    private int cursorCrc(long position, long sequence) {
+        crc.reset();
+        putSequence(position);
+        putSequence(sequence);
+        return (int) crc.getValue();
+    }
+
+    private int offsetOf(long position) {
+        return (int) (position % capacity);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.myapp;
+
+/**
+ * Conversation state derived from the event stream. Confined to the parse worker thread: the first
+ * thread to touch it owns it, and access from any other thread fails fast.
+ */
+public final class CaptureState {
+    private Thread owner;
+    private int eventCounter = 0;
+    private String currentChatId = null;
+    private boolean isGroupChat = false;
+
+    private void checkThread() {
+        Thread current = Thread.currentThread();
+        if (owner == null) {
+            owner = current;
+        } else if (owner != current) {
+            throw new IllegalStateException("CaptureState accessed from " + current.getName() + ", owned by " + owner.getName());
+        }
+    }
+
+    public int nextEventId() {
+        checkThread();
+        return ++eventCounter;
+    }
+
+    public int getEventCounter() {
+        checkThread();
+        return eventCounter;
+    }
+
+    public String getCurrentChatId() {
+        checkThread();
+        return currentChatId;
+    }
+
+    public void setCurrentChatId(String currentChatId) {
+        checkThread();
+        this.currentChatId = currentChatId;
+    }
+
+    public boolean isGroupChat() {
+        checkThread();
+        return isGroupChat;
+    }
+
+    public void setGroupChat(boolean groupChat) {
+        checkThread();
+        isGroupChat = groupChat;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.myapp
+
+import android.content.Context
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+
+/**
+ * Persists the rows [WhatsAppEventParser] emits. Rows are buffered as parsed, with chat and sender
+ * names still as strings; the writer thread resolves the names to lookup-table ids through
+ * [IdInterner]s and stores each batch in one transaction, so a busy group chat is a handful of
+ * transactions rather than one per message.
+ *
+ * Given a [journalFile], buffered rows also go to a [CaptureJournal] there and survive the process
+ * being killed; a batch replayed after a kill is ignored row by row on its fingerprints.
+ *
+ * The accessibility service and the notification listener run in one process and share the
+ * store from [acquire], so there is one writer thread, one journal and one set of interners;
+ * [onMessage] and [onCall] only buffer, and are safe from either service's thread.
+ */
+class CaptureStore(private val db: AppDatabase, journalFile: File? = null) : WhatsAppEventParser.RowSink {
+    private class PendingMessage(val chat: String, val sender: String?, val row: ChatMessage, val fingerprint: Long)
+
+    private class PendingCall(val chat: String, val row: CallEntry, val fingerprint: Long)
+
+    companion object {
+        private const val JOURNAL_FILE = "capture.journal"
+
+        private var shared: CaptureStore? = null
+        private var users = 0
+
+        /** The process's store, opened by the first of the services to start. */
+        @JvmStatic
+        @Synchronized
+        fun acquire(context: Context): CaptureStore {
+            val store = shared ?: CaptureStore(
+                AppDatabase.getDatabase(context), File(context.noBackupFilesDir, JOURNAL_FILE)
+            ).also { shared = it }
+            users++
+            return store
+        }
+
+        /**
+         * Gives back a store from [acquire]. The last user to give it back flushes and closes it;
+         * others only flush what is buffered, which is theirs as much as anyone's.
+         *
+         * @return `false` if the final flush did not finish in time
+         */
+        @JvmStatic
+        @Synchronized
+        fun release(store: CaptureStore): Boolean {
+            if (store !== shared) return true
+            if (--users > 0) {
+                store.writeBehind.flushNow()
+                return true
+            }
+            shared = null
+            return store.writeBehind.close()
+        }
+
+        private fun pendingMessage(message: ChatMessage, fingerprint: Long): Any =
+            PendingMessage(message.chatId ?: "Unknown", message.sender, message, fingerprint)
+
+        private fun chatOf(call: CallEntry): String = call.name ?: call.phoneNumber ?: "Unknown"
+
+        private const val DAY_MS = 86_400_000L
+        // Below SQLite's bound-parameter limit
+        private const val LOOKUP_CHUNK = 500
+    }
+
+    private object PendingCodec : CaptureJournal.Codec<Any> {
+        private const val MESSAGE = 1
+        private const val CALL = 2
+
+        override fun write(out: DataOutputStream, row: Any) {
+            when (row) {
+                is PendingMessage -> {
+                    val message = row.row
+                    out.writeByte(MESSAGE)
+                    out.writeLong(row.fingerprint)
+                    NullableStrings.write(out, message.chatId)
+                    out.writeBoolean(message.isGroup)
+                    out.writeLong(message.timestamp)
+                    NullableStrings.write(out, message.message)
+                    out.writeBoolean(message.isSent)
+                    NullableStrings.write(out, message.messageTimestamp)
+                    NullableStrings.write(out, message.status)
+                    NullableStrings.write(out, message.sender)
+                    NullableStrings.write(out, message.unreadCount)
+                    NullableStrings.write(out, message.systemMessage)
+                    NullableStrings.write(out, message.callInfo)
+                    NullableStrings.write(out, message.groupInfo)
+                }
+                is PendingCall -> {
+                    val call = row.row
+                    out.writeByte(CALL)
+                    out.writeLong(row.fingerprint)
+                    out.writeLong(call.timestamp)
+                    NullableStrings.write(out, call.name)
+                    NullableStrings.write(out, call.phoneNumber)
+                    NullableStrings.write(out, call.callType)
+                    NullableStrings.write(out, call.callTimestamp)
+                }
+                else -> throw IllegalArgumentException("Not a capture row: $row")
+            }
+        }
+
+        override fun read(input: DataInputStream): Any = when (val kind = input.readByte().toInt()) {
+            MESSAGE -> {
+                val fingerprint = input.readLong()
+                val message = ChatMessage().apply {
+                    chatId = NullableStrings.read(input)
+                    isGroup = input.readBoolean()
+                    timestamp = input.readLong()
+                    message = NullableStrings.read(input)
+                    isSent = input.readBoolean()
+                    messageTimestamp = NullableStrings.read(input)
+                    status = NullableStrings.read(input)
+                    sender = NullableStrings.read(input)
+                    unreadCount = NullableStrings.read(input)
+                    systemMessage = NullableStrings.read(input)
+                    callInfo = NullableStrings.read(input)
+                    groupInfo = NullableStrings.read(input)
+                }
+                pendingMessage(message, fingerprint)
+            }
+            CALL -> {
+                val fingerprint = input.readLong()
+                val call = CallEntry().apply {
+                    timestamp = input.readLong()
+                    name = NullableStrings.read(input)
+                    phoneNumber = NullableStrings.read(input)
+                    callType = NullableStrings.read(input)
+                    callTimestamp = NullableStrings.read(input)
+                }
+                PendingCall(chatOf(call), call, fingerprint)
+            }
+            else -> throw IOException("Unknown capture row kind $kind")
+        }
+    }
+
+    private val dao = db.captureDao()
+    // Retention deletes chats left without rows
+    private val chats = IdInterner(db.dictionaryDao()::chatIdOf, deletions = { db.chatsDeleted })
+    private val senders = IdInterner(db.dictionaryDao()::senderIdOf)
+    private val callTimes = CallTimeResolver()
+
+    val writeBehind =
+        WriteBehindBuffer("capture-writer", ::write, openJournal = journalFile?.let { WriteBehindBuffer.journalAt(it, PendingCodec) })
+
+    override fun onMessage(message: ChatMessage, fingerprint: Long) {
+        // The parser never changes a row once emitted, so it can wait in the buffer as is
+        writeBehind.offer(pendingMessage(message, fingerprint))
+    }
+
+    override fun onCall(call: CallEntry) {
+        val chat = chatOf(call)
+        // The row's time label is relative ("Today, 9:41 pm") and changes from day to day
+        val at = callTimes.resolve(call.callTimestamp, call.timestamp)
+        // A label that can't be resolved is stable only within the day it was read on
+        val time = if (at != CallTimeResolver.UNRESOLVED) at.toString() else "${call.callTimestamp} @${call.timestamp / DAY_MS}"
+        val fingerprint = SeenMessageIndex.fingerprint(chat, call.phoneNumber, call.callType, time)
+        writeBehind.offer(PendingCall(chat, call, fingerprint))
+    }
+
+    /** Lookup cache effectiveness, for the service's stats log. */
+    fun internStats(): String = "chats $chats; senders $senders"
+
+    private fun write(batch: List<Any>) {
+        try {
+            db.runInTransaction(Runnable { insert(batch) })
+        } catch (e: RuntimeException) {
+            // Ids resolved inside the rolled-back transaction may not exist
+            chats.clear()
+            senders.clear()
+            throw e
+        }
+    }
+
+    private fun insert(batch: List<Any>) {
+        val messages = ArrayList<MessageEntity>(batch.size)
+        val calls = ArrayList<CallEntity>()
+        // One update per chat per batch, carrying its latest capture time
+        val touched = LinkedHashMap<Long, MessageEntity>()
+        for (pending in batch) {
+            when (pending) {
+                is PendingMessage -> {
+                    val message = toEntity(pending)
+                    messages.add(message)
+                    val previous = touched[message.chatId]
+                    if (previous == null || previous.capturedAt <= message.capturedAt) {
+                        touched[message.chatId] = message
+                    }
+                }
+                is PendingCall -> calls.add(toEntity(pending))
+            }
+        }
+        if (messages.isNotEmpty()) dao.insertMessages(withoutArchived(messages))
+        if (calls.isNotEmpty()) dao.insertCalls(calls)
+        for (message in touched.values) {
+            dao.touchChat(message.chatId, message.isGroup, message.capturedAt)
+        }
+    }
+
+    /** Drops messages [ColdArchive] has moved out, which are still on screen to be captured again. */
+    private fun withoutArchived(messages: List<MessageEntity>): List<MessageEntity> {
+        val archived = HashSet<Long>()
+        for (chunk in messages.chunked(LOOKUP_CHUNK)) {
+            archived.addAll(dao.archivedAmong(chunk.map { it.fingerprint }))
+        }
+        return if (archived.isEmpty()) messages else messages.filter { it.fingerprint !in archived }
+    }
+
+    private fun toEntity(pending: PendingMessage): MessageEntity {
+        val message = pending.row
+        return MessageEntity(
+            fingerprint = pending.fingerprint,
+            chatId = chats.idOf(pending.chat),
+            isGroup = message.isGroup,
+            kind = kindOf(message),
+            senderId = pending.sender?.let(senders::idOf),
+            text = message.identityText(),
+            isSent = message.isSent,
+            messageTimestamp = message.messageTimestamp,
+            status = message.status,
+            capturedAt = message.timestamp
+        )
+    }
+
+    private fun toEntity(pending: PendingCall): CallEntity {
+        val call = pending.row
+        return CallEntity(
+            fingerprint = pending.fingerprint,
+            chatId = chats.idOf(pending.chat),
+            phoneNumber = call.phoneNumber,
+            callType = call.callType,
+            callTimestamp = call.callTimestamp,
+            capturedAt = call.timestamp
+        )
+    }
+
+    private fun kindOf(message: ChatMessage): String = when {
+        message.message != null -> MessageEntity.KIND_MESSAGE
+        message.systemMessage != null -> MessageEntity.KIND_SYSTEM
+        message.callInfo != null -> MessageEntity.KIND_CALL
+        message.groupInfo != null -> MessageEntity.KIND_GROUP_INFO
+        else -> MessageEntity.KIND_UNREAD
+    }
+}
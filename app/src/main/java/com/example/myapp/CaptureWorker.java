@@ -0,0 +1,67 @@
+package com.example.myapp;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Background HandlerThread that drains a {@link BoundedEventQueue} into a processor. */
+public class CaptureWorker<T> {
+    private static final String TAG = "CaptureWorker";
+
+    public interface Processor<T> {
+        void process(T item);
+    }
+
+    private final BoundedEventQueue<T> queue;
+    private final Processor<T> processor;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final Runnable drainTask = this::drain;
+
+    public CaptureWorker(String name, int capacity, BoundedEventQueue.DropPolicy<T> dropPolicy, Processor<T> processor) {
+        this.queue = new BoundedEventQueue<>(capacity, dropPolicy);
+        this.processor = processor;
+        this.thread = new HandlerThread(name, Process.THREAD_PRIORITY_BACKGROUND);
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    /** Called on the capture thread; never blocks. */
+    public void submit(T item) {
+        if (queue.offer(item)) {
+            Log.v(TAG, "Queue full, dropped an event (" + queue.stats() + ")");
+        }
+        if (drainScheduled.compareAndSet(false, true)) {
+            handler.post(drainTask);
+        }
+    }
+
+    public BoundedEventQueue<T> getQueue() {
+        return queue;
+    }
+
+    public Handler getHandler() {
+        return handler;
+    }
+
+    public void quit() {
+        thread.quitSafely();
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        T item;
+        while ((item = queue.poll()) != null) {
+            try {
+                processor.process(item);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error processing captured event: " + e.getMessage(), e);
+            }
+            queue.markProcessed();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.myapp;
+
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the parse worker needs from one accessibility event, captured on the main thread.
+ * Holds no live node handles.
+ */
+public final class CapturedEvent {
+    /**
+     * Lets the capture queue drop only content snapshots, which a newer one of the same screen
+     * supersedes. A lost window change or tab selection would leave the parser on the previous
+     * chat or screen, and every row after it filed there.
+     */
+    static final BoundedEventQueue.DropPolicy<CapturedEvent> DROP_POLICY = CapturedEvent::isContentSnapshot;
+
+    public final int eventType;
+    public final String className;
+    /** Wall-clock time of the event, derived from its uptime-based event time. */
+    public final long realTime;
+
+    /** Content description of the event source, for Calls tab detection. */
+    String sourceDescription;
+    /** Screen the event was captured on; decides which parser handles its content. */
+    ScreenState screen = ScreenState.OTHER;
+    boolean sourceMissing;
+    /** The fallback scan ran out of budget; whatever it found so far is included. */
+    boolean incomplete;
+
+    // Chat open
+    String contactNameById;
+    boolean hasGroupInfoButton;
+    /** Toolbar title and subtitle, or every text view when the title selector missed. */
+    FlatSnapshot header;
+
+    // Content change
+    /** Number of raw content/scroll events this capture stands for. */
+    int absorbedEvents = 1;
+    List<String> callButtonDescriptions = Collections.emptyList();
+    FlatSnapshot chatList;
+    FlatSnapshot callList;
+
+    public CapturedEvent(int eventType, String className, long realTime) {
+        this.eventType = eventType;
+        this.className = className;
+        this.realTime = realTime;
+    }
+
+    boolean isContentSnapshot() {
+        return eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+                || eventType == AccessibilityEvent.TYPE_VIEW_SCROLLED;
+    }
+}
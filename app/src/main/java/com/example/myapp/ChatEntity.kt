@@ -0,0 +1,24 @@
+package com.example.myapp
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * A conversation seen in WhatsApp, keyed by [name] (contact name, phone number or group name).
+ * Message and call rows reference it by [id]; [isGroup] and [capturedAt] are refreshed whenever
+ * rows are captured from it. [DatabaseRetention] deletes chats left without rows, through
+ * [AppDatabase.onChatsDeleted]; ids are never reused, so a deleted chat seen again gets a new one.
+ */
+@Entity(tableName = "chats", indices = [Index(value = ["name"], unique = true)])
+data class ChatEntity(
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0,
+    val name: String,
+    @ColumnInfo(name = "is_group")
+    val isGroup: Boolean,
+    /** Wall-clock time rows were last captured from the chat, epoch millis. */
+    @ColumnInfo(name = "captured_at")
+    val capturedAt: Long
+)
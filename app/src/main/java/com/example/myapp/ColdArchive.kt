@@ -0,0 +1,188 @@
+package com.example.myapp
+
+import java.io.File
+import java.io.IOException
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+
+/**
+ * Moves rows older than [ageMs] out of [AppDatabase] into compressed [ArchiveSegment] files under
+ * [dir], one subdirectory per table, and reads them back. Segments are never modified; each
+ * [archive] run adds new ones, and retention drops whole segments once everything in them is
+ * past its TTL.
+ *
+ * Rows are deleted from the database only after their segment is synced and in place. A crash
+ * between the two leaves those rows in both, and the next run archives them again; readers that
+ * need exactness can drop repeats by id. Archived messages leave their fingerprint behind in
+ * [ARCHIVED_FINGERPRINTS], so capturing them again does not insert them anew.
+ */
+class ColdArchive(
+    private val db: AppDatabase,
+    private val dir: File,
+    private val ageMs: Long = DEFAULT_AGE_MS,
+    private val segmentRows: Int = DEFAULT_SEGMENT_ROWS
+) {
+    companion object {
+        const val MESSAGES = "messages"
+        const val NOTIFICATIONS = "notifications"
+        /** Fingerprints of archived messages; see [ArchivedFingerprintEntity]. */
+        const val ARCHIVED_FINGERPRINTS = "archived_fingerprints"
+        // Users rarely look further back than a couple of weeks
+        val DEFAULT_AGE_MS = TimeUnit.DAYS.toMillis(14)
+        const val DEFAULT_SEGMENT_ROWS = 20_000
+        private const val DELETE_CHUNK = 500
+        private const val SUFFIX = ".seg"
+    }
+
+    /** What one [archive] run did. */
+    class Report(
+        val rowsArchived: Map<String, Int>,
+        val segmentsWritten: Int,
+        val bytesWritten: Long,
+        val elapsedNanos: Long,
+        val stopped: Boolean
+    ) {
+        override fun toString(): String = String.format(
+            Locale.US,
+            "archived %s into %d segments (%d bytes) in %.1f ms%s",
+            rowsArchived, segmentsWritten, bytesWritten, elapsedNanos / 1e6, if (stopped) ", stopped early" else ""
+        )
+    }
+
+    private val captureDao = db.captureDao()
+    private val notificationDao = db.notificationDao()
+    private var segmentsWritten = 0
+    private var bytesWritten = 0L
+
+    /** Archives aged messages and notifications; blocking, for a background thread. */
+    @Throws(IOException::class)
+    fun archive(now: Long = System.currentTimeMillis(), shouldStop: () -> Boolean = { false }): Report {
+        val start = System.nanoTime()
+        segmentsWritten = 0
+        bytesWritten = 0
+        val cutoff = now - ageMs
+        val archived = LinkedHashMap<String, Int>()
+        archived[MESSAGES] = archiveTable(
+            MESSAGES, MessageArchiveCodec, cutoff, captureDao::agedMessages,
+            { rows ->
+                // In the same transaction as the delete, so a message is never in neither place
+                captureDao.insertArchivedFingerprints(rows.map { ArchivedFingerprintEntity(it.fingerprint, it.capturedAt) })
+                captureDao.deleteMessages(rows.map { it.id })
+            },
+            shouldStop
+        )
+        archived[NOTIFICATIONS] = archiveTable(
+            NOTIFICATIONS, NotificationArchiveCodec, cutoff, notificationDao::aged,
+            { rows -> notificationDao.deleteByIds(rows.map { it.id }) }, shouldStop
+        )
+        return Report(archived, segmentsWritten, bytesWritten, System.nanoTime() - start, shouldStop())
+    }
+
+    /**
+     * Streams archived messages of one chat captured in [from, to], oldest segment first.
+     *
+     * @return `false` if [sink] stopped the read
+     */
+    @Throws(IOException::class)
+    fun readMessages(chatId: Long, from: Long, to: Long, sink: ArchiveSegment.Sink<MessageEntity>): Boolean =
+        read(MESSAGES, MessageArchiveCodec, chatId, chatId, from, to, sink)
+
+    /** Streams archived notifications posted in [from, to], of one package or, for `null`, all. */
+    @Throws(IOException::class)
+    fun readNotifications(packageId: Long?, from: Long, to: Long, sink: ArchiveSegment.Sink<NotificationEntity>): Boolean =
+        read(NOTIFICATIONS, NotificationArchiveCodec, packageId ?: Long.MIN_VALUE, packageId ?: Long.MAX_VALUE, from, to, sink)
+
+    /**
+     * Deletes the segments of [table] whose rows are all older than [before].
+     *
+     * @return bytes freed
+     */
+    fun prune(table: String, before: Long): Long {
+        var freed = 0L
+        for (segment in segments(table)) {
+            val range = timeRange(segment) ?: continue
+            if (range.last >= before) continue
+            val bytes = segment.length()
+            if (segment.delete()) freed += bytes
+        }
+        return freed
+    }
+
+    /** Bytes the segments of every table take on disk. */
+    fun bytesOnDisk(): Long = listOf(MESSAGES, NOTIFICATIONS).sumOf { table -> segments(table).sumOf { it.length() } }
+
+    private fun <T> archiveTable(
+        table: String,
+        codec: ArchiveSegment.Codec<T>,
+        cutoff: Long,
+        aged: (Long, Int) -> List<T>,
+        delete: (List<T>) -> Unit,
+        shouldStop: () -> Boolean
+    ): Int {
+        val tableDir = File(dir, table)
+        if (!tableDir.isDirectory && !tableDir.mkdirs()) {
+            throw IOException("Cannot create $tableDir")
+        }
+        // Left behind by a run that died mid-segment; their rows are still in the database
+        tableDir.listFiles { file -> file.name.endsWith("$SUFFIX.tmp") }?.forEach { it.delete() }
+        var archived = 0
+        while (!shouldStop()) {
+            val rows = aged(cutoff, segmentRows)
+            if (rows.isEmpty()) break
+            // Key, then time order keeps each block to one chat and a short time range
+            val sorted = rows.sortedWith(compareBy<T>({ codec.keyOf(it) }, { codec.timeOf(it) }))
+            val minTime = rows.minOf { codec.timeOf(it) }
+            val maxTime = rows.maxOf { codec.timeOf(it) }
+            val file = File(tableDir, "${minTime}_${maxTime}_${System.nanoTime()}$SUFFIX")
+            val writer = ArchiveSegment.Writer(file, codec)
+            try {
+                sorted.forEach(writer::append)
+                writer.close()
+            } catch (e: IOException) {
+                writer.abort()
+                throw e
+            }
+            segmentsWritten++
+            bytesWritten += file.length()
+            // Short transactions, as retention does, so the write-behind flushes keep going
+            rows.chunked(DELETE_CHUNK).forEach { chunk -> db.runInTransaction(Runnable { delete(chunk) }) }
+            archived += rows.size
+            if (rows.size < segmentRows) break
+        }
+        return archived
+    }
+
+    private fun <T> read(
+        table: String,
+        codec: ArchiveSegment.Codec<T>,
+        fromKey: Long,
+        toKey: Long,
+        from: Long,
+        to: Long,
+        sink: ArchiveSegment.Sink<T>
+    ): Boolean {
+        for (segment in segments(table)) {
+            // The file name carries the time range, so most segments are skipped without opening
+            val range = timeRange(segment) ?: continue
+            if (range.first > to || range.last < from) continue
+            ArchiveSegment.Reader(segment, codec).use { reader ->
+                if (!reader.scan(fromKey, toKey, from, to, sink)) return false
+            }
+        }
+        return true
+    }
+
+    /** Complete segments of [table], oldest first. */
+    private fun segments(table: String): List<File> {
+        val files = File(dir, table).listFiles { file -> file.name.endsWith(SUFFIX) } ?: return emptyList()
+        return files.filter { timeRange(it) != null }.sortedBy { timeRange(it)!!.first }
+    }
+
+    private fun timeRange(segment: File): LongRange? {
+        val parts = segment.name.removeSuffix(SUFFIX).split('_')
+        if (parts.size != 3) return null
+        val min = parts[0].toLongOrNull() ?: return null
+        val max = parts[1].toLongOrNull() ?: return null
+        return min..max
+    }
+}
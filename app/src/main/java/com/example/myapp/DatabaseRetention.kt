@@ -0,0 +1,179 @@
+package com.example.myapp
+
+import androidx.sqlite.db.SupportSQLiteDatabase
+import java.util.Locale
+import java.util.concurrent.Callable
+import java.util.concurrent.TimeUnit
+
+/**
+ * Keeps [AppDatabase] from growing without bound. Each [Policy] deletes rows past its TTL and then
+ * the oldest rows past its row cap, in the database and, given an [archive], in its cold segments;
+ * chats with no rows left go after that. Deletes run [chunkSize] rows per
+ * transaction so the write-behind flushes are never held off for long, and freed pages are handed
+ * back with incremental vacuum.
+ *
+ * [AppDatabase] creates its file with `auto_vacuum = INCREMENTAL`. A file created before that has
+ * no free-page map to vacuum with, so its freed pages stay in the file for later inserts to reuse.
+ */
+class DatabaseRetention(
+    private val db: AppDatabase,
+    private val policies: List<Policy> = DEFAULT_POLICIES,
+    private val chunkSize: Int = DEFAULT_CHUNK_SIZE,
+    private val vacuumPagesPerStep: Int = DEFAULT_VACUUM_PAGES_PER_STEP,
+    private val archive: ColdArchive? = null
+) {
+    /**
+     * Rows of [table] whose [timeColumn] (epoch millis) is older than [ttlMs] are deleted, then the
+     * oldest rows beyond [maxRows]. Rows sharing the timestamp at the cap are kept together, so the
+     * table can end a few rows over it.
+     */
+    class Policy(val table: String, val timeColumn: String, val ttlMs: Long, val maxRows: Int) {
+        init {
+            require(maxRows > 0) { "maxRows must be positive: $maxRows" }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_CHUNK_SIZE = 500
+        const val DEFAULT_VACUUM_PAGES_PER_STEP = 256
+
+        val DEFAULT_POLICIES = listOf(
+            Policy("notifications", "timestamp", TimeUnit.DAYS.toMillis(90), 200_000),
+            Policy("messages", "captured_at", TimeUnit.DAYS.toMillis(180), 500_000),
+            Policy("calls", "captured_at", TimeUnit.DAYS.toMillis(365), 50_000)
+        )
+    }
+
+    /** What one [run] did. */
+    class Report(
+        /** Rows deleted per table, orphaned chats included. */
+        val rowsDeleted: Map<String, Int>,
+        val deleteTransactions: Int,
+        val bytesBefore: Long,
+        val bytesAfter: Long,
+        /** Archive segments deleted because all their rows were past the TTL. */
+        val archiveBytesDropped: Long,
+        val elapsedNanos: Long,
+        /** `true` if the run was stopped before it finished. */
+        val stopped: Boolean
+    ) {
+        val bytesReclaimed: Long get() = bytesBefore - bytesAfter
+
+        override fun toString(): String = String.format(
+            Locale.US,
+            "deleted %s in %d transactions, %d -> %d bytes (%d reclaimed), %d archive bytes dropped in %.1f ms%s",
+            rowsDeleted, deleteTransactions, bytesBefore, bytesAfter, bytesReclaimed, archiveBytesDropped, elapsedNanos / 1e6,
+            if (stopped) ", stopped early" else ""
+        )
+    }
+
+    private var deleteTransactions = 0
+
+    /**
+     * Purges and vacuums; blocking, for a background thread. [shouldStop] is checked between
+     * chunks so a cancelled job gives the database back promptly.
+     */
+    fun run(now: Long = System.currentTimeMillis(), shouldStop: () -> Boolean = { false }): Report {
+        val start = System.nanoTime()
+        val sqlite = db.openHelper.writableDatabase
+        val bytesBefore = databaseBytes(sqlite)
+        val deleted = LinkedHashMap<String, Int>()
+        var archiveBytesDropped = 0L
+        deleteTransactions = 0
+
+        for (policy in policies) {
+            if (shouldStop()) break
+            var rows = deleteChunked(sqlite, policy.table, "${policy.timeColumn} < ?", arrayOf(now - policy.ttlMs), shouldStop)
+            // Rows older than the maxRows-th newest are over the cap
+            val capTime = timeAtRow(sqlite, policy, policy.maxRows - 1)
+            if (capTime != null && !shouldStop()) {
+                rows += deleteChunked(sqlite, policy.table, "${policy.timeColumn} < ?", arrayOf(capTime), shouldStop)
+            }
+            deleted[policy.table] = rows
+            if (archive != null) {
+                archiveBytesDropped += archive.prune(policy.table, now - policy.ttlMs)
+            }
+            if (policy.table == ColdArchive.MESSAGES && !shouldStop()) {
+                // Past the TTL a message captured again would be purged anyway, as an unarchived one is
+                deleted[ColdArchive.ARCHIVED_FINGERPRINTS] = deleteChunked(
+                    sqlite, ColdArchive.ARCHIVED_FINGERPRINTS, "captured_at < ?", arrayOf(now - policy.ttlMs), shouldStop
+                )
+            }
+        }
+        if (!shouldStop()) {
+            // Archived rows still point at the chat until they pass the longest TTL
+            val chatCutoff = now - (policies.maxOfOrNull { it.ttlMs } ?: 0)
+            deleted["chats"] = deleteChunked(
+                sqlite, "chats",
+                "captured_at < ? AND NOT EXISTS (SELECT 1 FROM messages m WHERE m.chat_id = chats.id) " +
+                    "AND NOT EXISTS (SELECT 1 FROM calls c WHERE c.chat_id = chats.id)",
+                arrayOf(chatCutoff), shouldStop, onDeleted = db::onChatsDeleted
+            )
+        }
+        if (!shouldStop()) {
+            vacuum(sqlite, shouldStop)
+        }
+
+        return Report(
+            deleted, deleteTransactions, bytesBefore, databaseBytes(sqlite), archiveBytesDropped,
+            System.nanoTime() - start, shouldStop()
+        )
+    }
+
+    /**
+     * Deletes matching rows [chunkSize] at a time, each chunk in its own short transaction.
+     * [onDeleted] runs inside each transaction that deleted rows.
+     */
+    private fun deleteChunked(
+        sqlite: SupportSQLiteDatabase,
+        table: String,
+        where: String,
+        args: Array<Any>,
+        shouldStop: () -> Boolean,
+        onDeleted: () -> Unit = {}
+    ): Int {
+        val chunk = "rowid IN (SELECT rowid FROM $table WHERE $where LIMIT $chunkSize)"
+        var total = 0
+        while (true) {
+            // Through Room, so observers of the table are invalidated when each chunk commits
+            val rows = db.runInTransaction(Callable {
+                sqlite.delete(table, chunk, args).also { if (it > 0) onDeleted() }
+            })
+            deleteTransactions++
+            total += rows
+            if (rows < chunkSize || shouldStop()) return total
+        }
+    }
+
+    /** Time of the row [offset] rows from the newest, or `null` if the table is not that long. */
+    private fun timeAtRow(sqlite: SupportSQLiteDatabase, policy: Policy, offset: Int): Long? {
+        sqlite.query(
+            "SELECT ${policy.timeColumn} FROM ${policy.table} ORDER BY ${policy.timeColumn} DESC LIMIT 1 OFFSET ?",
+            arrayOf<Any>(offset)
+        ).use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getLong(0) else null
+        }
+    }
+
+    private fun vacuum(sqlite: SupportSQLiteDatabase, shouldStop: () -> Boolean) {
+        var freePages = longPragma(sqlite, "PRAGMA freelist_count")
+        while (freePages > 0 && !shouldStop()) {
+            // Each step of the cursor frees one page; stepping through it is what does the work
+            sqlite.query("PRAGMA incremental_vacuum($vacuumPagesPerStep)").use { cursor ->
+                while (cursor.moveToNext()) Unit
+            }
+            val left = longPragma(sqlite, "PRAGMA freelist_count")
+            // Without incremental auto-vacuum the pragma frees nothing
+            if (left >= freePages) break
+            freePages = left
+        }
+        // Truncate the WAL too, or the space just freed lingers there until the next checkpoint
+        sqlite.query("PRAGMA wal_checkpoint(TRUNCATE)").use { it.moveToFirst() }
+    }
+
+    private fun databaseBytes(sqlite: SupportSQLiteDatabase): Long =
+        longPragma(sqlite, "PRAGMA page_count") * longPragma(sqlite, "PRAGMA page_size")
+
+    private fun longPragma(sqlite: SupportSQLiteDatabase, pragma: String): Long =
+        sqlite.query(pragma).use { cursor -> if (cursor.moveToFirst()) cursor.getLong(0) else 0 }
+}
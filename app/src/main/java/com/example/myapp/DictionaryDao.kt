@@ -0,0 +1,52 @@
+package com.example.myapp
+
+import androidx.room.Dao
+import androidx.room.Query
+import androidx.room.Transaction
+
+/**
+ * Resolves names to lookup-table ids, inserting names seen for the first time. Blocking, for the
+ * write-behind threads; they go through an [IdInterner] so these only run on a cache miss.
+ */
+@Dao
+abstract class DictionaryDao {
+    @Query("INSERT OR IGNORE INTO packages (name) VALUES (:name)")
+    abstract fun insertPackage(name: String)
+
+    @Query("SELECT id FROM packages WHERE name = :name")
+    abstract fun packageId(name: String): Long
+
+    @Query("INSERT OR IGNORE INTO senders (name) VALUES (:name)")
+    abstract fun insertSender(name: String)
+
+    @Query("SELECT id FROM senders WHERE name = :name")
+    abstract fun senderId(name: String): Long
+
+    /** New chats start as private and uncaptured; [CaptureDao.touchChat] fills both in. */
+    @Query("INSERT OR IGNORE INTO chats (name, is_group, captured_at) VALUES (:name, 0, 0)")
+    abstract fun insertChat(name: String)
+
+    @Query("SELECT id FROM chats WHERE name = :name")
+    abstract fun chatId(name: String): Long
+
+    @Transaction
+    open fun packageIdOf(name: String): Long {
+        insertPackage(name)
+        return packageId(name)
+    }
+
+    @Transaction
+    open fun senderIdOf(name: String): Long {
+        insertSender(name)
+        return senderId(name)
+    }
+
+    @Transaction
+    open fun chatIdOf(name: String): Long {
+        insertChat(name)
+        return chatId(name)
+    }
+
+    @Query("SELECT name FROM packages WHERE id = :id")
+    abstract suspend fun packageName(id: Long): String?
+}
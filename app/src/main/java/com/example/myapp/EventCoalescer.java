@@ -0,0 +1,116 @@
+package com.example.myapp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collapses bursts of content-change and scroll events per window into a single parse. A burst is
+ * due once its window has been quiet for {@code quietPeriodMs}, or {@code maxLatencyMs} after its
+ * first event, whichever comes first, so a continuous fling still produces periodic parses.
+ *
+ * <p>Not thread-safe; used from the main thread only.
+ */
+public class EventCoalescer {
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /** One parse worth of coalesced events for a window. */
+    public static final class Burst {
+        public final int windowId;
+        public final int absorbedEvents;
+        public final long firstEventAt;
+        public final long lastEventAt;
+
+        Burst(int windowId, int absorbedEvents, long firstEventAt, long lastEventAt) {
+            this.windowId = windowId;
+            this.absorbedEvents = absorbedEvents;
+            this.firstEventAt = firstEventAt;
+            this.lastEventAt = lastEventAt;
+        }
+    }
+
+    private static final class Pending {
+        final long firstEventAt;
+        long lastEventAt;
+        int count;
+
+        Pending(long firstEventAt) {
+            this.firstEventAt = firstEventAt;
+            this.lastEventAt = firstEventAt;
+        }
+    }
+
+    private final Clock clock;
+    private final long quietPeriodMs;
+    private final long maxLatencyMs;
+    private final Map<Integer, Pending> pending = new HashMap<>();
+    private long burstsEmitted;
+    private long eventsAbsorbed;
+
+    public EventCoalescer(Clock clock, long quietPeriodMs, long maxLatencyMs) {
+        if (quietPeriodMs < 0 || maxLatencyMs < quietPeriodMs) {
+            throw new IllegalArgumentException("Need 0 <= quietPeriodMs <= maxLatencyMs, got " + quietPeriodMs + "/" + maxLatencyMs);
+        }
+        this.clock = clock;
+        this.quietPeriodMs = quietPeriodMs;
+        this.maxLatencyMs = maxLatencyMs;
+    }
+
+    /** Records an event for {@code windowId}. */
+    public void offer(int windowId) {
+        long now = clock.uptimeMillis();
+        Pending entry = pending.get(windowId);
+        if (entry == null) {
+            entry = new Pending(now);
+            pending.put(windowId, entry);
+        }
+        entry.lastEventAt = now;
+        entry.count++;
+    }
+
+    /** @return uptime at which the earliest pending burst becomes due, or {@link #NO_DEADLINE} */
+    public long nextDueTime() {
+        long next = NO_DEADLINE;
+        for (Pending entry : pending.values()) {
+            next = Math.min(next, dueTime(entry));
+        }
+        return next;
+    }
+
+    /** Removes and returns every burst that is due now. */
+    public List<Burst> pollDue() {
+        long now = clock.uptimeMillis();
+        List<Burst> due = new ArrayList<>();
+        Iterator<Map.Entry<Integer, Pending>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Pending> e = it.next();
+            Pending entry = e.getValue();
+            if (dueTime(entry) <= now) {
+                due.add(new Burst(e.getKey(), entry.count, entry.firstEventAt, entry.lastEventAt));
+                burstsEmitted++;
+                eventsAbsorbed += entry.count;
+                it.remove();
+            }
+        }
+        return due;
+    }
+
+    /** Drops pending bursts, e.g. when the window they belong to goes away. */
+    public void clear() {
+        pending.clear();
+    }
+
+    public int pendingWindows() {
+        return pending.size();
+    }
+
+    public String stats() {
+        return "bursts=" + burstsEmitted + " events=" + eventsAbsorbed + " pending=" + pending.size();
+    }
+
+    private long dueTime(Pending entry) {
+        return Math.min(entry.lastEventAt + quietPeriodMs, entry.firstEventAt + maxLatencyMs);
+    }
+}
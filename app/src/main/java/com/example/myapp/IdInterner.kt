@@ -0,0 +1,56 @@
+package com.example.myapp
+
+/**
+ * Maps names to lookup-table ids, caching the [capacity] most recently used so the write path
+ * resolves almost every row without a query. [resolve] inserts the name if needed and returns its
+ * id; it only runs on a miss. For a table whose rows can be deleted, [deletions] counts the
+ * deletes, and the cache is dropped whenever it changes. Not thread-safe: owned by one writer
+ * thread.
+ */
+class IdInterner(
+    private val resolve: (String) -> Long,
+    private val capacity: Int = DEFAULT_CAPACITY,
+    private val deletions: () -> Long = { 0L }
+) {
+    companion object {
+        // Chats, senders and packages a device sees in a session rarely come close
+        const val DEFAULT_CAPACITY = 1_024
+    }
+
+    private val ids = object : LinkedHashMap<String, Long>(64, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Long>): Boolean = size > capacity
+    }
+
+    var hits = 0L
+        private set
+    var misses = 0L
+        private set
+    private var seenDeletions = deletions()
+
+    fun idOf(name: String): Long {
+        val deleted = deletions()
+        if (deleted != seenDeletions) {
+            ids.clear()
+            seenDeletions = deleted
+        }
+        val cached = ids[name]
+        if (cached != null) {
+            hits++
+            return cached
+        }
+        misses++
+        val id = resolve(name)
+        ids[name] = id
+        return id
+    }
+
+    /**
+     * Forgets every id. Call when the transaction that resolved them rolled back, since ids of
+     * names inserted in it no longer exist.
+     */
+    fun clear() {
+        ids.clear()
+    }
+
+    override fun toString(): String = "${ids.size} cached, $hits hits, $misses misses"
+}
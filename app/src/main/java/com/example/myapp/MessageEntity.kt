@@ -0,0 +1,53 @@
+package com.example.myapp
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * One conversation row captured from a chat: a message, or a system, call, group-info or unread
+ * line, told apart by [kind]. [fingerprint] is [SeenMessageIndex.fingerprint] of the row, so
+ * capturing the same row twice inserts it once.
+ */
+@Entity(
+    tableName = "messages",
+    indices = [
+        Index(value = ["fingerprint"], unique = true),
+        Index(value = ["chat_id", "captured_at"]),
+        // Retention deletes by age across all chats
+        Index(value = ["captured_at"])
+    ]
+)
+data class MessageEntity(
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0,
+    val fingerprint: Long,
+    /** [ChatEntity.id] of the chat. */
+    @ColumnInfo(name = "chat_id")
+    val chatId: Long,
+    @ColumnInfo(name = "is_group")
+    val isGroup: Boolean,
+    val kind: String,
+    /** [SenderEntity.id] of the group member who sent it; `null` in private chats. */
+    @ColumnInfo(name = "sender_id")
+    val senderId: Long?,
+    val text: String?,
+    @ColumnInfo(name = "is_sent")
+    val isSent: Boolean,
+    /** Time as WhatsApp shows it next to the message, e.g. "10:15 am". */
+    @ColumnInfo(name = "message_timestamp")
+    val messageTimestamp: String?,
+    val status: String?,
+    /** Wall-clock time of the event the row was parsed from, epoch millis. */
+    @ColumnInfo(name = "captured_at")
+    val capturedAt: Long
+) {
+    companion object {
+        const val KIND_MESSAGE = "message"
+        const val KIND_SYSTEM = "system"
+        const val KIND_CALL = "call"
+        const val KIND_GROUP_INFO = "group_info"
+        const val KIND_UNREAD = "unread"
+    }
+}
@@ -1,6 +1,7 @@
 
 package com.example.myapp
 
+import android.app.Notification
 import android.content.ComponentName
 import android.content.Context
 import android.os.Build
@@ -9,10 +10,12 @@ import android.service.notification.NotificationListenerService
 import android.service.notification.StatusBarNotification
 import android.util.Log
 import androidx.core.app.NotificationManagerCompat
+import java.io.File
 
 class MyNotificationListenerService : NotificationListenerService() {
     companion object {
         private const val TAG = "MyNotificationListener"
+        private const val JOURNAL_FILE = "notifications.journal"
 
         @JvmStatic
         fun isNotificationAccessEnabled(context: Context): Boolean {
@@ -32,9 +35,43 @@ class MyNotificationListenerService : NotificationListenerService() {
         }
     }
 
+    private lateinit var store: NotificationStore
+    private val dedup = NotificationDedupIndex()
+    private val writeBehind get() = store.writeBehind
+    /** Chat messages read from WhatsApp notifications; the accessibility service's store. */
+    private lateinit var messages: CaptureStore
+    private val extractor = NotificationMessageExtractor()
+    // Only spares the writer the earlier messages every update repeats; the fingerprints in the
+    // database are what dedup across restarts and against the accessibility path
+    private val seenMessages = SeenMessageIndex(200, 500)
+    private val coverage = NotificationCoverage.shared()
+
+    override fun onCreate() {
+        super.onCreate()
+        // Anything the previous process buffered but never wrote is replayed from the journal,
+        // which each store opens on its writer thread
+        store = NotificationStore(AppDatabase.getDatabase(this), File(noBackupFilesDir, JOURNAL_FILE))
+        messages = CaptureStore.acquire(this)
+        RetentionWorker.schedule(this)
+    }
+
+    override fun onDestroy() {
+        if (!writeBehind.close()) {
+            Log.w(TAG, "Final notification flush did not finish, ${writeBehind.pendingRows()} rows left to the journal")
+        }
+        Log.i(TAG, "Notification writer: ${writeBehind.stats()}; re-posts: $dedup")
+        if (!CaptureStore.release(messages)) {
+            Log.w(TAG, "Final capture flush did not finish, ${messages.writeBehind.pendingRows()} rows left to the journal")
+        }
+        Log.i(TAG, "Capture writer: ${messages.writeBehind.stats()}; ${messages.internStats()}")
+        super.onDestroy()
+    }
+
     override fun onNotificationPosted(sbn: StatusBarNotification?) {
         try {
             sbn ?: return
+            // Grouped notifications are re-posted on every update; skip the ones with nothing new
+            if (!dedup.offer(sbn.key, sbn.notification.extras)) return
             val packageName = sbn.packageName
             val notification = sbn.notification
             val title = notification.extras.getString("android.title", "No Title")
@@ -53,36 +90,58 @@ class MyNotificationListenerService : NotificationListenerService() {
                 "Notification posted: $packageName - $title - $text (Sensitive: $isSensitive, Time: $timestamp)"
             )
 
-            // TODO: Re-enable Room database storage if needed
-            /*
-            val notificationEntity = NotificationEntity(
-                packageName = packageName,
-                title = title,
-                text = text,
-                timestamp = timestamp,
-                isSensitive = isSensitive
-            )
-            coroutineScope.launch {
-                db.notificationDao().insert(notificationEntity)
+            // Buffered here, written in batches on the writer thread
+            store.offer(packageName, title, text, timestamp, isSensitive)
+            if (packageName in NotificationMessageExtractor.WHATSAPP_PACKAGES) {
+                captureMessages(notification, timestamp)
             }
-            */
         } catch (e: Exception) {
             Log.e(TAG, "Error processing notification: ${e.message}", e)
         }
     }
 
+    /**
+     * Stores the chat messages a WhatsApp notification carries and marks their chats covered, so
+     * the accessibility service can hold off scanning them. Each update repeats the earlier
+     * messages of the conversation; [seenMessages] drops those before they are buffered.
+     */
+    private fun captureMessages(notification: Notification, postTime: Long) {
+        val rows = extractor.extract(notification, postTime)
+        if (rows.isEmpty()) return
+        for (row in rows) {
+            val fingerprint = NotificationMessageExtractor.fingerprint(row)
+            if (seenMessages.markSeen(row.chatId, fingerprint)) {
+                messages.onMessage(row, fingerprint)
+            }
+        }
+        val until = System.currentTimeMillis() + NotificationCoverage.DEFAULT_COVERAGE_MS
+        // One notification per chat, but a group's can carry lines from several before grouping
+        for (chat in rows.mapTo(HashSet()) { it.chatId }) {
+            coverage.cover(chat, until)
+        }
+    }
+
     override fun onNotificationRemoved(sbn: StatusBarNotification?) {
         sbn ?: return
+        dedup.remove(sbn.key)
         Log.d(TAG, "Notification removed: ${sbn.packageName}")
     }
 
     override fun onListenerConnected() {
         super.onListenerConnected()
         Log.i(TAG, "Notification listener connected")
+        try {
+            // Removals made while disconnected were never delivered
+            dedup.rebuild(activeNotifications ?: emptyArray())
+        } catch (e: SecurityException) {
+            Log.w(TAG, "Cannot read active notifications", e)
+        }
     }
 
     override fun onListenerDisconnected() {
         super.onListenerDisconnected()
         Log.w(TAG, "Notification listener disconnected")
+        // The service may be unbound next; don't leave rows waiting on the age limit
+        writeBehind.flushNow()
     }
 }
@@ -0,0 +1,60 @@
+package com.example.myapp;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Chats whose messages the notification listener captured recently, shared with the accessibility
+ * service in the same process. While a chat is covered, a conversation scan would mostly re-read
+ * rows already stored, so the accessibility service defers it until the coverage lapses.
+ *
+ * <p>Coverage is time-bound on purpose: WhatsApp posts no notification for the chat that is open,
+ * so new messages there, and the user's own, only ever reach the scan.
+ */
+public final class NotificationCoverage {
+    /** How long one notification update covers its chat. */
+    public static final long DEFAULT_COVERAGE_MS = 15_000;
+    private static final int MAX_CHATS = 256;
+    private static final NotificationCoverage SHARED = new NotificationCoverage();
+
+    private final Map<String, Long> coveredUntil = new HashMap<>();
+
+    /** The instance both services use. */
+    public static NotificationCoverage shared() {
+        return SHARED;
+    }
+
+    /** Marks {@code chat} covered until {@code untilMillis}, wall-clock time. */
+    public synchronized void cover(String chat, long untilMillis) {
+        if (coveredUntil.size() >= MAX_CHATS && !coveredUntil.containsKey(chat)) {
+            expire(System.currentTimeMillis());
+        }
+        Long previous = coveredUntil.get(chat);
+        if (previous == null || previous < untilMillis) {
+            coveredUntil.put(chat, untilMillis);
+        }
+    }
+
+    /** @return milliseconds until coverage of {@code chat} lapses, 0 if it is not covered */
+    public synchronized long remainingMs(String chat, long now) {
+        if (chat == null) return 0;
+        Long until = coveredUntil.get(chat);
+        if (until == null) return 0;
+        if (until <= now) {
+            coveredUntil.remove(chat);
+            return 0;
+        }
+        return until - now;
+    }
+
+    public synchronized void clear() {
+        coveredUntil.clear();
+    }
+
+    private void expire(long now) {
+        for (Iterator<Long> it = coveredUntil.values().iterator(); it.hasNext(); ) {
+            if (it.next() <= now) it.remove();
+        }
+    }
+}
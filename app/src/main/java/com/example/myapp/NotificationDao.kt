@@ -10,9 +10,43 @@ interface NotificationDao {
     @Insert
     suspend fun insert(notification: NotificationEntity)
 
-    @Query("SELECT * FROM notifications ORDER BY timestamp DESC")
-    fun getAllNotifications(): Flow<List<NotificationEntity>>
+    /** Inserts the whole batch in one transaction; blocking, for the write-behind thread. */
+    @Insert
+    fun insertAll(notifications: List<NotificationEntity>)
+
+    /** Newest page, the first load of [NotificationPagingSource]. */
+    @Query("SELECT * FROM notifications ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    suspend fun latest(limit: Int): List<NotificationEntity>
+
+    /**
+     * The page after the row ([timestamp], [id]), newest first. Written as a range on timestamp so
+     * SQLite seeks the timestamp index and reads it in order, however deep the page is.
+     */
+    @Query(
+        "SELECT * FROM notifications WHERE timestamp <= :timestamp AND (timestamp < :timestamp OR id < :id) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit"
+    )
+    suspend fun pageBefore(timestamp: Long, id: Int, limit: Int): List<NotificationEntity>
+
+    /** Re-emits only the newest [limit] rows on each insert, not the whole table. */
+    @Query("SELECT * FROM notifications ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    fun observeLatest(limit: Int): Flow<List<NotificationEntity>>
+
+    /** Cheap change signal: one row per invalidation. */
+    @Query("SELECT COUNT(*) AS count, MAX(id) AS latestId FROM notifications")
+    fun observeSummary(): Flow<NotificationSummary>
+
+    /** Oldest rows posted before [before], for [ColdArchive]. */
+    @Query("SELECT * FROM notifications WHERE timestamp < :before ORDER BY timestamp, id LIMIT :limit")
+    fun aged(before: Long, limit: Int): List<NotificationEntity>
+
+    /** At most 999 ids, SQLite's bound-parameter limit. */
+    @Query("DELETE FROM notifications WHERE id IN (:ids)")
+    fun deleteByIds(ids: List<Int>)
+
+    @Query("SELECT COUNT(*) FROM notifications")
+    suspend fun count(): Int
 
-    @Query("DELETE FROM notifications WHERE packageName = :packageName")
+    @Query("DELETE FROM notifications WHERE package_id = (SELECT id FROM packages WHERE name = :packageName)")
     suspend fun deleteByPackage(packageName: String)
-}
\ No newline at end of file
+}
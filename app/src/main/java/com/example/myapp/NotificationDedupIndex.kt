@@ -0,0 +1,112 @@
+package com.example.myapp
+
+import android.os.Bundle
+import android.service.notification.StatusBarNotification
+import androidx.core.app.NotificationCompat
+
+/**
+ * Content hash of each posted notification by its [StatusBarNotification.getKey], so a re-post
+ * with nothing new (WhatsApp re-posts its grouped notification on every update, and again on
+ * unrelated ones) is dropped before the listener extracts extras or builds log strings. Hashing
+ * walks the title, text and messaging-style messages in place, without copying them to strings.
+ *
+ * Entries are removed with their notification; the [capacity] bound only matters if removals are
+ * missed. Not thread-safe: owned by the listener's main thread.
+ */
+class NotificationDedupIndex(private val capacity: Int = DEFAULT_CAPACITY) {
+    companion object {
+        // Far more than a shade ever holds at once
+        const val DEFAULT_CAPACITY = 512
+        private const val FNV_OFFSET = -0x340d631b7bdddcdbL // 0xcbf29ce484222325
+        private const val FNV_PRIME = 0x100000001b3L
+        private const val KEY_MESSAGE_TEXT = "text"
+        private const val KEY_MESSAGE_TIME = "time"
+        private const val KEY_MESSAGE_SENDER = "sender"
+
+        /** 64-bit FNV-1a of title, text and messages. Missing fields hash differently from empty ones. */
+        fun contentHash(extras: Bundle): Long {
+            var hash = FNV_OFFSET
+            hash = mix(hash, extras.getCharSequence(NotificationCompat.EXTRA_TITLE))
+            hash = mix(hash, extras.getCharSequence(NotificationCompat.EXTRA_TEXT))
+            @Suppress("DEPRECATION")
+            val messages = extras.getParcelableArray(NotificationCompat.EXTRA_MESSAGES) ?: return hash
+            for (message in messages) {
+                if (message !is Bundle) continue
+                hash = mix(hash, message.getCharSequence(KEY_MESSAGE_SENDER))
+                hash = mix(hash, message.getCharSequence(KEY_MESSAGE_TEXT))
+                hash = mixLong(hash, message.getLong(KEY_MESSAGE_TIME))
+            }
+            return hash
+        }
+
+        private fun mix(hash: Long, value: CharSequence?): Long {
+            var h = hash
+            if (value == null) {
+                h = h xor 0xff
+                return h * FNV_PRIME
+            }
+            for (i in 0 until value.length) {
+                val c = value[i].code
+                h = h xor (c and 0xff).toLong()
+                h *= FNV_PRIME
+                h = h xor (c ushr 8).toLong()
+                h *= FNV_PRIME
+            }
+            // Field separator so ("ab", "c") and ("a", "bc") differ
+            h = h xor 0xfe
+            return h * FNV_PRIME
+        }
+
+        private fun mixLong(hash: Long, value: Long): Long {
+            var h = hash
+            for (shift in 0 until 64 step 8) {
+                h = h xor ((value ushr shift) and 0xff)
+                h *= FNV_PRIME
+            }
+            return h
+        }
+    }
+
+    private val hashes = object : LinkedHashMap<String, Long>(64, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Long>): Boolean = size > capacity
+    }
+
+    /** Re-posts dropped as unchanged. */
+    var unchanged = 0L
+        private set
+    /** Posts that were new or carried new content. */
+    var changed = 0L
+        private set
+
+    /** @return `true` if [key] is new or its content differs from the last post; records it either way */
+    fun offer(key: String, extras: Bundle): Boolean {
+        val hash = contentHash(extras)
+        val previous = hashes[key]
+        if (previous != null && previous == hash) {
+            unchanged++
+            return false
+        }
+        hashes[key] = hash
+        changed++
+        return true
+    }
+
+    fun remove(key: String) {
+        hashes.remove(key)
+    }
+
+    /**
+     * Replaces the index with what is in the shade now, e.g. on reconnecting, when removals made
+     * while disconnected were never delivered.
+     */
+    fun rebuild(active: Array<StatusBarNotification>) {
+        hashes.clear()
+        for (sbn in active) {
+            hashes[sbn.key] = contentHash(sbn.notification.extras)
+        }
+    }
+
+    val size: Int get() = hashes.size
+
+    override fun toString(): String = "${hashes.size} tracked, $changed new or changed, $unchanged unchanged re-posts dropped"
+}
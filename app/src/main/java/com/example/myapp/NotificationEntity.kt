@@ -1,15 +1,26 @@
 package com.example.myapp
 
+import androidx.room.ColumnInfo
 import androidx.room.Entity
+import androidx.room.Index
 import androidx.room.PrimaryKey
 
-@Entity(tableName = "notifications")
+/**
+ * A posted notification. [id] is the rowid, which every SQLite index already ends with, so the
+ * index on [timestamp] orders rows by (timestamp, id) for keyset paging.
+ */
+@Entity(
+    tableName = "notifications",
+    indices = [Index(value = ["timestamp"]), Index(value = ["package_id"])]
+)
 data class NotificationEntity(
     @PrimaryKey(autoGenerate = true)
     val id: Int = 0,
-    val packageName: String,
+    /** [PackageEntity.id] of the app that posted it. */
+    @ColumnInfo(name = "package_id")
+    val packageId: Long,
     val title: String?,
     val text: String?,
     val timestamp: Long,
     val isSensitive: Boolean
-)
\ No newline at end of file
+)
@@ -0,0 +1,103 @@
+package com.example.myapp
+
+import android.app.Notification
+import androidx.core.app.NotificationCompat
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.TimeZone
+
+/**
+ * Reads chat messages out of a WhatsApp notification as the same [ChatMessage] rows the
+ * accessibility path parses from the conversation screen, without touching the UI tree.
+ * MessagingStyle notifications carry sender, text and time per message; InboxStyle ones carry
+ * one line per message and only the post time; a plain message notification is one message.
+ *
+ * Rows get the display time the conversation screen shows, in the form the screen parser reads
+ * ("10:15 am", [TIME_PATTERN] with lowercase am/pm) whatever the device locale, so [fingerprint]
+ * matches the accessibility path's for the same message. Not thread-safe, as [SimpleDateFormat]
+ * is not: owned by the listener's main thread.
+ */
+class NotificationMessageExtractor(zone: TimeZone = TimeZone.getDefault()) {
+    companion object {
+        /** WhatsApp's message time; the screen parser only recognises this 12-hour form. */
+        const val TIME_PATTERN = "h:mm a"
+
+        val WHATSAPP_PACKAGES = setOf("com.whatsapp", "com.whatsapp.w4b")
+        // Older WhatsApp versions append the unread count to the conversation title
+        private val MESSAGE_COUNT_SUFFIX = Regex("""\s*\(\d+ messages?\)$""")
+        private const val SENDER_SEPARATOR = ": "
+
+        /** The accessibility path's fingerprint, so either path's row is stored once. */
+        fun fingerprint(message: ChatMessage): Long =
+            SeenMessageIndex.fingerprint(message.chatId, message.sender, message.identityText(), message.messageTimestamp)
+    }
+
+    private val timeFormat = SimpleDateFormat(TIME_PATTERN, Locale.US).apply { timeZone = zone }
+
+    /** @return the messages [notification] carries, oldest first; none for summaries and non-message posts */
+    fun extract(notification: Notification, postTime: Long): List<ChatMessage> {
+        // A summary repeats the lines of its per-chat children, prefixed with the chat name
+        if (notification.flags and Notification.FLAG_GROUP_SUMMARY != 0) return emptyList()
+        val extras = notification.extras ?: return emptyList()
+
+        val style = NotificationCompat.MessagingStyle.extractMessagingStyleFromNotification(notification)
+        if (style != null && style.messages.isNotEmpty()) return fromMessagingStyle(style, extras.getCharSequence(NotificationCompat.EXTRA_TITLE))
+
+        val chat = chatName(extras.getCharSequence(NotificationCompat.EXTRA_TITLE)) ?: return emptyList()
+        val isGroup = extras.getBoolean(NotificationCompat.EXTRA_IS_GROUP_CONVERSATION, false)
+        val lines = extras.getCharSequenceArray(NotificationCompat.EXTRA_TEXT_LINES)
+        if (lines != null && lines.isNotEmpty()) {
+            return lines.mapNotNull { line -> line?.let { fromLine(chat, isGroup, it.toString(), postTime) } }
+        }
+        if (notification.category != NotificationCompat.CATEGORY_MESSAGE) return emptyList()
+        val text = extras.getCharSequence(NotificationCompat.EXTRA_TEXT) ?: return emptyList()
+        return listOfNotNull(fromLine(chat, isGroup, text.toString(), postTime))
+    }
+
+    private fun fromMessagingStyle(style: NotificationCompat.MessagingStyle, title: CharSequence?): List<ChatMessage> {
+        val isGroup = style.isGroupConversation
+        val user = style.user.name?.toString()
+        val chat = chatName(style.conversationTitle) ?: chatName(title)
+            ?: style.messages.firstNotNullOfOrNull { it.person?.name?.toString() }
+            ?: return emptyList()
+        val rows = ArrayList<ChatMessage>(style.messages.size)
+        for (message in style.messages) {
+            val text = message.text ?: continue
+            val name = message.person?.name?.toString()
+            // The user's own replies come without a person, or as the style's user
+            val isSent = name == null || name == user
+            rows.add(row(chat, isGroup, if (isGroup && !isSent) name else null, text.toString(), isSent, message.timestamp))
+        }
+        return rows
+    }
+
+    /** One InboxStyle or plain line; in groups it reads `Sender: text`. */
+    private fun fromLine(chat: String, isGroup: Boolean, line: String, postTime: Long): ChatMessage? {
+        var sender: String? = null
+        var text = line
+        if (isGroup) {
+            val separator = line.indexOf(SENDER_SEPARATOR)
+            if (separator > 0) {
+                sender = line.substring(0, separator)
+                text = line.substring(separator + SENDER_SEPARATOR.length)
+            }
+        }
+        if (text.isEmpty()) return null
+        return row(chat, isGroup, sender, text, false, postTime)
+    }
+
+    private fun row(chat: String, isGroup: Boolean, sender: String?, text: String, isSent: Boolean, time: Long) =
+        ChatMessage().apply {
+            chatId = chat
+            this.isGroup = isGroup
+            timestamp = time
+            message = text
+            this.isSent = isSent
+            messageTimestamp = timeFormat.format(Date(time)).lowercase(Locale.US)
+            this.sender = sender
+        }
+
+    private fun chatName(title: CharSequence?): String? =
+        title?.toString()?.replace(MESSAGE_COUNT_SUFFIX, "")?.takeIf { it.isNotBlank() }
+}
@@ -0,0 +1,54 @@
+package com.example.myapp
+
+import androidx.paging.PagingSource
+import androidx.paging.PagingState
+import androidx.room.InvalidationTracker
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Pages notifications newest first, keyed by the last row of the previous page rather than an
+ * offset, so page N costs the same as page 1. Invalidates itself when the table changes; the
+ * refresh starts again from the newest row.
+ *
+ * Pager may create the source on the main thread, while [InvalidationTracker.addObserver] can
+ * touch the database, so the observer is registered on the first [load], which runs on the
+ * fetch dispatcher.
+ */
+class NotificationPagingSource(
+    private val db: AppDatabase
+) : PagingSource<NotificationPagingSource.Key, NotificationEntity>() {
+
+    /** Position after which the next page starts. */
+    data class Key(val timestamp: Long, val id: Int)
+
+    private val dao = db.notificationDao()
+    private val observer = object : InvalidationTracker.Observer("notifications") {
+        override fun onInvalidated(tables: Set<String>) {
+            invalidate()
+        }
+    }
+    private val observing = AtomicBoolean(false)
+
+    override suspend fun load(params: LoadParams<Key>): LoadResult<Key, NotificationEntity> {
+        if (observing.compareAndSet(false, true)) {
+            db.invalidationTracker.addObserver(observer)
+            // Runs at once if the source was invalidated before its first load
+            registerInvalidatedCallback { db.invalidationTracker.removeObserver(observer) }
+        }
+        // Newest first and refreshes restart at the top, so there is never anything before a page
+        if (params is LoadParams.Prepend) {
+            return LoadResult.Page(emptyList(), prevKey = null, nextKey = null)
+        }
+        val key = params.key
+        val rows = if (key == null) {
+            dao.latest(params.loadSize)
+        } else {
+            dao.pageBefore(key.timestamp, key.id, params.loadSize)
+        }
+        val last = rows.lastOrNull()
+        val nextKey = if (last != null && rows.size == params.loadSize) Key(last.timestamp, last.id) else null
+        return LoadResult.Page(rows, prevKey = null, nextKey = nextKey)
+    }
+
+    override fun getRefreshKey(state: PagingState<Key, NotificationEntity>): Key? = null
+}
@@ -0,0 +1,74 @@
+package com.example.myapp
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+
+/**
+ * Persists posted notifications. The listener thread buffers them with the package name as a
+ * string; the writer thread resolves it to a [PackageEntity] id through an [IdInterner] and
+ * inserts each batch in one transaction.
+ *
+ * Given a [journalFile], buffered notifications also go to a [CaptureJournal] there and survive
+ * the process being killed. Notifications have no natural key, so a kill between an insert and
+ * its journal commit stores that one batch twice.
+ */
+class NotificationStore(private val db: AppDatabase, journalFile: File? = null) {
+    private class Pending(
+        val packageName: String,
+        val title: String?,
+        val text: String?,
+        val timestamp: Long,
+        val isSensitive: Boolean
+    )
+
+    private object PendingCodec : CaptureJournal.Codec<Pending> {
+        override fun write(out: DataOutputStream, row: Pending) {
+            out.writeUTF(row.packageName)
+            NullableStrings.write(out, row.title)
+            NullableStrings.write(out, row.text)
+            out.writeLong(row.timestamp)
+            out.writeBoolean(row.isSensitive)
+        }
+
+        override fun read(input: DataInputStream): Pending = Pending(
+            packageName = input.readUTF(),
+            title = NullableStrings.read(input),
+            text = NullableStrings.read(input),
+            timestamp = input.readLong(),
+            isSensitive = input.readBoolean()
+        )
+    }
+
+    private val dao = db.notificationDao()
+    private val packages = IdInterner(db.dictionaryDao()::packageIdOf)
+
+    private val writeBehindBuffer =
+        WriteBehindBuffer("notification-writer", ::write, openJournal = journalFile?.let { WriteBehindBuffer.journalAt(it, PendingCodec) })
+    val writeBehind: WriteBehindBuffer<*> get() = writeBehindBuffer
+
+    /** Buffers one notification; never touches the database, so it is safe on the listener thread. */
+    fun offer(packageName: String, title: String?, text: String?, timestamp: Long, isSensitive: Boolean) {
+        writeBehindBuffer.offer(Pending(packageName, title, text, timestamp, isSensitive))
+    }
+
+    private fun write(batch: List<Pending>) {
+        try {
+            db.runInTransaction(Runnable {
+                dao.insertAll(batch.map {
+                    NotificationEntity(
+                        packageId = packages.idOf(it.packageName),
+                        title = it.title,
+                        text = it.text,
+                        timestamp = it.timestamp,
+                        isSensitive = it.isSensitive
+                    )
+                })
+            })
+        } catch (e: RuntimeException) {
+            // Ids resolved inside the rolled-back transaction may not exist
+            packages.clear()
+            throw e
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.myapp
+
+/** What an observer needs to tell whether the notifications changed, without loading any of them. */
+data class NotificationSummary(
+    val count: Int,
+    /** Highest id stored, `null` when the table is empty. */
+    val latestId: Int?
+)
@@ -0,0 +1,34 @@
+package com.example.myapp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The one string encoding of the app's binary formats ({@link SessionRecording}, {@link
+ * ArchiveSegment} and the {@link CaptureJournal} codecs): a length-prefixed UTF-8 string, with -1
+ * for {@code null}. Unlike {@link DataOutputStream#writeUTF}, it has no 64 KB limit.
+ */
+final class NullableStrings {
+    private NullableStrings() {
+    }
+
+    static void write(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.myapp
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * A notifying app. Notifications store its [id] rather than repeating the package name; ids are
+ * never reused, so an [IdInterner] can cache them for the life of the process.
+ */
+@Entity(tableName = "packages", indices = [Index(value = ["name"], unique = true)])
+data class PackageEntity(
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0,
+    val name: String
+)
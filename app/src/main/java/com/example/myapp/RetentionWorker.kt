@@ -0,0 +1,59 @@
+package com.example.myapp
+
+import android.content.Context
+import android.os.Build
+import android.util.Log
+import androidx.work.Constraints
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.Worker
+import androidx.work.WorkerParameters
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+
+/**
+ * Once a day, while the device is idle and the battery is not low, moves aged rows to the
+ * [ColdArchive] and then runs [DatabaseRetention], whose vacuum hands the archived rows' pages back.
+ */
+class RetentionWorker(context: Context, params: WorkerParameters) : Worker(context, params) {
+    companion object {
+        private const val TAG = "RetentionWorker"
+        private const val WORK_NAME = "database-retention"
+        private const val ARCHIVE_DIR = "archive"
+
+        /** Enqueues the daily job; a no-op if it is already scheduled. */
+        @JvmStatic
+        fun schedule(context: Context) {
+            val constraints = Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .apply {
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) setRequiresDeviceIdle(true)
+                }
+                .build()
+            val request = PeriodicWorkRequestBuilder<RetentionWorker>(1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build()
+            WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request)
+        }
+    }
+
+    override fun doWork(): Result {
+        val db = AppDatabase.getDatabase(applicationContext)
+        val archive = ColdArchive(db, File(applicationContext.noBackupFilesDir, ARCHIVE_DIR))
+        return try {
+            Log.i(TAG, "Archive: ${archive.archive(shouldStop = { isStopped })}")
+            val report = DatabaseRetention(db, archive = archive).run(shouldStop = { isStopped })
+            Log.i(TAG, "Retention: $report; archive now ${archive.bytesOnDisk()} bytes")
+            Result.success()
+        } catch (e: IOException) {
+            Log.e(TAG, "Archiving failed: ${e.message}", e)
+            Result.retry()
+        } catch (e: RuntimeException) {
+            Log.e(TAG, "Retention failed: ${e.message}", e)
+            Result.retry()
+        }
+    }
+}
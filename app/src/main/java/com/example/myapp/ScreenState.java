@@ -0,0 +1,39 @@
+package com.example.myapp;
+
+import android.view.accessibility.AccessibilityEvent;
+
+/**
+ * The WhatsApp screens the service distinguishes, each with the accessibility events and
+ * notification timeout it needs. Everything else is dropped by the framework before it reaches us.
+ */
+public enum ScreenState {
+    /** Home screen on the Chats tab: only tab and window switches matter. */
+    CHAT_LIST(Masks.WINDOW | AccessibilityEvent.TYPE_VIEW_SELECTED, 0),
+    CONVERSATION(Masks.WINDOW | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_SCROLLED, 100),
+    CALLS_TAB(Masks.WINDOW | AccessibilityEvent.TYPE_VIEW_SELECTED
+            | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED | AccessibilityEvent.TYPE_VIEW_SCROLLED, 100),
+    // The call screen only changes its timer and direction text; nobody reads it faster than this
+    ACTIVE_CALL(Masks.WINDOW | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, 500),
+    /** Settings, status, other tabs: wait for a window or tab switch back to something we parse. */
+    OTHER(Masks.WINDOW | AccessibilityEvent.TYPE_VIEW_SELECTED, 0);
+
+    private static final class Masks {
+        // Every screen needs window switches to leave it, and window list changes to keep the
+        // target windows current
+        static final int WINDOW = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED | AccessibilityEvent.TYPE_WINDOWS_CHANGED;
+    }
+
+    public final int eventTypes;
+    public final long notificationTimeoutMs;
+
+    ScreenState(int eventTypes, long notificationTimeoutMs) {
+        this.eventTypes = eventTypes;
+        this.notificationTimeoutMs = notificationTimeoutMs;
+    }
+
+    /** Whether content and scroll events on this screen are captured and parsed. */
+    public boolean parsesContent() {
+        return (eventTypes & AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) != 0;
+    }
+}
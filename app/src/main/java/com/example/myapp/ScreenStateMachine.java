@@ -0,0 +1,76 @@
+package com.example.myapp;
+
+import android.view.accessibility.AccessibilityEvent;
+
+/**
+ * Tracks which WhatsApp screen is in front from window and tab-selection events. Starts
+ * unclassified ({@link #getState()} returns {@code null}) so the manifest's broad subscription stays
+ * in effect until the first screen is recognised. Main thread only.
+ */
+public final class ScreenStateMachine {
+    public interface Listener {
+        /** @param from the previous state, or {@code null} on the first classification */
+        void onScreenChanged(ScreenState from, ScreenState to);
+    }
+
+    static final String CONVERSATION_ACTIVITY = "com.whatsapp.Conversation";
+    static final String HOME_ACTIVITY = "com.whatsapp.HomeActivity";
+    // VoipActivityV2 moved from voipcalling to calling.ui across releases
+    private static final String[] CALL_ACTIVITY_PREFIXES = {"com.whatsapp.voipcalling.", "com.whatsapp.calling."};
+    private static final String WHATSAPP_CLASS_PREFIX = "com.whatsapp.";
+    private static final String CALLS_TAB_DESCRIPTION = "Calls";
+    private static final String CHATS_TAB_DESCRIPTION = "Chats";
+
+    private final Listener listener;
+    private ScreenState state;
+    private int transitions;
+
+    public ScreenStateMachine(Listener listener) {
+        this.listener = listener;
+    }
+
+    public ScreenState getState() {
+        return state;
+    }
+
+    public int getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * Feeds a window-state or view-selected event.
+     *
+     * @param className         the event class name, an activity for window-state changes
+     * @param sourceDescription content description of the event source, which names the selected tab
+     * @return the state after the event
+     */
+    public ScreenState onEvent(int eventType, String className, String sourceDescription) {
+        ScreenState next = classify(eventType, className, sourceDescription);
+        if (next != null && next != state) {
+            ScreenState previous = state;
+            state = next;
+            transitions++;
+            listener.onScreenChanged(previous, next);
+        }
+        return state;
+    }
+
+    private ScreenState classify(int eventType, String className, String sourceDescription) {
+        // Tab selection, on the home screen either as its own event or as a window change
+        if (CALLS_TAB_DESCRIPTION.equals(sourceDescription)) return ScreenState.CALLS_TAB;
+        if (CHATS_TAB_DESCRIPTION.equals(sourceDescription)) return ScreenState.CHAT_LIST;
+        if (eventType == AccessibilityEvent.TYPE_VIEW_SELECTED) {
+            // Another tab (Updates, Communities) replaced the list we were parsing
+            return state == ScreenState.CHAT_LIST || state == ScreenState.CALLS_TAB ? ScreenState.OTHER : null;
+        }
+        if (eventType != AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED || className == null) return null;
+
+        if (CONVERSATION_ACTIVITY.equals(className)) return ScreenState.CONVERSATION;
+        if (HOME_ACTIVITY.equals(className)) return ScreenState.CHAT_LIST;
+        for (String prefix : CALL_ACTIVITY_PREFIXES) {
+            if (className.startsWith(prefix)) return ScreenState.ACTIVE_CALL;
+        }
+        // Framework classes are popups and dialogs over the current screen, not a new screen
+        return className.startsWith(WHATSAPP_CLASS_PREFIX) ? ScreenState.OTHER : null;
+    }
+}
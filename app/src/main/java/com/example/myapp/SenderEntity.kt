@@ -0,0 +1,13 @@
+package com.example.myapp
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/** A group member's display name, referenced by [MessageEntity.senderId]. */
+@Entity(tableName = "senders", indices = [Index(value = ["name"], unique = true)])
+data class SenderEntity(
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0,
+    val name: String
+)
@@ -0,0 +1,235 @@
+package com.example.myapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Binary recording of a capture session: every raw content/scroll event the coalescer was offered
+ * and every {@link CapturedEvent} handed to the parse worker, snapshots included.
+ * {@link SessionReplayer} feeds a recording back through the pipeline off-device.
+ *
+ * <p>Layout: magic, version, then {@code kind, uptime, windowId, body} records up to EOF. A record
+ * cut short by a crash ends the recording; everything before it is still readable.
+ */
+public final class SessionRecording {
+    static final int MAGIC = 0x57415352; // "WASR"
+    static final int VERSION = 1;
+
+    static final byte KIND_EVENT = 1;
+    static final byte KIND_CAPTURE = 2;
+
+    private static final int FLAG_SOURCE_MISSING = 1;
+    private static final int FLAG_INCOMPLETE = 1 << 1;
+    private static final int FLAG_GROUP_INFO_BUTTON = 1 << 2;
+
+    private SessionRecording() {
+    }
+
+    /** One entry of a recording: a raw event ({@link #captured} is null) or a capture. */
+    public static final class Record {
+        public final byte kind;
+        /** {@code SystemClock.uptimeMillis()} time base, as the coalescer sees it. */
+        public final long uptime;
+        public final int windowId;
+        public final int eventType;
+        public final CapturedEvent captured;
+
+        Record(byte kind, long uptime, int windowId, int eventType, CapturedEvent captured) {
+            this.kind = kind;
+            this.uptime = uptime;
+            this.windowId = windowId;
+            this.eventType = eventType;
+            this.captured = captured;
+        }
+    }
+
+    /** Appends records to a stream. Not thread-safe; the service writes from the main thread. */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private long records;
+
+        public Writer(OutputStream stream) throws IOException {
+            out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+        }
+
+        public static Writer create(File file) throws IOException {
+            return new Writer(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        }
+
+        /** A content or scroll event offered to the coalescer. */
+        public void event(long uptime, int windowId, int eventType) throws IOException {
+            out.writeByte(KIND_EVENT);
+            out.writeLong(uptime);
+            out.writeInt(windowId);
+            out.writeInt(eventType);
+            records++;
+        }
+
+        /** A capture as submitted to the parse worker. */
+        public void capture(long uptime, int windowId, CapturedEvent captured) throws IOException {
+            out.writeByte(KIND_CAPTURE);
+            out.writeLong(uptime);
+            out.writeInt(windowId);
+            out.writeInt(captured.eventType);
+            NullableStrings.write(out, captured.className);
+            out.writeLong(captured.realTime);
+            out.writeByte(captured.screen.ordinal());
+            out.writeByte((captured.sourceMissing ? FLAG_SOURCE_MISSING : 0)
+                    | (captured.incomplete ? FLAG_INCOMPLETE : 0)
+                    | (captured.hasGroupInfoButton ? FLAG_GROUP_INFO_BUTTON : 0));
+            NullableStrings.write(out, captured.sourceDescription);
+            NullableStrings.write(out, captured.contactNameById);
+            out.writeInt(captured.absorbedEvents);
+            out.writeInt(captured.callButtonDescriptions.size());
+            for (int i = 0; i < captured.callButtonDescriptions.size(); i++) {
+                NullableStrings.write(out, captured.callButtonDescriptions.get(i));
+            }
+            writeSnapshot(out, captured.header);
+            writeSnapshot(out, captured.chatList);
+            writeSnapshot(out, captured.callList);
+            records++;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getBytes() {
+            return out.size();
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Reads records back in order. */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final int version;
+        private boolean truncated;
+
+        public Reader(InputStream stream) throws IOException {
+            in = new DataInputStream(stream);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a session recording");
+            }
+            version = in.readUnsignedShort();
+            if (version > VERSION) {
+                throw new IOException("Recording version " + version + " is newer than " + VERSION);
+            }
+        }
+
+        public static Reader open(File file) throws IOException {
+            return new Reader(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        }
+
+        /** @return the next record, or {@code null} at the end of the recording */
+        public Record next() throws IOException {
+            int kind = in.read();
+            if (kind < 0) return null;
+            try {
+                long uptime = in.readLong();
+                int windowId = in.readInt();
+                int eventType = in.readInt();
+                if (kind == KIND_EVENT) {
+                    return new Record(KIND_EVENT, uptime, windowId, eventType, null);
+                }
+                if (kind != KIND_CAPTURE) {
+                    throw new IOException("Unknown record kind " + kind);
+                }
+                return new Record(KIND_CAPTURE, uptime, windowId, eventType, readCapture(eventType));
+            } catch (EOFException e) {
+                // The recorder died mid-record; keep what came before
+                truncated = true;
+                return null;
+            }
+        }
+
+        /** Reads every remaining record. */
+        public List<Record> readAll() throws IOException {
+            List<Record> records = new ArrayList<>();
+            Record record;
+            while ((record = next()) != null) {
+                records.add(record);
+            }
+            return records;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        /** Whether the recording ended in a partially written record. */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private CapturedEvent readCapture(int eventType) throws IOException {
+            String className = NullableStrings.read(in);
+            CapturedEvent captured = new CapturedEvent(eventType, className, in.readLong());
+            int screen = in.readUnsignedByte();
+            if (screen >= ScreenState.values().length) {
+                throw new IOException("Unknown screen " + screen);
+            }
+            captured.screen = ScreenState.values()[screen];
+            int flags = in.readUnsignedByte();
+            captured.sourceMissing = (flags & FLAG_SOURCE_MISSING) != 0;
+            captured.incomplete = (flags & FLAG_INCOMPLETE) != 0;
+            captured.hasGroupInfoButton = (flags & FLAG_GROUP_INFO_BUTTON) != 0;
+            captured.sourceDescription = NullableStrings.read(in);
+            captured.contactNameById = NullableStrings.read(in);
+            captured.absorbedEvents = in.readInt();
+            int buttons = in.readInt();
+            if (buttons > 0) {
+                List<String> descriptions = new ArrayList<>(buttons);
+                for (int i = 0; i < buttons; i++) {
+                    descriptions.add(NullableStrings.read(in));
+                }
+                captured.callButtonDescriptions = descriptions;
+            } else {
+                captured.callButtonDescriptions = Collections.emptyList();
+            }
+            captured.header = readSnapshot(in);
+            captured.chatList = readSnapshot(in);
+            captured.callList = readSnapshot(in);
+            return captured;
+        }
+    }
+
+    private static void writeSnapshot(DataOutputStream out, FlatSnapshot snapshot) throws IOException {
+        out.writeBoolean(snapshot != null);
+        if (snapshot != null) {
+            snapshot.writeTo(out);
+        }
+    }
+
+    private static FlatSnapshot readSnapshot(DataInputStream in) throws IOException {
+        return in.readBoolean() ? FlatSnapshot.readFrom(in) : null;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.myapp;
+
+import android.view.accessibility.AccessibilityEvent;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Feeds a {@link SessionRecording} through the capture pipeline as fast as it will go. Raw events
+ * go through an {@link EventCoalescer} running on the recording's own clock. Each burst it emits
+ * re-submits the content captured for that window at the time, and window changes are submitted
+ * as recorded. Everything passes through the hand-off queue into a {@link WhatsAppEventParser},
+ * which does the parsing and dedup, and on into a {@link CaptureStore} given one, which persists
+ * the rows. The worker thread is left out: the queue is drained inline, so the timings are pure
+ * pipeline cost. Latency is measured per submitted capture, from the hand-off to the rows being
+ * buffered for the store; raw events only feed the coalescer and are not counted.
+ *
+ * <p>Single use: create one replayer per run.
+ */
+public final class SessionReplayer {
+    /** Outcome of one replay. */
+    public static final class Report {
+        public final int records;
+        public final int rawEvents;
+        public final int bursts;
+        /** Bursts whose window had no recorded content to re-submit. */
+        public final int burstsWithoutContent;
+        public final long parses;
+        /** Includes closing the store, which writes whatever it still buffers. */
+        public final long elapsedNanos;
+        /** Per submitted capture. */
+        public final long p50Nanos;
+        public final long p99Nanos;
+        public final long recordsEmitted;
+        public final long itemsEmitted;
+        public final long duplicatesSuppressed;
+        /** Rows the store wrote, duplicates it ignored on their fingerprints included; 0 without a store. */
+        public final long rowsWritten;
+
+        Report(int records, int rawEvents, int bursts, int burstsWithoutContent, long parses, long elapsedNanos,
+               long p50Nanos, long p99Nanos, long recordsEmitted, long itemsEmitted, long duplicatesSuppressed,
+               long rowsWritten) {
+            this.records = records;
+            this.rawEvents = rawEvents;
+            this.bursts = bursts;
+            this.burstsWithoutContent = burstsWithoutContent;
+            this.parses = parses;
+            this.elapsedNanos = elapsedNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.recordsEmitted = recordsEmitted;
+            this.itemsEmitted = itemsEmitted;
+            this.duplicatesSuppressed = duplicatesSuppressed;
+            this.rowsWritten = rowsWritten;
+        }
+
+        public double eventsPerSecond() {
+            return elapsedNanos > 0 ? records * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d records in %.1f ms (%.0f events/s), latency p50=%.1f us p99=%.1f us; " +
+                            "raw=%d bursts=%d (no content %d) parses=%d; emitted %d lines, %d items, %d duplicates; " +
+                            "%d rows written",
+                    records, elapsedNanos / 1e6, eventsPerSecond(), p50Nanos / 1e3, p99Nanos / 1e3,
+                    rawEvents, bursts, burstsWithoutContent, parses, recordsEmitted, itemsEmitted, duplicatesSuppressed,
+                    rowsWritten);
+        }
+    }
+
+    private static final class ReplayClock implements Clock {
+        long now;
+
+        @Override
+        public long uptimeMillis() {
+            return now;
+        }
+    }
+
+    private static final long STORE_CLOSE_TIMEOUT_MS = 30_000;
+
+    private final WhatsAppEventParser parser;
+    private final CaptureStore store;
+    private final ReplayClock clock = new ReplayClock();
+    private final EventCoalescer coalescer;
+    private final BoundedEventQueue<CapturedEvent> queue;
+    /** Latest content capture per window, what the service would read when a burst is due. */
+    private final Map<Integer, CapturedEvent> latestContent = new HashMap<>();
+    private ScreenState screen;
+    private int rawEvents;
+    private int bursts;
+    private int burstsWithoutContent;
+    private long[] latencies;
+    private int submitted;
+
+    /**
+     * @param store where the parser's rows go, or {@code null} to stop at the parser; closed at the
+     *              end of the run
+     */
+    public SessionReplayer(WhatsAppEventParser parser, CaptureStore store, long quietPeriodMs, long maxLatencyMs,
+                           int queueCapacity) {
+        this.parser = parser;
+        this.store = store;
+        this.coalescer = new EventCoalescer(clock, quietPeriodMs, maxLatencyMs);
+        this.queue = new BoundedEventQueue<>(queueCapacity, CapturedEvent.DROP_POLICY);
+    }
+
+    /** Replays with the service's own coalescing and queue settings. */
+    public SessionReplayer(WhatsAppEventParser parser, CaptureStore store) {
+        this(parser, store, WhatsAppAccessibilityService.COALESCE_QUIET_PERIOD_MS,
+                WhatsAppAccessibilityService.COALESCE_MAX_LATENCY_MS, WhatsAppAccessibilityService.CAPTURE_QUEUE_CAPACITY);
+    }
+
+    public Report replay(List<SessionRecording.Record> records) {
+        // Each capture record is submitted at most once, and each burst absorbs at least one raw event
+        latencies = new long[records.size()];
+        parser.setRowSink(store);
+        long start = System.nanoTime();
+        for (int i = 0; i < records.size(); i++) {
+            handle(records.get(i));
+        }
+        // Whatever is still pending would have flushed once the window went quiet
+        flushDue(Long.MAX_VALUE - 1);
+        parser.persist();
+        long rowsWritten = 0;
+        if (store != null) {
+            if (!store.getWriteBehind().close(STORE_CLOSE_TIMEOUT_MS)) {
+                throw new IllegalStateException("Store did not finish writing: " + store.getWriteBehind().stats());
+            }
+            rowsWritten = store.getWriteBehind().stats().getRowsWritten();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = Arrays.copyOf(latencies, submitted);
+        Arrays.sort(sorted);
+        return new Report(records.size(), rawEvents, bursts, burstsWithoutContent, queue.getProcessed(), elapsed,
+                percentile(sorted, 50), percentile(sorted, 99),
+                parser.getRecordsEmitted(), parser.getItemsEmitted(), parser.getDuplicatesSuppressed(), rowsWritten);
+    }
+
+    private void handle(SessionRecording.Record record) {
+        CapturedEvent captured = record.captured;
+        // Content captures only ever come out of a coalescer flush, so the capture has to be in
+        // place before the burst it belongs to is flushed
+        boolean content = captured != null && captured.eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
+        if (content) {
+            latestContent.put(record.windowId, captured);
+        }
+        // An event recorded at the very millisecond a burst is due was offered before that flush
+        flushDue(record.kind == SessionRecording.KIND_EVENT ? record.uptime - 1 : record.uptime);
+        clock.now = Math.max(clock.now, record.uptime);
+
+        if (record.kind == SessionRecording.KIND_EVENT) {
+            rawEvents++;
+            coalescer.offer(record.windowId);
+        } else if (!content) {
+            if (captured.screen != screen) {
+                // Same as onScreenChanged: pending bursts belong to the screen being left
+                screen = captured.screen;
+                coalescer.clear();
+                latestContent.clear();
+            }
+            submit(captured);
+        }
+    }
+
+    private void flushDue(long until) {
+        long dueAt;
+        while ((dueAt = coalescer.nextDueTime()) <= until) {
+            clock.now = Math.max(clock.now, dueAt);
+            List<EventCoalescer.Burst> due = coalescer.pollDue();
+            for (int i = 0; i < due.size(); i++) {
+                EventCoalescer.Burst burst = due.get(i);
+                bursts++;
+                CapturedEvent content = latestContent.get(burst.windowId);
+                if (content == null) {
+                    burstsWithoutContent++;
+                    continue;
+                }
+                content.absorbedEvents = burst.absorbedEvents;
+                submit(content);
+            }
+        }
+    }
+
+    private void submit(CapturedEvent captured) {
+        long submitStart = System.nanoTime();
+        queue.offer(captured);
+        CapturedEvent next;
+        while ((next = queue.poll()) != null) {
+            parser.process(next);
+            queue.markProcessed();
+        }
+        latencies[submitted++] = System.nanoTime() - submitStart;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.myapp;
+
+import java.util.Arrays;
+
+/**
+ * The set of window ids that belong to WhatsApp's application windows, rebuilt from
+ * {@code getWindows()} whenever the window list changes. Events from any other window (keyboard,
+ * system overlays, other apps' popups) are dropped before a single node is fetched. Main thread only.
+ */
+public final class TargetWindowTracker {
+    private int[] windowIds = new int[4];
+    private int count;
+    private int pendingCount;
+    private int[] pending = new int[4];
+    private int refreshes;
+    private int accepted;
+    private int dropped;
+
+    /** Starts collecting a new window list; the current one stays in effect until {@link #commit()}. */
+    public void begin() {
+        pendingCount = 0;
+    }
+
+    public void add(int windowId) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        }
+        pending[pendingCount++] = windowId;
+    }
+
+    public void commit() {
+        int[] swap = windowIds;
+        windowIds = pending;
+        pending = swap;
+        count = pendingCount;
+        refreshes++;
+    }
+
+    public boolean contains(int windowId) {
+        // A handful of windows at most; a linear scan beats hashing
+        for (int i = 0; i < count; i++) {
+            if (windowIds[i] == windowId) return true;
+        }
+        return false;
+    }
+
+    /** Like {@link #contains} but counts the outcome for {@link #stats()}. */
+    public boolean accept(int windowId) {
+        if (contains(windowId)) {
+            accepted++;
+            return true;
+        }
+        dropped++;
+        return false;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getDropped() {
+        return dropped;
+    }
+
+    public String stats() {
+        return "windows=" + count + " refreshes=" + refreshes + " accepted=" + accepted + " dropped=" + dropped;
+    }
+}
@@ -3,32 +3,175 @@ package com.example.myapp;
 import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 import android.view.accessibility.AccessibilityManager;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import java.text.SimpleDateFormat;
+import android.view.accessibility.AccessibilityWindowInfo;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-public class WhatsAppAccessibilityService extends AccessibilityService {
+public class WhatsAppAccessibilityService extends AccessibilityService implements ScreenStateMachine.Listener {
     private static final String TAG = "WhatsAppStructuredLog";
     private static final String WHATSAPP_PACKAGE = "com.whatsapp";
-    private static final Pattern TIME_PATTERN = Pattern.compile("\\d{1,2}:\\d{2}\\s*[ap]m");
-    private static final Pattern PHONE_PATTERN = Pattern.compile("\\+\\d{1,3} [\\d ]+");
-    private static final Pattern CALL_DESC_PATTERN = Pattern.compile("WhatsApp voice call with (.*?) - (Incoming|Outgoing) call");
-    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-    private int eventCounter = 0;
-    private String currentChatId = null;
-    private boolean isGroupChat = false;
-    private boolean isCallsTabActive = false;
+    static final int CAPTURE_QUEUE_CAPACITY = 32;
+    private static final String SEEN_INDEX_FILE = "seen_messages.idx";
+    private static final String SELECTOR_PREFS = "view_id_selectors";
+    // Sessions are recorded only while this directory exists under no_backup, e.g. after
+    // adb shell run-as com.example.myapp mkdir no_backup/recordings
+    private static final String RECORDINGS_DIR = "recordings";
+    // List container -> rows -> row children, which is all parseNode/parseCallNode look at
+    private static final int ROW_SNAPSHOT_DEPTH = 2;
+    // A fling emits dozens of content/scroll events; parse once the window settles, but at
+    // least once a second while it keeps changing
+    static final long COALESCE_QUIET_PERIOD_MS = 150;
+    static final long COALESCE_MAX_LATENCY_MS = 1000;
+    // Fallback scans run on the main thread at one binder call per node; stop well within a frame
+    // and pick up where we left off on the next event
+    private static final long WALK_BUDGET_MS = 12;
+    private static final int WALK_MAX_DEPTH = 40;
+    private static final int WALK_MAX_NODES = 400;
+
+    private WhatsAppEventParser parser;
+    private CaptureWorker<CapturedEvent> worker;
+    private CaptureStore captureStore;
+    private ViewIdSelectorRegistry selectors;
+    /** Non-null while a session is being recorded for {@link SessionReplayer}. */
+    private SessionRecording.Writer recorder;
+
+    private final EventCoalescer coalescer =
+            new EventCoalescer(SystemClock::uptimeMillis, COALESCE_QUIET_PERIOD_MS, COALESCE_MAX_LATENCY_MS);
+    private final Handler flushHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flushTask = this::flushCoalescedContent;
+    private final ScreenStateMachine screens = new ScreenStateMachine(this);
+    private final TraversalBudget walkBudget =
+            new TraversalBudget(SystemClock::uptimeMillis, WALK_BUDGET_MS, WALK_MAX_DEPTH, WALK_MAX_NODES);
+    /** Budget overruns per {@link ScreenState} ordinal. */
+    private final int[] walkOverruns = new int[ScreenState.values().length];
+    private final TargetWindowTracker targetWindowIds = new TargetWindowTracker();
+    /** Window infos behind {@link #targetWindowIds}, kept to reach each window's root. */
+    private final List<AccessibilityWindowInfo> targetWindows = new ArrayList<>();
+    /** Last unknown window that already triggered a refresh, so its events don't keep refreshing. */
+    private int unknownWindowId = -1;
+    /** Window an incomplete content walk was started on; it is only resumed there. */
+    private int pendingWalkWindowId = -1;
+    /** Toolbar title of the open conversation, as {@link NotificationCoverage} knows chats. */
+    private String currentChatTitle;
+    private final NotificationCoverage coverage = NotificationCoverage.shared();
+    /** Window whose conversation scan waits for notification coverage to lapse. */
+    private int deferredScanWindowId = -1;
+    private final Runnable deferredScan = this::runDeferredScan;
+    private long scansDeferred;
+
+    // Debug builds route node handles through a tracker that reports leaks, double recycles and
+    // use after recycle per call site; in release BuildConfig.DEBUG is constant false and it all folds away
+    private final NodeHandleTracker handles = BuildConfig.DEBUG ? new NodeHandleTracker() : null;
+    private long handleProblemsReported;
+    private final NodeAdapter<AccessibilityNodeInfo> selectorNodes = nodes("selectors");
+    private final NodeAdapter<AccessibilityNodeInfo> snapshotNodes = nodes("snapshot");
+
+    // Fallback scans, one per screen, each feeding only the collector that screen's parser reads
+    private final NodeCollectors.CallButtonCollector<AccessibilityNodeInfo> callButtons =
+            new NodeCollectors.CallButtonCollector<>(nodes("callButtons"));
+    private final NodeCollectors.ListContainerCollector<AccessibilityNodeInfo> chatList =
+            new NodeCollectors.ListContainerCollector<>(nodes("chatList"), NodeCollectors.CLASS_LIST_VIEW);
+    private final NodeCollectors.ListContainerCollector<AccessibilityNodeInfo> callList =
+            new NodeCollectors.ListContainerCollector<>(nodes("callList"), NodeCollectors.CLASS_RECYCLER_VIEW);
+    private final NodeCollectors.TitleTextCollector<AccessibilityNodeInfo> titleTexts =
+            new NodeCollectors.TitleTextCollector<>(nodes("titleTexts"));
+    private final NodeTreeWalker<AccessibilityNodeInfo> conversationWalker =
+            new NodeTreeWalker<>(nodes("conversationWalker"), walkBudget).register(chatList);
+    private final NodeTreeWalker<AccessibilityNodeInfo> callsTabWalker =
+            new NodeTreeWalker<>(nodes("callsTabWalker"), walkBudget).register(callList);
+    private final NodeTreeWalker<AccessibilityNodeInfo> activeCallWalker =
+            new NodeTreeWalker<>(nodes("activeCallWalker"), walkBudget).register(callButtons);
+    private final NodeTreeWalker<AccessibilityNodeInfo> titleWalker =
+            new NodeTreeWalker<>(nodes("titleWalker"), walkBudget).register(titleTexts);
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        parser = new WhatsAppEventParser(new File(getNoBackupFilesDir(), SEEN_INDEX_FILE), loadTextRules());
+        captureStore = CaptureStore.acquire(this);
+        parser.setRowSink(captureStore);
+        RetentionWorker.schedule(this);
+        worker = new CaptureWorker<>("WhatsAppCapture", CAPTURE_QUEUE_CAPACITY, CapturedEvent.DROP_POLICY, parser);
+        worker.getHandler().post(parser::restore);
+        selectors = new ViewIdSelectorRegistry(new PreferencesSelectorStore(getSharedPreferences(SELECTOR_PREFS, MODE_PRIVATE)),
+                whatsAppVersionCode());
+        startRecordingIfRequested();
+    }
+
+    private void startRecordingIfRequested() {
+        File dir = new File(getNoBackupFilesDir(), RECORDINGS_DIR);
+        if (!dir.isDirectory()) return;
+        File file = new File(dir, "session-" + System.currentTimeMillis() + ".rec");
+        try {
+            recorder = SessionRecording.Writer.create(file);
+            Log.i(TAG, "Recording capture session to " + file);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot record to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void recordEvent(long uptime, int windowId, int eventType) {
+        if (recorder == null) return;
+        try {
+            recorder.event(uptime, windowId, eventType);
+        } catch (IOException e) {
+            stopRecording(e);
+        }
+    }
+
+    private void recordCapture(long uptime, int windowId, CapturedEvent captured) {
+        if (recorder == null) return;
+        try {
+            recorder.capture(uptime, windowId, captured);
+        } catch (IOException e) {
+            stopRecording(e);
+        }
+    }
+
+    private void stopRecording(IOException error) {
+        if (recorder == null) return;
+        if (error != null) {
+            Log.w(TAG, "Session recording stopped: " + error.getMessage());
+        }
+        Log.i(TAG, "Recorded " + recorder.getRecords() + " records, " + recorder.getBytes() + " bytes");
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Closing session recording failed: " + e.getMessage());
+        }
+        recorder = null;
+    }
+
+    @SuppressWarnings("deprecation")
+    private long whatsAppVersionCode() {
+        try {
+            return getPackageManager().getPackageInfo(WHATSAPP_PACKAGE, 0).versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            return -1;
+        }
+    }
+
+    private TextClassifier loadTextRules() {
+        // Resolved against the device locale, so translated tables live in res/raw-<locale>
+        InputStream in = getResources().openRawResource(R.raw.text_rules);
+        try {
+            return TextClassifier.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Bundled text rules are unreadable", e);
+        }
+    }
 
     @Override
     protected void onServiceConnected() {
@@ -46,438 +189,443 @@ public class WhatsAppAccessibilityService extends AccessibilityService {
             Log.i(TAG, "  Can Retrieve Content: " + ((info.flags & AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS) != 0));
             Log.i(TAG, "  Service ID: " + info.getId());
         }
+        refreshTargetWindows();
         Log.i(TAG, "🎯 Ready to capture WhatsApp events...");
         Log.d(TAG, "Checking service status on start: " + isAccessibilityServiceEnabled(this));
     }
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
+        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOWS_CHANGED) {
+            unknownWindowId = -1;
+            refreshTargetWindows();
+            return;
+        }
         if (!WHATSAPP_PACKAGE.equals(event.getPackageName())) {
             return;
         }
-
-        eventCounter++;
-        long realTime = System.currentTimeMillis() - SystemClock.uptimeMillis() + event.getEventTime();
-        String timestamp = timeFormat.format(new Date(realTime));
-        Log.v(TAG, "Event #" + eventCounter + " [" + timestamp + "] Type: " + getEventTypeName(event.getEventType()));
-
-        // Detect Calls tab activation
-        if (event.getEventType() == AccessibilityEvent.TYPE_VIEW_SELECTED ||
-                event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
-            AccessibilityNodeInfo source = event.getSource();
-            if (source != null) {
-                CharSequence contentDesc = source.getContentDescription();
-                isCallsTabActive = contentDesc != null && contentDesc.toString().equals("Calls");
-                if (isCallsTabActive) {
-                    Log.i(TAG, "Calls tab activated");
-                }
-                source.recycle();
-            }
+        // Drop keyboard, overlay and popup events before any node is fetched. A window we have not
+        // seen yet may just be newer than the last TYPE_WINDOWS_CHANGED, so look once more.
+        int windowId = event.getWindowId();
+        if (!targetWindowIds.contains(windowId) && windowId != unknownWindowId) {
+            unknownWindowId = windowId;
+            refreshTargetWindows();
+        }
+        if (!targetWindowIds.accept(windowId)) {
+            return;
         }
 
-        // Handle chat open
-        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED &&
-                "com.whatsapp.Conversation".equals(event.getClassName())) {
-            AccessibilityNodeInfo source = event.getSource();
-            if (source == null) {
-                Log.w(TAG, "Source node is null for WINDOW_STATE_CHANGED");
-                return;
-            }
-            currentChatId = findChatId(source);
-            isGroupChat = detectGroupChat(source);
-            isCallsTabActive = false; // Reset when entering a conversation
-            Log.i(TAG, "Chat opened: " + (isGroupChat ? "Group" : "Private") + " - " + (currentChatId != null ? currentChatId : "Unknown"));
-            source.recycle();
-        }
-
-        // Process content changes
-        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED ||
-                event.getEventType() == AccessibilityEvent.TYPE_VIEW_SCROLLED) {
-            AccessibilityNodeInfo source = event.getSource();
-            if (source == null) {
-                Log.w(TAG, "Source node is null for event type: " + getEventTypeName(event.getEventType()));
-                return;
-            }
-            if (isCallsTabActive) {
-                processCallContent(source);
-            } else {
-                processActiveCall(source);
-                processChatContent(source);
-            }
-            source.recycle();
-        }
-    }
-
-    private void processActiveCall(AccessibilityNodeInfo root) {
-        List<AccessibilityNodeInfo> buttons = findNodesByClassName(root, "android.widget.Button");
-        for (AccessibilityNodeInfo button : buttons) {
-            CharSequence desc = button.getContentDescription();
-            if (desc != null && desc.toString().contains("voice call")) {
-                String descStr = desc.toString();
-                Matcher matcher = CALL_DESC_PATTERN.matcher(descStr);
-                JSONObject callInfo = new JSONObject();
-                try {
-                    callInfo.put("timestamp", timeFormat.format(new Date()));
-                    callInfo.put("type", "active_call");
-                    if (matcher.matches()) {
-                        callInfo.put("contact", matcher.group(1).trim());
-                        callInfo.put("call_direction", matcher.group(2));
-                    } else {
-                        callInfo.put("raw_description", descStr);
-                    }
-                    Log.i(TAG, "Structured Log (Active Call): " + callInfo.toString(2));
-                } catch (Exception e) {
-                    Log.e(TAG, "Error parsing active call: " + e.getMessage());
-                }
-            }
-            button.recycle();
+        // Capture only: copy what the parser needs and hand it to the worker
+        int eventType = event.getEventType();
+        long realTime = System.currentTimeMillis() - SystemClock.uptimeMillis() + event.getEventTime();
+        CharSequence eventClass = event.getClassName();
+        CapturedEvent captured = new CapturedEvent(eventType, eventClass != null ? eventClass.toString() : null, realTime);
+
+        if (eventType == AccessibilityEvent.TYPE_VIEW_SELECTED ||
+                eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            beginHandleStage("windowState");
+            captureWindowState(event, captured);
+            checkHandles();
+            ScreenState screen = screens.onEvent(eventType, captured.className, captured.sourceDescription);
+            // Null until the first screen is recognised; the capture keeps its OTHER default
+            if (screen != null) captured.screen = screen;
+        } else if (eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED ||
+                eventType == AccessibilityEvent.TYPE_VIEW_SCROLLED) {
+            ScreenState screen = screens.getState();
+            // Stragglers from before the subscription narrowed, or before any screen was recognised
+            if (screen == null || !screen.parsesContent()) return;
+            recordEvent(event.getEventTime(), windowId, eventType);
+            coalescer.offer(windowId);
+            scheduleFlush();
+            return;
         }
+        recordCapture(event.getEventTime(), windowId, captured);
+        worker.submit(captured);
     }
 
-    // Rest of the code remains the same as the corrected version
+    @Override
+    public void onScreenChanged(ScreenState from, ScreenState to) {
+        Log.i(TAG, "Screen " + from + " -> " + to);
+        // Pending bursts and unfinished scans belong to the screen we just left
+        coalescer.clear();
+        flushHandler.removeCallbacks(flushTask);
+        flushHandler.removeCallbacks(deferredScan);
+        abandonWalks();
 
-    private String findChatId(AccessibilityNodeInfo root) {
-        List<AccessibilityNodeInfo> nodes = root.findAccessibilityNodeInfosByViewId("com.whatsapp:id/conversation_contact_name");
-        if (!nodes.isEmpty()) {
-            CharSequence name = nodes.get(0).getText();
-            nodes.get(0).recycle();
-            return name != null ? name.toString() : null;
-        }
+        AccessibilityServiceInfo info = getServiceInfo();
+        if (info == null) return;
+        info.eventTypes = to.eventTypes;
+        info.notificationTimeout = to.notificationTimeoutMs;
+        setServiceInfo(info);
+    }
 
-        nodes = findNodesByClassName(root, "android.widget.TextView");
-        for (AccessibilityNodeInfo node : nodes) {
-            CharSequence text = node.getText();
-            if (text != null) {
-                String textStr = text.toString();
-                if (textStr.contains(",") && PHONE_PATTERN.matcher(textStr).find()) {
-                    node.recycle();
-                    return textStr;
-                } else if (textStr.startsWith("+") || textStr.matches(".*admissions.*")) {
-                    String result = textStr;
-                    node.recycle();
-                    return result;
-                }
-            }
-            node.recycle();
+    private void scheduleFlush() {
+        long due = coalescer.nextDueTime();
+        flushHandler.removeCallbacks(flushTask);
+        if (due != EventCoalescer.NO_DEADLINE) {
+            flushHandler.postAtTime(flushTask, due);
         }
-        return null;
     }
 
-    private boolean detectGroupChat(AccessibilityNodeInfo root) {
-        List<AccessibilityNodeInfo> buttons = root.findAccessibilityNodeInfosByText("GROUP INFO");
-        if (!buttons.isEmpty()) {
-            buttons.get(0).recycle();
-            return true;
-        }
-        List<AccessibilityNodeInfo> nodes = findNodesByClassName(root, "android.widget.TextView");
-        for (AccessibilityNodeInfo node : nodes) {
-            CharSequence text = node.getText();
-            if (text != null && text.toString().contains(",") && PHONE_PATTERN.matcher(text.toString()).find()) {
-                node.recycle();
-                return true;
+    private void flushCoalescedContent() {
+        List<EventCoalescer.Burst> bursts = coalescer.pollDue();
+        for (int i = 0; i < bursts.size(); i++) {
+            EventCoalescer.Burst burst = bursts.get(i);
+            long realTime = System.currentTimeMillis() - SystemClock.uptimeMillis() + burst.lastEventAt;
+            CapturedEvent captured = new CapturedEvent(AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, null, realTime);
+            captured.absorbedEvents = burst.absorbedEvents;
+            captured.screen = screens.getState();
+            if (captured.screen == ScreenState.CONVERSATION && deferIfCovered(burst.windowId)) {
+                continue;
             }
-            node.recycle();
+            beginHandleStage(captured.screen.name());
+            captureContent(burst.windowId, captured);
+            checkHandles();
+            recordCapture(SystemClock.uptimeMillis(), burst.windowId, captured);
+            worker.submit(captured);
         }
-        return false;
+        scheduleFlush();
     }
 
-    private List<AccessibilityNodeInfo> findNodesByClassName(AccessibilityNodeInfo root, String className) {
-        List<AccessibilityNodeInfo> result = new ArrayList<>();
-        if (root == null) return result;
+    /**
+     * Holds off scanning a conversation whose messages just came in through notifications, and
+     * scans it once when that coverage lapses, for what notifications never carry.
+     *
+     * @return {@code true} if the scan was deferred
+     */
+    private boolean deferIfCovered(int windowId) {
+        long remaining = coverage.remainingMs(currentChatTitle, System.currentTimeMillis());
+        if (remaining <= 0) return false;
+        scansDeferred++;
+        deferredScanWindowId = windowId;
+        flushHandler.removeCallbacks(deferredScan);
+        flushHandler.postDelayed(deferredScan, remaining);
+        return true;
+    }
 
-        if (className.equals(root.getClassName())) {
-            result.add(root);
-        }
+    private void runDeferredScan() {
+        coalescer.offer(deferredScanWindowId);
+        scheduleFlush();
+    }
 
-        for (int i = 0; i < root.getChildCount(); i++) {
-            AccessibilityNodeInfo child = root.getChild(i);
-            if (child != null) {
-                result.addAll(findNodesByClassName(child, className));
-                child.recycle();
+    private void captureWindowState(AccessibilityEvent event, CapturedEvent captured) {
+        AccessibilityNodeInfo source = track(event.getSource(), "windowState.getSource");
+        if (source == null) {
+            captured.sourceMissing = true;
+            return;
+        }
+        CharSequence contentDesc = source.getContentDescription();
+        captured.sourceDescription = contentDesc != null ? contentDesc.toString() : null;
+
+        if (captured.eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED &&
+                "com.whatsapp.Conversation".equals(captured.className)) {
+            // The source may be just the part of the window that changed; read the toolbar from the root
+            AccessibilityNodeInfo root = rootOf(event.getWindowId());
+            if (root != null) {
+                recycle(source, "windowState");
+                source = root;
+            }
+            List<AccessibilityNodeInfo> buttons = trackAll(source.findAccessibilityNodeInfosByText("GROUP INFO"), "groupInfoButton");
+            captured.hasGroupInfoButton = !buttons.isEmpty();
+            recycleAll(buttons, "groupInfoButton");
+
+            AccessibilityNodeInfo title = selectors.findFirst(selectorNodes, source,
+                    ViewIdSelectorRegistry.Role.CONTACT_TITLE);
+            FlatSnapshot.Builder header = new FlatSnapshot.Builder();
+            if (title != null) {
+                // The toolbar title and subtitle are all findChatId/detectGroupChat need
+                CharSequence name = title.getText();
+                captured.contactNameById = name != null ? name.toString() : null;
+                currentChatTitle = captured.contactNameById;
+                addAndRecycle(header, title);
+                addAndRecycle(header, selectors.findFirst(selectorNodes, source,
+                        ViewIdSelectorRegistry.Role.CONTACT_STATUS));
+            } else {
+                currentChatTitle = null;
+                titleWalker.walk(source);
+                List<String> texts = titleTexts.getTexts();
+                for (int i = 0; i < texts.size(); i++) {
+                    header.add(FlatSnapshot.NONE, NodeCollectors.CLASS_TEXT_VIEW, texts.get(i), null, null);
+                }
+                // A window change is a one-off; what did not fit in the budget is not coming back
+                captured.incomplete = recordOverrun(titleWalker, ScreenState.CONVERSATION);
+                titleWalker.abandon();
             }
+            captured.header = header.build();
         }
-        return result;
+        recycle(source, "windowState");
     }
 
-    private void processChatContent(AccessibilityNodeInfo root) {
-        List<AccessibilityNodeInfo> listViews = findNodesByClassName(root, "android.widget.ListView");
-        if (listViews.isEmpty()) {
-            Log.w(TAG, "No ListView found in node tree");
+    private void captureContent(int windowId, CapturedEvent captured) {
+        // The events of the burst are gone by now; re-read the window they came from
+        AccessibilityNodeInfo source = rootOf(windowId);
+        if (source == null) {
+            Log.v(TAG, "Window " + windowId + " is gone, dropping " + captured.absorbedEvents + " coalesced events");
+            captured.sourceMissing = true;
             return;
         }
-
-        AccessibilityNodeInfo listView = listViews.get(0);
-        JSONArray messages = new JSONArray();
-
-        int childCount = listView.getChildCount();
-        Log.v(TAG, "Processing ListView with " + childCount + " children");
-        for (int i = 0; i < childCount; i++) {
-            AccessibilityNodeInfo child = listView.getChild(i);
-            if (child == null) continue;
-
-            JSONObject item = parseNode(child);
-            if (item != null) {
-                messages.put(item);
-            }
-            child.recycle();
+        switch (captured.screen) {
+            case CONVERSATION:
+                captured.chatList = snapshotAndRecycle(findContainer(source, captured, ViewIdSelectorRegistry.Role.CONVERSATION_LIST,
+                        conversationWalker, chatList));
+                break;
+            case CALLS_TAB:
+                captured.callList = snapshotAndRecycle(findContainer(source, captured, ViewIdSelectorRegistry.Role.CALL_LIST,
+                        callsTabWalker, callList));
+                break;
+            case ACTIVE_CALL:
+                captured.callButtonDescriptions = findCallButtons(source, captured);
+                break;
+            default:
+                break;
         }
+        recycle(source, "content");
+    }
 
-        listView.recycle();
-        for (AccessibilityNodeInfo node : listViews) {
-            node.recycle();
+    /** Looks the container up by its learned view id, scanning by class name (and learning) on a miss. */
+    private AccessibilityNodeInfo findContainer(AccessibilityNodeInfo source, CapturedEvent captured,
+                                                ViewIdSelectorRegistry.Role role,
+                                                NodeTreeWalker<AccessibilityNodeInfo> fallback,
+                                                NodeCollectors.ListContainerCollector<AccessibilityNodeInfo> collector) {
+        AccessibilityNodeInfo container = selectors.findFirst(selectorNodes, source, role);
+        if (container != null) return container;
+        fallbackWalk(fallback, source, captured);
+        container = collector.take();
+        if (container != null) {
+            // Found it; the rest of an interrupted scan is not needed
+            fallback.abandon();
+            selectors.learn(role, container.getViewIdResourceName());
         }
+        return container;
+    }
 
-        if (messages.length() > 0) {
-            logStructuredData(messages);
-        } else {
-            Log.w(TAG, "No messages parsed from ListView");
+    private List<String> findCallButtons(AccessibilityNodeInfo source, CapturedEvent captured) {
+        List<AccessibilityNodeInfo> buttons = selectors.findAll(selectorNodes, source,
+                ViewIdSelectorRegistry.Role.CALL_BUTTON);
+        if (buttons.isEmpty()) {
+            fallbackWalk(activeCallWalker, source, captured);
+            selectors.learn(ViewIdSelectorRegistry.Role.CALL_BUTTON, callButtons.getViewId());
+            return callButtons.takeDescriptions();
         }
+        List<String> descriptions = new ArrayList<>(1);
+        for (int i = 0; i < buttons.size(); i++) {
+            CharSequence desc = buttons.get(i).getContentDescription();
+            if (NodeCollectors.isCallButtonDescription(desc)) {
+                descriptions.add(desc.toString());
+            }
+        }
+        recycleAll(buttons, "callButtons");
+        return descriptions;
     }
 
-    private void processCallContent(AccessibilityNodeInfo root) {
-        List<AccessibilityNodeInfo> recyclerViews = findNodesByClassName(root, "androidx.recyclerview.widget.RecyclerView");
-        if (recyclerViews.isEmpty()) {
-            Log.w(TAG, "No RecyclerView found in node tree");
-            return;
+    /** Rebuilds the set of WhatsApp application windows from the current window list. */
+    @SuppressWarnings("deprecation")
+    private void refreshTargetWindows() {
+        for (int i = 0; i < targetWindows.size(); i++) {
+            targetWindows.get(i).recycle();
         }
-
-        AccessibilityNodeInfo recyclerView = recyclerViews.get(0);
-        JSONArray calls = new JSONArray();
-
-        int childCount = recyclerView.getChildCount();
-        Log.v(TAG, "Processing RecyclerView with " + childCount + " children");
-        for (int i = 0; i < childCount; i++) {
-            AccessibilityNodeInfo child = recyclerView.getChild(i);
-            if (child == null) continue;
-
-            JSONObject callItem = parseCallNode(child);
-            if (callItem != null) {
-                calls.put(callItem);
+        targetWindows.clear();
+        beginHandleStage("windows");
+        targetWindowIds.begin();
+        List<AccessibilityWindowInfo> windows = getWindows();
+        for (int i = 0; i < windows.size(); i++) {
+            AccessibilityWindowInfo window = windows.get(i);
+            if (window.getType() == AccessibilityWindowInfo.TYPE_APPLICATION && isWhatsAppWindow(window)) {
+                targetWindows.add(window);
+                targetWindowIds.add(window.getId());
+            } else {
+                window.recycle();
             }
-            child.recycle();
         }
+        targetWindowIds.commit();
+        checkHandles();
+    }
+
+    private boolean isWhatsAppWindow(AccessibilityWindowInfo window) {
+        AccessibilityNodeInfo root = track(window.getRoot(), "isWhatsAppWindow");
+        if (root == null) return false;
+        CharSequence packageName = root.getPackageName();
+        boolean whatsApp = packageName != null && WHATSAPP_PACKAGE.contentEquals(packageName);
+        recycle(root, "isWhatsAppWindow");
+        return whatsApp;
+    }
 
-        recyclerView.recycle();
-        for (AccessibilityNodeInfo node : recyclerViews) {
-            node.recycle();
+    /** Root of a tracked WhatsApp window, owned by the caller, or {@code null} if it is gone. */
+    private AccessibilityNodeInfo rootOf(int windowId) {
+        for (int i = 0; i < targetWindows.size(); i++) {
+            AccessibilityWindowInfo window = targetWindows.get(i);
+            if (window.getId() == windowId) {
+                return track(window.getRoot(), "rootOf");
+            }
         }
+        return null;
+    }
 
-        if (calls.length() > 0) {
-            logStructuredCallData(calls);
+    /** Runs or resumes a budgeted scan of the window and marks the capture if it did not finish. */
+    private void fallbackWalk(NodeTreeWalker<AccessibilityNodeInfo> walker, AccessibilityNodeInfo source, CapturedEvent captured) {
+        int windowId = source.getWindowId();
+        if (!walker.isComplete() && windowId == pendingWalkWindowId) {
+            walker.resume();
         } else {
-            Log.w(TAG, "No calls parsed from RecyclerView");
+            walker.walk(source);
         }
+        pendingWalkWindowId = windowId;
+        captured.incomplete = recordOverrun(walker, captured.screen);
     }
 
-    private JSONObject parseNode(AccessibilityNodeInfo node) {
-        String className = node.getClassName().toString();
-        JSONObject result = new JSONObject();
+    /** @return whether the walker's last pass ran out of budget */
+    private boolean recordOverrun(NodeTreeWalker<AccessibilityNodeInfo> walker, ScreenState screen) {
+        if (walker.getLastStop() == NodeTreeWalker.Stop.COMPLETE) return false;
+        walkOverruns[screen.ordinal()]++;
+        return true;
+    }
 
-        try {
-            result.put("chat_id", currentChatId != null ? currentChatId : "Unknown");
-            result.put("is_group", isGroupChat);
-            result.put("timestamp", timeFormat.format(new Date()));
+    private void abandonWalks() {
+        conversationWalker.abandon();
+        callsTabWalker.abandon();
+        activeCallWalker.abandon();
+        pendingWalkWindowId = -1;
+    }
 
-            if (className.equals("android.widget.TextView")) {
-                CharSequence text = node.getText();
-                if (text == null) return null;
-                String textStr = text.toString().trim();
+    private String walkOverrunStats() {
+        StringBuilder sb = new StringBuilder();
+        for (ScreenState screen : ScreenState.values()) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(screen.name()).append('=').append(walkOverruns[screen.ordinal()]);
+        }
+        return sb.toString();
+    }
 
-                if (textStr.equals("Today") || textStr.equals("Yesterday") || textStr.contains("end-to-end encrypted")) {
-                    return null;
-                }
-                if (textStr.contains("unread messages")) {
-                    result.put("unread_count", textStr.replaceAll("\\D+", ""));
-                    return result;
-                }
-                if (TIME_PATTERN.matcher(textStr).matches()) {
-                    return null;
-                }
+    /** Copies the node, if any, into the snapshot as another root and recycles it. */
+    private void addAndRecycle(FlatSnapshot.Builder snapshot, AccessibilityNodeInfo node) {
+        if (node == null) return;
+        snapshot.add(snapshotNodes, node, FlatSnapshot.NONE);
+        recycle(node, "header");
+    }
 
-                result.put("message", textStr);
-                result.put("is_sent", false);
-                return result;
-
-            } else if (className.equals("android.widget.Button") || className.equals("android.view.ViewGroup")) {
-                CharSequence text = node.getText();
-                if (text != null) {
-                    String textStr = text.toString().trim();
-                    if (textStr.contains("added you") || textStr.contains("changed the group name") || textStr.contains("call")) {
-                        result.put(isGroupChat ? "system_message" : "call_info", textStr);
-                        return result;
-                    }
-                }
+    private FlatSnapshot snapshotAndRecycle(AccessibilityNodeInfo container) {
+        if (container == null) return null;
+        FlatSnapshot snapshot = FlatSnapshot.capture(snapshotNodes, container, ROW_SNAPSHOT_DEPTH);
+        recycle(container, "container");
+        return snapshot;
+    }
 
-            } else if (className.equals("android.widget.ImageView") && node.getContentDescription() != null) {
-                String desc = node.getContentDescription().toString().trim();
-                if (desc.equals("Delivered") || desc.equals("Read") || desc.equals("Sent")) {
-                    return null;
-                }
-            }
+    private void recycleAll(List<AccessibilityNodeInfo> nodes, String site) {
+        for (int i = 0; i < nodes.size(); i++) {
+            recycle(nodes.get(i), site);
+        }
+    }
 
-            int childCount = node.getChildCount();
-            StringBuilder messageText = new StringBuilder();
-            String timestamp = null;
-            String status = null;
-            boolean isSent = false;
-            String sender = null;
-
-            for (int i = 0; i < childCount; i++) {
-                AccessibilityNodeInfo child = node.getChild(i);
-                if (child == null) continue;
-
-                String childClass = child.getClassName().toString();
-                CharSequence childText = child.getText();
-                CharSequence childDesc = child.getContentDescription();
-
-                if (childClass.equals("android.widget.TextView") && childText != null) {
-                    String textStr = childText.toString().trim();
-                    if (TIME_PATTERN.matcher(textStr).matches()) {
-                        timestamp = textStr;
-                    } else if (textStr.startsWith("~ ") || textStr.startsWith("+") || (childDesc != null && childDesc.toString().contains("Maybe"))) {
-                        sender = textStr.replace("~ ", "");
-                    } else if (!textStr.contains("end-to-end encrypted") && !textStr.contains("members") && !textStr.contains("added you") && !textStr.contains("changed the group")) {
-                        messageText.append(textStr).append(" ");
-                    } else if (textStr.contains("members") || textStr.contains("Group created")) {
-                        result.put("group_info", textStr);
-                    }
-                } else if (childClass.equals("android.widget.ImageView") && childDesc != null) {
-                    String desc = childDesc.toString().trim();
-                    if (desc.equals("Delivered") || desc.equals("Read") || desc.equals("Sent")) {
-                        isSent = true;
-                        status = desc;
-                    }
-                } else if (childClass.equals("android.widget.Button") && childText != null) {
-                    String btnText = childText.toString().trim();
-                    if (btnText.equals("GROUP INFO") || btnText.equals("ADD MEMBERS")) {
-                        isGroupChat = true;
-                    }
-                }
+    /** The node adapter for one call site: tracked in debug builds, the plain adapter in release. */
+    private NodeAdapter<AccessibilityNodeInfo> nodes(String site) {
+        return BuildConfig.DEBUG
+                ? new TrackingNodeAdapter<>(AccessibilityNodeAdapter.INSTANCE, handles, site)
+                : AccessibilityNodeAdapter.INSTANCE;
+    }
 
-                child.recycle();
-            }
+    /** Registers a handle obtained straight from the framework rather than through an adapter. */
+    private AccessibilityNodeInfo track(AccessibilityNodeInfo node, String site) {
+        if (BuildConfig.DEBUG) handles.obtained(node, site);
+        return node;
+    }
 
-            if (messageText.length() > 0 || result.has("group_info")) {
-                if (messageText.length() > 0) {
-                    result.put("message", messageText.toString().trim());
-                    result.put("is_sent", isSent);
-                    if (timestamp != null) result.put("message_timestamp", timestamp);
-                    if (status != null) result.put("status", status);
-                    if (sender != null) result.put("sender", sender);
-                }
-                return result;
+    private List<AccessibilityNodeInfo> trackAll(List<AccessibilityNodeInfo> nodes, String site) {
+        if (BuildConfig.DEBUG) {
+            for (int i = 0; i < nodes.size(); i++) {
+                handles.obtained(nodes.get(i), site);
             }
-
-        } catch (Exception e) {
-            Log.e(TAG, "JSON error: " + e.getMessage());
         }
-        return null;
+        return nodes;
     }
 
-    private JSONObject parseCallNode(AccessibilityNodeInfo node) {
-        JSONObject result = new JSONObject();
-
-        try {
-            result.put("timestamp", timeFormat.format(new Date()));
-            int childCount = node.getChildCount();
-            String name = null;
-            String phoneNumber = null;
-            String callType = null;
-            String callTimestamp = null;
-
-            for (int i = 0; i < childCount; i++) {
-                AccessibilityNodeInfo child = node.getChild(i);
-                if (child == null) continue;
-
-                String childClass = child.getClassName().toString();
-                CharSequence childText = child.getText();
-                CharSequence childDesc = child.getContentDescription();
-
-                if (childClass.equals("android.widget.TextView") && childText != null) {
-                    String textStr = childText.toString().trim();
-                    Matcher matcher = PHONE_PATTERN.matcher(textStr);
-                    if (matcher.matches()) {
-                        phoneNumber = textStr;
-                    } else if (textStr.startsWith("~ ")) {
-                        name = textStr.substring(2).trim(); // Remove "~ " prefix
-                    } else if (!textStr.equals("Favourites") && !textStr.equals("Recent") && !textStr.equals("Add favourite")) {
-                        callTimestamp = textStr;
-                    }
-                } else if (childClass.equals("android.widget.ImageView") && childDesc != null) {
-                    String desc = childDesc.toString().trim();
-                    if (desc.contains("Outgoing") || desc.contains("Incoming") || desc.contains("Missed")) {
-                        callType = desc;
-                    } else if (desc.contains("View") && desc.contains("profile")) {
-                        // Extract phone from profile desc if needed, e.g., "View +91 93061 84110 profile"
-                        Matcher matcher = PHONE_PATTERN.matcher(desc);
-                        if (matcher.find()) {
-                            phoneNumber = matcher.group(0);
-                        }
-                    }
-                }
-
-                child.recycle();
-            }
+    private void recycle(AccessibilityNodeInfo node, String site) {
+        // Debug builds report a second recycle instead of letting it corrupt the node pool
+        if (BuildConfig.DEBUG && !handles.recycled(node, site)) return;
+        node.recycle();
+    }
 
-            // Only return if valid call data is found
-            if (phoneNumber != null || name != null || callType != null) {
-                if (name != null) result.put("name", name);
-                if (phoneNumber != null) result.put("phone_number", phoneNumber);
-                if (callType != null) result.put("call_type", callType);
-                if (callTimestamp != null) result.put("call_timestamp", callTimestamp);
-                return result;
-            }
+    private void beginHandleStage(String stage) {
+        if (BuildConfig.DEBUG) handles.setStage(stage);
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "JSON error in parseCallNode: " + e.getMessage());
+    /** Debug builds: collects leaked handles and logs whenever a new problem has turned up. */
+    private void checkHandles() {
+        if (!BuildConfig.DEBUG) return;
+        handles.pollLeaks();
+        long problems = handles.getTotal().getProblems();
+        if (problems != handleProblemsReported) {
+            handleProblemsReported = problems;
+            Log.w(TAG, "Node handle problem: " + handles.getLastProblem() + "\n" + handles.report());
         }
-        return null;
     }
 
-    private void logStructuredData(JSONArray messages) {
-        try {
-            JSONObject logEntry = new JSONObject();
-            logEntry.put("event_id", eventCounter);
-            logEntry.put("timestamp", timeFormat.format(new Date()));
-            logEntry.put("chat_id", currentChatId != null ? currentChatId : "Unknown");
-            logEntry.put("is_group", isGroupChat);
-            logEntry.put("items", messages);
-            Log.i(TAG, "Structured Log (Chat): " + logEntry.toString(2));
-        } catch (Exception e) {
-            Log.e(TAG, "JSON formatting error: " + e.getMessage());
+    @Override
+    public void onInterrupt() {
+        Log.i(TAG, "🔴 WHATSAPP ACCESSIBILITY SERVICE INTERRUPTED");
+        Log.i(TAG, "Capture queue: " + worker.getQueue().stats());
+        Log.i(TAG, "View id selectors: " + selectors.stats());
+        Log.i(TAG, "Screen " + screens.getState() + " after " + screens.getTransitions() + " transitions");
+        Log.i(TAG, "Traversal budget overruns: " + walkOverrunStats());
+        Log.i(TAG, "Target windows: " + targetWindowIds.stats());
+        Log.i(TAG, "Capture writer: " + captureStore.getWriteBehind().stats());
+        Log.i(TAG, "Conversation scans deferred to notification coverage: " + scansDeferred);
+        if (BuildConfig.DEBUG) {
+            Log.i(TAG, "Node handles: " + handles.report());
         }
     }
 
-    private void logStructuredCallData(JSONArray calls) {
-        try {
-            JSONObject logEntry = new JSONObject();
-            logEntry.put("event_id", eventCounter);
-            logEntry.put("timestamp", timeFormat.format(new Date()));
-            logEntry.put("type", "calls");
-            logEntry.put("items", calls);
-            Log.i(TAG, "Structured Log (Calls): " + logEntry.toString(2));
-        } catch (Exception e) {
-            Log.e(TAG, "JSON formatting error: " + e.getMessage());
+    @Override
+    public void onDestroy() {
+        flushHandler.removeCallbacks(flushTask);
+        flushHandler.removeCallbacks(deferredScan);
+        coalescer.clear();
+        Log.i(TAG, "Capture queue at shutdown: " + worker.getQueue().stats() + ", coalescer: " + coalescer.stats());
+        Log.i(TAG, "View id selectors: " + selectors.stats());
+        Log.i(TAG, "Traversal budget overruns: " + walkOverrunStats());
+        abandonWalks();
+        Log.i(TAG, "Target windows: " + targetWindowIds.stats());
+        if (BuildConfig.DEBUG) {
+            handles.pollLeaks();
+            Log.i(TAG, "Node handles at shutdown: " + handles.report());
         }
+        stopRecording(null);
+        worker.getHandler().post(parser::persist);
+        // Queued after everything already submitted, so the last parsed rows make the final flush
+        worker.getHandler().post(this::closeCaptureStore);
+        worker.quit();
+        super.onDestroy();
     }
 
-    private String getEventTypeName(int eventType) {
-        switch (eventType) {
-            case AccessibilityEvent.TYPE_VIEW_CLICKED: return "VIEW_CLICKED";
-            case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED: return "WINDOW_STATE_CHANGED";
-            case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED: return "WINDOW_CONTENT_CHANGED";
-            case AccessibilityEvent.TYPE_VIEW_SCROLLED: return "VIEW_SCROLLED";
-            case AccessibilityEvent.TYPE_VIEW_SELECTED: return "VIEW_SELECTED";
-            case AccessibilityEvent.TYPE_VIEW_FOCUSED: return "VIEW_FOCUSED";
-            case AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED: return "VIEW_TEXT_CHANGED";
-            default: return "UNKNOWN_" + eventType;
+    /** Runs on the worker: flushes the rows it parsed and stops the writer. */
+    private void closeCaptureStore() {
+        WriteBehindBuffer<Object> writeBehind = captureStore.getWriteBehind();
+        if (!CaptureStore.release(captureStore)) {
+            Log.w(TAG, "Final capture flush did not finish, " + writeBehind.pendingRows() + " rows left to the journal");
         }
+        Log.i(TAG, "Capture writer: " + writeBehind.stats() + "; " + captureStore.internStats());
     }
 
-    @Override
-    public void onInterrupt() {
-        Log.i(TAG, "🔴 WHATSAPP ACCESSIBILITY SERVICE INTERRUPTED");
-        Log.i(TAG, "Total events captured: " + eventCounter);
+    private static final class PreferencesSelectorStore implements ViewIdSelectorRegistry.Store {
+        private final SharedPreferences prefs;
+
+        PreferencesSelectorStore(SharedPreferences prefs) {
+            this.prefs = prefs;
+        }
+
+        @Override
+        public String get(String key) {
+            return prefs.getString(key, null);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            prefs.edit().putString(key, value).apply();
+        }
+
+        @Override
+        public void clear() {
+            prefs.edit().clear().apply();
+        }
     }
 
     public static boolean isAccessibilityServiceEnabled(Context context) {
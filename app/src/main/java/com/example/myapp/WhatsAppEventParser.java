@@ -0,0 +1,286 @@
+package com.example.myapp;
+
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Turns {@link CapturedEvent}s into structured log entries. Runs on the capture worker thread and
+ * owns the {@link CaptureState}, so none of the conversation state is shared with the main thread.
+ */
+public class WhatsAppEventParser implements CaptureWorker.Processor<CapturedEvent> {
+    private static final String TAG = "WhatsAppStructuredLog";
+    // Persist the seen-message index after this many new rows, so a crash re-emits at most that many
+    private static final int SEEN_INDEX_SAVE_INTERVAL = 50;
+
+    /** Receives rows for persistence. Called on the capture worker thread, so it must not block. */
+    public interface RowSink {
+        /** A chat row emitted for the first time; {@code fingerprint} is its seen-message fingerprint. */
+        void onMessage(ChatMessage message, long fingerprint);
+
+        /** A Calls tab row; the tab is re-emitted whole, so the sink de-duplicates. */
+        void onCall(CallEntry call);
+    }
+
+    private final CaptureState state = new CaptureState();
+    private final SeenMessageIndex seenMessages = new SeenMessageIndex(200, 500);
+    private final File seenIndexFile;
+    private final WhatsAppScreenParser screenParser;
+    private final RowParseCache<ChatMessage> chatRows;
+    private final RowParseCache<CallEntry> callRows;
+    private final TimestampFormatter timestamps = new TimestampFormatter();
+    private final NdjsonWriter writer = new NdjsonWriter(4096, timestamps);
+    /** Wall-clock time of the event being processed; stamped on every record it produces. */
+    private long eventTime;
+    private final LogEnvelope envelope = new LogEnvelope();
+    private long chatRowsParsed;
+    private long recordsEmitted;
+    private long itemsEmitted;
+    private RowSink rowSink;
+
+    /**
+     * @param seenIndexFile where to persist already-emitted rows, or {@code null} to keep them in memory only
+     * @param classifier    phrase rules for the current locale
+     */
+    public WhatsAppEventParser(File seenIndexFile, TextClassifier classifier) {
+        this(seenIndexFile, classifier, true);
+    }
+
+    WhatsAppEventParser(File seenIndexFile, TextClassifier classifier, boolean cacheRows) {
+        this.seenIndexFile = seenIndexFile;
+        this.screenParser = new WhatsAppScreenParser(classifier);
+        this.chatRows = cacheRows ? new RowParseCache<ChatMessage>() : null;
+        this.callRows = cacheRows ? new RowParseCache<CallEntry>() : null;
+    }
+
+    /** Sets where new rows are persisted besides the log, or {@code null} for the log only. */
+    public void setRowSink(RowSink rowSink) {
+        this.rowSink = rowSink;
+    }
+
+    /** Loads the persisted seen-message index. Call on the worker before the first event. */
+    public void restore() {
+        if (seenIndexFile == null) return;
+        try {
+            seenMessages.load(seenIndexFile);
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable seen-message index: " + e.getMessage());
+        }
+    }
+
+    /** Saves the seen-message index if anything changed since the last save. */
+    public void persist() {
+        if (seenIndexFile == null || seenMessages.getChangesSinceSave() == 0) return;
+        try {
+            seenMessages.save(seenIndexFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save seen-message index: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void process(CapturedEvent event) {
+        int eventId = state.nextEventId();
+        eventTime = event.realTime;
+        Log.v(TAG, "Event #" + eventId + " [" + timestamps.format(eventTime) + "] Type: " + getEventTypeName(event.eventType));
+
+        // Handle chat open
+        if (event.eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED &&
+                "com.whatsapp.Conversation".equals(event.className)) {
+            if (event.sourceMissing) {
+                Log.w(TAG, "Source node is null for WINDOW_STATE_CHANGED");
+                return;
+            }
+            state.setCurrentChatId(screenParser.findChatId(event.contactNameById, event.header));
+            state.setGroupChat(screenParser.detectGroupChat(event.hasGroupInfoButton, event.header));
+            Log.i(TAG, "Chat opened: " + (state.isGroupChat() ? "Group" : "Private") + " - " + (state.getCurrentChatId() != null ? state.getCurrentChatId() : "Unknown"));
+        }
+
+        // Process content changes
+        if (event.eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED ||
+                event.eventType == AccessibilityEvent.TYPE_VIEW_SCROLLED) {
+            if (event.sourceMissing) {
+                Log.w(TAG, "Source node is null for event type: " + getEventTypeName(event.eventType));
+                return;
+            }
+            Log.v(TAG, "Parsing content after " + event.absorbedEvents + " coalesced events");
+            if (event.incomplete) {
+                Log.d(TAG, "Capture ran out of traversal budget on " + event.screen + ", parsing partial result");
+            }
+            // The capture side only filled in what this screen's parser reads
+            switch (event.screen) {
+                case CONVERSATION:
+                    processChatContent(event.chatList);
+                    break;
+                case CALLS_TAB:
+                    processCallContent(event.callList);
+                    break;
+                case ACTIVE_CALL:
+                    processActiveCall(event.callButtonDescriptions);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    public int getEventCounter() {
+        return state.getEventCounter();
+    }
+
+    /** Number of chat rows actually parsed, as opposed to reused from {@link RowParseCache}. */
+    long getChatRowsParsed() {
+        return chatRowsParsed;
+    }
+
+    /** Structured log lines written so far. */
+    long getRecordsEmitted() {
+        return recordsEmitted;
+    }
+
+    /** Messages, calls and active calls written so far, across all log lines. */
+    long getItemsEmitted() {
+        return itemsEmitted;
+    }
+
+    /** Parsed rows dropped because they had already been emitted. */
+    long getDuplicatesSuppressed() {
+        return seenMessages.getDuplicatesSuppressed();
+    }
+
+    private void processActiveCall(List<String> callDescriptions) {
+        for (int i = 0; i < callDescriptions.size(); i++) {
+            emit("Structured Log (Active Call): ", screenParser.parseActiveCall(callDescriptions.get(i), eventTime));
+        }
+    }
+
+    private void processChatContent(FlatSnapshot listView) {
+        if (listView == null) {
+            Log.w(TAG, "No ListView found in node tree");
+            return;
+        }
+
+        int parsed = 0;
+        String chatId = state.getCurrentChatId() != null ? state.getCurrentChatId() : "Unknown";
+        envelope.clear();
+        if (chatRows != null) {
+            chatRows.beginPass(chatId, state.isGroupChat());
+        }
+        Log.v(TAG, "Processing ListView with " + listView.childCount(0) + " children");
+        for (int row = listView.firstChild(0); row != FlatSnapshot.NONE; row = listView.nextSibling(row)) {
+            ChatMessage item;
+            long rowFingerprint = listView.fingerprint(row);
+            if (chatRows != null && chatRows.lookup(rowFingerprint)) {
+                item = chatRows.lastResult();
+            } else {
+                item = screenParser.parseMessageRow(listView, row, chatId, state.isGroupChat(), eventTime);
+                chatRowsParsed++;
+                if (screenParser.sawGroupButton()) {
+                    state.setGroupChat(true);
+                }
+                if (chatRows != null) {
+                    chatRows.put(rowFingerprint, item);
+                }
+            }
+            if (item != null) {
+                parsed++;
+                long fingerprint = SeenMessageIndex.fingerprint(chatId, item.sender, item.identityText(), item.messageTimestamp);
+                if (seenMessages.markSeen(chatId, fingerprint)) {
+                    // A cached row still carries the time of the event that first parsed it
+                    item = item.at(eventTime);
+                    envelope.items.add(item);
+                    if (rowSink != null) {
+                        rowSink.onMessage(item, fingerprint);
+                    }
+                }
+            }
+        }
+
+        if (!envelope.items.isEmpty()) {
+            logStructuredData();
+            if (seenMessages.getChangesSinceSave() >= SEEN_INDEX_SAVE_INTERVAL) {
+                persist();
+            }
+        } else if (parsed > 0) {
+            Log.v(TAG, "All " + parsed + " parsed rows already emitted (" + seenMessages.stats() + ")");
+        } else {
+            Log.w(TAG, "No messages parsed from ListView");
+        }
+    }
+
+    private void processCallContent(FlatSnapshot recyclerView) {
+        if (recyclerView == null) {
+            Log.w(TAG, "No RecyclerView found in node tree");
+            return;
+        }
+
+        envelope.clear();
+        if (callRows != null) {
+            callRows.beginPass(null, false);
+        }
+        Log.v(TAG, "Processing RecyclerView with " + recyclerView.childCount(0) + " children");
+        for (int row = recyclerView.firstChild(0); row != FlatSnapshot.NONE; row = recyclerView.nextSibling(row)) {
+            CallEntry callItem;
+            long rowFingerprint = recyclerView.fingerprint(row);
+            if (callRows != null && callRows.lookup(rowFingerprint)) {
+                callItem = callRows.lastResult();
+            } else {
+                callItem = screenParser.parseCallRow(recyclerView, row, eventTime);
+                if (callRows != null) {
+                    callRows.put(rowFingerprint, callItem);
+                }
+            }
+            if (callItem != null) {
+                // Every visible call is emitted on every event; stamp it with this one
+                callItem = callItem.at(eventTime);
+                envelope.items.add(callItem);
+                if (rowSink != null) {
+                    rowSink.onCall(callItem);
+                }
+            }
+        }
+
+        if (!envelope.items.isEmpty()) {
+            logStructuredCallData();
+        } else {
+            Log.w(TAG, "No calls parsed from RecyclerView");
+        }
+    }
+
+    private void logStructuredData() {
+        envelope.eventId = state.getEventCounter();
+        envelope.timestamp = eventTime;
+        envelope.chatId = state.getCurrentChatId() != null ? state.getCurrentChatId() : "Unknown";
+        envelope.isGroup = state.isGroupChat();
+        emit("Structured Log (Chat): ", envelope);
+    }
+
+    private void logStructuredCallData() {
+        envelope.eventId = state.getEventCounter();
+        envelope.timestamp = eventTime;
+        envelope.type = LogEnvelope.TYPE_CALLS;
+        emit("Structured Log (Calls): ", envelope);
+    }
+
+    /** Writes one NDJSON line into the reused buffer; the final String is the only allocation. */
+    private void emit(String prefix, JsonRecord record) {
+        recordsEmitted++;
+        itemsEmitted += record == envelope ? envelope.items.size() : 1;
+        Log.i(TAG, writer.reset().raw(prefix).record(record).buffer().toString());
+    }
+
+    static String getEventTypeName(int eventType) {
+        switch (eventType) {
+            case AccessibilityEvent.TYPE_VIEW_CLICKED: return "VIEW_CLICKED";
+            case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED: return "WINDOW_STATE_CHANGED";
+            case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED: return "WINDOW_CONTENT_CHANGED";
+            case AccessibilityEvent.TYPE_VIEW_SCROLLED: return "VIEW_SCROLLED";
+            case AccessibilityEvent.TYPE_VIEW_SELECTED: return "VIEW_SELECTED";
+            case AccessibilityEvent.TYPE_VIEW_FOCUSED: return "VIEW_FOCUSED";
+            case AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED: return "VIEW_TEXT_CHANGED";
+            default: return "UNKNOWN_" + eventType;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.myapp
+
+import android.util.Log
+import java.io.File
+import java.io.IOException
+import java.util.Locale
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+/**
+ * Write-behind buffer for Room rows. Producers only append to an in-memory batch; a dedicated
+ * writer thread hands each batch to [insert], which should write it in one transaction. A batch is
+ * flushed once it holds [maxBatch] rows, once its oldest row is [maxAgeMs] old, or when the buffer
+ * is [flushNow]ed or [close]d.
+ *
+ * Without a journal, rows still buffered when the process dies are lost. With one, every accepted
+ * row is also appended to it, each batch is committed there once [insert] returns, and rows the
+ * previous process left uncommitted are written again first. A crash between an insert and its
+ * commit writes that batch twice, so [insert] should tolerate repeats.
+ *
+ * [openJournal] runs on the writer thread, since opening allocates and syncs the file and recovery
+ * reads it back; rows offered before it returns are appended to the journal once it has.
+ */
+class WriteBehindBuffer<T>(
+    private val name: String,
+    private val insert: (List<T>) -> Unit,
+    private val maxBatch: Int = DEFAULT_MAX_BATCH,
+    private val maxAgeMs: Long = DEFAULT_MAX_AGE_MS,
+    private val maxPending: Int = DEFAULT_MAX_PENDING,
+    private val openJournal: (() -> CaptureJournal<T>?)? = null
+) {
+    companion object {
+        private const val TAG = "WriteBehindBuffer"
+        const val DEFAULT_MAX_BATCH = 64
+        const val DEFAULT_MAX_AGE_MS = 250L
+        // Half a minute at 200 rows/sec; past that the database is not keeping up
+        const val DEFAULT_MAX_PENDING = 6_000
+
+        /**
+         * An [openJournal] for a journal at [file]; it returns `null`, to buffer in memory only, if
+         * the journal cannot be opened.
+         */
+        fun <T> journalAt(file: File, codec: CaptureJournal.Codec<T>): () -> CaptureJournal<T>? = {
+            try {
+                CaptureJournal(file, CaptureJournal.DEFAULT_CAPACITY_BYTES, codec)
+            } catch (e: IOException) {
+                Log.e(TAG, "Cannot open journal $file, rows are buffered in memory only", e)
+                null
+            }
+        }
+    }
+
+    /** Snapshot of the flush metrics. */
+    class Stats(
+        val flushes: Long,
+        val rowsWritten: Long,
+        val lastFlushSize: Int,
+        val maxFlushSize: Int,
+        val totalFlushNanos: Long,
+        val maxFlushNanos: Long,
+        /** Rows refused because the buffer was full or closed, or whose insert failed. */
+        val rowsDropped: Long,
+        val pending: Int,
+        /** Rows the previous process left in the journal, written again by this one. */
+        val replayed: Int,
+        /** Rows buffered in memory only because the journal was full or could not be opened. */
+        val unjournaled: Long
+    ) {
+        val meanFlushSize: Double get() = if (flushes > 0) rowsWritten.toDouble() / flushes else 0.0
+        val meanFlushNanos: Long get() = if (flushes > 0) totalFlushNanos / flushes else 0
+
+        override fun toString(): String = String.format(
+            Locale.US,
+            "%d rows in %d flushes (mean %.1f, last %d, max %d), flush latency mean=%.2f ms max=%.2f ms; " +
+                "pending=%d dropped=%d replayed=%d unjournaled=%d",
+            rowsWritten, flushes, meanFlushSize, lastFlushSize, maxFlushSize,
+            meanFlushNanos / 1e6, maxFlushNanos / 1e6, pending, rowsDropped, replayed, unjournaled
+        )
+    }
+
+    private val lock = Any()
+    private var buffer = ArrayList<T>(maxBatch)
+    private var oldestAt = 0L
+    private var sizeFlushRequested = false
+    private var closed = false
+    // Set once, on the writer thread, under the lock
+    private var journal: CaptureJournal<T>? = null
+
+    private var flushes = 0L
+    private var rowsWritten = 0L
+    private var lastFlushSize = 0
+    private var maxFlushSize = 0
+    private var totalFlushNanos = 0L
+    private var maxFlushNanos = 0L
+    private var rowsDropped = 0L
+    private var replayed = 0
+    private var unjournaled = 0L
+
+    private val writer = ScheduledThreadPoolExecutor(1) { runnable ->
+        Thread(runnable, name).apply { isDaemon = true }
+    }.apply {
+        // Pending age timers have nothing left to do once close() has flushed
+        executeExistingDelayedTasksAfterShutdownPolicy = false
+    }
+    private val timedFlush = Runnable { flush(force = false) }
+    private val forcedFlush = Runnable { flush(force = true) }
+
+    init {
+        // The writer's first task, so no flush runs before the recovered rows are buffered
+        if (openJournal != null) writer.execute { startJournal(openJournal) }
+    }
+
+    /** Buffers [row]; never touches the database, so it is safe on the listener or capture thread. */
+    fun offer(row: T) {
+        synchronized(lock) {
+            if (closed || buffer.size >= maxPending) {
+                rowsDropped++
+                return
+            }
+            // Under the lock, so journal order is buffer order and a batch ends at a known position.
+            // Until the journal is open, rows wait in the buffer only; opening it appends them
+            val journal = this.journal
+            if (journal != null && !journal.append(row)) unjournaled++
+            buffer.add(row)
+            if (buffer.size == 1) {
+                oldestAt = System.nanoTime()
+                writer.schedule(timedFlush, maxAgeMs, TimeUnit.MILLISECONDS)
+            }
+            if (buffer.size >= maxBatch && !sizeFlushRequested) {
+                sizeFlushRequested = true
+                writer.execute(timedFlush)
+            }
+        }
+    }
+
+    /** Writes out whatever is buffered without waiting for it. */
+    fun flushNow() {
+        synchronized(lock) {
+            if (closed) return
+            writer.execute(forcedFlush)
+        }
+    }
+
+    /**
+     * Flushes whatever is buffered and stops the writer, waiting up to [timeoutMs] for it. Rows
+     * offered afterwards are dropped.
+     *
+     * @return `false` if the final flush did not finish in time
+     */
+    fun close(timeoutMs: Long = 2_000): Boolean {
+        synchronized(lock) {
+            if (closed) return true
+            closed = true
+            writer.execute(forcedFlush)
+            if (openJournal != null) writer.execute { closeJournal() }
+        }
+        writer.shutdown()
+        return writer.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)
+    }
+
+    /** Rows accepted but not yet committed; without a journal, lost if the process dies now. */
+    fun pendingRows(): Int = synchronized(lock) { buffer.size }
+
+    fun stats(): Stats = synchronized(lock) {
+        Stats(
+            flushes, rowsWritten, lastFlushSize, maxFlushSize, totalFlushNanos, maxFlushNanos,
+            rowsDropped, buffer.size, replayed, unjournaled
+        )
+    }
+
+    private fun flush(force: Boolean) {
+        val batch: ArrayList<T>
+        val journalEnd: Long
+        synchronized(lock) {
+            sizeFlushRequested = false
+            if (buffer.isEmpty()) return
+            // A timer left over from a batch that was already flushed by size
+            if (!force && buffer.size < maxBatch &&
+                System.nanoTime() - oldestAt < TimeUnit.MILLISECONDS.toNanos(maxAgeMs)
+            ) return
+            batch = buffer
+            buffer = ArrayList(maxBatch)
+            journalEnd = journal?.position() ?: 0
+        }
+
+        val start = System.nanoTime()
+        try {
+            insert(batch)
+        } catch (e: RuntimeException) {
+            Log.e(TAG, "$name: dropping ${batch.size} rows, insert failed", e)
+            synchronized(lock) { rowsDropped += batch.size }
+            // Replaying them on the next start would most likely fail the same way
+            journal?.commit(journalEnd)
+            return
+        }
+        val elapsed = System.nanoTime() - start
+        journal?.commit(journalEnd)
+
+        synchronized(lock) {
+            flushes++
+            rowsWritten += batch.size
+            lastFlushSize = batch.size
+            maxFlushSize = maxOf(maxFlushSize, batch.size)
+            totalFlushNanos += elapsed
+            maxFlushNanos = maxOf(maxFlushNanos, elapsed)
+            // Rows that arrived during the insert already have a timer, unless they hit the size limit
+            if (buffer.size >= maxBatch && !sizeFlushRequested && !closed) {
+                sizeFlushRequested = true
+                writer.execute(timedFlush)
+            }
+        }
+    }
+
+    private fun startJournal(open: () -> CaptureJournal<T>?) {
+        val opened = open()
+        val recovered = opened?.takeRecovered() ?: emptyList()
+        synchronized(lock) {
+            if (opened == null) {
+                unjournaled += buffer.size
+                return
+            }
+            for (row in buffer) {
+                if (!opened.append(row)) unjournaled++
+            }
+            journal = opened
+            if (recovered.isNotEmpty()) {
+                Log.i(TAG, "$name: replaying ${recovered.size} rows from $opened")
+                // Ahead of anything offered meanwhile, as the previous process buffered them first
+                buffer.addAll(0, recovered)
+                replayed = recovered.size
+                writer.execute(forcedFlush)
+            }
+        }
+    }
+
+    private fun closeJournal() {
+        try {
+            journal?.close()
+        } catch (e: IOException) {
+            Log.w(TAG, "$name: closing the journal failed", e)
+        }
+    }
+}
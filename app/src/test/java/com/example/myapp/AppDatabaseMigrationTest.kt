@@ -0,0 +1,98 @@
+package com.example.myapp
+
+import android.database.Cursor
+import androidx.room.testing.MigrationTestHelper
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Runs the migrations on databases created from the exported schemas in `app/schemas`, and checks
+ * each result against the schema of the version it migrates to.
+ */
+@RunWith(RobolectricTestRunner::class)
+class AppDatabaseMigrationTest {
+    private val dbName = "migration_test.db"
+    private val migrations = arrayOf(
+        AppDatabase.MIGRATION_1_2,
+        AppDatabase.MIGRATION_2_3,
+        AppDatabase.MIGRATION_3_4,
+        AppDatabase.MIGRATION_4_5,
+        AppDatabase.MIGRATION_5_6
+    )
+
+    @get:Rule
+    val helper = MigrationTestHelper(InstrumentationRegistry.getInstrumentation(), AppDatabase::class.java)
+
+    private fun <T> SupportSQLiteDatabase.column(sql: String, read: (Cursor) -> T): List<T> =
+        query(sql).use { cursor ->
+            val values = ArrayList<T>()
+            while (cursor.moveToNext()) values.add(read(cursor))
+            values
+        }
+
+    @Test
+    fun eachMigrationMatchesTheNextSchema() {
+        for (migration in migrations) {
+            val name = "migration_${migration.startVersion}.db"
+            helper.createDatabase(name, migration.startVersion).close()
+            helper.runMigrationsAndValidate(name, migration.endVersion, true, migration).close()
+        }
+    }
+
+    @Test
+    fun migratesVersionOneKeepingNotifications() {
+        helper.createDatabase(dbName, 1).use { v1 ->
+            v1.execSQL(
+                "INSERT INTO notifications (packageName, title, text, timestamp, isSensitive) " +
+                    "VALUES ('com.whatsapp', 'Ritik Sharma', 'hi', 1700000000000, 0)"
+            )
+        }
+
+        val db = helper.runMigrationsAndValidate(dbName, 6, true, *migrations)
+
+        assertEquals(
+            listOf("com.whatsapp Ritik Sharma"),
+            db.column("SELECT p.name, n.title FROM notifications n JOIN packages p ON p.id = n.package_id") {
+                "${it.getString(0)} ${it.getString(1)}"
+            }
+        )
+        assertEquals(listOf(0L), db.column("SELECT COUNT(*) FROM messages") { it.getLong(0) })
+    }
+
+    @Test
+    fun migratesStringKeyedRowsToLookupIds() {
+        helper.createDatabase(dbName, 4).use { v4 ->
+            v4.execSQL("INSERT INTO chats (chat_id, is_group, captured_at) VALUES ('Family', 1, 20)")
+            v4.execSQL(
+                "INSERT INTO messages (fingerprint, chat_id, is_group, kind, sender, text, is_sent, captured_at) " +
+                    "VALUES (1, 'Family', 1, 'message', 'Ritik', 'hi', 0, 10), " +
+                    "(2, 'Family', 1, 'message', 'Ritik', 'there', 0, 20), " +
+                    "(3, 'Family', 1, 'system', NULL, 'Ritik added you', 0, 5)"
+            )
+            v4.execSQL(
+                "INSERT INTO calls (fingerprint, chat_id, call_type, captured_at) VALUES (4, 'Family', 'Missed', 30), " +
+                    "(5, 'Ritik Sharma', 'Incoming', 30)"
+            )
+        }
+
+        val db = helper.runMigrationsAndValidate(dbName, 5, true, AppDatabase.MIGRATION_4_5)
+
+        val family = db.column("SELECT id FROM chats WHERE name = 'Family'") { it.getLong(0) }.single()
+        val messages = db.column(
+            "SELECT text, sender_id, chat_id FROM messages ORDER BY captured_at"
+        ) { Triple(it.getString(0), if (it.isNull(1)) null else it.getLong(1), it.getLong(2)) }
+        assertEquals(listOf("Ritik added you", "hi", "there"), messages.map { it.first })
+        assertNull(messages[0].second)
+        assertEquals(messages[1].second, messages[2].second)
+        assertEquals(listOf(family), messages.map { it.third }.distinct())
+        // Calls never had chat rows; their contacts get one
+        assertEquals(listOf("Family", "Ritik Sharma"), db.column("SELECT name FROM chats ORDER BY name") { it.getString(0) })
+        assertEquals(listOf(2L), db.column("SELECT COUNT(*) FROM calls") { it.getLong(0) })
+    }
+}
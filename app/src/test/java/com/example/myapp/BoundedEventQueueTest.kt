@@ -0,0 +1,89 @@
+package com.example.myapp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class BoundedEventQueueTest {
+    @Test
+    fun dropsOldestWhenFull() {
+        val queue = BoundedEventQueue<Int>(3)
+
+        (1..3).forEach { assertFalse(queue.offer(it)) }
+        assertTrue(queue.offer(4))
+        assertTrue(queue.offer(5))
+
+        assertEquals(3, queue.poll())
+        assertEquals(4, queue.poll())
+        assertEquals(5, queue.poll())
+        assertNull(queue.poll())
+        assertEquals(5L, queue.enqueued)
+        assertEquals(2L, queue.dropped)
+    }
+
+    @Test
+    fun countsProcessedSeparatelyFromPolled() {
+        val queue = BoundedEventQueue<String>(2)
+        queue.offer("a")
+        queue.poll()
+
+        assertEquals(0L, queue.processed)
+        queue.markProcessed()
+        assertEquals(1L, queue.processed)
+        assertEquals("enqueued=1 dropped=0 processed=1 pending=0", queue.stats())
+    }
+
+    @Test
+    fun producerNeverBlocksUnderContention() {
+        val queue = BoundedEventQueue<Int>(8)
+        val producer = Thread { repeat(10_000) { queue.offer(it) } }
+        var consumed = 0L
+        val consumer = Thread {
+            while (producer.isAlive || queue.size() > 0) {
+                if (queue.poll() != null) consumed++
+            }
+        }
+        producer.start()
+        consumer.start()
+        producer.join()
+        consumer.join()
+
+        assertEquals(10_000L, queue.enqueued)
+        assertEquals(queue.enqueued, consumed + queue.dropped)
+    }
+
+    @Test
+    fun chatOpensSurviveAContentOverflow() {
+        val queue = BoundedEventQueue(4, CapturedEvent.DROP_POLICY)
+        val screen = ConversationFixtures.conversation(0, 3)
+
+        queue.offer(CapturedEvents.chatOpened("Ritik Sharma"))
+        repeat(10) { queue.offer(CapturedEvents.contentChanged(screen)) }
+        queue.offer(CapturedEvents.chatOpened("Family"))
+        repeat(10) { queue.offer(CapturedEvents.contentChanged(screen)) }
+
+        val drained = generateSequence { queue.poll() }.toList()
+        assertEquals(listOf("Ritik Sharma", "Family"), drained.mapNotNull { it.contactNameById })
+        assertEquals(4, drained.size)
+        // Both chat opens, then the newest content of the overflow
+        assertEquals("Family", drained[1].contactNameById)
+        assertTrue(drained.drop(2).all { it.isContentSnapshot })
+        assertEquals(18L, queue.dropped)
+    }
+
+    @Test
+    fun undroppableEntriesGoPastTheCapacity() {
+        val queue = BoundedEventQueue<Int>(2) { it % 2 == 0 }
+        queue.offer(1)
+        queue.offer(3)
+
+        // Nothing queued may go, so a droppable newcomer is dropped and an undroppable one kept
+        assertTrue(queue.offer(2))
+        assertFalse(queue.offer(5))
+
+        assertEquals(listOf(1, 3, 5), generateSequence { queue.poll() }.toList())
+        assertEquals(1L, queue.dropped)
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.myapp
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class CaptureJournalTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private object TextCodec : CaptureJournal.Codec<String> {
+        override fun write(out: DataOutputStream, row: String) = out.writeUTF(row)
+
+        override fun read(input: DataInputStream): String = input.readUTF()
+    }
+
+    private lateinit var file: File
+
+    @Before
+    fun setUp() {
+        file = File(tmp.root, "capture.journal")
+    }
+
+    private fun open(capacity: Int = 64 * 1024) = CaptureJournal(file, capacity, TextCodec)
+
+    private fun row(i: Int) = "Ritik Sharma: message number $i"
+
+    @Test
+    fun replaysWhatWasNeverCommitted() {
+        // Not closed: the process is killed with everything still in the mapping
+        val killed = open()
+        repeat(100) { assertTrue(killed.append(row(it))) }
+
+        val reopened = open()
+
+        assertEquals((0 until 100).map(::row), reopened.takeRecovered())
+        assertFalse(reopened.hadTornTail())
+        assertTrue(reopened.takeRecovered().isEmpty())
+        reopened.close()
+    }
+
+    @Test
+    fun commitMovesThePersistedCursor() {
+        val journal = open()
+        repeat(60) { journal.append(row(it)) }
+        val committed = journal.position()
+        repeat(40) { journal.append(row(60 + it)) }
+        journal.commit(committed)
+
+        val reopened = open()
+
+        assertEquals((60 until 100).map(::row), reopened.takeRecovered())
+        reopened.close()
+    }
+
+    @Test
+    fun tornTailIsDetectedByCrc() {
+        val journal = open()
+        repeat(10) { journal.append(row(it)) }
+        val lastFrame = journal.position()
+        journal.append(row(10))
+        journal.close()
+        // A write cut short in the last frame's payload
+        RandomAccessFile(file, "rw").use { raf ->
+            val payload = CaptureJournal.HEADER_BYTES + lastFrame + CaptureJournal.FRAME_HEADER_BYTES + 6
+            raf.seek(payload)
+            raf.writeByte(raf.readByte().toInt() xor 0x5A)
+        }
+
+        val reopened = open()
+
+        assertEquals((0 until 10).map(::row), reopened.takeRecovered())
+        assertTrue(reopened.hadTornTail())
+        // The torn frame is overwritten by the next append
+        assertTrue(reopened.append(row(99)))
+        reopened.close()
+        assertEquals((0 until 10).map(::row) + row(99), open().takeRecovered())
+    }
+
+    @Test
+    fun wrapsAroundTheRing() {
+        val journal = open(capacity = 4096)
+        var next = 0
+        // Many laps of the ring, draining in batches of 7 and leaving the last 5 uncommitted
+        repeat(200) {
+            repeat(7) { assertTrue(journal.append(row(next++))) }
+            journal.commit(journal.position())
+        }
+        repeat(5) { journal.append(row(next++)) }
+
+        val reopened = open(capacity = 4096)
+
+        assertEquals((next - 5 until next).map(::row), reopened.takeRecovered())
+        assertFalse(reopened.hadTornTail())
+        reopened.close()
+    }
+
+    @Test
+    fun fullRingRefusesUntilCommitted() {
+        val journal = open(capacity = 4096)
+        var appended = 0
+        while (journal.append(row(appended))) appended++
+        assertTrue(appended > 50)
+        assertTrue(journal.usedBytes() <= journal.capacity)
+
+        journal.commit(journal.position())
+
+        assertEquals(0L, journal.usedBytes())
+        assertTrue(journal.append(row(appended)))
+        journal.close()
+    }
+
+    @Test
+    fun keepsItsCapacityAcrossOpens() {
+        open(capacity = 8192).close()
+
+        val reopened = open(capacity = 64 * 1024)
+
+        assertEquals(8192, reopened.capacity)
+        reopened.close()
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.myapp
+
+import android.content.Context
+import androidx.core.app.NotificationCompat
+import androidx.core.app.Person
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.util.Calendar
+
+@RunWith(RobolectricTestRunner::class)
+class CaptureStoreTest {
+    private val dbName = "capture_store_test.db"
+    private lateinit var context: Context
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        context.deleteDatabase(dbName)
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(dbName)
+    }
+
+    private fun message(chatId: String, i: Int) = ChatMessage().apply {
+        this.chatId = chatId
+        isGroup = true
+        timestamp = 1_700_000_000_000L + i
+        message = "message $i"
+        sender = "Ritik"
+        messageTimestamp = "10:${i % 60} am"
+    }
+
+    private fun offerMessages(store: CaptureStore, chatId: String, count: Int) {
+        for (i in 0 until count) {
+            val row = message(chatId, i)
+            store.onMessage(row, SeenMessageIndex.fingerprint(chatId, row.sender, row.identityText(), row.messageTimestamp))
+        }
+    }
+
+    @Test
+    fun batchesRowsAndIgnoresRepeatedFingerprints() {
+        val db = AppDatabase.create(context, dbName)
+        try {
+            val store = CaptureStore(db)
+            offerMessages(store, "Family", 300)
+            // The same rows again, e.g. after the seen index was lost
+            offerMessages(store, "Family", 300)
+            store.onCall(CallEntry().apply {
+                name = "Ritik Sharma"
+                callType = "Missed"
+                callTimestamp = "Yesterday, 9:41 pm"
+                timestamp = 1_700_000_000_000L
+            })
+            assertTrue(store.writeBehind.close())
+
+            val stats = store.writeBehind.stats()
+            assertEquals(601L, stats.rowsWritten)
+            // Far fewer transactions than rows
+            assertTrue("$stats", stats.flushes <= 601L / 10)
+            val dao = db.captureDao()
+            assertEquals(300, runBlocking { dao.messageCount() })
+            assertEquals(1, runBlocking { dao.callCount() })
+            // The call's contact is a chat of its own
+            val chats = runBlocking { dao.chats() }
+            assertEquals(listOf("Family", "Ritik Sharma"), chats.map { it.name })
+            assertTrue(chats[0].isGroup)
+            assertEquals(1_700_000_000_299L, chats[0].capturedAt)
+            assertEquals("message 0", runBlocking { dao.messagesFor("Family") }[0].text)
+        } finally {
+            db.close()
+        }
+    }
+
+    @Test
+    fun callSeenOnTwoDaysIsStoredOnce() {
+        val evening = Calendar.getInstance().apply {
+            set(2025, Calendar.SEPTEMBER, 17, 22, 0, 0)
+            set(Calendar.MILLISECOND, 0)
+        }.timeInMillis
+        val nextMorning = evening + 10 * 3_600_000L
+        fun call(label: String, at: Long) = CallEntry().apply {
+            name = "Ritik Sharma"
+            callType = "Missed"
+            callTimestamp = label
+            timestamp = at
+        }
+
+        val db = AppDatabase.create(context, dbName)
+        try {
+            val store = CaptureStore(db)
+            store.onCall(call("Today, 9:41 pm", evening))
+            // The same call the next day, relabelled
+            store.onCall(call("Yesterday, 9:41 pm", nextMorning))
+            // A new call that happens to show the label the first one had
+            store.onCall(call("Today, 9:41 pm", evening + 24 * 3_600_000L))
+            assertTrue(store.writeBehind.close())
+
+            assertEquals(2, runBlocking { db.captureDao().callCount() })
+        } finally {
+            db.close()
+        }
+    }
+
+    @Test
+    fun messageSeenOnBothPathsIsStoredOnce() {
+        val morning = Calendar.getInstance().apply {
+            set(2025, Calendar.SEPTEMBER, 17, 9, 41, 0)
+            set(Calendar.MILLISECOND, 0)
+        }.timeInMillis
+        val ritik = Person.Builder().setName("Ritik Sharma").build()
+        val notification = NotificationCompat.Builder(context, "messages")
+            .setSmallIcon(android.R.drawable.stat_notify_chat)
+            .setContentTitle("Ritik Sharma")
+            .setStyle(
+                NotificationCompat.MessagingStyle(Person.Builder().setName("You").build())
+                    .addMessage("Thanks! Submitted it this morning.", morning, ritik)
+            )
+            .build()
+        // The conversation screen, as the accessibility service reads it
+        val screen = ConversationFixtures.snapshot(
+            FakeNode(
+                NodeCollectors.CLASS_LIST_VIEW,
+                children = listOf(group(textView("Thanks! Submitted it this morning."), textView("9:41 am")))
+            )
+        )
+
+        val db = AppDatabase.create(context, dbName)
+        try {
+            val store = CaptureStore(db)
+            for (row in NotificationMessageExtractor().extract(notification, morning)) {
+                store.onMessage(row, NotificationMessageExtractor.fingerprint(row))
+            }
+            val parser = WhatsAppEventParser(null, TestRules.classifier, true)
+            parser.setRowSink(store)
+            parser.process(CapturedEvents.chatOpened("Ritik Sharma"))
+            parser.process(CapturedEvents.contentChanged(screen))
+            assertTrue(store.writeBehind.close())
+
+            assertEquals(2L, store.writeBehind.stats().rowsWritten)
+            assertEquals(1, runBlocking { db.captureDao().messageCount() })
+        } finally {
+            db.close()
+        }
+    }
+}
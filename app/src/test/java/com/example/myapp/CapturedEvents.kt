@@ -0,0 +1,23 @@
+package com.example.myapp
+
+import android.view.accessibility.AccessibilityEvent
+
+/** Captured events as the service hands them to the parse thread. */
+object CapturedEvents {
+    fun chatOpened(chatId: String): CapturedEvent =
+        CapturedEvent(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED, "com.whatsapp.Conversation", 0L).apply {
+            contactNameById = chatId
+        }
+
+    fun contentChanged(list: FlatSnapshot): CapturedEvent =
+        CapturedEvent(AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, null, 0L).apply {
+            chatList = list
+            screen = ScreenState.CONVERSATION
+        }
+
+    fun callsChanged(list: FlatSnapshot, realTime: Long): CapturedEvent =
+        CapturedEvent(AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, null, realTime).apply {
+            callList = list
+            screen = ScreenState.CALLS_TAB
+        }
+}
@@ -0,0 +1,181 @@
+package com.example.myapp
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricTestRunner::class)
+class ColdArchiveTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private val dbName = "cold_archive_test.db"
+    private val day = TimeUnit.DAYS.toMillis(1)
+    private val now = 1_700_000_000_000L
+    private val chats = (0 until 20).map { "+91 93061 ${10_000 + it}" }
+    private lateinit var context: Context
+    private lateinit var db: AppDatabase
+    private lateinit var dir: File
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        context.deleteDatabase(dbName)
+        db = AppDatabase.create(context, dbName)
+        dir = tmp.newFolder("archive")
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+        context.deleteDatabase(dbName)
+    }
+
+    /** Two months of chat, [perDay] messages a day spread over [chats], the newest [now]. */
+    private fun capture(days: Int, perDay: Int) {
+        val store = CaptureStore(db)
+        for (i in 0 until days * perDay) {
+            val chat = chats[i % chats.size]
+            val row = ChatMessage().apply {
+                chatId = chat
+                timestamp = now - days * day + i * (day / perDay)
+                message = "Message number $i about the plans for the weekend"
+                messageTimestamp = "10:15 am"
+                status = "Read"
+            }
+            store.onMessage(row, SeenMessageIndex.fingerprint(chat, null, row.message, row.messageTimestamp))
+            while (store.writeBehind.pendingRows() > 2_000) Thread.sleep(1)
+        }
+        assertTrue(store.writeBehind.close(30_000))
+    }
+
+    private fun chatId(name: String) = db.dictionaryDao().chatIdOf(name)
+
+    private fun readChat(archive: ColdArchive, chat: String, from: Long = Long.MIN_VALUE, to: Long = Long.MAX_VALUE) =
+        ArrayList<MessageEntity>().also { rows -> archive.readMessages(chatId(chat), from, to) { rows.add(it) } }
+
+    private fun databaseBytes(): Long {
+        val sqlite = db.openHelper.writableDatabase
+        fun pragma(name: String) = sqlite.query("PRAGMA $name").use { it.moveToFirst(); it.getLong(0) }
+        return pragma("page_count") * pragma("page_size")
+    }
+
+    @Test
+    fun movesAgedRowsAndReadsThemBack() {
+        capture(days = 60, perDay = 500)
+        val before = runBlocking { db.captureDao().messagesFor(chats[3]) }
+        val archive = ColdArchive(db, dir)
+
+        val report = archive.archive(now)
+
+        val cutoff = now - ColdArchive.DEFAULT_AGE_MS
+        val hot = runBlocking { db.captureDao().messagesFor(chats[3]) }
+        assertTrue(hot.all { it.capturedAt >= cutoff })
+        val cold = readChat(archive, chats[3])
+        assertTrue(cold.all { it.capturedAt < cutoff && it.chatId == chatId(chats[3]) })
+        // Nothing lost or repeated, and each chat comes back in time order
+        assertEquals(before, (cold + hot).sortedBy { it.id })
+        assertEquals(cold.sortedBy { it.capturedAt }, cold)
+        assertEquals(report.rowsArchived[ColdArchive.MESSAGES], 30_000 - runBlocking { db.captureDao().messageCount() })
+    }
+
+    @Test
+    fun sparseIndexReadsOnlyMatchingBlocks() {
+        capture(days = 60, perDay = 500)
+        ColdArchive(db, dir).archive(now)
+        val segment = File(dir, ColdArchive.MESSAGES).listFiles()!!.first { it.name.endsWith(".seg") }
+
+        ArchiveSegment.Reader(segment, MessageArchiveCodec).use { reader ->
+            val blocks = reader.index.size
+            var rows = 0
+            val chat = chatId(chats[7])
+            reader.scan(chat, chat, Long.MIN_VALUE, Long.MAX_VALUE) { rows++; true }
+
+            assertTrue(rows > 0)
+            assertTrue("read ${reader.blocksRead} of $blocks blocks", reader.blocksRead * 5 <= blocks)
+        }
+    }
+
+    @Test
+    fun hotDatabaseShrinksAfterArchiveAndVacuum() {
+        val archive = ColdArchive(db, dir)
+        capture(days = 60, perDay = 500)
+        val hotBefore = databaseBytes()
+
+        archive.archive(now)
+        DatabaseRetention(db, archive = archive).run(now)
+        val hotAfter = databaseBytes()
+
+        assertTrue("$hotBefore -> $hotAfter", hotAfter * 3 < hotBefore)
+        assertTrue(archive.bytesOnDisk() * 3 < hotBefore)
+    }
+
+    @Test
+    fun archivedMessagesAreNotCapturedAgain() {
+        capture(days = 30, perDay = 200)
+        ColdArchive(db, dir).archive(now)
+        val hot = runBlocking { db.captureDao().messageCount() }
+
+        // The same two months again, e.g. the user scrolling back through every chat
+        capture(days = 30, perDay = 200)
+
+        assertEquals(hot, runBlocking { db.captureDao().messageCount() })
+        assertTrue(runBlocking { db.captureDao().messagesFor(chats[0]) }.all { it.capturedAt >= now - ColdArchive.DEFAULT_AGE_MS })
+    }
+
+    @Test
+    fun retentionDropsTombstonesPastTheMessagesTtl() {
+        capture(days = 30, perDay = 200)
+        val archive = ColdArchive(db, dir)
+        archive.archive(now)
+        val ttl = 20 * day
+        val policies = listOf(DatabaseRetention.Policy("messages", "captured_at", ttl, 1_000_000))
+
+        val report = DatabaseRetention(db, policies, archive = archive).run(now)
+
+        val remaining = db.openHelper.readableDatabase
+            .query("SELECT MIN(captured_at) FROM ${ColdArchive.ARCHIVED_FINGERPRINTS}").use { it.moveToFirst(); it.getLong(0) }
+        assertTrue(report.rowsDeleted.getValue(ColdArchive.ARCHIVED_FINGERPRINTS) > 0)
+        assertTrue(remaining >= now - ttl)
+    }
+
+    @Test
+    fun readStopsWhenTheSinkSaysSo() {
+        capture(days = 30, perDay = 200)
+        val archive = ColdArchive(db, dir)
+        archive.archive(now)
+        var rows = 0
+
+        val finished = archive.readMessages(chatId(chats[0]), Long.MIN_VALUE, Long.MAX_VALUE) { ++rows < 10 }
+
+        assertFalse(finished)
+        assertEquals(10, rows)
+    }
+
+    @Test
+    fun pruneDropsSegmentsPastTheTtl() {
+        capture(days = 60, perDay = 500)
+        val archive = ColdArchive(db, dir, segmentRows = 2_000)
+        archive.archive(now)
+        val oldest = readChat(archive, chats[0]).first().capturedAt
+
+        val freed = archive.prune(ColdArchive.MESSAGES, now - 30 * day)
+
+        assertTrue(freed > 0)
+        assertTrue(readChat(archive, chats[0]).first().capturedAt > oldest)
+        // Segments hold four days each; only the one straddling the cutoff keeps older rows
+        assertTrue(readChat(archive, chats[0]).first().capturedAt >= now - 34 * day)
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.myapp
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricTestRunner::class)
+class DatabaseRetentionTest {
+    private val dbName = "retention_test.db"
+    private val now = 1_700_000_000_000L
+    private val day = TimeUnit.DAYS.toMillis(1)
+    private lateinit var context: Context
+    private lateinit var db: AppDatabase
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        db = AppDatabase.create(context, dbName)
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+        context.deleteDatabase(dbName)
+    }
+
+    private fun notifications(count: Int, timestamp: (Int) -> Long) =
+        db.notificationDao().insertAll((0 until count).map {
+            NotificationEntity(
+                packageId = 1,
+                title = "Family",
+                // Big enough that deleting them frees whole pages
+                text = "message $it ".repeat(20),
+                timestamp = timestamp(it),
+                isSensitive = false
+            )
+        })
+
+    private fun message(chat: String, i: Int, capturedAt: Long) = ChatMessage().apply {
+        chatId = chat
+        timestamp = capturedAt
+        message = "message $i"
+    }
+
+    private fun count() = runBlocking { db.notificationDao().count() }
+
+    @Test
+    fun deletesExpiredRowsInBoundedChunks() {
+        notifications(2_000) { now - 100 * day + it }
+        notifications(300) { now - day + it }
+        val retention = DatabaseRetention(
+            db, listOf(DatabaseRetention.Policy("notifications", "timestamp", 30 * day, 10_000)), chunkSize = 250
+        )
+
+        val report = retention.run(now)
+
+        assertEquals(300, count())
+        assertEquals(2_000, report.rowsDeleted["notifications"])
+        // 2000 rows at 250 per transaction, plus the short chunk that finds nothing left
+        assertTrue("${report.deleteTransactions}", report.deleteTransactions >= 9)
+        assertFalse(report.stopped)
+    }
+
+    @Test
+    fun rowCapKeepsTheNewestRows() {
+        notifications(1_000) { now - it * 1_000L }
+        val retention = DatabaseRetention(db, listOf(DatabaseRetention.Policy("notifications", "timestamp", 365 * day, 600)))
+
+        retention.run(now)
+
+        assertEquals(600, count())
+        val oldest = runBlocking { db.notificationDao().latest(1_000) }.last()
+        assertEquals(now - 599 * 1_000L, oldest.timestamp)
+    }
+
+    @Test
+    fun dropsChatsWhoseRowsAreAllGone() {
+        val store = CaptureStore(db)
+        store.onMessage(message("Old", 0, now - 400 * day), 1)
+        store.onMessage(message("Recent", 1, now), 2)
+        assertTrue(store.writeBehind.close())
+
+        val report = DatabaseRetention(db).run(now)
+
+        assertEquals(1, report.rowsDeleted["messages"])
+        assertEquals(1, report.rowsDeleted["chats"])
+        assertEquals(listOf("Recent"), runBlocking { db.captureDao().chats() }.map { it.name })
+    }
+
+    @Test
+    fun chatDroppedByRetentionIsStoredAgainWhenSeenAgain() {
+        val store = CaptureStore(db)
+        store.onMessage(message("Old", 0, now - 400 * day), 1)
+        store.writeBehind.flushNow()
+        val deadline = System.nanoTime() + 5_000_000_000L
+        while (store.writeBehind.stats().rowsWritten < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5)
+        }
+        DatabaseRetention(db).run(now)
+
+        // The store cached the deleted chat's id before retention ran
+        store.onMessage(message("Old", 1, now), 2)
+        assertTrue(store.writeBehind.close())
+
+        assertEquals(listOf("Old"), runBlocking { db.captureDao().chats() }.map { it.name })
+        assertEquals(1, runBlocking { db.captureDao().messagesFor("Old") }.size)
+    }
+
+    @Test
+    fun newDatabaseIsCreatedForIncrementalVacuum() {
+        db.openHelper.writableDatabase.query("PRAGMA auto_vacuum").use {
+            it.moveToFirst()
+            // 2 is INCREMENTAL
+            assertEquals(2L, it.getLong(0))
+        }
+    }
+
+    @Test
+    fun vacuumHandsFreedPagesBack() {
+        val policy = listOf(DatabaseRetention.Policy("notifications", "timestamp", 30 * day, 100_000))
+        notifications(5_000) { now - 100 * day + it }
+
+        val report = DatabaseRetention(db, policy).run(now)
+
+        assertEquals(0, count())
+        assertTrue("$report", report.bytesReclaimed > 0)
+        db.openHelper.writableDatabase.query("PRAGMA freelist_count").use {
+            it.moveToFirst()
+            assertEquals(0L, it.getLong(0))
+        }
+    }
+
+    @Test
+    fun stopsBetweenChunksWhenAsked() {
+        notifications(2_000) { now - 100 * day + it }
+        var checks = 0
+        val retention = DatabaseRetention(
+            db, listOf(DatabaseRetention.Policy("notifications", "timestamp", 30 * day, 10_000)), chunkSize = 100
+        )
+
+        val report = retention.run(now) { ++checks > 3 }
+
+        assertTrue(report.stopped)
+        assertTrue("${count()} left", count() > 0)
+    }
+}
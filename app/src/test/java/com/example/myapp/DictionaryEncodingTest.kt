@@ -0,0 +1,137 @@
+package com.example.myapp
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.core.app.ApplicationProvider
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * 50k short messages across 40 chats named by phone number or group name, written once with the
+ * chat and sender strings on every row (the version 4 schema) and once through [CaptureStore] with
+ * lookup ids. Compares file size, and checks the chat queries see the same rows in both.
+ */
+@RunWith(RobolectricTestRunner::class)
+class DictionaryEncodingTest {
+    private val encodedName = "dictionary_encoded_test.db"
+    private val legacyName = "string_keyed_test.db"
+    private val total = 50_000
+    private val chats = (0 until 40).map {
+        if (it % 4 == 0) "Family & Friends Group $it (Mumbai)" else String.format("+91 93061 %05d", it)
+    }
+    private val senders = (0 until 200).map { "Group Member Name $it" }
+    private lateinit var context: Context
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        context.deleteDatabase(encodedName)
+        context.deleteDatabase(legacyName)
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(encodedName)
+        context.deleteDatabase(legacyName)
+    }
+
+    private fun chatOf(i: Int) = chats[i % chats.size]
+
+    private fun senderOf(i: Int) = if (i % 4 == 0) senders[i % senders.size] else null
+
+    private fun message(i: Int) = ChatMessage().apply {
+        chatId = chatOf(i)
+        sender = senderOf(i)
+        isGroup = sender != null
+        timestamp = 1_700_000_000_000L + i
+        message = "ok $i"
+        messageTimestamp = "10:15 am"
+        status = "Read"
+    }
+
+    private fun writeLegacy(): SQLiteDatabase {
+        val db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(legacyName), null)
+        db.execSQL(
+            "CREATE TABLE messages (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                "fingerprint INTEGER NOT NULL, chat_id TEXT NOT NULL, is_group INTEGER NOT NULL, " +
+                "kind TEXT NOT NULL, sender TEXT, text TEXT, is_sent INTEGER NOT NULL, " +
+                "message_timestamp TEXT, status TEXT, captured_at INTEGER NOT NULL)"
+        )
+        db.execSQL("CREATE UNIQUE INDEX index_messages_fingerprint ON messages (fingerprint)")
+        db.execSQL("CREATE INDEX index_messages_chat_id_captured_at ON messages (chat_id, captured_at)")
+        db.execSQL("CREATE INDEX index_messages_captured_at ON messages (captured_at)")
+        val insert = db.compileStatement(
+            "INSERT INTO messages (fingerprint, chat_id, is_group, kind, sender, text, is_sent, " +
+                "message_timestamp, status, captured_at) VALUES (?, ?, ?, 'message', ?, ?, 0, ?, ?, ?)"
+        )
+        db.beginTransaction()
+        try {
+            for (i in 0 until total) {
+                val row = message(i)
+                insert.clearBindings()
+                insert.bindLong(1, i.toLong())
+                insert.bindString(2, row.chatId)
+                insert.bindLong(3, if (row.isGroup) 1 else 0)
+                row.sender?.let { insert.bindString(4, it) }
+                insert.bindString(5, row.message)
+                insert.bindString(6, row.messageTimestamp)
+                insert.bindString(7, row.status)
+                insert.bindLong(8, row.timestamp)
+                insert.executeInsert()
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+        return db
+    }
+
+    private fun bytes(query: (String) -> Long) = query("PRAGMA page_count") * query("PRAGMA page_size")
+
+    @Test
+    fun lookupIdsShrinkRowsAndIndexes() {
+        val legacy = writeLegacy()
+        val encoded = AppDatabase.create(context, encodedName)
+        try {
+            val store = CaptureStore(encoded)
+            for (i in 0 until total) {
+                store.onMessage(message(i), i.toLong())
+                // Stay under the buffer's pending limit instead of dropping rows
+                while (store.writeBehind.pendingRows() > 2_000) Thread.sleep(1)
+            }
+            assertTrue(store.writeBehind.close(30_000))
+
+            val sqlite = encoded.openHelper.writableDatabase
+            sqlite.query("PRAGMA wal_checkpoint(TRUNCATE)").use { it.moveToFirst() }
+            fun encodedLong(sql: String, vararg args: Any): Long =
+                sqlite.query(sql, args).use { it.moveToFirst(); it.getLong(0) }
+            fun legacyLong(sql: String, vararg args: String): Long =
+                legacy.rawQuery(sql, args).use { it.moveToFirst(); it.getLong(0) }
+
+            val legacyBytes = bytes { legacyLong(it) }
+            val encodedBytes = bytes { encodedLong(it) }
+            assertEquals(total.toLong(), encodedLong("SELECT COUNT(*) FROM messages"))
+
+            // One chat's rows, as the conversation queries read them
+            val chat = chats[1]
+            val chatId = encodedLong("SELECT id FROM chats WHERE name = ?", chat)
+            assertEquals(
+                legacyLong("SELECT COUNT(*) FROM messages WHERE chat_id = ? AND captured_at > 0", chat),
+                encodedLong("SELECT COUNT(*) FROM messages WHERE chat_id = ? AND captured_at > 0", chatId)
+            )
+
+            assertEquals(chats.size.toLong(), encodedLong("SELECT COUNT(*) FROM chats"))
+            assertEquals(senders.size.toLong(), encodedLong("SELECT COUNT(*) FROM senders"))
+            // Generous: the ids save well over a third here
+            assertTrue("$encodedBytes vs $legacyBytes", encodedBytes * 10 < legacyBytes * 8)
+        } finally {
+            encoded.close()
+            legacy.close()
+        }
+    }
+}
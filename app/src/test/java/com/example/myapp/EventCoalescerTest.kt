@@ -0,0 +1,70 @@
+package com.example.myapp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class EventCoalescerTest {
+    private val clock = FakeClock()
+    private val coalescer = EventCoalescer(clock, 150, 1000)
+
+    @Test
+    fun burstIsDueAfterQuietPeriod() {
+        repeat(20) {
+            coalescer.offer(7)
+            clock.advance(10)
+        }
+        // last event at 190
+        assertTrue(coalescer.pollDue().isEmpty())
+        assertEquals(340L, coalescer.nextDueTime())
+
+        clock.now = 340
+        val due = coalescer.pollDue()
+
+        assertEquals(1, due.size)
+        assertEquals(7, due[0].windowId)
+        assertEquals(20, due[0].absorbedEvents)
+        assertEquals(0L, due[0].firstEventAt)
+        assertEquals(190L, due[0].lastEventAt)
+        assertEquals(EventCoalescer.NO_DEADLINE, coalescer.nextDueTime())
+    }
+
+    @Test
+    fun continuousStreamIsFlushedAtMaxLatency() {
+        var parses = 0
+        var absorbed = 0
+        repeat(300) {
+            coalescer.offer(1)
+            clock.advance(10)
+            coalescer.pollDue().forEach {
+                parses++
+                absorbed += it.absorbedEvents
+            }
+        }
+
+        // never quiet for 150ms, so only the 1s deadline fires: 3 parses in 3s
+        assertEquals(3, parses)
+        assertEquals(300, absorbed)
+    }
+
+    @Test
+    fun windowsAreCoalescedIndependently() {
+        coalescer.offer(1)
+        clock.advance(100)
+        coalescer.offer(2)
+        clock.advance(60)
+
+        val first = coalescer.pollDue()
+        assertEquals(listOf(1), first.map { it.windowId })
+        assertEquals(1, coalescer.pendingWindows())
+        assertEquals(250L, coalescer.nextDueTime())
+
+        clock.now = 250
+        assertEquals(listOf(2), coalescer.pollDue().map { it.windowId })
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsMaxLatencyShorterThanQuietPeriod() {
+        EventCoalescer(clock, 500, 100)
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.myapp
+
+import android.app.Notification
+import android.os.Bundle
+import android.os.Process
+import android.service.notification.StatusBarNotification
+import android.text.SpannableString
+import androidx.core.app.NotificationCompat
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class NotificationDedupIndexTest {
+    private val key = "0|com.whatsapp|1|null|10123"
+
+    private fun content(title: CharSequence?, text: CharSequence?, vararg messages: Pair<String, Long>) = Bundle().apply {
+        putCharSequence(NotificationCompat.EXTRA_TITLE, title)
+        putCharSequence(NotificationCompat.EXTRA_TEXT, text)
+        if (messages.isNotEmpty()) {
+            putParcelableArray(NotificationCompat.EXTRA_MESSAGES, messages.map { (body, time) ->
+                Bundle().apply {
+                    putCharSequence("sender", "Ritik Sharma")
+                    putCharSequence("text", body)
+                    putLong("time", time)
+                }
+            }.toTypedArray())
+        }
+    }
+
+    @Test
+    fun unchangedRepostIsDropped() {
+        val index = NotificationDedupIndex()
+
+        assertTrue(index.offer(key, content("Ritik Sharma", "3 new messages")))
+        assertFalse(index.offer(key, content("Ritik Sharma", "3 new messages")))
+        assertTrue(index.offer(key, content("Ritik Sharma", "4 new messages")))
+        assertEquals(1L, index.unchanged)
+        assertEquals(2L, index.changed)
+    }
+
+    @Test
+    fun newMessageChangesTheHashEvenWithTheSameSummary() {
+        val before = content("Ritik Sharma", "2 new messages", "Hi" to 1_000L, "Are you there?" to 2_000L)
+        val after = content("Ritik Sharma", "2 new messages", "Are you there?" to 2_000L, "Call me" to 3_000L)
+
+        assertNotEquals(NotificationDedupIndex.contentHash(before), NotificationDedupIndex.contentHash(after))
+    }
+
+    @Test
+    fun styledAndPlainTextHashAlike() {
+        assertEquals(
+            NotificationDedupIndex.contentHash(content("Ritik Sharma", "Hi")),
+            NotificationDedupIndex.contentHash(content(SpannableString("Ritik Sharma"), SpannableString("Hi")))
+        )
+        // A missing field is not an empty one
+        assertNotEquals(
+            NotificationDedupIndex.contentHash(content(null, "Hi")),
+            NotificationDedupIndex.contentHash(content("", "Hi"))
+        )
+    }
+
+    @Test
+    fun removalForgetsTheKey() {
+        val index = NotificationDedupIndex()
+        index.offer(key, content("Ritik Sharma", "Hi"))
+
+        index.remove(key)
+
+        assertTrue(index.offer(key, content("Ritik Sharma", "Hi")))
+    }
+
+    @Test
+    @Suppress("DEPRECATION")
+    fun rebuildTracksWhatIsInTheShade() {
+        val index = NotificationDedupIndex()
+        index.offer("stale", content("Gone", "Removed while disconnected"))
+        val notification = Notification().apply { extras = content("Ritik Sharma", "Hi") }
+        val active = StatusBarNotification(
+            "com.whatsapp", "com.whatsapp", 1, null, 10123, 0, 0, notification, Process.myUserHandle(), 0L
+        )
+
+        index.rebuild(arrayOf(active))
+
+        assertEquals(1, index.size)
+        assertFalse(index.offer(active.key, content("Ritik Sharma", "Hi")))
+        assertTrue(index.offer("stale", content("Gone", "Removed while disconnected")))
+    }
+
+    @Test
+    fun capacityBoundsMissedRemovals() {
+        val index = NotificationDedupIndex(capacity = 8)
+        repeat(20) { index.offer("key $it", content("Ritik Sharma", "Hi")) }
+
+        assertEquals(8, index.size)
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.myapp
+
+import android.app.Notification
+import android.content.Context
+import androidx.core.app.NotificationCompat
+import androidx.core.app.Person
+import androidx.test.core.app.ApplicationProvider
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.util.TimeZone
+
+@RunWith(RobolectricTestRunner::class)
+class NotificationMessageExtractorTest {
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private val extractor = NotificationMessageExtractor(TimeZone.getTimeZone("UTC"))
+    // 10:15 am UTC
+    private val at = 1_700_043_300_000L
+    private val me = Person.Builder().setName("You").build()
+    private val ritik = Person.Builder().setName("Ritik Sharma").build()
+    private val priya = Person.Builder().setName("Priya").build()
+
+    private fun builder() = NotificationCompat.Builder(context, "messages")
+        .setSmallIcon(android.R.drawable.stat_notify_chat)
+        .setCategory(NotificationCompat.CATEGORY_MESSAGE)
+
+    @Test
+    fun messagingStyleGroupGivesOneRowPerMessage() {
+        val notification = builder()
+            .setContentTitle("Family (3 messages)")
+            .setStyle(
+                NotificationCompat.MessagingStyle(me)
+                    .setConversationTitle("Family (3 messages)")
+                    .setGroupConversation(true)
+                    .addMessage("Dinner at 8?", at, ritik)
+                    .addMessage("Works for me", at + 60_000, priya)
+                    .addMessage("See you there", at + 120_000, null as Person?)
+            )
+            .build()
+
+        val rows = extractor.extract(notification, at + 120_000)
+
+        assertEquals(3, rows.size)
+        assertTrue(rows.all { it.chatId == "Family" && it.isGroup })
+        assertEquals(listOf("Ritik Sharma", "Priya", null), rows.map { it.sender })
+        assertEquals(listOf(false, false, true), rows.map { it.isSent })
+        assertEquals(listOf("Dinner at 8?", "Works for me", "See you there"), rows.map { it.message })
+        assertEquals(listOf(at, at + 60_000, at + 120_000), rows.map { it.timestamp })
+        assertEquals("10:15 am", rows[0].messageTimestamp)
+    }
+
+    @Test
+    fun privateChatIsNamedByTheNotificationTitle() {
+        val notification = builder()
+            .setContentTitle("Ritik Sharma")
+            .setStyle(NotificationCompat.MessagingStyle(me).addMessage("Are you free?", at, ritik))
+            .build()
+
+        val row = extractor.extract(notification, at).single()
+
+        assertEquals("Ritik Sharma", row.chatId)
+        assertFalse(row.isGroup)
+        // Private chat rows on the conversation screen have no sender either
+        assertNull(row.sender)
+    }
+
+    @Test
+    fun fingerprintMatchesTheAccessibilityPath() {
+        val notification = builder()
+            .setContentTitle("Ritik Sharma")
+            .setStyle(NotificationCompat.MessagingStyle(me).addMessage("Are you free?", at, ritik))
+            .build()
+
+        val row = extractor.extract(notification, at).single()
+
+        assertEquals(
+            SeenMessageIndex.fingerprint("Ritik Sharma", null, "Are you free?", "10:15 am"),
+            NotificationMessageExtractor.fingerprint(row)
+        )
+    }
+
+    @Test
+    fun chatIsNamedAsTheConversationToolbarNamesIt() {
+        val family = Person.Builder().setName("Priya").build()
+        val cases = listOf(
+            NodeFixtures.PRIVATE_CHAT to builder()
+                .setContentTitle("Ritik Sharma")
+                .setStyle(NotificationCompat.MessagingStyle(me).addMessage("Are you free?", at, ritik)),
+            NodeFixtures.GROUP_CHAT to builder()
+                .setContentTitle("Admissions 2025 Batch (2 messages)")
+                .setStyle(
+                    NotificationCompat.MessagingStyle(me)
+                        .setConversationTitle("Admissions 2025 Batch (2 messages)")
+                        .setGroupConversation(true)
+                        .addMessage("Form is open", at, ritik)
+                        .addMessage("Thanks!", at + 60_000, family)
+                )
+        )
+
+        for ((fixture, notification) in cases) {
+            // What the accessibility service reads as the chat's title, and keys coverage by
+            val toolbar = NodeFixtures.find(NodeFixtures.load(fixture), "com.whatsapp:id/conversation_contact_name")!!.text
+            val rows = extractor.extract(notification.build(), at + 60_000)
+
+            assertEquals(fixture, setOf(toolbar), rows.map { it.chatId }.toSet())
+        }
+    }
+
+    @Test
+    fun inboxStyleLinesCarrySenders() {
+        val notification = builder()
+            .setContentTitle("Family")
+            .setStyle(NotificationCompat.InboxStyle().addLine("Ritik Sharma: Dinner at 8?").addLine("Priya: Works for me"))
+            .build()
+        notification.extras.putBoolean(NotificationCompat.EXTRA_IS_GROUP_CONVERSATION, true)
+
+        val rows = extractor.extract(notification, at)
+
+        assertEquals(listOf("Ritik Sharma", "Priya"), rows.map { it.sender })
+        assertEquals(listOf("Dinner at 8?", "Works for me"), rows.map { it.message })
+        assertTrue(rows.all { it.chatId == "Family" && it.timestamp == at })
+    }
+
+    @Test
+    fun plainMessageNotificationIsOneRow() {
+        val notification = builder().setContentTitle("Ritik Sharma").setContentText("Call me back").build()
+
+        val row = extractor.extract(notification, at).single()
+
+        assertEquals("Ritik Sharma", row.chatId)
+        assertEquals("Call me back", row.message)
+        assertNull(row.sender)
+    }
+
+    @Test
+    fun summariesAndNonMessagePostsAreSkipped() {
+        val summary = builder()
+            .setContentTitle("WhatsApp")
+            .setStyle(NotificationCompat.InboxStyle().addLine("Family: Ritik Sharma: Dinner at 8?"))
+            .setGroup("chats")
+            .setGroupSummary(true)
+            .build()
+        val backup = builder()
+            .setCategory(NotificationCompat.CATEGORY_PROGRESS)
+            .setContentTitle("Backing up messages")
+            .setContentText("42%")
+            .build()
+
+        assertTrue(extractor.extract(summary, at).isEmpty())
+        assertTrue(extractor.extract(backup, at).isEmpty())
+        assertTrue(extractor.extract(Notification(), at).isEmpty())
+    }
+
+    @Test
+    fun coverageLapsesAfterItsWindow() {
+        val coverage = NotificationCoverage()
+        coverage.cover("Family", at + 15_000)
+
+        assertEquals(5_000L, coverage.remainingMs("Family", at + 10_000))
+        assertEquals(0L, coverage.remainingMs("Ritik Sharma", at))
+        assertEquals(0L, coverage.remainingMs(null, at))
+        assertEquals(0L, coverage.remainingMs("Family", at + 15_000))
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.myapp
+
+import android.content.Context
+import androidx.paging.PagingSource
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * 100k notifications, several sharing each timestamp like a burst from one group chat, read in
+ * keyset pages instead of the whole table the old Flow loaded on every insert.
+ */
+@RunWith(RobolectricTestRunner::class)
+class NotificationPagingTest {
+    private val dbName = "notification_paging_test.db"
+    private val total = 100_000
+    private val pageSize = 50
+    private lateinit var context: Context
+    private lateinit var db: AppDatabase
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        db = AppDatabase.create(context, dbName)
+        val dao = db.notificationDao()
+        (0 until total).chunked(5_000).forEach { chunk ->
+            dao.insertAll(chunk.map {
+                NotificationEntity(
+                    packageId = 1,
+                    title = "Family",
+                    text = "message $it",
+                    // Four rows per millisecond, so pages split rows with equal timestamps
+                    timestamp = 1_700_000_000_000L + it / 4,
+                    isSensitive = false
+                )
+            })
+        }
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+        context.deleteDatabase(dbName)
+    }
+
+    private fun append(source: NotificationPagingSource, key: NotificationPagingSource.Key) = runBlocking {
+        source.load(PagingSource.LoadParams.Append(key, pageSize, false)) as PagingSource.LoadResult.Page
+    }
+
+    @Test
+    fun keysetPageReadsFromAnyDepth() {
+        val dao = db.notificationDao()
+
+        val first = runBlocking { dao.latest(pageSize) }
+        // Row 10_002 of 100k, i.e. 90k rows deep in newest-first order
+        val deep = runBlocking { dao.pageBefore(1_700_000_000_000L + 10_001 / 4, 10_002, pageSize) }
+        val summary = runBlocking { dao.observeSummary().first() }
+
+        assertEquals(pageSize, first.size)
+        assertEquals(total, first[0].id)
+        assertEquals(pageSize, deep.size)
+        assertEquals(10_001, deep[0].id)
+        assertEquals(NotificationSummary(total, total), summary)
+    }
+
+    @Test
+    fun pageQueryReadsTheTimestampIndexInOrder() {
+        val plan = StringBuilder()
+        db.query(
+            "EXPLAIN QUERY PLAN SELECT * FROM notifications WHERE timestamp <= ? AND (timestamp < ? OR id < ?) " +
+                "ORDER BY timestamp DESC, id DESC LIMIT ?",
+            arrayOf<Any>(1_700_000_000_000L, 1_700_000_000_000L, 1, pageSize)
+        ).use { cursor ->
+            while (cursor.moveToNext()) plan.append(cursor.getString(cursor.columnCount - 1)).append('\n')
+        }
+        assertTrue(plan.toString(), plan.contains("index_notifications_timestamp"))
+        assertFalse(plan.toString(), plan.contains("TEMP B-TREE"))
+    }
+
+    @Test
+    fun pagingSourceVisitsEveryRowOnce() {
+        val source = NotificationPagingSource(db)
+        val seen = BooleanArray(total + 1)
+        var page = runBlocking {
+            source.load(PagingSource.LoadParams.Refresh(null, pageSize, false)) as PagingSource.LoadResult.Page
+        }
+        var rows = 0
+        var previous = NotificationPagingSource.Key(Long.MAX_VALUE, Int.MAX_VALUE)
+        while (true) {
+            for (row in page.data) {
+                assertFalse("row ${row.id} twice", seen[row.id])
+                seen[row.id] = true
+                assertTrue(row.timestamp < previous.timestamp || row.timestamp == previous.timestamp && row.id < previous.id)
+                previous = NotificationPagingSource.Key(row.timestamp, row.id)
+                rows++
+            }
+            val next = page.nextKey ?: break
+            page = append(source, next)
+        }
+        assertEquals(total, rows)
+    }
+
+    @Test
+    fun insertInvalidatesTheSource() {
+        val source = NotificationPagingSource(db)
+        runBlocking { source.load(PagingSource.LoadParams.Refresh(null, pageSize, false)) }
+        db.notificationDao().insertAll(
+            listOf(NotificationEntity(packageId = 1, title = "Family", text = "new", timestamp = 0, isSensitive = false))
+        )
+        // Room notifies observers from its query executor after the transaction
+        val deadline = System.nanoTime() + 5_000_000_000L
+        while (!source.invalid && System.nanoTime() < deadline) {
+            Thread.sleep(5)
+        }
+
+        assertTrue(source.invalid)
+    }
+
+    @Test
+    fun sourceObservesTheTableFromItsFirstLoad() {
+        val source = NotificationPagingSource(db)
+        val dao = db.notificationDao()
+        dao.insertAll(listOf(NotificationEntity(packageId = 1, title = "Family", text = "early", timestamp = 0, isSensitive = false)))
+        db.invalidationTracker.refreshVersionsSync()
+        // Not registered yet: construction does no database work
+        assertFalse(source.invalid)
+
+        runBlocking { source.load(PagingSource.LoadParams.Refresh(null, pageSize, false)) }
+        dao.insertAll(listOf(NotificationEntity(packageId = 1, title = "Family", text = "late", timestamp = 0, isSensitive = false)))
+        val deadline = System.nanoTime() + 5_000_000_000L
+        while (!source.invalid && System.nanoTime() < deadline) {
+            Thread.sleep(5)
+        }
+
+        assertTrue(source.invalid)
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.myapp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Replays a 40-row conversation being scrolled: every fourth event the window moves by one row, the
+ * rest are content changes that leave the rows untouched. RowParseCacheBenchmark in :benchmarks
+ * times the same replay.
+ */
+// WhatsAppEventParser logs through android.util.Log
+@RunWith(RobolectricTestRunner::class)
+class RowParseCacheTest {
+    private val events = 400
+    private val rows = 40
+    private val screens = (0 until events).map { ConversationFixtures.conversation(first = it / 4, rows = rows) }
+
+    private fun replay(parser: WhatsAppEventParser) {
+        parser.process(CapturedEvents.chatOpened("+91 93061 84110"))
+        screens.forEach { parser.process(CapturedEvents.contentChanged(it)) }
+    }
+
+    @Test
+    fun parseWorkScalesWithChangedRows() {
+        val uncached = WhatsAppEventParser(null, TestRules.classifier, false)
+        val cached = WhatsAppEventParser(null, TestRules.classifier, true)
+        replay(uncached)
+        replay(cached)
+
+        assertEquals((events * rows).toLong(), uncached.chatRowsParsed)
+        // first screen in full, then only the row scrolled into view every fourth event
+        assertEquals((rows + (events - 1) / 4).toLong(), cached.chatRowsParsed)
+    }
+
+    @Test
+    fun changedRowIsReparsed() {
+        val parser = WhatsAppEventParser(null, TestRules.classifier, true)
+        parser.process(CapturedEvents.chatOpened("Alice"))
+        parser.process(CapturedEvents.contentChanged(ConversationFixtures.conversation(0, rows)))
+
+        val edited = ConversationFixtures.conversationNode(0, rows).children.toMutableList()
+        edited[5] = ConversationFixtures.messageRow(5, sent = !(5 % 3 == 0))
+        val list = FakeNode(NodeCollectors.CLASS_LIST_VIEW, children = edited)
+        parser.process(CapturedEvents.contentChanged(ConversationFixtures.snapshot(list)))
+
+        assertEquals((rows + 1).toLong(), parser.chatRowsParsed)
+    }
+
+    @Test
+    fun cacheIsDroppedWhenChatChanges() {
+        val parser = WhatsAppEventParser(null, TestRules.classifier, true)
+        val screen = ConversationFixtures.conversation(0, rows)
+        parser.process(CapturedEvents.chatOpened("Alice"))
+        parser.process(CapturedEvents.contentChanged(screen))
+        parser.process(CapturedEvents.chatOpened("Bob"))
+        parser.process(CapturedEvents.contentChanged(screen))
+
+        assertEquals((2 * rows).toLong(), parser.chatRowsParsed)
+    }
+
+    @Test
+    fun cachedCallRowsCarryTheCurrentEventTime() {
+        val parser = WhatsAppEventParser(null, TestRules.classifier, true)
+        val calls = ArrayList<CallEntry>()
+        parser.setRowSink(object : WhatsAppEventParser.RowSink {
+            override fun onMessage(message: ChatMessage, fingerprint: Long) = Unit
+
+            override fun onCall(call: CallEntry) {
+                calls.add(call)
+            }
+        })
+        val row = FakeNode(
+            "android.view.ViewGroup",
+            children = listOf(
+                FakeNode(NodeCollectors.CLASS_TEXT_VIEW, text = "+91 93061 84110"),
+                FakeNode(NodeCollectors.CLASS_TEXT_VIEW, text = "Today, 9:41 pm")
+            )
+        )
+        val list = ConversationFixtures.snapshot(FakeNode(NodeCollectors.CLASS_LIST_VIEW, children = listOf(row)))
+
+        parser.process(CapturedEvents.callsChanged(list, 1_000L))
+        parser.process(CapturedEvents.callsChanged(list, 2_000L))
+
+        // Served from the cache the second time, but stamped with that event, not the first
+        assertEquals(listOf(1_000L, 2_000L), calls.map { it.timestamp })
+    }
+
+    @Test
+    fun fingerprintTracksStructure() {
+        fun row(index: Int, sent: Boolean = false) =
+            ConversationFixtures.snapshot(ConversationFixtures.messageRow(index, sent)).fingerprint(0)
+        assertEquals(row(1), row(1))
+        assertNotEquals(row(1), row(2))
+        assertNotEquals(row(1), row(1, sent = true))
+        // a row's fingerprint is the same on its own and inside a list
+        assertEquals(row(1), ConversationFixtures.conversation(1, 3).let { it.fingerprint(it.firstChild(0)) })
+    }
+}
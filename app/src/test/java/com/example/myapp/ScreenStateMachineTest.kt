@@ -0,0 +1,78 @@
+package com.example.myapp
+
+import android.view.accessibility.AccessibilityEvent
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ScreenStateMachineTest {
+    private val changes = mutableListOf<Pair<ScreenState?, ScreenState>>()
+    private val machine = ScreenStateMachine { from, to -> changes += from to to }
+
+    private fun window(className: String, desc: String? = null) =
+        machine.onEvent(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED, className, desc)
+
+    private fun tab(desc: String?) = machine.onEvent(AccessibilityEvent.TYPE_VIEW_SELECTED, null, desc)
+
+    @Test
+    fun startsUnclassifiedAndIgnoresFrameworkWindows() {
+        window("android.widget.FrameLayout")
+
+        assertNull(machine.getState())
+        assertTrue(changes.isEmpty())
+    }
+
+    @Test
+    fun followsNavigationThroughWhatsApp() {
+        window(ScreenStateMachine.HOME_ACTIVITY)
+        tab("Calls")
+        window("com.whatsapp.calling.ui.VoipActivityV2")
+        window(ScreenStateMachine.CONVERSATION_ACTIVITY)
+        window("com.whatsapp.settings.Settings")
+
+        assertEquals(
+            listOf(
+                null to ScreenState.CHAT_LIST,
+                ScreenState.CHAT_LIST to ScreenState.CALLS_TAB,
+                ScreenState.CALLS_TAB to ScreenState.ACTIVE_CALL,
+                ScreenState.ACTIVE_CALL to ScreenState.CONVERSATION,
+                ScreenState.CONVERSATION to ScreenState.OTHER
+            ),
+            changes
+        )
+    }
+
+    @Test
+    fun repeatedEventsDoNotRetriggerTransitions() {
+        window(ScreenStateMachine.CONVERSATION_ACTIVITY)
+        window(ScreenStateMachine.CONVERSATION_ACTIVITY)
+        window("android.app.Dialog")
+
+        assertEquals(1, machine.getTransitions())
+        assertEquals(ScreenState.CONVERSATION, machine.getState())
+    }
+
+    @Test
+    fun otherHomeTabsLeaveTheListScreens() {
+        window(ScreenStateMachine.HOME_ACTIVITY)
+        tab("Updates")
+        assertEquals(ScreenState.OTHER, machine.getState())
+
+        tab("Chats")
+        assertEquals(ScreenState.CHAT_LIST, machine.getState())
+    }
+
+    @Test
+    fun onlyContentScreensSubscribeToContentEvents() {
+        assertTrue(ScreenState.CONVERSATION.parsesContent())
+        assertTrue(ScreenState.CALLS_TAB.parsesContent())
+        assertTrue(ScreenState.ACTIVE_CALL.parsesContent())
+        assertFalse(ScreenState.CHAT_LIST.parsesContent())
+        assertFalse(ScreenState.OTHER.parsesContent())
+        ScreenState.values().forEach {
+            assertTrue(it.eventTypes and AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED != 0)
+        }
+    }
+}
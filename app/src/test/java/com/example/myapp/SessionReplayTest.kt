@@ -0,0 +1,205 @@
+package com.example.myapp
+
+import android.content.Context
+import android.view.accessibility.AccessibilityEvent
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.rules.TemporaryFolder
+import org.robolectric.RobolectricTestRunner
+
+// WhatsAppEventParser logs through android.util.Log, and the store needs Room
+@RunWith(RobolectricTestRunner::class)
+class SessionReplayTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private lateinit var db: AppDatabase
+
+    @Before
+    fun setUp() {
+        db = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext<Context>(), AppDatabase::class.java)
+            .build()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    private val window = 7
+    private val rows = 40
+
+    /**
+     * Records a session the way the service would: a chat is opened and flung through [scrolls]
+     * rows at one content event per frame, then the Calls tab is opened, then a call comes in.
+     */
+    private fun record(file: File, scrolls: Int) {
+        val clock = FakeClock(1_000)
+        val coalescer = EventCoalescer(
+            clock, WhatsAppAccessibilityService.COALESCE_QUIET_PERIOD_MS, WhatsAppAccessibilityService.COALESCE_MAX_LATENCY_MS
+        )
+        SessionRecording.Writer.create(file).use { writer ->
+            fun windowState(className: String, screen: ScreenState, setUp: CapturedEvent.() -> Unit = {}) {
+                val captured = CapturedEvent(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED, className, clock.now).apply {
+                    this.screen = screen
+                    setUp()
+                }
+                writer.capture(clock.now, window, captured)
+            }
+
+            // Flushes whatever comes due up to [until] at its due time, as the service's handler does
+            fun flushUntil(until: Long, content: CapturedEvent) {
+                while (coalescer.nextDueTime() <= until) {
+                    clock.now = coalescer.nextDueTime()
+                    coalescer.pollDue().forEach { writer.capture(clock.now, it.windowId, content) }
+                }
+                clock.now = until
+            }
+
+            fun scroll(frames: Int, content: (Int) -> CapturedEvent) {
+                for (frame in 0 until frames) {
+                    flushUntil(clock.now + 16, content(maxOf(frame - 1, 0)))
+                    writer.event(clock.now, window, AccessibilityEvent.TYPE_VIEW_SCROLLED)
+                    coalescer.offer(window)
+                }
+                flushUntil(clock.now + 1_000, content(frames - 1))
+            }
+
+            windowState("com.whatsapp.Conversation", ScreenState.CONVERSATION) {
+                contactNameById = "Ritik Sharma"
+                header = FlatSnapshot.Builder().apply {
+                    add(FlatSnapshot.NONE, NodeCollectors.CLASS_TEXT_VIEW, "Ritik Sharma", null, null)
+                }.build()
+            }
+            scroll(scrolls * 4) { frame ->
+                CapturedEvents.contentChanged(ConversationFixtures.conversation(first = frame / 4, rows = rows))
+            }
+
+            windowState("com.whatsapp.HomeActivity", ScreenState.CALLS_TAB)
+            val calls = NodeFixtures.listSnapshot(NodeFixtures.load(NodeFixtures.CALLS_TAB))
+            scroll(10) {
+                CapturedEvent(AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, null, clock.now).apply {
+                    screen = ScreenState.CALLS_TAB
+                    callList = calls
+                }
+            }
+
+            windowState("com.whatsapp.voipcalling.VoipActivityV2", ScreenState.ACTIVE_CALL)
+            scroll(3) {
+                CapturedEvent(AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, null, clock.now).apply {
+                    screen = ScreenState.ACTIVE_CALL
+                    callButtonDescriptions = listOf("WhatsApp voice call with Ritik Sharma - Incoming call")
+                }
+            }
+        }
+    }
+
+    private fun replay(file: File, seenIndex: File): SessionReplayer.Report {
+        val records = SessionRecording.Reader.open(file).use { it.readAll() }
+        val parser = WhatsAppEventParser(seenIndex, TestRules.classifier)
+        parser.restore()
+        return SessionReplayer(parser, CaptureStore(db)).replay(records)
+    }
+
+    @Test
+    fun captureRoundTrips() {
+        val list = ConversationFixtures.conversation(0, 3)
+        val bytes = ByteArrayOutputStream()
+        SessionRecording.Writer(bytes).use {
+            it.event(5, window, AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED)
+            it.capture(9, window, CapturedEvents.contentChanged(list).apply {
+                absorbedEvents = 4
+                incomplete = true
+                callButtonDescriptions = listOf("End call")
+            })
+        }
+
+        val records = SessionRecording.Reader(ByteArrayInputStream(bytes.toByteArray())).use { it.readAll() }
+
+        assertEquals(2, records.size)
+        assertNull(records[0].captured)
+        assertEquals(5L, records[0].uptime)
+        val captured = records[1].captured!!
+        assertEquals(ScreenState.CONVERSATION, captured.screen)
+        assertEquals(4, captured.absorbedEvents)
+        assertTrue(captured.incomplete)
+        assertFalse(captured.sourceMissing)
+        assertEquals(listOf("End call"), captured.callButtonDescriptions)
+        assertNull(captured.header)
+        assertEquals(list.fingerprint(0), captured.chatList.fingerprint(0))
+    }
+
+    @Test
+    fun tornTailKeepsEarlierRecords() {
+        val bytes = ByteArrayOutputStream()
+        SessionRecording.Writer(bytes).use {
+            it.event(1, window, AccessibilityEvent.TYPE_VIEW_SCROLLED)
+            it.capture(2, window, CapturedEvents.contentChanged(ConversationFixtures.conversation(0, 10)))
+        }
+        val torn = bytes.toByteArray().copyOf(bytes.size() - 20)
+
+        val reader = SessionRecording.Reader(ByteArrayInputStream(torn))
+        assertEquals(1, reader.readAll().size)
+        assertTrue(reader.isTruncated)
+    }
+
+    @Test(expected = IOException::class)
+    fun newerVersionIsRejected() {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use {
+            it.writeInt(SessionRecording.MAGIC)
+            it.writeShort(SessionRecording.VERSION + 1)
+        }
+        SessionRecording.Reader(ByteArrayInputStream(bytes.toByteArray()))
+    }
+
+    @Test
+    fun replayedSessionEmitsEachItemOnce() {
+        val scrolls = 100
+        val recording = tmp.newFile("session.rec")
+        val seenIndex = File(tmp.root, "seen.idx")
+        record(recording, scrolls)
+
+        val first = replay(recording, seenIndex)
+
+        assertEquals(0, first.burstsWithoutContent)
+        // every burst re-submits its window's content, plus the three screen changes
+        assertEquals(first.bursts + 3L, first.parses)
+        assertTrue(first.duplicatesSuppressed > 0)
+        assertTrue(first.p99Nanos >= first.p50Nanos)
+        assertTrue(first.rowsWritten > 0)
+        val messages = runBlocking { db.captureDao().messageCount() }
+        val calls = runBlocking { db.captureDao().callCount() }
+        assertTrue(calls > 0)
+
+        // Each row that made it into a captured screen is emitted exactly once
+        val capturedRows = SessionRecording.Reader.open(recording).use { it.readAll() }
+            .mapNotNull { it.captured?.chatList }
+            .flatMap { list -> (0 until list.size()).filter { list.parent(it) == 0 }.map { list.fingerprint(it) } }
+            .toSet()
+        // The seen-message index was persisted, so a second replay emits only the calls again
+        val second = replay(recording, seenIndex)
+        assertEquals(first.parses, second.parses)
+        assertEquals(capturedRows.size.toLong(), first.itemsEmitted - second.itemsEmitted)
+        assertEquals(capturedRows.size, messages)
+        // The calls are handed to the store again, which ignores them on their fingerprints
+        assertTrue(second.rowsWritten > 0)
+        assertEquals(messages, runBlocking { db.captureDao().messageCount() })
+        assertEquals(calls, runBlocking { db.captureDao().callCount() })
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.myapp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TargetWindowTrackerTest {
+    private val tracker = TargetWindowTracker()
+
+    private fun refresh(vararg ids: Int) {
+        tracker.begin()
+        ids.forEach(tracker::add)
+        tracker.commit()
+    }
+
+    @Test
+    fun dropsEverythingUntilFirstRefresh() {
+        assertFalse(tracker.accept(12))
+        assertEquals(1, tracker.dropped)
+    }
+
+    @Test
+    fun acceptsOnlyTrackedWindows() {
+        refresh(12, 40)
+
+        assertTrue(tracker.accept(12))
+        assertTrue(tracker.accept(40))
+        // keyboard
+        assertFalse(tracker.accept(7))
+        assertEquals("windows=2 refreshes=1 accepted=2 dropped=1", tracker.stats())
+    }
+
+    @Test
+    fun refreshReplacesPreviousWindows() {
+        refresh(1, 2, 3, 4, 5, 6)
+        refresh(9)
+
+        assertFalse(tracker.contains(1))
+        assertTrue(tracker.contains(9))
+        assertEquals(1, tracker.size())
+    }
+
+    @Test
+    fun currentWindowsStayInEffectWhileCollecting() {
+        refresh(12)
+        tracker.begin()
+        tracker.add(13)
+
+        assertTrue(tracker.contains(12))
+        tracker.commit()
+        assertFalse(tracker.contains(12))
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.myapp
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricTestRunner::class)
+class WriteBehindBufferTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private val dbName = "write_behind_test.db"
+    private lateinit var context: Context
+    private lateinit var db: AppDatabase
+
+    @Before
+    fun setUp() {
+        context = ApplicationProvider.getApplicationContext()
+        db = AppDatabase.create(context, dbName)
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+        context.deleteDatabase(dbName)
+    }
+
+    private fun row(i: Int) = NotificationEntity(
+        packageId = 1,
+        title = "Ritik Sharma",
+        text = "message $i",
+        timestamp = 1_700_000_000_000L + i,
+        isSensitive = false
+    )
+
+    private fun writer(
+        maxBatch: Int = WriteBehindBuffer.DEFAULT_MAX_BATCH,
+        maxAgeMs: Long = WriteBehindBuffer.DEFAULT_MAX_AGE_MS,
+        maxPending: Int = WriteBehindBuffer.DEFAULT_MAX_PENDING
+    ) = WriteBehindBuffer("test-writer", db.notificationDao()::insertAll, maxBatch, maxAgeMs, maxPending)
+
+    private object RowCodec : CaptureJournal.Codec<NotificationEntity> {
+        override fun write(out: DataOutputStream, row: NotificationEntity) {
+            out.writeUTF(row.text!!)
+            out.writeLong(row.timestamp)
+        }
+
+        override fun read(input: DataInputStream): NotificationEntity = NotificationEntity(
+            packageId = 1,
+            title = "Ritik Sharma",
+            text = input.readUTF(),
+            timestamp = input.readLong(),
+            isSensitive = false
+        )
+    }
+
+    private fun journaled(
+        file: File,
+        insert: (List<NotificationEntity>) -> Unit = db.notificationDao()::insertAll,
+        beforeOpen: () -> Unit = {}
+    ) = WriteBehindBuffer(
+        "test-writer", insert, maxBatch = 1_000, maxAgeMs = 60_000,
+        openJournal = {
+            beforeOpen()
+            CaptureJournal(file, 64 * 1024, RowCodec)
+        }
+    )
+
+    private fun count() = runBlocking { db.notificationDao().count() }
+
+    private fun awaitFlushes(writer: WriteBehindBuffer<*>, flushes: Long) {
+        val deadline = System.nanoTime() + 5_000_000_000L
+        while (writer.stats().flushes < flushes && System.nanoTime() < deadline) {
+            Thread.sleep(5)
+        }
+    }
+
+    @Test
+    fun fullBatchFlushesWithoutWaitingForAge() {
+        val writer = writer(maxBatch = 10, maxAgeMs = 60_000)
+        repeat(10) { writer.offer(row(it)) }
+        awaitFlushes(writer, 1)
+
+        assertEquals(10, count())
+        assertEquals(10, writer.stats().lastFlushSize)
+        writer.close()
+    }
+
+    @Test
+    fun oldBatchFlushesBeforeItIsFull() {
+        val writer = writer(maxBatch = 1_000, maxAgeMs = 50)
+        repeat(3) { writer.offer(row(it)) }
+        awaitFlushes(writer, 1)
+
+        assertEquals(3, count())
+        assertEquals(0, writer.pendingRows())
+        writer.close()
+    }
+
+    @Test
+    fun closeFlushesTheRemainderAndRefusesMore() {
+        val writer = writer(maxBatch = 1_000, maxAgeMs = 60_000)
+        repeat(5) { writer.offer(row(it)) }
+        assertEquals(5, writer.pendingRows())
+
+        assertTrue(writer.close())
+        writer.offer(row(5))
+
+        assertEquals(5, count())
+        assertEquals(1L, writer.stats().rowsDropped)
+    }
+
+    @Test
+    fun fullBufferDropsInsteadOfBlocking() {
+        val writer = writer(maxBatch = 1_000, maxAgeMs = 60_000, maxPending = 4)
+        repeat(6) { writer.offer(row(it)) }
+
+        assertEquals(4, writer.pendingRows())
+        assertEquals(2L, writer.stats().rowsDropped)
+        writer.close()
+    }
+
+    @Test
+    fun batchesNotificationBursts() {
+        val writer = writer()
+        val total = 2_000
+        // 1000 notifications per second, delivered in 10 ms bursts of 10 like a busy group chat
+        val burst = 10
+        val periodNanos = 10_000_000L
+        var maxOfferNanos = 0L
+        var maxPending = 0
+        val start = System.nanoTime()
+        for (i in 0 until total) {
+            if (i % burst == 0) {
+                val due = start + (i / burst) * periodNanos
+                while (System.nanoTime() < due) Thread.sleep(1)
+            }
+            val offerStart = System.nanoTime()
+            writer.offer(row(i))
+            maxOfferNanos = maxOf(maxOfferNanos, System.nanoTime() - offerStart)
+            maxPending = maxOf(maxPending, writer.pendingRows())
+        }
+        assertTrue(writer.close(10_000))
+        val stats = writer.stats()
+
+        assertEquals(total, count())
+        assertEquals(total.toLong(), stats.rowsWritten)
+        assertEquals(0L, stats.rowsDropped)
+        // Batching: far fewer transactions than rows
+        assertTrue(stats.meanFlushSize >= 10)
+        // The writer keeps up: nothing close to a second's worth of rows is ever waiting
+        assertTrue("max pending $maxPending", maxPending < 200)
+        // Offering never waits on SQLite; generous enough for a GC pause on a loaded CI machine,
+        // still short of an offer held up behind a flush or the database opening
+        assertTrue("max offer ${maxOfferNanos / 1e6} ms", maxOfferNanos < 250_000_000L)
+    }
+
+    @Test
+    fun journalReplaysRowsAKilledProcessLeftBuffered() {
+        val file = File(tmp.root, "notifications.journal")
+        val killed = journaled(file)
+        repeat(50) { killed.offer(row(it)) }
+        // Killed before the age limit: nothing reached the database
+        assertEquals(0, count())
+
+        val restarted = journaled(file)
+        assertTrue(restarted.close())
+
+        assertEquals(50, count())
+        assertEquals(50, restarted.stats().replayed)
+        val texts = runBlocking { db.notificationDao().latest(100) }.map { it.text }.sorted()
+        assertEquals((0 until 50).map { "message $it" }.sorted(), texts)
+        // Committed on the flush, so a third start has nothing to replay
+        assertTrue(CaptureJournal(file, 64 * 1024, RowCodec).takeRecovered().isEmpty())
+    }
+
+    @Test
+    fun rowsOfferedBeforeTheJournalOpensAreJournaledOnceItDoes() {
+        val file = File(tmp.root, "notifications.journal")
+        val opening = CountDownLatch(1)
+        val inserting = CountDownLatch(1)
+        val hang = CountDownLatch(1)
+        val killed = journaled(file, insert = { inserting.countDown(); hang.await() }) { opening.await(5, TimeUnit.SECONDS) }
+        // The journal is still being opened on the writer thread
+        repeat(20) { killed.offer(row(it)) }
+        opening.countDown()
+        repeat(20) { killed.offer(row(20 + it)) }
+        // Killed mid-insert: the writer has opened the journal, and committed nothing
+        killed.flushNow()
+        assertTrue(inserting.await(5, TimeUnit.SECONDS))
+
+        val restarted = journaled(file)
+        assertTrue(restarted.close())
+        hang.countDown()
+
+        assertEquals(40, count())
+        assertEquals(40, restarted.stats().replayed)
+        assertEquals(0L, killed.stats().unjournaled)
+    }
+}
@@ -0,0 +1,32 @@
+plugins {
+    id("java")
+    id("me.champeau.jmh")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// The sources hold non-ASCII literals; don't depend on the build machine's locale
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    jmhImplementation(project(":parser"))
+    jmhImplementation(testFixtures(project(":parser")))
+    // The DOM path NdjsonWriterBenchmark compares against
+    jmhImplementation("org.json:json:20231013")
+}
+
+// ./gradlew :benchmarks:jmh; the gc profiler adds gc.alloc.rate.norm, the bytes allocated per op
+jmh {
+    jmhVersion.set("1.37")
+    benchmarkMode.add("avgt")
+    timeUnit.set("ns")
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
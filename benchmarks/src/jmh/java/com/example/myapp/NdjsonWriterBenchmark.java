@@ -0,0 +1,82 @@
+package com.example.myapp;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Serializing one 40-row chat envelope: the org.json DOM path the parser used before the typed
+ * records, against {@link NdjsonWriter}. The records are built by the parser either way, so only
+ * the encoding is measured; the gc profiler's gc.alloc.rate.norm is the bytes allocated per op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class NdjsonWriterBenchmark {
+    private static final long TIME = 1758412219000L; // 2025-09-20 23:50:19 UTC
+    private static final int ROWS = 40;
+
+    private LogEnvelope envelope;
+    private NdjsonWriter writer;
+
+    @Setup
+    public void setUp() {
+        envelope = new LogEnvelope();
+        envelope.eventId = 42;
+        envelope.timestamp = TIME;
+        envelope.chatId = "Admissions 2025, +91 93061 84110";
+        envelope.isGroup = true;
+        for (int i = 1; i <= ROWS; i++) {
+            ChatMessage m = new ChatMessage();
+            m.chatId = envelope.chatId;
+            m.isGroup = true;
+            m.timestamp = TIME;
+            m.message = "Message " + i + ": \"fees\" due 12/10\nthanks";
+            m.isSent = i % 2 == 0;
+            m.messageTimestamp = "11:" + (10 + i % 50) + " pm";
+            m.status = i % 2 == 0 ? "Read" : null;
+            m.sender = i % 2 == 0 ? null : "+91 98765 43210";
+            envelope.items.add(m);
+        }
+        writer = new NdjsonWriter(16 * 1024, new TimestampFormatter(TimeZone.getTimeZone("UTC")));
+    }
+
+    @Benchmark
+    public String jsonObject() {
+        JSONArray items = new JSONArray();
+        for (JsonRecord record : envelope.items) {
+            ChatMessage m = (ChatMessage) record;
+            JSONObject item = new JSONObject();
+            item.put("chat_id", m.chatId);
+            item.put("is_group", m.isGroup);
+            item.put("timestamp", "2025-09-20 23:50:19");
+            item.put("message", m.message);
+            item.put("is_sent", m.isSent);
+            if (m.messageTimestamp != null) item.put("message_timestamp", m.messageTimestamp);
+            if (m.status != null) item.put("status", m.status);
+            if (m.sender != null) item.put("sender", m.sender);
+            items.put(item);
+        }
+        JSONObject entry = new JSONObject();
+        entry.put("event_id", envelope.eventId);
+        entry.put("timestamp", "2025-09-20 23:50:19");
+        entry.put("chat_id", envelope.chatId);
+        entry.put("is_group", envelope.isGroup);
+        entry.put("items", items);
+        return entry.toString(2);
+    }
+
+    @Benchmark
+    public String ndjsonWriter() {
+        return writer.reset().raw("Structured Log (Chat): ").record(envelope).buffer().toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.myapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A 40-row conversation being scrolled, 400 events: every fourth event the window moves by one
+ * row, the rest leave the rows untouched. One op is the whole replay, parsing every row of every
+ * event, or only the rows {@link RowParseCache} has not seen, as the parse thread does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RowParseCacheBenchmark {
+    private static final int EVENTS = 400;
+    private static final int ROWS = 40;
+    private static final long EVENT_TIME = 1_700_000_000_000L;
+    private static final String CHAT_ID = "+91 93061 84110";
+
+    private WhatsAppScreenParser parser;
+    private List<FlatSnapshot> screens;
+
+    @Setup
+    public void setUp() {
+        parser = new WhatsAppScreenParser(TestRules.INSTANCE.getClassifier());
+        screens = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            screens.add(ConversationFixtures.INSTANCE.conversation(i / 4, ROWS));
+        }
+    }
+
+    @Benchmark
+    public void uncached(Blackhole bh) {
+        for (FlatSnapshot screen : screens) {
+            for (int row = screen.firstChild(0); row != FlatSnapshot.NONE; row = screen.nextSibling(row)) {
+                bh.consume(parser.parseMessageRow(screen, row, CHAT_ID, false, EVENT_TIME));
+            }
+        }
+    }
+
+    @Benchmark
+    public void cached(Blackhole bh) {
+        RowParseCache<ChatMessage> cache = new RowParseCache<>();
+        for (FlatSnapshot screen : screens) {
+            cache.beginPass(CHAT_ID, false);
+            for (int row = screen.firstChild(0); row != FlatSnapshot.NONE; row = screen.nextSibling(row)) {
+                long fingerprint = screen.fingerprint(row);
+                ChatMessage item;
+                if (cache.lookup(fingerprint)) {
+                    item = cache.lastResult();
+                } else {
+                    item = parser.parseMessageRow(screen, row, CHAT_ID, false, EVENT_TIME);
+                    cache.put(fingerprint, item);
+                }
+                bh.consume(item);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.myapp;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * One benchmark per recorded screen: the list capture the service does on the accessibility
+ * thread and the row parsers the parse thread runs on it. Run with the gc profiler (the default
+ * in build.gradle.kts) to get allocations per op next to ns/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ScreenParserBenchmark {
+    private static final long EVENT_TIME = 1_700_000_000_000L;
+
+    private WhatsAppScreenParser parser;
+    private CountingAdapter adapter;
+    private FakeNode chatListContainer;
+    private FlatSnapshot privateChat;
+    private FlatSnapshot groupChat;
+    private FlatSnapshot groupHeader;
+    private FlatSnapshot callsTab;
+    private String activeCallDescription;
+
+    @Setup
+    public void setUp() {
+        parser = new WhatsAppScreenParser(TestRules.INSTANCE.getClassifier());
+        adapter = new CountingAdapter();
+        NodeFixtures fixtures = NodeFixtures.INSTANCE;
+
+        chatListContainer = fixtures.listContainer(fixtures.load(NodeFixtures.CHAT_LIST));
+        privateChat = fixtures.listSnapshot(fixtures.load(NodeFixtures.PRIVATE_CHAT));
+        FakeNode group = fixtures.load(NodeFixtures.GROUP_CHAT);
+        groupChat = fixtures.listSnapshot(group);
+        groupHeader = fixtures.header(group);
+        callsTab = fixtures.listSnapshot(fixtures.load(NodeFixtures.CALLS_TAB));
+        List<String> descriptions = fixtures.callDescriptions(fixtures.load(NodeFixtures.ACTIVE_CALL));
+        activeCallDescription = descriptions.get(0);
+    }
+
+    @Benchmark
+    public FlatSnapshot chatListCapture() {
+        return FlatSnapshot.capture(adapter, chatListContainer, 2);
+    }
+
+    @Benchmark
+    public void privateChat(Blackhole bh) {
+        for (int row = privateChat.firstChild(0); row != FlatSnapshot.NONE; row = privateChat.nextSibling(row)) {
+            bh.consume(parser.parseMessageRow(privateChat, row, "Ritik Sharma", false, EVENT_TIME));
+        }
+    }
+
+    @Benchmark
+    public void groupChat(Blackhole bh) {
+        String chatId = parser.findChatId(null, groupHeader);
+        boolean isGroup = parser.detectGroupChat(false, groupHeader);
+        for (int row = groupChat.firstChild(0); row != FlatSnapshot.NONE; row = groupChat.nextSibling(row)) {
+            bh.consume(parser.parseMessageRow(groupChat, row, chatId, isGroup, EVENT_TIME));
+        }
+    }
+
+    @Benchmark
+    public void callsTab(Blackhole bh) {
+        for (int row = callsTab.firstChild(0); row != FlatSnapshot.NONE; row = callsTab.nextSibling(row)) {
+            bh.consume(parser.parseCallRow(callsTab, row, EVENT_TIME));
+        }
+    }
+
+    @Benchmark
+    public ActiveCall activeCall() {
+        return parser.parseActiveCall(activeCallDescription, EVENT_TIME);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.myapp;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Classifying the texts of a conversation and a calls screen, one op per corpus: with the bundled
+ * rule table's automaton, or with the chain of checks parseNode, parseCallNode and findChatId used
+ * to run one category at a time. TextClassifierTest checks that both give the same masks.
+ */
+@State(Scope.Thread)
+public class TextClassifierBenchmark {
+    private static final List<String> CORPUS = Arrays.asList(
+            "Today", "Yesterday", "Read", "Delivered", "Recent", "Favourites",
+            "Messages and calls are end-to-end encrypted. No one outside of this chat can read them.",
+            "5 unread messages", "+91 93061 84110 added you", "Ravi changed the group name to \"MBA 2025\"",
+            "Missed voice call", "Incoming video call", "Group created by +91 98765 43210", "256 members",
+            "Hi, I wanted to ask about the last date for the admission form submission",
+            "Please share the fee structure for the MBA programme", "ok", "Thank you so much!",
+            "Is the hostel compulsory for first year students or can we stay outside?",
+            "MBA admissions helpdesk");
+
+    private TextClassifier classifier;
+
+    @Setup
+    public void setUp() {
+        classifier = TestRules.INSTANCE.getClassifier();
+    }
+
+    @Benchmark
+    public void branchChain(Blackhole bh) {
+        for (String text : CORPUS) {
+            bh.consume(branchChain(text));
+        }
+    }
+
+    @Benchmark
+    public void automaton(Blackhole bh) {
+        for (String text : CORPUS) {
+            bh.consume(classifier.classify(text));
+        }
+    }
+
+    private static int branchChain(String text) {
+        int mask = 0;
+        if (text.equals("Today") || text.equals("Yesterday")) mask |= TextCategory.DATE_SEPARATOR.bit;
+        if (text.contains("end-to-end encrypted")) mask |= TextCategory.ENCRYPTION_NOTICE.bit;
+        if (text.contains("unread messages")) mask |= TextCategory.UNREAD_BANNER.bit;
+        if (text.contains("added you") || text.contains("changed the group")) mask |= TextCategory.SYSTEM_MESSAGE.bit;
+        if (text.contains("call")) mask |= TextCategory.CALL_NOTICE.bit;
+        if (text.contains("members") || text.contains("Group created")) mask |= TextCategory.GROUP_INFO.bit;
+        if (text.equals("Delivered") || text.equals("Read") || text.equals("Sent")) mask |= TextCategory.DELIVERY_STATUS.bit;
+        if (text.contains("Outgoing") || text.contains("Incoming") || text.contains("Missed")) mask |= TextCategory.CALL_TYPE.bit;
+        if (text.equals("Favourites") || text.equals("Recent") || text.equals("Add favourite")) mask |= TextCategory.CALLS_HEADER.bit;
+        // Compiled on every call, as the parser's check was
+        if (text.matches(".*admissions.*")) mask |= TextCategory.CHAT_ID_HINT.bit;
+        return mask;
+    }
+}
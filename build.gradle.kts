@@ -2,4 +2,6 @@ plugins {
     id("com.android.application") version "8.1.4" apply false
     id("org.jetbrains.kotlin.android") version "1.9.10" apply false
     id("com.google.devtools.ksp") version "1.9.10-1.0.13" apply false
+    id("org.jetbrains.kotlin.jvm") version "1.9.10" apply false
+    id("me.champeau.jmh") version "0.7.2" apply false
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+plugins {
+    id("java-library")
+    id("java-test-fixtures")
+    id("org.jetbrains.kotlin.jvm")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// The sources hold non-ASCII literals; don't depend on the build machine's locale
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+tasks.withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile>().configureEach {
+    kotlinOptions {
+        jvmTarget = "1.8"
+    }
+}
+
+sourceSets {
+    // The phrase table ships as an Android raw resource; JVM tests and benchmarks read the same file
+    named("testFixtures") {
+        resources.srcDir("../app/src/main/res/raw")
+    }
+}
+
+dependencies {
+    testFixturesImplementation("org.json:json:20231013")
+
+    testImplementation("junit:junit:4.13.2")
+    testImplementation("org.json:json:20231013")
+}
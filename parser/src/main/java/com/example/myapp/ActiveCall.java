@@ -0,0 +1,22 @@
+package com.example.myapp;
+
+/** An ongoing voice call, read from the call screen's button description. */
+public final class ActiveCall implements JsonRecord {
+    /** Epoch millis of the event the call was seen in. */
+    public long timestamp;
+    public String contact;
+    public String callDirection;
+    /** Description as shown, when it did not match the expected pattern. */
+    public String rawDescription;
+
+    @Override
+    public void writeTo(NdjsonWriter out) {
+        out.beginObject()
+                .timestamp("timestamp", timestamp)
+                .field("type", "active_call")
+                .field("contact", contact)
+                .field("call_direction", callDirection)
+                .field("raw_description", rawDescription)
+                .endObject();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.myapp;
+
+/** One row of the Calls tab. */
+public final class CallEntry implements JsonRecord {
+    /** Epoch millis of the event the row was parsed from. */
+    public long timestamp;
+    public String name;
+    public String phoneNumber;
+    public String callType;
+    public String callTimestamp;
+
+    /** This row as seen at {@code eventTime}: itself if it already carries that time, else a copy. */
+    public CallEntry at(long eventTime) {
+        if (timestamp == eventTime) return this;
+        CallEntry copy = new CallEntry();
+        copy.timestamp = eventTime;
+        copy.name = name;
+        copy.phoneNumber = phoneNumber;
+        copy.callType = callType;
+        copy.callTimestamp = callTimestamp;
+        return copy;
+    }
+
+    @Override
+    public void writeTo(NdjsonWriter out) {
+        out.beginObject()
+                .timestamp("timestamp", timestamp)
+                .field("name", name)
+                .field("phone_number", phoneNumber)
+                .field("call_type", callType)
+                .field("call_timestamp", callTimestamp)
+                .endObject();
+    }
+}
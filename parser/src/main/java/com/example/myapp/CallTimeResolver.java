@@ -0,0 +1,147 @@
+package com.example.myapp;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the Calls tab's display time, which is relative to the day it is read ("Today, 9:41 pm",
+ * "Yesterday, 21:41", "Monday, 9:41 pm", "12 September, 9:41 pm", "12/09/2023, 9:41 pm"), to the
+ * epoch minute it names, using the time of the event it was read in. The same call read on two
+ * days resolves to the same minute, although its label changes.
+ *
+ * <p>Numeric dates are read day first. Labels in any other form, or in another language, are
+ * {@link #UNRESOLVED}. Thread-safe.
+ */
+public final class CallTimeResolver {
+    /** Returned for labels this class can't read. */
+    public static final long UNRESOLVED = Long.MIN_VALUE;
+
+    private static final Pattern LABEL = Pattern.compile(
+            "(?:(.+?),\\s*)?(\\d{1,2}):(\\d{2})(?:\\s*([ap])\\.?m\\.?)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DAY_MONTH = Pattern.compile("(\\d{1,2})\\s+(\\p{L}+)(?:,?\\s+(\\d{4}))?");
+    private static final Pattern MONTH_DAY = Pattern.compile("(\\p{L}+)\\s+(\\d{1,2})(?:,?\\s+(\\d{4}))?");
+    private static final Pattern NUMERIC = Pattern.compile("(\\d{1,2})[/.-](\\d{1,2})[/.-](\\d{2}|\\d{4})");
+    private static final String[] MONTHS = {
+            "jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"
+    };
+    private static final String[] WEEKDAYS = {"sun", "mon", "tue", "wed", "thu", "fri", "sat"};
+
+    private final TimeZone zone;
+
+    public CallTimeResolver() {
+        this(TimeZone.getDefault());
+    }
+
+    public CallTimeResolver(TimeZone zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * @param label     the call row's display time
+     * @param eventTime when the row was read, epoch millis
+     * @return the epoch millis of the minute {@code label} names, or {@link #UNRESOLVED}
+     */
+    public long resolve(String label, long eventTime) {
+        if (label == null) {
+            return UNRESOLVED;
+        }
+        Matcher matcher = LABEL.matcher(label.trim());
+        if (!matcher.matches()) {
+            return UNRESOLVED;
+        }
+        int hour = Integer.parseInt(matcher.group(2));
+        int minute = Integer.parseInt(matcher.group(3));
+        String meridiem = matcher.group(4);
+        if (minute > 59 || (meridiem == null ? hour > 23 : hour < 1 || hour > 12)) {
+            return UNRESOLVED;
+        }
+        if (meridiem != null) {
+            hour = hour % 12 + (Character.toLowerCase(meridiem.charAt(0)) == 'p' ? 12 : 0);
+        }
+
+        Calendar calendar = Calendar.getInstance(zone, Locale.US);
+        calendar.setTimeInMillis(eventTime);
+        String day = matcher.group(1);
+        if (day != null && !moveToDay(calendar, day.trim().toLowerCase(Locale.US))) {
+            return UNRESOLVED;
+        }
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    /** Moves {@code calendar}, set to the event time, to the date {@code day} names; {@code false} if it names none. */
+    private static boolean moveToDay(Calendar calendar, String day) {
+        if (day.equals("today")) {
+            return true;
+        }
+        if (day.equals("yesterday")) {
+            calendar.add(Calendar.DAY_OF_MONTH, -1);
+            return true;
+        }
+        int weekday = indexOfPrefix(WEEKDAYS, day);
+        if (weekday >= 0) {
+            // Weekday names stand for the past week, never today
+            int back = calendar.get(Calendar.DAY_OF_WEEK) - 1 - weekday;
+            calendar.add(Calendar.DAY_OF_MONTH, -(back <= 0 ? back + 7 : back));
+            return true;
+        }
+
+        int date;
+        int month;
+        String year;
+        Matcher matcher;
+        if ((matcher = NUMERIC.matcher(day)).matches()) {
+            date = Integer.parseInt(matcher.group(1));
+            month = Integer.parseInt(matcher.group(2)) - 1;
+            year = matcher.group(3);
+        } else if ((matcher = DAY_MONTH.matcher(day)).matches()) {
+            date = Integer.parseInt(matcher.group(1));
+            month = indexOfPrefix(MONTHS, matcher.group(2));
+            year = matcher.group(3);
+        } else if ((matcher = MONTH_DAY.matcher(day)).matches()) {
+            date = Integer.parseInt(matcher.group(2));
+            month = indexOfPrefix(MONTHS, matcher.group(1));
+            year = matcher.group(3);
+        } else {
+            return false;
+        }
+        if (month < 0 || month > 11 || date < 1 || date > 31) {
+            return false;
+        }
+
+        if (year != null) {
+            int y = Integer.parseInt(year);
+            calendar.set(Calendar.YEAR, y < 100 ? 2000 + y : y);
+            calendar.set(Calendar.MONTH, month);
+            calendar.set(Calendar.DAY_OF_MONTH, date);
+        } else {
+            // Without a year the date is the latest one not after the event
+            long eventTime = calendar.getTimeInMillis();
+            calendar.set(Calendar.MONTH, month);
+            calendar.set(Calendar.DAY_OF_MONTH, date);
+            if (calendar.getTimeInMillis() > eventTime) {
+                calendar.add(Calendar.YEAR, -1);
+            }
+        }
+        return true;
+    }
+
+    /** @return the index of the name {@code word} starts with (or abbreviates), -1 if none */
+    private static int indexOfPrefix(String[] names, String word) {
+        if (word.length() < 3) {
+            return -1;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (word.startsWith(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.myapp;
+
+/** One parsed conversation row: a message, an unread banner, a system line or group info. */
+public final class ChatMessage implements JsonRecord {
+    public String chatId;
+    public boolean isGroup;
+    /** Wall-clock time of the event the row was parsed from, in epoch millis. */
+    public long timestamp;
+
+    public String message;
+    public boolean isSent;
+    public String messageTimestamp;
+    public String status;
+    public String sender;
+
+    public String unreadCount;
+    /** Group system line such as "X added you"; {@code null} in private chats. */
+    public String systemMessage;
+    /** Call line in a private chat. */
+    public String callInfo;
+    public String groupInfo;
+
+    /**
+     * This row as seen at {@code eventTime}: itself if it already carries that time, else a copy.
+     * Rows are never changed once emitted, so a cached row is copied rather than re-stamped.
+     */
+    public ChatMessage at(long eventTime) {
+        if (timestamp == eventTime) return this;
+        ChatMessage copy = new ChatMessage();
+        copy.chatId = chatId;
+        copy.isGroup = isGroup;
+        copy.timestamp = eventTime;
+        copy.message = message;
+        copy.isSent = isSent;
+        copy.messageTimestamp = messageTimestamp;
+        copy.status = status;
+        copy.sender = sender;
+        copy.unreadCount = unreadCount;
+        copy.systemMessage = systemMessage;
+        copy.callInfo = callInfo;
+        copy.groupInfo = groupInfo;
+        return copy;
+    }
+
+    /** Text the row is identified by for de-duplication. */
+    public String identityText() {
+        if (message != null) return message;
+        if (systemMessage != null) return systemMessage;
+        if (callInfo != null) return callInfo;
+        if (groupInfo != null) return groupInfo;
+        return unreadCount;
+    }
+
+    @Override
+    public void writeTo(NdjsonWriter out) {
+        out.beginObject()
+                .field("chat_id", chatId)
+                .field("is_group", isGroup)
+                .timestamp("timestamp", timestamp)
+                .field("unread_count", unreadCount)
+                .field("system_message", systemMessage)
+                .field("call_info", callInfo)
+                .field("group_info", groupInfo);
+        if (message != null) {
+            out.field("message", message)
+                    .field("is_sent", isSent)
+                    .field("message_timestamp", messageTimestamp)
+                    .field("status", status)
+                    .field("sender", sender);
+        }
+        out.endObject();
+    }
+}
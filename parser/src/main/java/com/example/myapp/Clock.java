@@ -0,0 +1,6 @@
+package com.example.myapp;
+
+/** Monotonic millisecond clock; {@code SystemClock::uptimeMillis} on device, fake in tests. */
+public interface Clock {
+    long uptimeMillis();
+}
@@ -0,0 +1,361 @@
+package com.example.myapp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Immutable, detached copy of a node subtree in struct-of-arrays form. Node {@code i} is described
+ * by the i-th entry of parallel primitive arrays: parent, first child and next sibling indices, an
+ * id into a per-snapshot class table, well-known-class flags, and indices into one deduplicated
+ * string pool for text, content description and view id. Nodes are stored in pre-order, so index 0
+ * is the first root and every child comes after its parent.
+ *
+ * <p>Built in one pass on the main thread, after which the live handles are recycled; parsed on
+ * the worker. A handful of arrays replaces one object (plus a children array) per node.
+ */
+public final class FlatSnapshot {
+    public static final int NONE = -1;
+
+    public static final int FLAG_TEXT_VIEW = 1;
+    public static final int FLAG_BUTTON = 1 << 1;
+    public static final int FLAG_IMAGE_VIEW = 1 << 2;
+    public static final int FLAG_VIEW_GROUP = 1 << 3;
+
+    private static final String CLASS_IMAGE_VIEW = "android.widget.ImageView";
+    private static final String CLASS_VIEW_GROUP = "android.view.ViewGroup";
+
+    private final int size;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] classId;
+    private final int[] flags;
+    private final int[] text;
+    private final int[] description;
+    private final int[] viewId;
+    private final long[] fingerprint;
+    private final String[] classes;
+    private final String[] strings;
+
+    private FlatSnapshot(Builder b) {
+        size = b.size;
+        parent = Arrays.copyOf(b.parent, size);
+        firstChild = Arrays.copyOf(b.firstChild, size);
+        nextSibling = Arrays.copyOf(b.nextSibling, size);
+        classId = Arrays.copyOf(b.classId, size);
+        flags = Arrays.copyOf(b.flags, size);
+        text = Arrays.copyOf(b.text, size);
+        description = Arrays.copyOf(b.description, size);
+        viewId = Arrays.copyOf(b.viewId, size);
+        classes = b.classes.toArray(new String[0]);
+        strings = b.strings.toArray(new String[0]);
+        fingerprint = new long[size];
+        // Each distinct string is hashed once, however many nodes share it
+        long[] classHashes = hashes(classes);
+        long[] stringHashes = hashes(strings);
+        // Children always follow their parent, so walking backwards sees every child first
+        for (int i = size - 1; i >= 0; i--) {
+            fingerprint[i] = computeFingerprint(i, classHashes, stringHashes);
+        }
+    }
+
+    private long computeFingerprint(int node, long[] classHashes, long[] stringHashes) {
+        long h = 0x9e3779b97f4a7c15L;
+        h = (h ^ hash(classId[node], classHashes)) * 0x100000001b3L;
+        h = (h ^ hash(text[node], stringHashes)) * 0x100000001b3L;
+        h = (h ^ hash(description[node], stringHashes)) * 0x100000001b3L;
+        h = (h ^ childCount(node)) * 0x100000001b3L;
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+            h = (h ^ fingerprint[c]) * 0x100000001b3L;
+            h ^= h >>> 29;
+        }
+        return h;
+    }
+
+    /**
+     * 64-bit hashes, as a collision would make {@link RowParseCache} hand one row another's parse
+     * and the seen-message index drop the real message; 32-bit {@link String#hashCode()} collides
+     * on texts as short as "Aa" and "BB".
+     */
+    private static long[] hashes(String[] values) {
+        long[] hashes = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            hashes[i] = SeenMessageIndex.hash(values[i]);
+        }
+        return hashes;
+    }
+
+    private static long hash(int index, long[] hashes) {
+        return index != NONE ? hashes[index] : 0x5bd1e995L;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+            count++;
+        }
+        return count;
+    }
+
+    public String className(int node) {
+        return classId[node] != NONE ? classes[classId[node]] : null;
+    }
+
+    public boolean hasClass(int node, int classFlags) {
+        return (flags[node] & classFlags) != 0;
+    }
+
+    public String text(int node) {
+        return string(text[node]);
+    }
+
+    public String contentDescription(int node) {
+        return string(description[node]);
+    }
+
+    public String viewId(int node) {
+        return string(viewId[node]);
+    }
+
+    /**
+     * Structural hash of the subtree at {@code node}: 64-bit hashes of class names, text and
+     * descriptions, and child counts. Equal fingerprints mean the parsers would see the same input.
+     */
+    public long fingerprint(int node) {
+        return fingerprint[node];
+    }
+
+    private String string(int index) {
+        return index != NONE ? strings[index] : null;
+    }
+
+    /** Approximate retained size in bytes, excluding the pooled strings' contents. */
+    public long retainedBytes() {
+        // 12-byte object headers, 16-byte array headers, 4-byte references (compressed oops)
+        long bytes = 12 + 11 * 4 + 4;
+        bytes += 8 * (16 + 4L * size);
+        bytes += 16 + 8L * size;
+        bytes += 16 + 4L * classes.length + 16 + 4L * strings.length;
+        return bytes;
+    }
+
+    /**
+     * Writes the class table, the string pool and, per node, the parent and pool indices. Links,
+     * flags and fingerprints are derived again by {@link #readFrom}.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(classes.length);
+        for (String name : classes) {
+            writeString(out, name);
+        }
+        out.writeInt(strings.length);
+        for (String value : strings) {
+            writeString(out, value);
+        }
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(parent[i]);
+            out.writeInt(classId[i]);
+            out.writeInt(text[i]);
+            out.writeInt(description[i]);
+            out.writeInt(viewId[i]);
+        }
+    }
+
+    /** Reads a snapshot written by {@link #writeTo}. */
+    public static FlatSnapshot readFrom(DataInput in) throws IOException {
+        String[] classTable = new String[checkCount(in.readInt())];
+        for (int i = 0; i < classTable.length; i++) {
+            classTable[i] = readString(in);
+        }
+        String[] pool = new String[checkCount(in.readInt())];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = readString(in);
+        }
+        int count = checkCount(in.readInt());
+        Builder builder = new Builder();
+        for (int i = 0; i < count; i++) {
+            int parentIndex = in.readInt();
+            if (parentIndex < NONE || parentIndex >= i) {
+                throw new IOException("Node " + i + " has parent " + parentIndex);
+            }
+            builder.add(parentIndex, lookup(classTable, in.readInt()), lookup(pool, in.readInt()),
+                    lookup(pool, in.readInt()), lookup(pool, in.readInt()));
+        }
+        return builder.build();
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0) throw new IOException("Negative count " + count);
+        return count;
+    }
+
+    private static String lookup(String[] table, int index) throws IOException {
+        if (index == NONE) return null;
+        if (index < 0 || index >= table.length) throw new IOException("Index " + index + " out of " + table.length);
+        return table[index];
+    }
+
+    // Length-prefixed UTF-8; writeUTF caps strings at 64 KB and message texts can be longer
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[checkCount(in.readInt())];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies {@code node} and its descendants down to {@code maxDepth} levels. The caller keeps
+     * ownership of {@code node}; every child obtained here is recycled before returning.
+     */
+    public static <N> FlatSnapshot capture(NodeAdapter<N> adapter, N node, int maxDepth) {
+        if (node == null) return null;
+        Builder builder = new Builder();
+        builder.addTree(adapter, node, NONE, maxDepth);
+        return builder.build();
+    }
+
+    /** Appends nodes in pre-order. Not thread-safe. */
+    public static final class Builder {
+        private int size;
+        private int[] parent = new int[16];
+        private int[] firstChild = new int[16];
+        private int[] lastChild = new int[16];
+        private int[] nextSibling = new int[16];
+        private int[] classId = new int[16];
+        private int[] flags = new int[16];
+        private int[] text = new int[16];
+        private int[] description = new int[16];
+        private int[] viewId = new int[16];
+        private final ArrayList<String> classes = new ArrayList<>();
+        private final ArrayList<String> strings = new ArrayList<>();
+        private final HashMap<String, Integer> classIds = new HashMap<>();
+        private final HashMap<String, Integer> stringIds = new HashMap<>();
+
+        /**
+         * Adds a node as the last child of {@code parentIndex}, or as another root when it is
+         * {@link #NONE}. Children must be added after their parent.
+         *
+         * @return the new node's index
+         */
+        public int add(int parentIndex, CharSequence className, CharSequence nodeText, CharSequence nodeDescription, String nodeViewId) {
+            if (size == parent.length) grow();
+            int i = size++;
+            parent[i] = parentIndex;
+            firstChild[i] = NONE;
+            lastChild[i] = NONE;
+            nextSibling[i] = NONE;
+            if (parentIndex != NONE) {
+                if (lastChild[parentIndex] == NONE) {
+                    firstChild[parentIndex] = i;
+                } else {
+                    nextSibling[lastChild[parentIndex]] = i;
+                }
+                lastChild[parentIndex] = i;
+            }
+            String name = className != null ? className.toString() : null;
+            classId[i] = name != null ? internClass(name) : NONE;
+            flags[i] = name != null ? classFlags(name) : 0;
+            text[i] = intern(nodeText);
+            description[i] = intern(nodeDescription);
+            viewId[i] = intern(nodeViewId);
+            return i;
+        }
+
+        /** Adds {@code node} under {@code parentIndex}, reading it through {@code adapter}. */
+        public <N> int add(NodeAdapter<N> adapter, N node, int parentIndex) {
+            return add(parentIndex, adapter.getClassName(node), adapter.getText(node),
+                    adapter.getContentDescription(node), adapter.getViewIdResourceName(node));
+        }
+
+        <N> void addTree(NodeAdapter<N> adapter, N node, int parentIndex, int maxDepth) {
+            int index = add(adapter, node, parentIndex);
+            int childCount = maxDepth > 0 ? adapter.getChildCount(node) : 0;
+            for (int i = 0; i < childCount; i++) {
+                N child = adapter.getChild(node, i);
+                if (child == null) continue;
+                addTree(adapter, child, index, maxDepth - 1);
+                adapter.recycle(child);
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public FlatSnapshot build() {
+            return new FlatSnapshot(this);
+        }
+
+        private int internClass(String name) {
+            Integer id = classIds.get(name);
+            if (id == null) {
+                id = classes.size();
+                classes.add(name);
+                classIds.put(name, id);
+            }
+            return id;
+        }
+
+        private int intern(CharSequence value) {
+            if (value == null) return NONE;
+            String s = value.toString();
+            Integer id = stringIds.get(s);
+            if (id == null) {
+                id = strings.size();
+                strings.add(s);
+                stringIds.put(s, id);
+            }
+            return id;
+        }
+
+        private static int classFlags(String name) {
+            switch (name) {
+                case NodeCollectors.CLASS_TEXT_VIEW: return FLAG_TEXT_VIEW;
+                case NodeCollectors.CLASS_BUTTON: return FLAG_BUTTON;
+                case CLASS_IMAGE_VIEW: return FLAG_IMAGE_VIEW;
+                case CLASS_VIEW_GROUP: return FLAG_VIEW_GROUP;
+                default: return 0;
+            }
+        }
+
+        private void grow() {
+            int capacity = size * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            lastChild = Arrays.copyOf(lastChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            classId = Arrays.copyOf(classId, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            text = Arrays.copyOf(text, capacity);
+            description = Arrays.copyOf(description, capacity);
+            viewId = Arrays.copyOf(viewId, capacity);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.myapp;
+
+/** A structured log record that can stream itself into an {@link NdjsonWriter}. */
+public interface JsonRecord {
+    void writeTo(NdjsonWriter out);
+}
@@ -0,0 +1,46 @@
+package com.example.myapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch of items emitted for one event. Chat envelopes carry {@code chat_id}/{@code is_group};
+ * call envelopes carry {@code type} instead. Reused between events by the parser.
+ */
+public final class LogEnvelope implements JsonRecord {
+    public static final String TYPE_CALLS = "calls";
+
+    public int eventId;
+    /** Epoch millis of the event that produced the batch. */
+    public long timestamp;
+    public String chatId;
+    public boolean isGroup;
+    /** {@code null} for chat envelopes. */
+    public String type;
+    public final List<JsonRecord> items = new ArrayList<>();
+
+    public void clear() {
+        timestamp = 0;
+        chatId = null;
+        isGroup = false;
+        type = null;
+        items.clear();
+    }
+
+    @Override
+    public void writeTo(NdjsonWriter out) {
+        out.beginObject()
+                .field("event_id", eventId)
+                .timestamp("timestamp", timestamp);
+        if (type == null) {
+            out.field("chat_id", chatId).field("is_group", isGroup);
+        } else {
+            out.field("type", type);
+        }
+        out.beginArray("items");
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).writeTo(out);
+        }
+        out.endArray().endObject();
+    }
+}
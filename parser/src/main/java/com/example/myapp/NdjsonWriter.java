@@ -0,0 +1,155 @@
+package com.example.myapp;
+
+/**
+ * Streams compact JSON into a reusable buffer without building a JSONObject tree first. Escaping
+ * and key order follow Android's org.json, so each line is what {@code JSONObject.toString()}
+ * produced for the same puts, minus the pretty-printing.
+ *
+ * <p>Not thread-safe; keep one writer per thread and reuse it.
+ */
+public final class NdjsonWriter {
+    private static final int MAX_DEPTH = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder out;
+    private final TimestampFormatter timestamps;
+    // needsComma[depth]: whether the next member/element at this depth must be preceded by a comma
+    private final boolean[] needsComma = new boolean[MAX_DEPTH];
+    private int depth;
+
+    public NdjsonWriter(int initialCapacity, TimestampFormatter timestamps) {
+        this.out = new StringBuilder(initialCapacity);
+        this.timestamps = timestamps;
+    }
+
+    /** Clears the buffer for the next record. */
+    public NdjsonWriter reset() {
+        out.setLength(0);
+        depth = 0;
+        return this;
+    }
+
+    /** Appends raw text, such as a log prefix, outside any JSON value. */
+    public NdjsonWriter raw(String text) {
+        out.append(text);
+        return this;
+    }
+
+    public StringBuilder buffer() {
+        return out;
+    }
+
+    public NdjsonWriter record(JsonRecord record) {
+        record.writeTo(this);
+        return this;
+    }
+
+    public NdjsonWriter beginObject() {
+        separator();
+        out.append('{');
+        push();
+        return this;
+    }
+
+    public NdjsonWriter endObject() {
+        depth--;
+        out.append('}');
+        return this;
+    }
+
+    public NdjsonWriter beginArray(String name) {
+        name(name);
+        out.append('[');
+        push();
+        return this;
+    }
+
+    public NdjsonWriter endArray() {
+        depth--;
+        out.append(']');
+        return this;
+    }
+
+    /** Writes {@code "name":value}; {@code null} values are skipped, as JSONObject.put(name, null) does. */
+    public NdjsonWriter field(String name, String value) {
+        if (value == null) return this;
+        name(name);
+        string(value);
+        return this;
+    }
+
+    /** Writes epoch millis as a formatted local time string. */
+    public NdjsonWriter timestamp(String name, long epochMillis) {
+        name(name);
+        string(timestamps.format(epochMillis));
+        return this;
+    }
+
+    public NdjsonWriter field(String name, boolean value) {
+        name(name);
+        out.append(value);
+        return this;
+    }
+
+    public NdjsonWriter field(String name, long value) {
+        name(name);
+        out.append(value);
+        return this;
+    }
+
+    private void name(String name) {
+        separator();
+        string(name);
+        out.append(':');
+    }
+
+    private void separator() {
+        if (depth == 0) return;
+        if (needsComma[depth - 1]) {
+            out.append(',');
+        } else {
+            needsComma[depth - 1] = true;
+        }
+    }
+
+    private void push() {
+        needsComma[depth] = false;
+        depth++;
+    }
+
+    private void string(String value) {
+        out.append('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    out.append('\\').append(c);
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    if (c <= 0x1f) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
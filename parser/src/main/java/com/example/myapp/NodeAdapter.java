@@ -0,0 +1,27 @@
+package com.example.myapp;
+
+import java.util.List;
+
+/**
+ * Read-only view over a UI node type so the tree walker and collectors can run against
+ * {@link android.view.accessibility.AccessibilityNodeInfo} on device and fake trees in unit tests.
+ */
+public interface NodeAdapter<N> {
+    int getChildCount(N node);
+
+    /** Obtains a child handle; the caller owns the result and must {@link #recycle} it. */
+    N getChild(N node, int index);
+
+    CharSequence getClassName(N node);
+
+    CharSequence getText(N node);
+
+    CharSequence getContentDescription(N node);
+
+    String getViewIdResourceName(N node);
+
+    /** Looks nodes up by fully qualified view id in one call; the caller owns and recycles them. */
+    List<N> findByViewId(N root, String viewId);
+
+    void recycle(N node);
+}
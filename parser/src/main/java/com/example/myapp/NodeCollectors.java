@@ -0,0 +1,138 @@
+package com.example.myapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The interested parsers the service registers with {@link NodeTreeWalker}. */
+public final class NodeCollectors {
+    public static final String CLASS_TEXT_VIEW = "android.widget.TextView";
+    public static final String CLASS_BUTTON = "android.widget.Button";
+    public static final String CLASS_LIST_VIEW = "android.widget.ListView";
+    public static final String CLASS_RECYCLER_VIEW = "androidx.recyclerview.widget.RecyclerView";
+
+    private NodeCollectors() {
+    }
+
+    /** Collects content descriptions of buttons that look like an ongoing voice call. */
+    public static final class CallButtonCollector<N> implements NodeVisitor<N> {
+        private final NodeAdapter<N> adapter;
+        private final List<String> descriptions = new ArrayList<>();
+        private String viewId;
+
+        public CallButtonCollector(NodeAdapter<N> adapter) {
+            this.adapter = adapter;
+        }
+
+        public List<String> getDescriptions() {
+            return descriptions;
+        }
+
+        /**
+         * Hands over the descriptions found since the last call. A resumed walk adds to what the
+         * earlier passes found, so each capture takes only its own and no button is sent twice.
+         */
+        public List<String> takeDescriptions() {
+            List<String> taken = new ArrayList<>(descriptions);
+            descriptions.clear();
+            return taken;
+        }
+
+        /** View id of the first matching button, so later passes can look it up directly. */
+        public String getViewId() {
+            return viewId;
+        }
+
+        @Override
+        public void reset() {
+            descriptions.clear();
+            viewId = null;
+        }
+
+        @Override
+        public int visit(N node, CharSequence className, int depth) {
+            if (className != null && CLASS_BUTTON.contentEquals(className)) {
+                CharSequence desc = adapter.getContentDescription(node);
+                if (isCallButtonDescription(desc)) {
+                    descriptions.add(desc.toString());
+                    if (viewId == null) {
+                        viewId = adapter.getViewIdResourceName(node);
+                    }
+                }
+            }
+            return CONTINUE;
+        }
+    }
+
+    public static boolean isCallButtonDescription(CharSequence desc) {
+        return desc != null && desc.toString().contains("voice call");
+    }
+
+    /**
+     * Keeps the first container of the given class. Its rows are parsed separately, so the walker
+     * is told not to descend into it.
+     */
+    public static final class ListContainerCollector<N> implements NodeVisitor<N> {
+        private final NodeAdapter<N> adapter;
+        private final String containerClass;
+        private N container;
+
+        public ListContainerCollector(NodeAdapter<N> adapter, String containerClass) {
+            this.adapter = adapter;
+            this.containerClass = containerClass;
+        }
+
+        /** Hands the retained container to the caller, who must recycle it. */
+        public N take() {
+            N result = container;
+            container = null;
+            return result;
+        }
+
+        @Override
+        public void reset() {
+            if (container != null) {
+                adapter.recycle(container);
+                container = null;
+            }
+        }
+
+        @Override
+        public int visit(N node, CharSequence className, int depth) {
+            if (container == null && className != null && containerClass.contentEquals(className)) {
+                container = node;
+                return RETAIN | SKIP_CHILDREN;
+            }
+            return CONTINUE;
+        }
+    }
+
+    /** Collects the text of every TextView, used for chat title and group detection. */
+    public static final class TitleTextCollector<N> implements NodeVisitor<N> {
+        private final NodeAdapter<N> adapter;
+        private final List<String> texts = new ArrayList<>();
+
+        public TitleTextCollector(NodeAdapter<N> adapter) {
+            this.adapter = adapter;
+        }
+
+        public List<String> getTexts() {
+            return texts;
+        }
+
+        @Override
+        public void reset() {
+            texts.clear();
+        }
+
+        @Override
+        public int visit(N node, CharSequence className, int depth) {
+            if (className != null && CLASS_TEXT_VIEW.contentEquals(className)) {
+                CharSequence text = adapter.getText(node);
+                if (text != null) {
+                    texts.add(text.toString());
+                }
+            }
+            return CONTINUE;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.myapp;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Debug bookkeeping for node handles: who obtained each one, who recycled it, and in which stage.
+ * Flags double recycles and reads of recycled handles as they happen. A handle that becomes
+ * unreachable without being recycled is a leak, reported by {@link #pollLeaks()} once the garbage
+ * collector has noticed. Handles are held weakly, so a paused tree walk that legitimately keeps
+ * nodes across events is not mistaken for a leak.
+ *
+ * <p>Counts are kept per call site (a label chosen by the caller) and per stage (whatever
+ * {@link #setStage} last set). Not thread-safe; node handles only live on the main thread.
+ */
+public final class NodeHandleTracker {
+    /** Counters for one call site, one stage or everything. */
+    public static final class Counts {
+        long obtained;
+        long recycled;
+        long leaked;
+        long doubleRecycled;
+        long useAfterRecycle;
+        long untrackedRecycles;
+
+        public long getObtained() {
+            return obtained;
+        }
+
+        public long getRecycled() {
+            return recycled;
+        }
+
+        public long getLeaked() {
+            return leaked;
+        }
+
+        public long getDoubleRecycled() {
+            return doubleRecycled;
+        }
+
+        public long getUseAfterRecycle() {
+            return useAfterRecycle;
+        }
+
+        /** Recycles of handles obtained outside the tracker, e.g. straight from an event. */
+        public long getUntrackedRecycles() {
+            return untrackedRecycles;
+        }
+
+        /** Leaks, double recycles and uses after recycle together. */
+        public long getProblems() {
+            return leaked + doubleRecycled + useAfterRecycle;
+        }
+
+        public boolean hasProblems() {
+            return getProblems() != 0;
+        }
+
+        @Override
+        public String toString() {
+            return "obtained=" + obtained + " recycled=" + recycled + " leaked=" + leaked
+                    + " doubleRecycled=" + doubleRecycled + " useAfterRecycle=" + useAfterRecycle
+                    + " untracked=" + untrackedRecycles;
+        }
+    }
+
+    private static final class Handle extends WeakReference<Object> {
+        final int hash;
+        final String site;
+        final String stage;
+        /** Site that recycled the handle, or {@code null} while it is live. */
+        String recycledAt;
+        /** Next handle with the same identity hash. */
+        Handle next;
+
+        Handle(Object node, ReferenceQueue<Object> queue, int hash, String site, String stage) {
+            super(node, queue);
+            this.hash = hash;
+            this.site = site;
+            this.stage = stage;
+        }
+    }
+
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    // Keyed by identity hash; an IdentityHashMap would keep every handle reachable
+    private final HashMap<Integer, Handle> handles = new HashMap<>();
+    private final Map<String, Counts> bySite = new LinkedHashMap<>();
+    private final Map<String, Counts> byStage = new LinkedHashMap<>();
+    private final Counts total = new Counts();
+    private String stage = "idle";
+    private String lastProblem;
+
+    /** Attributes handles obtained from now on to {@code stage}. */
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /** Records a handle the caller now owns. */
+    public void obtained(Object node, String site) {
+        if (node == null) return;
+        // A recycled handle handed out again by the pool starts a new life
+        Handle old = find(node);
+        if (old != null) {
+            unlink(old);
+            // A cleared reference is never enqueued, so the old life cannot turn up as a leak
+            old.clear();
+        }
+        int hash = System.identityHashCode(node);
+        Handle handle = new Handle(node, collected, hash, site, stage);
+        handle.next = handles.get(hash);
+        handles.put(hash, handle);
+        count(site).obtained++;
+        count(byStage, stage).obtained++;
+        total.obtained++;
+    }
+
+    /**
+     * Records a recycle.
+     *
+     * @return {@code false} if the handle was already recycled, in which case the caller should
+     *         not recycle it again
+     */
+    public boolean recycled(Object node, String site) {
+        Handle handle = find(node);
+        if (handle == null) {
+            count(site).untrackedRecycles++;
+            total.untrackedRecycles++;
+            return true;
+        }
+        if (handle.recycledAt != null) {
+            count(site).doubleRecycled++;
+            count(byStage, handle.stage).doubleRecycled++;
+            total.doubleRecycled++;
+            lastProblem = "double recycle at " + site + " (obtained at " + handle.site + ", first recycled at "
+                    + handle.recycledAt + ")";
+            return false;
+        }
+        handle.recycledAt = site;
+        count(site).recycled++;
+        count(byStage, handle.stage).recycled++;
+        total.recycled++;
+        return true;
+    }
+
+    /** Records a read of the handle; reading a recycled one returns another node's data or nothing. */
+    public void used(Object node, String site) {
+        Handle handle = find(node);
+        if (handle == null || handle.recycledAt == null) return;
+        count(site).useAfterRecycle++;
+        count(byStage, handle.stage).useAfterRecycle++;
+        total.useAfterRecycle++;
+        lastProblem = "use after recycle at " + site + " (obtained at " + handle.site + ", recycled at "
+                + handle.recycledAt + ")";
+    }
+
+    /**
+     * Counts handles the garbage collector found unreachable without a recycle since the last call.
+     *
+     * @return number of new leaks
+     */
+    public int pollLeaks() {
+        int leaks = 0;
+        Reference<?> ref;
+        while ((ref = collected.poll()) != null) {
+            Handle handle = (Handle) ref;
+            unlink(handle);
+            if (handle.recycledAt == null) {
+                count(handle.site).leaked++;
+                count(byStage, handle.stage).leaked++;
+                total.leaked++;
+                lastProblem = "leak of a handle obtained at " + handle.site + " during " + handle.stage;
+                leaks++;
+            }
+        }
+        return leaks;
+    }
+
+    /** Handles obtained and neither recycled nor collected yet. */
+    public int getLive() {
+        int live = 0;
+        for (Handle head : handles.values()) {
+            for (Handle h = head; h != null; h = h.next) {
+                if (h.recycledAt == null && h.get() != null) live++;
+            }
+        }
+        return live;
+    }
+
+    public Counts getTotal() {
+        return total;
+    }
+
+    /** @return the counts for {@code site}, or {@code null} if nothing happened there */
+    public Counts forSite(String site) {
+        return bySite.get(site);
+    }
+
+    /** @return the counts for {@code stage}, or {@code null} if nothing happened during it */
+    public Counts forStage(String stage) {
+        return byStage.get(stage);
+    }
+
+    /** Description of the most recent problem, or {@code null} if there has been none. */
+    public String getLastProblem() {
+        return lastProblem;
+    }
+
+    /** Totals, then every site and stage that had a problem. */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(total).append(" live=").append(getLive());
+        appendProblems(sb, "site", bySite);
+        appendProblems(sb, "stage", byStage);
+        return sb.toString();
+    }
+
+    private static void appendProblems(StringBuilder sb, String kind, Map<String, Counts> counts) {
+        for (Map.Entry<String, Counts> e : counts.entrySet()) {
+            if (e.getValue().hasProblems()) {
+                sb.append("\n  ").append(kind).append(' ').append(e.getKey()).append(": ").append(e.getValue());
+            }
+        }
+    }
+
+    private Counts count(String site) {
+        return count(bySite, site);
+    }
+
+    private static Counts count(Map<String, Counts> map, String key) {
+        Counts counts = map.get(key);
+        if (counts == null) {
+            counts = new Counts();
+            map.put(key, counts);
+        }
+        return counts;
+    }
+
+    private Handle find(Object node) {
+        if (node == null) return null;
+        for (Handle h = handles.get(System.identityHashCode(node)); h != null; h = h.next) {
+            if (h.get() == node) return h;
+        }
+        return null;
+    }
+
+    private void unlink(Handle handle) {
+        Handle head = handles.get(handle.hash);
+        if (head == handle) {
+            if (handle.next != null) {
+                handles.put(handle.hash, handle.next);
+            } else {
+                handles.remove(handle.hash);
+            }
+            return;
+        }
+        for (Handle h = head; h != null; h = h.next) {
+            if (h.next == handle) {
+                h.next = handle.next;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.myapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass, iterative pre-order walk over a node tree. Every node is obtained once and offered
+ * to all registered visitors, replacing the separate recursive scans each parser used to do.
+ * The explicit stack is reused between walks, so a walk allocates nothing per level.
+ *
+ * <p>A walk is bounded by its {@link TraversalBudget}. When the time or node budget runs out the
+ * visitors hold a partial result, {@link #isComplete()} is false, and the unvisited nodes stay on
+ * the stack so {@link #resume()} can finish the job on the next event.
+ *
+ * <p>Not thread-safe; use one walker per thread.
+ */
+public class NodeTreeWalker<N> {
+    /** Why the last pass stopped. */
+    public enum Stop {
+        COMPLETE,
+        DEADLINE,
+        NODE_LIMIT
+    }
+
+    private static final int INITIAL_STACK = 64;
+
+    private final NodeAdapter<N> adapter;
+    private final TraversalBudget budget;
+    private final List<NodeVisitor<N>> visitors = new ArrayList<>();
+    private Object[] nodeStack = new Object[INITIAL_STACK];
+    private int[] depthStack = new int[INITIAL_STACK];
+    private int size;
+    private N root;
+    private Stop lastStop = Stop.COMPLETE;
+    private int deadlineOverruns;
+    private int nodeLimitOverruns;
+    private int depthPruned;
+
+    public NodeTreeWalker(NodeAdapter<N> adapter) {
+        this(adapter, TraversalBudget.UNBOUNDED);
+    }
+
+    public NodeTreeWalker(NodeAdapter<N> adapter, TraversalBudget budget) {
+        this.adapter = adapter;
+        this.budget = budget;
+    }
+
+    public NodeTreeWalker<N> register(NodeVisitor<N> visitor) {
+        visitors.add(visitor);
+        return this;
+    }
+
+    /**
+     * Walks the tree below {@code root}, abandoning any unfinished earlier walk. The root stays
+     * owned by the caller; every other node is recycled once visited unless a visitor returned
+     * {@link NodeVisitor#RETAIN}.
+     *
+     * @return the number of nodes visited
+     */
+    public int walk(N root) {
+        abandon();
+        for (int i = 0; i < visitors.size(); i++) {
+            visitors.get(i).reset();
+        }
+        lastStop = Stop.COMPLETE;
+        if (root == null) return 0;
+
+        this.root = root;
+        push(root, 0);
+        return run();
+    }
+
+    /**
+     * Continues an incomplete walk where it stopped, adding to what the visitors already
+     * collected. The original root need not be valid any more.
+     *
+     * @return the number of nodes visited by this pass
+     */
+    public int resume() {
+        return size > 0 ? run() : 0;
+    }
+
+    /** Recycles the nodes an incomplete walk left unvisited. */
+    public void abandon() {
+        while (size > 0) {
+            size--;
+            @SuppressWarnings("unchecked")
+            N node = (N) nodeStack[size];
+            nodeStack[size] = null;
+            if (node != root) {
+                adapter.recycle(node);
+            }
+        }
+        root = null;
+    }
+
+    /** Whether the last pass visited everything within the depth limit. */
+    public boolean isComplete() {
+        return size == 0;
+    }
+
+    public Stop getLastStop() {
+        return lastStop;
+    }
+
+    public int getDeadlineOverruns() {
+        return deadlineOverruns;
+    }
+
+    public int getNodeLimitOverruns() {
+        return nodeLimitOverruns;
+    }
+
+    /** Nodes whose children were skipped because they sat at the maximum depth. */
+    public int getDepthPruned() {
+        return depthPruned;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int run() {
+        long deadline = budget.deadline();
+        int visited = 0;
+        lastStop = Stop.COMPLETE;
+        while (size > 0) {
+            if (visited == budget.maxNodes) {
+                lastStop = Stop.NODE_LIMIT;
+                nodeLimitOverruns++;
+                break;
+            }
+            // Check before every node, as each costs at least one binder call, but always make progress
+            if (visited > 0 && deadline != Long.MAX_VALUE && budget.clock.uptimeMillis() >= deadline) {
+                lastStop = Stop.DEADLINE;
+                deadlineOverruns++;
+                break;
+            }
+            size--;
+            N node = (N) nodeStack[size];
+            int depth = depthStack[size];
+            nodeStack[size] = null;
+            visited++;
+
+            CharSequence className = adapter.getClassName(node);
+            int flags = NodeVisitor.CONTINUE;
+            for (int i = 0; i < visitors.size(); i++) {
+                flags |= visitors.get(i).visit(node, className, depth);
+            }
+
+            if ((flags & NodeVisitor.SKIP_CHILDREN) == 0) {
+                if (depth >= budget.maxDepth) {
+                    // Child count is part of the node's parcel, no binder call
+                    if (adapter.getChildCount(node) > 0) depthPruned++;
+                } else {
+                    // Push in reverse so the first child is popped first and order stays pre-order.
+                    for (int i = adapter.getChildCount(node) - 1; i >= 0; i--) {
+                        N child = adapter.getChild(node, i);
+                        if (child != null) {
+                            push(child, depth + 1);
+                        }
+                    }
+                }
+            }
+
+            if (node != root && (flags & NodeVisitor.RETAIN) == 0) {
+                adapter.recycle(node);
+            }
+        }
+        if (size == 0) {
+            root = null;
+        }
+        return visited;
+    }
+
+    private void push(N node, int depth) {
+        if (size == nodeStack.length) {
+            int capacity = size * 2;
+            Object[] nodes = new Object[capacity];
+            int[] depths = new int[capacity];
+            System.arraycopy(nodeStack, 0, nodes, 0, size);
+            System.arraycopy(depthStack, 0, depths, 0, size);
+            nodeStack = nodes;
+            depthStack = depths;
+        }
+        nodeStack[size] = node;
+        depthStack[size] = depth;
+        size++;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.myapp;
+
+/**
+ * Callback registered with {@link NodeTreeWalker}. The returned flags are OR-ed across all
+ * visitors, so one visitor asking to skip a subtree skips it for everyone.
+ */
+public interface NodeVisitor<N> {
+    int CONTINUE = 0;
+    /** Do not descend into this node's children. */
+    int SKIP_CHILDREN = 1;
+    /** The visitor keeps the node handle and becomes responsible for recycling it. */
+    int RETAIN = 2;
+
+    /** Called before each walk so collectors can drop results from the previous event. */
+    void reset();
+
+    int visit(N node, CharSequence className, int depth);
+}
@@ -0,0 +1,70 @@
+package com.example.myapp;
+
+import java.util.HashMap;
+
+/**
+ * Reuses parse results for list rows whose {@link FlatSnapshot#fingerprint} was already parsed in
+ * the previous pass over the same chat, so parse cost per event tracks the rows that changed.
+ * Results are looked up by fingerprint rather than position, so rows shifted by a scroll still hit.
+ * Only the previous pass is kept, which bounds the cache to one screen of rows.
+ *
+ * <p>Not thread-safe; owned by the parse worker.
+ */
+public class RowParseCache<R> {
+    private String chatId;
+    private boolean isGroup;
+    private HashMap<Long, R> previous = new HashMap<>();
+    private HashMap<Long, R> current = new HashMap<>();
+    private R lastResult;
+    private long hits;
+    private long misses;
+
+    /**
+     * Starts a pass over one list. Cached results embed chat_id and is_group, so they are dropped
+     * when either changes.
+     */
+    public void beginPass(String chatId, boolean isGroup) {
+        HashMap<Long, R> swap = previous;
+        previous = current;
+        current = swap;
+        current.clear();
+        if (this.isGroup != isGroup || (this.chatId == null ? chatId != null : !this.chatId.equals(chatId))) {
+            previous.clear();
+            this.chatId = chatId;
+            this.isGroup = isGroup;
+        }
+    }
+
+    /**
+     * @return {@code true} if the row was parsed last pass; its result (possibly {@code null}) is then
+     *         available from {@link #lastResult()}
+     */
+    public boolean lookup(long fingerprint) {
+        Long key = fingerprint;
+        if (previous.containsKey(key)) {
+            lastResult = previous.get(key);
+            current.put(key, lastResult);
+            hits++;
+            return true;
+        }
+        lastResult = null;
+        misses++;
+        return false;
+    }
+
+    public R lastResult() {
+        return lastResult;
+    }
+
+    public void put(long fingerprint, R result) {
+        current.put(fingerprint, result);
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+}
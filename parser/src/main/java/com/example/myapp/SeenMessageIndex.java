@@ -0,0 +1,157 @@
+package com.example.myapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which chat rows have already been emitted so each message is logged once, not on every
+ * content change that still shows it. Fingerprints are kept per chat in LRU order; both the number
+ * of chats and the fingerprints per chat are bounded.
+ *
+ * <p>Persisted as a compact hashed set (8 bytes per message) so it survives service restarts.
+ * Not thread-safe; owned by the parse worker.
+ */
+public class SeenMessageIndex {
+    private static final int FILE_MAGIC = 0x53454e31; // "SEN1"
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int maxPerChat;
+    private final LinkedHashMap<String, LinkedHashMap<Long, Boolean>> chats;
+    private long newItems;
+    private long duplicatesSuppressed;
+    private int changesSinceSave;
+
+    public SeenMessageIndex(final int maxChats, int maxPerChat) {
+        this.maxPerChat = maxPerChat;
+        this.chats = new LinkedHashMap<String, LinkedHashMap<Long, Boolean>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LinkedHashMap<Long, Boolean>> eldest) {
+                return size() > maxChats;
+            }
+        };
+    }
+
+    /** Stable 64-bit FNV-1a fingerprint of a chat row. Null fields hash differently from empty ones. */
+    public static long fingerprint(String chatId, String sender, String message, String messageTimestamp) {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, chatId);
+        hash = mix(hash, sender);
+        hash = mix(hash, message);
+        hash = mix(hash, messageTimestamp);
+        return hash;
+    }
+
+    /** 64-bit FNV-1a hash of one string, as {@link #fingerprint} mixes each field. */
+    static long hash(String value) {
+        return mix(FNV_OFFSET, value);
+    }
+
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            hash ^= 0xff;
+            return hash * FNV_PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        // Field separator so ("ab", "c") and ("a", "bc") differ
+        hash ^= 0xfe;
+        return hash * FNV_PRIME;
+    }
+
+    /** @return {@code true} if the row had not been seen in this chat before */
+    public boolean markSeen(String chatId, long fingerprint) {
+        LinkedHashMap<Long, Boolean> seen = seenFor(chatId);
+        if (seen.put(fingerprint, Boolean.TRUE) != null) {
+            duplicatesSuppressed++;
+            return false;
+        }
+        newItems++;
+        changesSinceSave++;
+        return true;
+    }
+
+    private LinkedHashMap<Long, Boolean> seenFor(String chatId) {
+        LinkedHashMap<Long, Boolean> seen = chats.get(chatId);
+        if (seen == null) {
+            seen = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                    return size() > maxPerChat;
+                }
+            };
+            chats.put(chatId, seen);
+        }
+        return seen;
+    }
+
+    public long getNewItems() {
+        return newItems;
+    }
+
+    public long getDuplicatesSuppressed() {
+        return duplicatesSuppressed;
+    }
+
+    public int getChangesSinceSave() {
+        return changesSinceSave;
+    }
+
+    public String stats() {
+        return "chats=" + chats.size() + " new=" + newItems + " duplicates=" + duplicatesSuppressed;
+    }
+
+    /** Writes the index atomically: to a temp file first, then renamed over {@code file}. */
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(chats.size());
+            // Oldest chat first so load() rebuilds the same LRU order
+            for (Map.Entry<String, LinkedHashMap<Long, Boolean>> chat : chats.entrySet()) {
+                out.writeUTF(chat.getKey());
+                out.writeInt(chat.getValue().size());
+                for (Long fingerprint : chat.getValue().keySet()) {
+                    out.writeLong(fingerprint);
+                }
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        changesSinceSave = 0;
+    }
+
+    /** Replaces the in-memory index with the contents of {@code file}, if it exists. */
+    public void load(File file) throws IOException {
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a seen-message index: " + file);
+            }
+            chats.clear();
+            int chatCount = in.readInt();
+            for (int c = 0; c < chatCount; c++) {
+                LinkedHashMap<Long, Boolean> seen = seenFor(in.readUTF());
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    seen.put(in.readLong(), Boolean.TRUE);
+                }
+            }
+        }
+        changesSinceSave = 0;
+    }
+}
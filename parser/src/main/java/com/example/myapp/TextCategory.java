@@ -0,0 +1,21 @@
+package com.example.myapp;
+
+/** Categories assigned by {@link TextClassifier}; each maps to one bit of the result mask. */
+public enum TextCategory {
+    DATE_SEPARATOR,
+    SYSTEM_MESSAGE,
+    CALL_NOTICE,
+    GROUP_INFO,
+    ENCRYPTION_NOTICE,
+    UNREAD_BANNER,
+    DELIVERY_STATUS,
+    CALL_TYPE,
+    CALLS_HEADER,
+    CHAT_ID_HINT;
+
+    public final int bit = 1 << ordinal();
+
+    public boolean in(int mask) {
+        return (mask & bit) != 0;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.myapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classifies UI strings against a phrase table in a single Aho-Corasick pass, replacing the chains
+ * of {@code contains}/{@code equals} checks and per-call regexes the parser used to run.
+ *
+ * <p>The table is a text resource (res/raw/text_rules.txt), so locale variants go in res/raw-xx
+ * without code changes. One rule per line: {@code CATEGORY MODE phrase}, where MODE is
+ * {@code contains}, {@code equals}, {@code prefix} or {@code suffix}; blank lines and lines starting
+ * with {@code #} are ignored. Matching is case-sensitive, like the checks it replaces.
+ *
+ * <p>Immutable once built, so one instance can be shared across threads.
+ */
+public final class TextClassifier {
+    private static final int MODE_CONTAINS = 0;
+    private static final int MODE_EQUALS = 1;
+    private static final int MODE_PREFIX = 2;
+    private static final int MODE_SUFFIX = 3;
+    private static final int[] NO_OUTPUT = new int[0];
+
+    // Trie/automaton: per state, sorted edge labels with their targets, failure link and the rules
+    // (including those reachable through failure links) that end in the state
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    private final int[][] outputs;
+    private final int[] ruleBits;
+    private final int[] ruleModes;
+    private final int[] ruleLengths;
+
+    private TextClassifier(List<int[]> ruleMeta, List<String> phrases) {
+        int rules = phrases.size();
+        ruleBits = new int[rules];
+        ruleModes = new int[rules];
+        ruleLengths = new int[rules];
+
+        List<StringBuilder> labels = new ArrayList<>();
+        List<List<Integer>> targets = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        labels.add(new StringBuilder());
+        targets.add(new ArrayList<Integer>());
+        ends.add(new ArrayList<Integer>());
+
+        for (int r = 0; r < rules; r++) {
+            String phrase = phrases.get(r);
+            ruleBits[r] = ruleMeta.get(r)[0];
+            ruleModes[r] = ruleMeta.get(r)[1];
+            ruleLengths[r] = phrase.length();
+            int state = 0;
+            for (int i = 0; i < phrase.length(); i++) {
+                char c = phrase.charAt(i);
+                int idx = labels.get(state).indexOf(String.valueOf(c));
+                if (idx >= 0) {
+                    state = targets.get(state).get(idx);
+                } else {
+                    int next = labels.size();
+                    labels.add(new StringBuilder());
+                    targets.add(new ArrayList<Integer>());
+                    ends.add(new ArrayList<Integer>());
+                    labels.get(state).append(c);
+                    targets.get(state).add(next);
+                    state = next;
+                }
+            }
+            ends.get(state).add(r);
+        }
+
+        int states = labels.size();
+        edgeChars = new char[states][];
+        edgeTargets = new int[states][];
+        for (int s = 0; s < states; s++) {
+            // Sort edges by label for binary search at match time
+            int n = labels.get(s).length();
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                packed[i] = ((long) labels.get(s).charAt(i) << 32) | targets.get(s).get(i);
+            }
+            Arrays.sort(packed);
+            edgeChars[s] = new char[n];
+            edgeTargets[s] = new int[n];
+            for (int i = 0; i < n; i++) {
+                edgeChars[s][i] = (char) (packed[i] >>> 32);
+                edgeTargets[s][i] = (int) packed[i];
+            }
+        }
+
+        // Breadth-first failure links; outputs inherit from the failure target
+        fail = new int[states];
+        outputs = new int[states][];
+        outputs[0] = toArray(ends.get(0), NO_OUTPUT);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int t : edgeTargets[0]) {
+            fail[t] = 0;
+            queue.add(t);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            outputs[s] = toArray(ends.get(s), outputs[fail[s]]);
+            for (int i = 0; i < edgeChars[s].length; i++) {
+                char c = edgeChars[s][i];
+                int t = edgeTargets[s][i];
+                int f = fail[s];
+                int next;
+                while ((next = step(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[t] = next >= 0 ? next : 0;
+                queue.add(t);
+            }
+        }
+    }
+
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        if (own.isEmpty()) return inherited;
+        int[] result = new int[own.size() + inherited.length];
+        for (int i = 0; i < own.size(); i++) {
+            result[i] = own.get(i);
+        }
+        System.arraycopy(inherited, 0, result, own.size(), inherited.length);
+        return result;
+    }
+
+    private int step(int state, char c) {
+        int idx = Arrays.binarySearch(edgeChars[state], c);
+        return idx >= 0 ? edgeTargets[state][idx] : -1;
+    }
+
+    /** @return bit mask of every {@link TextCategory} whose rules match {@code text} */
+    public int classify(CharSequence text) {
+        if (text == null) return 0;
+        int length = text.length();
+        int state = 0;
+        int mask = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = step(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next >= 0 ? next : 0;
+            int[] out = outputs[state];
+            for (int k = 0; k < out.length; k++) {
+                int r = out[k];
+                int end = i + 1;
+                int start = end - ruleLengths[r];
+                switch (ruleModes[r]) {
+                    case MODE_CONTAINS:
+                        mask |= ruleBits[r];
+                        break;
+                    case MODE_EQUALS:
+                        if (start == 0 && end == length) mask |= ruleBits[r];
+                        break;
+                    case MODE_PREFIX:
+                        if (start == 0) mask |= ruleBits[r];
+                        break;
+                    case MODE_SUFFIX:
+                        if (end == length) mask |= ruleBits[r];
+                        break;
+                }
+            }
+        }
+        return mask;
+    }
+
+    public boolean matches(CharSequence text, TextCategory category) {
+        return category.in(classify(text));
+    }
+
+    /** Keeps only the ASCII digits of {@code text}, e.g. the count in "3 unread messages". */
+    public static String digitsOnly(String text) {
+        StringBuilder digits = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits == null) digits = new StringBuilder(4);
+                digits.append(c);
+            }
+        }
+        return digits != null ? digits.toString() : "";
+    }
+
+    /** Parses a rule table; see the class comment for the format. */
+    public static TextClassifier load(InputStream in) throws IOException {
+        List<int[]> meta = new ArrayList<>();
+        List<String> phrases = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.forName("UTF-8")));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+
+                String[] parts = trimmed.split("\\s+", 3);
+                if (parts.length < 3) {
+                    throw new IOException("Malformed rule on line " + lineNumber + ": " + line);
+                }
+                TextCategory category;
+                try {
+                    category = TextCategory.valueOf(parts[0]);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unknown category on line " + lineNumber + ": " + parts[0]);
+                }
+                meta.add(new int[]{category.bit, parseMode(parts[1], lineNumber)});
+                phrases.add(parts[2]);
+            }
+        } finally {
+            reader.close();
+        }
+        return new TextClassifier(meta, phrases);
+    }
+
+    private static int parseMode(String mode, int lineNumber) throws IOException {
+        switch (mode) {
+            case "contains": return MODE_CONTAINS;
+            case "equals": return MODE_EQUALS;
+            case "prefix": return MODE_PREFIX;
+            case "suffix": return MODE_SUFFIX;
+            default: throw new IOException("Unknown match mode on line " + lineNumber + ": " + mode);
+        }
+    }
+}
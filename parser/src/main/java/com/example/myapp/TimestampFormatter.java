@@ -0,0 +1,60 @@
+package com.example.myapp;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats epoch millis as {@code yyyy-MM-dd HH:mm:ss}. Records keep raw millis and are formatted
+ * only when serialized; since the pattern has second resolution, the last formatted second is
+ * cached and every other timestamp in that second is returned without formatting or allocating.
+ *
+ * <p>Thread-safe: the cache is an immutable entry behind a volatile field, and misses use a
+ * per-thread SimpleDateFormat.
+ */
+public final class TimestampFormatter {
+    public static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    private static final class Entry {
+        final long second;
+        final String text;
+
+        Entry(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    private final ThreadLocal<SimpleDateFormat> formats;
+    private volatile Entry cached = new Entry(Long.MIN_VALUE, "");
+
+    public TimestampFormatter() {
+        this(TimeZone.getDefault());
+    }
+
+    public TimestampFormatter(final TimeZone zone) {
+        formats = new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                SimpleDateFormat format = new SimpleDateFormat(PATTERN, Locale.getDefault());
+                format.setTimeZone(zone);
+                return format;
+            }
+        };
+    }
+
+    public String format(long epochMillis) {
+        long second = epochMillis / 1000;
+        if (epochMillis < 0 && epochMillis % 1000 != 0) {
+            second--; // floor for pre-1970 times
+        }
+        Entry entry = cached;
+        if (entry.second == second) {
+            return entry.text;
+        }
+        String text = formats.get().format(new Date(second * 1000));
+        cached = new Entry(second, text);
+        return text;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.myapp;
+
+import java.util.List;
+
+/**
+ * Debug decorator that reports every handle a {@link NodeAdapter} hands out, reads or recycles to
+ * a {@link NodeHandleTracker}, labelled with this adapter's call site. Give each walker, collector
+ * or lookup its own instance so problems point at the code that caused them.
+ */
+public final class TrackingNodeAdapter<N> implements NodeAdapter<N> {
+    private final NodeAdapter<N> delegate;
+    private final NodeHandleTracker tracker;
+    private final String obtainSite;
+    private final String readSite;
+    private final String recycleSite;
+
+    public TrackingNodeAdapter(NodeAdapter<N> delegate, NodeHandleTracker tracker, String site) {
+        this.delegate = delegate;
+        this.tracker = tracker;
+        this.obtainSite = site + ".obtain";
+        this.readSite = site + ".read";
+        this.recycleSite = site + ".recycle";
+    }
+
+    @Override
+    public int getChildCount(N node) {
+        tracker.used(node, readSite);
+        return delegate.getChildCount(node);
+    }
+
+    @Override
+    public N getChild(N node, int index) {
+        tracker.used(node, readSite);
+        N child = delegate.getChild(node, index);
+        tracker.obtained(child, obtainSite);
+        return child;
+    }
+
+    @Override
+    public CharSequence getClassName(N node) {
+        tracker.used(node, readSite);
+        return delegate.getClassName(node);
+    }
+
+    @Override
+    public CharSequence getText(N node) {
+        tracker.used(node, readSite);
+        return delegate.getText(node);
+    }
+
+    @Override
+    public CharSequence getContentDescription(N node) {
+        tracker.used(node, readSite);
+        return delegate.getContentDescription(node);
+    }
+
+    @Override
+    public String getViewIdResourceName(N node) {
+        tracker.used(node, readSite);
+        return delegate.getViewIdResourceName(node);
+    }
+
+    @Override
+    public List<N> findByViewId(N root, String viewId) {
+        tracker.used(root, readSite);
+        List<N> found = delegate.findByViewId(root, viewId);
+        for (int i = 0; i < found.size(); i++) {
+            tracker.obtained(found.get(i), obtainSite);
+        }
+        return found;
+    }
+
+    @Override
+    public void recycle(N node) {
+        // A second recycle would throw on older platforms; report it instead
+        if (tracker.recycled(node, recycleSite)) {
+            delegate.recycle(node);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.myapp;
+
+/**
+ * Limits for one {@link NodeTreeWalker} pass. Every {@code getChild} is a binder call, so on the
+ * main thread a walk must stop after a bounded time and node count however large the screen is.
+ */
+public final class TraversalBudget {
+    public static final TraversalBudget UNBOUNDED = new TraversalBudget(null, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    final Clock clock;
+    final long timeBudgetMs;
+    final int maxDepth;
+    final int maxNodes;
+
+    /**
+     * @param timeBudgetMs how long one pass may run, measured with {@code clock}
+     * @param maxDepth     children of nodes at this depth (the root is 0) are never visited
+     * @param maxNodes     how many nodes one pass may visit
+     */
+    public TraversalBudget(Clock clock, long timeBudgetMs, int maxDepth, int maxNodes) {
+        if (timeBudgetMs <= 0 || maxDepth < 0 || maxNodes <= 0) {
+            throw new IllegalArgumentException("time=" + timeBudgetMs + " depth=" + maxDepth + " nodes=" + maxNodes);
+        }
+        if (clock == null && timeBudgetMs != Long.MAX_VALUE) {
+            throw new IllegalArgumentException("A time budget needs a clock");
+        }
+        this.clock = clock;
+        this.timeBudgetMs = timeBudgetMs;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+    }
+
+    long deadline() {
+        if (clock == null) return Long.MAX_VALUE;
+        long now = clock.uptimeMillis();
+        return timeBudgetMs > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeBudgetMs;
+    }
+}
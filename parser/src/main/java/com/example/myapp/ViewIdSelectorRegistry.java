@@ -0,0 +1,112 @@
+package com.example.myapp;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps logical screen roles to WhatsApp view resource ids, so containers can be fetched with one
+ * {@code findAccessibilityNodeInfosByViewId} call instead of walking the tree by class name.
+ *
+ * <p>Ids that a fallback walk discovers are remembered per installed WhatsApp versionCode; an app
+ * update starts from the built-in defaults again. Hit/miss counts are kept per role.
+ * Not thread-safe; used from the capture thread.
+ */
+public class ViewIdSelectorRegistry {
+    public enum Role {
+        CONVERSATION_LIST("android:id/list"),
+        CONTACT_TITLE("com.whatsapp:id/conversation_contact_name"),
+        CONTACT_STATUS("com.whatsapp:id/conversation_contact_status"),
+        CALL_LIST(null),
+        CALL_BUTTON(null);
+
+        final String defaultViewId;
+
+        Role(String defaultViewId) {
+            this.defaultViewId = defaultViewId;
+        }
+    }
+
+    /** Persistent key/value storage for learned ids; SharedPreferences on device. */
+    public interface Store {
+        String get(String key);
+
+        void put(String key, String value);
+
+        void clear();
+    }
+
+    private static final String VERSION_KEY = "version_code";
+
+    private final Store store;
+    private final String[] viewIds = new String[Role.values().length];
+    private final int[] hits = new int[Role.values().length];
+    private final int[] misses = new int[Role.values().length];
+
+    public ViewIdSelectorRegistry(Store store, long whatsAppVersionCode) {
+        this.store = store;
+        String version = String.valueOf(whatsAppVersionCode);
+        if (!version.equals(store.get(VERSION_KEY))) {
+            // Layout ids may have changed with the update; relearn them
+            store.clear();
+            store.put(VERSION_KEY, version);
+        }
+        for (Role role : Role.values()) {
+            String learned = store.get(role.name());
+            viewIds[role.ordinal()] = learned != null ? learned : role.defaultViewId;
+        }
+    }
+
+    public String viewIdFor(Role role) {
+        return viewIds[role.ordinal()];
+    }
+
+    /** Remembers the id of a node that a fallback scan found for {@code role}. */
+    public void learn(Role role, String viewId) {
+        if (viewId == null || viewId.equals(viewIds[role.ordinal()])) return;
+        viewIds[role.ordinal()] = viewId;
+        store.put(role.name(), viewId);
+    }
+
+    /**
+     * Fetches the first node for {@code role}, recycling any extra matches.
+     *
+     * @return the node, owned by the caller, or {@code null} on a miss or when no id is known yet
+     */
+    public <N> N findFirst(NodeAdapter<N> adapter, N root, Role role) {
+        List<N> nodes = findAll(adapter, root, role);
+        if (nodes.isEmpty()) return null;
+        for (int i = 1; i < nodes.size(); i++) {
+            adapter.recycle(nodes.get(i));
+        }
+        return nodes.get(0);
+    }
+
+    /** Fetches every node for {@code role}; the caller owns and recycles them. */
+    public <N> List<N> findAll(NodeAdapter<N> adapter, N root, Role role) {
+        String viewId = viewIds[role.ordinal()];
+        List<N> nodes = viewId != null ? adapter.findByViewId(root, viewId) : null;
+        if (nodes == null || nodes.isEmpty()) {
+            misses[role.ordinal()]++;
+            return Collections.emptyList();
+        }
+        hits[role.ordinal()]++;
+        return nodes;
+    }
+
+    public int getHits(Role role) {
+        return hits[role.ordinal()];
+    }
+
+    public int getMisses(Role role) {
+        return misses[role.ordinal()];
+    }
+
+    public String stats() {
+        StringBuilder sb = new StringBuilder();
+        for (Role role : Role.values()) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(role.name()).append('=').append(hits[role.ordinal()]).append('/').append(misses[role.ordinal()]);
+        }
+        return sb.append(" (hit/miss)").toString();
+    }
+}
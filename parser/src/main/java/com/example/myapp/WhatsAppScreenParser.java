@@ -0,0 +1,248 @@
+package com.example.myapp;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The WhatsApp screen parsers: conversation rows, Calls tab rows, the ongoing-call banner and the
+ * conversation toolbar. Pure functions of a {@link FlatSnapshot} and the phrase rules, with no
+ * Android dependencies, so they can be tested and benchmarked on a plain JVM.
+ *
+ * <p>Not thread-safe; one instance per parse thread.
+ */
+public final class WhatsAppScreenParser {
+    private static final Pattern TIME_PATTERN = Pattern.compile("\\d{1,2}:\\d{2}\\s*[ap]m");
+    private static final Pattern PHONE_PATTERN = Pattern.compile("\\+\\d{1,3} [\\d ]+");
+    private static final Pattern CALL_DESC_PATTERN = Pattern.compile("WhatsApp voice call with (.*?) - (Incoming|Outgoing) call");
+
+    private final TextClassifier classifier;
+    private boolean groupButtonSeen;
+
+    /** @param classifier phrase rules for the current locale */
+    public WhatsAppScreenParser(TextClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * Whether the last {@link #parseMessageRow} saw a GROUP INFO or ADD MEMBERS button, which
+     * marks the chat as a group.
+     */
+    public boolean sawGroupButton() {
+        return groupButtonSeen;
+    }
+
+    /**
+     * Parses one conversation list row.
+     *
+     * @param node      index of the row in {@code tree}
+     * @param eventTime capture time stamped on the record
+     * @return the message, or {@code null} for separators, notices and empty rows
+     */
+    public ChatMessage parseMessageRow(FlatSnapshot tree, int node, String chatId, boolean isGroup, long eventTime) {
+        groupButtonSeen = false;
+        ChatMessage result = new ChatMessage();
+        result.chatId = chatId;
+        result.isGroup = isGroup;
+        result.timestamp = eventTime;
+
+        if (tree.hasClass(node, FlatSnapshot.FLAG_TEXT_VIEW)) {
+            String text = tree.text(node);
+            if (text == null) return null;
+            String textStr = text.trim();
+            int kind = classifier.classify(textStr);
+
+            if ((kind & (TextCategory.DATE_SEPARATOR.bit | TextCategory.ENCRYPTION_NOTICE.bit)) != 0) {
+                return null;
+            }
+            if (TextCategory.UNREAD_BANNER.in(kind)) {
+                result.unreadCount = TextClassifier.digitsOnly(textStr);
+                return result;
+            }
+            if (TIME_PATTERN.matcher(textStr).matches()) {
+                return null;
+            }
+
+            result.message = textStr;
+            result.isSent = false;
+            return result;
+
+        } else if (tree.hasClass(node, FlatSnapshot.FLAG_BUTTON | FlatSnapshot.FLAG_VIEW_GROUP)) {
+            String text = tree.text(node);
+            if (text != null) {
+                String textStr = text.trim();
+                if ((classifier.classify(textStr) & (TextCategory.SYSTEM_MESSAGE.bit | TextCategory.CALL_NOTICE.bit)) != 0) {
+                    if (isGroup) {
+                        result.systemMessage = textStr;
+                    } else {
+                        result.callInfo = textStr;
+                    }
+                    return result;
+                }
+            }
+
+        } else if (tree.hasClass(node, FlatSnapshot.FLAG_IMAGE_VIEW) && tree.contentDescription(node) != null) {
+            if (classifier.matches(tree.contentDescription(node).trim(), TextCategory.DELIVERY_STATUS)) {
+                return null;
+            }
+        }
+
+        StringBuilder messageText = new StringBuilder();
+        String timestamp = null;
+        String status = null;
+        boolean isSent = false;
+        String sender = null;
+
+        for (int child = tree.firstChild(node); child != FlatSnapshot.NONE; child = tree.nextSibling(child)) {
+            String childText = tree.text(child);
+            String childDesc = tree.contentDescription(child);
+
+            if (tree.hasClass(child, FlatSnapshot.FLAG_TEXT_VIEW) && childText != null) {
+                String textStr = childText.trim();
+                if (TIME_PATTERN.matcher(textStr).matches()) {
+                    timestamp = textStr;
+                } else if (textStr.startsWith("~ ") || textStr.startsWith("+") || (childDesc != null && childDesc.contains("Maybe"))) {
+                    sender = textStr.replace("~ ", "");
+                } else {
+                    int kind = classifier.classify(textStr);
+                    if (TextCategory.GROUP_INFO.in(kind)) {
+                        result.groupInfo = textStr;
+                    } else if ((kind & (TextCategory.ENCRYPTION_NOTICE.bit | TextCategory.SYSTEM_MESSAGE.bit)) == 0) {
+                        messageText.append(textStr).append(" ");
+                    }
+                }
+            } else if (tree.hasClass(child, FlatSnapshot.FLAG_IMAGE_VIEW) && childDesc != null) {
+                String desc = childDesc.trim();
+                if (classifier.matches(desc, TextCategory.DELIVERY_STATUS)) {
+                    isSent = true;
+                    status = desc;
+                }
+            } else if (tree.hasClass(child, FlatSnapshot.FLAG_BUTTON) && childText != null) {
+                String btnText = childText.trim();
+                if (btnText.equals("GROUP INFO") || btnText.equals("ADD MEMBERS")) {
+                    groupButtonSeen = true;
+                }
+            }
+        }
+
+        if (messageText.length() > 0 || result.groupInfo != null) {
+            if (messageText.length() > 0) {
+                result.message = messageText.toString().trim();
+                result.isSent = isSent;
+                result.messageTimestamp = timestamp;
+                result.status = status;
+                result.sender = sender;
+            }
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * Parses one Calls tab row.
+     *
+     * @return the call, or {@code null} for headers and rows without a name, number or call type
+     */
+    public CallEntry parseCallRow(FlatSnapshot tree, int node, long eventTime) {
+        String name = null;
+        String phoneNumber = null;
+        String callType = null;
+        String callTimestamp = null;
+
+        for (int child = tree.firstChild(node); child != FlatSnapshot.NONE; child = tree.nextSibling(child)) {
+            String childText = tree.text(child);
+            String childDesc = tree.contentDescription(child);
+
+            if (tree.hasClass(child, FlatSnapshot.FLAG_TEXT_VIEW) && childText != null) {
+                String textStr = childText.trim();
+                Matcher matcher = PHONE_PATTERN.matcher(textStr);
+                if (matcher.matches()) {
+                    phoneNumber = textStr;
+                } else if (textStr.startsWith("~ ")) {
+                    name = textStr.substring(2).trim(); // Remove "~ " prefix
+                } else if (!classifier.matches(textStr, TextCategory.CALLS_HEADER)) {
+                    callTimestamp = textStr;
+                }
+            } else if (tree.hasClass(child, FlatSnapshot.FLAG_IMAGE_VIEW) && childDesc != null) {
+                String desc = childDesc.trim();
+                if (classifier.matches(desc, TextCategory.CALL_TYPE)) {
+                    callType = desc;
+                } else if (desc.contains("View") && desc.contains("profile")) {
+                    // Extract phone from profile desc if needed, e.g., "View +91 93061 84110 profile"
+                    Matcher matcher = PHONE_PATTERN.matcher(desc);
+                    if (matcher.find()) {
+                        phoneNumber = matcher.group(0);
+                    }
+                }
+            }
+        }
+
+        // Only return if valid call data is found
+        if (phoneNumber != null || name != null || callType != null) {
+            CallEntry result = new CallEntry();
+            result.timestamp = eventTime;
+            result.name = name;
+            result.phoneNumber = phoneNumber;
+            result.callType = callType;
+            result.callTimestamp = callTimestamp;
+            return result;
+        }
+        return null;
+    }
+
+    /** Parses an ongoing-call button description such as "WhatsApp voice call with Alice - Incoming call". */
+    public ActiveCall parseActiveCall(String description, long eventTime) {
+        Matcher matcher = CALL_DESC_PATTERN.matcher(description);
+        ActiveCall call = new ActiveCall();
+        call.timestamp = eventTime;
+        if (matcher.matches()) {
+            call.contact = matcher.group(1).trim();
+            call.callDirection = matcher.group(2);
+        } else {
+            call.rawDescription = description;
+        }
+        return call;
+    }
+
+    /**
+     * Chat id from the conversation toolbar: the name found by view id, else the first title text
+     * that looks like a participant list, a phone number or a known contact hint.
+     */
+    public String findChatId(String contactNameById, FlatSnapshot header) {
+        if (contactNameById != null) {
+            return contactNameById;
+        }
+        if (header == null) {
+            return null;
+        }
+
+        for (int i = 0; i < header.size(); i++) {
+            String textStr = header.hasClass(i, FlatSnapshot.FLAG_TEXT_VIEW) ? header.text(i) : null;
+            if (textStr == null) {
+                continue;
+            }
+            if (textStr.contains(",") && PHONE_PATTERN.matcher(textStr).find()) {
+                return textStr;
+            } else if (textStr.startsWith("+") || classifier.matches(textStr, TextCategory.CHAT_ID_HINT)) {
+                return textStr;
+            }
+        }
+        return null;
+    }
+
+    /** A chat is a group when it shows GROUP INFO or its subtitle lists participants. */
+    public boolean detectGroupChat(boolean hasGroupInfoButton, FlatSnapshot header) {
+        if (hasGroupInfoButton) {
+            return true;
+        }
+        if (header == null) {
+            return false;
+        }
+        for (int i = 0; i < header.size(); i++) {
+            String textStr = header.hasClass(i, FlatSnapshot.FLAG_TEXT_VIEW) ? header.text(i) : null;
+            if (textStr != null && textStr.contains(",") && PHONE_PATTERN.matcher(textStr).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.myapp
+
+import java.text.SimpleDateFormat
+import java.util.Locale
+import java.util.TimeZone
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class CallTimeResolverTest {
+    private val utc = TimeZone.getTimeZone("UTC")
+    private val resolver = CallTimeResolver(utc)
+    private val format = SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.US).apply { timeZone = utc }
+
+    private fun at(text: String): Long = format.parse(text)!!.time
+
+    // A Wednesday
+    private val wednesday = at("2025-09-17 10:30")
+
+    @Test
+    fun relativeDaysResolveAgainstTheEventTime() {
+        assertEquals(at("2025-09-17 09:41"), resolver.resolve("Today, 9:41 am", wednesday))
+        assertEquals(at("2025-09-16 21:41"), resolver.resolve("Yesterday, 9:41 pm", wednesday))
+        assertEquals(at("2025-09-16 21:41"), resolver.resolve("Yesterday, 21:41", wednesday))
+        assertEquals(at("2025-09-17 00:05"), resolver.resolve("12:05 a.m.", wednesday))
+        assertEquals(at("2025-09-15 12:05"), resolver.resolve("Monday, 12:05 pm", wednesday))
+        // A weekday name never means today
+        assertEquals(at("2025-09-10 08:00"), resolver.resolve("Wednesday, 8:00 am", wednesday))
+    }
+
+    @Test
+    fun sameCallResolvesAlikeOnLaterDays() {
+        val today = resolver.resolve("Today, 9:41 pm", wednesday)
+
+        assertEquals(today, resolver.resolve("Yesterday, 9:41 pm", wednesday + 86_400_000L))
+        assertEquals(today, resolver.resolve("Wednesday, 9:41 pm", wednesday + 3 * 86_400_000L))
+        assertEquals(today, resolver.resolve("17 September, 9:41 pm", wednesday + 10 * 86_400_000L))
+    }
+
+    @Test
+    fun datesWithoutAYearAreNotInTheFuture() {
+        assertEquals(at("2025-03-12 18:30"), resolver.resolve("March 12, 6:30 pm", wednesday))
+        assertEquals(at("2024-12-31 18:30"), resolver.resolve("31 Dec, 6:30 pm", wednesday))
+        assertEquals(at("2023-09-12 18:30"), resolver.resolve("12/09/2023, 6:30 pm", wednesday))
+        assertEquals(at("2023-09-12 18:30"), resolver.resolve("12 September 2023, 6:30 pm", wednesday))
+    }
+
+    @Test
+    fun unreadableLabelsAreUnresolved() {
+        for (label in listOf(null, "", "Missed", "Heute, 9:41", "Today, 25:00", "Today, 13:10 pm", "Someday, 9:41 am")) {
+            assertEquals(label, CallTimeResolver.UNRESOLVED, resolver.resolve(label, wednesday))
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.myapp
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class FlatSnapshotTest {
+    @Test
+    fun preservesStructureInPreOrder() {
+        val adapter = CountingAdapter()
+        val root = group(
+            textView("+91 93061 84110"),
+            group(textView("hello"), FakeNode("android.widget.ImageView", contentDescription = "Read")),
+            FakeNode(NodeCollectors.CLASS_BUTTON, text = "GROUP INFO", viewId = "com.whatsapp:id/info")
+        )
+
+        val snapshot = FlatSnapshot.capture(adapter, root, 5)
+
+        assertEquals(6, snapshot.size())
+        assertEquals(3, snapshot.childCount(0))
+        val row = snapshot.nextSibling(snapshot.firstChild(0))
+        assertEquals(2, row)
+        assertEquals(0, snapshot.parent(row))
+        assertEquals("hello", snapshot.text(snapshot.firstChild(row)))
+        assertTrue(snapshot.hasClass(4, FlatSnapshot.FLAG_IMAGE_VIEW))
+        assertEquals("Read", snapshot.contentDescription(4))
+        assertEquals(FlatSnapshot.NONE, snapshot.nextSibling(4))
+        assertTrue(snapshot.hasClass(5, FlatSnapshot.FLAG_BUTTON))
+        assertEquals("com.whatsapp:id/info", snapshot.viewId(5))
+        assertNull(snapshot.text(0))
+        // every child handle is released once copied
+        assertEquals(adapter.getChildCalls, adapter.recycleCalls)
+    }
+
+    @Test
+    fun maxDepthLimitsCapture() {
+        val snapshot = ConversationFixtures.snapshot(group(group(group(textView("deep")))))
+
+        assertEquals(3, snapshot.size())
+        assertEquals(0, snapshot.childCount(2))
+    }
+
+    @Test
+    fun textsWithEqualStringHashCodesFingerprintApart() {
+        assertEquals("Aa".hashCode(), "BB".hashCode())
+        val first = ConversationFixtures.snapshot(group(group(textView("Aa"), textView("10:15 am"))))
+        val second = ConversationFixtures.snapshot(group(group(textView("BB"), textView("10:15 am"))))
+
+        assertNotEquals(first.fingerprint(1), second.fingerprint(1))
+    }
+
+    @Test
+    fun buildersAcceptSeveralRoots() {
+        val builder = FlatSnapshot.Builder()
+        builder.add(FlatSnapshot.NONE, NodeCollectors.CLASS_TEXT_VIEW, "Alice", null, null)
+        builder.add(FlatSnapshot.NONE, NodeCollectors.CLASS_TEXT_VIEW, "online", null, null)
+
+        val header = builder.build()
+
+        assertEquals(2, header.size())
+        assertEquals(FlatSnapshot.NONE, header.parent(1))
+        assertEquals("online", header.text(1))
+    }
+
+    @Test
+    fun serializedSnapshotReadsBackIdentical() {
+        val original = ConversationFixtures.conversation(0, 12)
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { original.writeTo(it) }
+
+        val copy = FlatSnapshot.readFrom(DataInputStream(ByteArrayInputStream(bytes.toByteArray())))
+
+        assertEquals(original.size(), copy.size())
+        for (i in 0 until original.size()) {
+            assertEquals(original.parent(i), copy.parent(i))
+            assertEquals(original.nextSibling(i), copy.nextSibling(i))
+            assertEquals(original.className(i), copy.className(i))
+            assertEquals(original.text(i), copy.text(i))
+            assertEquals(original.fingerprint(i), copy.fingerprint(i))
+        }
+    }
+
+    @Test(expected = IOException::class)
+    fun forwardParentIsRejected() {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use {
+            it.writeInt(0) // classes
+            it.writeInt(0) // strings
+            it.writeInt(1)
+            intArrayOf(0, -1, -1, -1, -1).forEach(it::writeInt)
+        }
+        FlatSnapshot.readFrom(DataInputStream(ByteArrayInputStream(bytes.toByteArray())))
+    }
+
+    /**
+     * Compares the heap retained by a 40-row conversation held as flat snapshots against the same
+     * rows held as one object per node, the way the service used to keep lists of live nodes. A
+     * real AccessibilityNodeInfo is several times larger than a FakeNode, so this understates
+     * the difference.
+     */
+    @Test
+    fun flatSnapshotRetainsLessThanNodeObjects() {
+        val copies = 2000
+        // Share the strings between copies so only the per-node structure is measured
+        val template = ConversationFixtures.conversationNode(0, 40)
+        val flat = retainedPerCopy(copies) { ConversationFixtures.snapshot(template) }
+        val objects = retainedPerCopy(copies) { copyOf(template) }
+
+        assertTrue(flat < objects)
+    }
+
+    private fun copyOf(node: FakeNode): FakeNode =
+        FakeNode(node.className, node.text, node.contentDescription, node.viewId, node.children.map(::copyOf))
+
+    private fun retainedPerCopy(copies: Int, build: () -> Any): Long {
+        val runtime = Runtime.getRuntime()
+        fun used(): Long {
+            repeat(3) { System.gc() }
+            return runtime.totalMemory() - runtime.freeMemory()
+        }
+        val before = used()
+        val held = List(copies) { build() }
+        val after = used()
+        assertEquals(copies, held.size)
+        return (after - before) / copies
+    }
+}
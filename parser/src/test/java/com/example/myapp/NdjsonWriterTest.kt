@@ -0,0 +1,104 @@
+package com.example.myapp
+
+import java.util.TimeZone
+import org.json.JSONArray
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class NdjsonWriterTest {
+    private val time = 1758412219000L // 2025-09-20 23:50:19 UTC
+    private val timestamps = TimestampFormatter(TimeZone.getTimeZone("UTC"))
+
+    private fun message(i: Int) = ChatMessage().apply {
+        chatId = "Admissions 2025, +91 93061 84110"
+        isGroup = true
+        timestamp = time
+        message = "Message $i: \"fees\" due 12/10\nthanks"
+        isSent = i % 2 == 0
+        messageTimestamp = "11:${10 + i % 50} pm"
+        status = if (i % 2 == 0) "Read" else null
+        sender = if (i % 2 == 0) null else "+91 98765 43210"
+    }
+
+    private fun envelope(rows: Int) = LogEnvelope().apply {
+        eventId = 42
+        timestamp = time
+        chatId = "Admissions 2025, +91 93061 84110"
+        isGroup = true
+        (1..rows).forEach { items.add(message(it)) }
+    }
+
+    /** The JSONObject path the parser used before the typed records. */
+    private fun legacyJson(env: LogEnvelope): JSONObject {
+        val items = JSONArray()
+        env.items.forEach {
+            val m = it as ChatMessage
+            val item = JSONObject()
+            item.put("chat_id", m.chatId)
+            item.put("is_group", m.isGroup)
+            item.put("timestamp", "2025-09-20 23:50:19")
+            item.put("message", m.message)
+            item.put("is_sent", m.isSent)
+            if (m.messageTimestamp != null) item.put("message_timestamp", m.messageTimestamp)
+            if (m.status != null) item.put("status", m.status)
+            if (m.sender != null) item.put("sender", m.sender)
+            items.put(item)
+        }
+        val entry = JSONObject()
+        entry.put("event_id", env.eventId)
+        entry.put("timestamp", "2025-09-20 23:50:19")
+        entry.put("chat_id", env.chatId)
+        entry.put("is_group", env.isGroup)
+        entry.put("items", items)
+        return entry
+    }
+
+    @Test
+    fun writesCompactJsonInInsertionOrder() {
+        val call = ActiveCall().apply {
+            timestamp = time
+            contact = "Alice"
+            callDirection = "Incoming"
+        }
+        val line = NdjsonWriter(64, timestamps).record(call).buffer().toString()
+
+        assertEquals(
+            "{\"timestamp\":\"2025-09-20 23:50:19\",\"type\":\"active_call\",\"contact\":\"Alice\",\"call_direction\":\"Incoming\"}",
+            line
+        )
+    }
+
+    @Test
+    fun escapesLikeAndroidOrgJson() {
+        val out = NdjsonWriter(64, timestamps)
+        out.beginObject().field("k", "a\"b\\c/d\te\u0001 ~ ").endObject()
+
+        assertEquals("{\"k\":\"a\\\"b\\\\c\\/d\\te\\u0001 ~ \"}", out.buffer().toString())
+    }
+
+    @Test
+    fun envelopeMatchesLegacyFieldsAndValues() {
+        val env = envelope(5)
+        val line = NdjsonWriter(1024, timestamps).record(env).buffer().toString()
+
+        assertTrue(JSONObject(line).similar(legacyJson(env)))
+        assertEquals(-1, line.indexOf('\n'))
+    }
+
+    @Test
+    fun callEnvelopeUsesTypeInsteadOfChat() {
+        val env = LogEnvelope().apply {
+            eventId = 7
+            timestamp = time
+            type = LogEnvelope.TYPE_CALLS
+            items.add(CallEntry().apply { timestamp = time; phoneNumber = "+91 93061 84110"; callType = "Missed" })
+        }
+
+        assertEquals(
+            "{\"event_id\":7,\"timestamp\":\"2025-09-20 23:50:19\",\"type\":\"calls\",\"items\":[{\"timestamp\":\"2025-09-20 23:50:19\",\"phone_number\":\"+91 93061 84110\",\"call_type\":\"Missed\"}]}",
+            NdjsonWriter(64, timestamps).record(env).buffer().toString()
+        )
+    }
+}
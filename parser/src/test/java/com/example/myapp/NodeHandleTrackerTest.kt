@@ -0,0 +1,99 @@
+package com.example.myapp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class NodeHandleTrackerTest {
+    private val tracker = NodeHandleTracker()
+    private val counting = CountingAdapter()
+
+    /** Hands out a fresh handle per getChild, like AccessibilityNodeInfo does. */
+    private val framework = object : NodeAdapter<FakeNode> by counting {
+        override fun getChild(node: FakeNode, index: Int): FakeNode {
+            val child = counting.getChild(node, index)
+            return FakeNode(child.className, child.text, child.contentDescription, child.viewId, child.children)
+        }
+    }
+
+    private val tree = group(textView("a"), group(textView("b"), textView("c")), textView("d"))
+
+    @Test
+    fun balancedWalkHasNoProblems() {
+        val adapter = TrackingNodeAdapter(framework, tracker, "walker")
+        tracker.setStage("CONVERSATION")
+        NodeTreeWalker(adapter).register(NodeCollectors.TitleTextCollector(adapter)).walk(tree)
+
+        assertEquals(5, tracker.total.obtained)
+        assertEquals(5, tracker.total.recycled)
+        assertEquals(0, tracker.live)
+        assertFalse(tracker.total.hasProblems())
+        assertEquals(5, tracker.forStage("CONVERSATION")!!.obtained)
+    }
+
+    @Test
+    fun doubleRecycleIsReportedAndSwallowed() {
+        val adapter = TrackingNodeAdapter(framework, tracker, "rows")
+        val child = adapter.getChild(tree, 0)
+        adapter.recycle(child)
+        adapter.recycle(child)
+
+        assertEquals(1, tracker.forSite("rows.recycle")!!.doubleRecycled)
+        assertEquals(1, counting.recycleCalls)
+        assertTrue(tracker.lastProblem!!.startsWith("double recycle at rows.recycle"))
+    }
+
+    @Test
+    fun readAfterRecycleIsReported() {
+        val adapter = TrackingNodeAdapter(framework, tracker, "title")
+        tracker.setStage("windowState")
+        val child = adapter.getChild(tree, 0)
+        adapter.recycle(child)
+        adapter.getText(child)
+
+        assertEquals(1, tracker.forSite("title.read")!!.useAfterRecycle)
+        assertEquals(1, tracker.forStage("windowState")!!.useAfterRecycle)
+    }
+
+    @Test
+    fun pooledHandleStartsANewLife() {
+        // CountingAdapter hands back the same objects, as the platform pool does after a recycle
+        val adapter = TrackingNodeAdapter(counting, tracker, "pool")
+        repeat(3) {
+            val child = adapter.getChild(tree, 1)
+            adapter.getText(child)
+            adapter.recycle(child)
+        }
+
+        assertFalse(tracker.total.hasProblems())
+        assertEquals(3, tracker.total.recycled)
+    }
+
+    @Test
+    fun unreachableUnrecycledHandleIsALeak() {
+        val adapter = TrackingNodeAdapter(framework, tracker, "container")
+        tracker.setStage("CALLS_TAB")
+        obtainAndDrop(adapter)
+        val kept = adapter.getChild(tree, 2)
+
+        var leaks = 0
+        for (attempt in 0 until 50) {
+            System.gc()
+            leaks += tracker.pollLeaks()
+            if (leaks > 0) break
+            Thread.sleep(10)
+        }
+
+        assertEquals(1, leaks)
+        assertEquals(1, tracker.forSite("container.obtain")!!.leaked)
+        assertEquals(1, tracker.forStage("CALLS_TAB")!!.leaked)
+        // a handle that is still referenced is live, not leaked
+        assertEquals(1, tracker.live)
+        adapter.recycle(kept)
+    }
+
+    private fun obtainAndDrop(adapter: NodeAdapter<FakeNode>) {
+        adapter.getChild(tree, 0)
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.myapp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class NodeTreeWalkerTest {
+    private fun conversationTree(rows: Int): FakeNode {
+        val messageRows = (1..rows).map { group(textView("message $it"), textView("10:0${it % 10} am")) }
+        return group(
+            group(textView("+91 93061 84110"), textView("online")),
+            FakeNode(
+                NodeCollectors.CLASS_BUTTON,
+                contentDescription = "WhatsApp voice call with Alice - Incoming call"
+            ),
+            FakeNode(NodeCollectors.CLASS_LIST_VIEW, children = messageRows)
+        )
+    }
+
+    @Test
+    fun walkObtainsEachNodeOnceForAllCollectors() {
+        val adapter = CountingAdapter()
+        val buttons = NodeCollectors.CallButtonCollector(adapter)
+        val list = NodeCollectors.ListContainerCollector(adapter, NodeCollectors.CLASS_LIST_VIEW)
+        val titles = NodeCollectors.TitleTextCollector(adapter)
+        val walker = NodeTreeWalker(adapter).register(buttons).register(list).register(titles)
+        val root = conversationTree(rows = 30)
+
+        val visited = walker.walk(root)
+
+        // root, title group + 2 texts, button, list view; list rows are left to the row parser
+        assertEquals(6, visited)
+        assertEquals(5, adapter.getChildCalls)
+        assertEquals(listOf("WhatsApp voice call with Alice - Incoming call"), buttons.descriptions)
+        assertEquals(listOf("+91 93061 84110", "online"), titles.texts)
+        assertSame(root.children[2], list.take())
+        // everything obtained is recycled except the list view handed to the caller
+        assertEquals(adapter.getChildCalls - 1, adapter.recycleCalls)
+    }
+
+    @Test
+    fun getChildCallsPerEventStayConstantAcrossEvents() {
+        val adapter = CountingAdapter()
+        val walker = NodeTreeWalker(adapter).register(NodeCollectors.TitleTextCollector(adapter))
+        val root = conversationTree(rows = 10)
+        val nodesBelowRoot = 5 + 10 * 3
+
+        repeat(3) {
+            adapter.getChildCalls = 0
+            walker.walk(root)
+            assertEquals(nodesBelowRoot, adapter.getChildCalls)
+        }
+        assertEquals(3 * nodesBelowRoot, adapter.recycleCalls)
+    }
+
+    @Test
+    fun resetRecyclesContainerThatWasNeverTaken() {
+        val adapter = CountingAdapter()
+        val list = NodeCollectors.ListContainerCollector(adapter, NodeCollectors.CLASS_LIST_VIEW)
+        val walker = NodeTreeWalker(adapter).register(list)
+        val root = conversationTree(rows = 2)
+
+        walker.walk(root)
+        walker.walk(root)
+
+        assertEquals(adapter.getChildCalls - 1, adapter.recycleCalls)
+    }
+
+    /** A chain [depth] levels deep with a list view at the bottom; every level costs [millisPerNode]. */
+    private class SlowAdapter(private val clock: FakeClock, private val millisPerNode: Long) : NodeAdapter<FakeNode> by CountingAdapter() {
+        override fun getChild(node: FakeNode, index: Int): FakeNode {
+            clock.advance(millisPerNode)
+            return node.children[index]
+        }
+    }
+
+    private fun deepTree(depth: Int): FakeNode {
+        var node = FakeNode(NodeCollectors.CLASS_LIST_VIEW)
+        repeat(depth) { node = group(textView("level $it"), node) }
+        return node
+    }
+
+    @Test
+    fun deadlineStopsWalkAndResumeFinishesIt() {
+        val clock = FakeClock()
+        val adapter = SlowAdapter(clock, millisPerNode = 1)
+        val list = NodeCollectors.ListContainerCollector(adapter, NodeCollectors.CLASS_LIST_VIEW)
+        val walker = NodeTreeWalker(adapter, TraversalBudget(clock, 10, 1000, 10_000)).register(list)
+        val root = deepTree(depth = 100)
+
+        val first = walker.walk(root)
+
+        assertFalse(walker.isComplete)
+        assertEquals(NodeTreeWalker.Stop.DEADLINE, walker.lastStop)
+        assertNull(list.take())
+        var passes = 1
+        var visited = first
+        while (!walker.isComplete) {
+            visited += walker.resume()
+            passes++
+        }
+        // 100 groups with a text view each, plus the list view
+        assertEquals(201, visited)
+        assertTrue(passes > 10)
+        assertEquals(passes - 1, walker.deadlineOverruns)
+        assertEquals(NodeCollectors.CLASS_LIST_VIEW, list.take()!!.className)
+    }
+
+    @Test
+    fun nodeLimitBoundsEachPass() {
+        val adapter = CountingAdapter()
+        val walker = NodeTreeWalker(adapter, TraversalBudget(null, Long.MAX_VALUE, 1000, 50))
+            .register(NodeCollectors.TitleTextCollector(adapter))
+
+        assertEquals(50, walker.walk(deepTree(depth = 100)))
+        assertEquals(NodeTreeWalker.Stop.NODE_LIMIT, walker.lastStop)
+        assertEquals(1, walker.nodeLimitOverruns)
+    }
+
+    @Test
+    fun resumedWalkHandsOverEachCallButtonOnce() {
+        val adapter = CountingAdapter()
+        val buttons = NodeCollectors.CallButtonCollector(adapter)
+        val walker = NodeTreeWalker(adapter, TraversalBudget(null, Long.MAX_VALUE, 1000, 8)).register(buttons)
+        val root = group(
+            FakeNode(NodeCollectors.CLASS_BUTTON, contentDescription = "WhatsApp voice call with Alice"),
+            group(*Array(10) { textView("line $it") }),
+            FakeNode(NodeCollectors.CLASS_BUTTON, contentDescription = "WhatsApp voice call with Bob")
+        )
+
+        walker.walk(root)
+        assertFalse(walker.isComplete)
+        val first = buttons.takeDescriptions()
+        walker.resume()
+        assertTrue(walker.isComplete)
+        val second = buttons.takeDescriptions()
+
+        assertEquals(listOf("WhatsApp voice call with Alice"), first)
+        assertEquals(listOf("WhatsApp voice call with Bob"), second)
+    }
+
+    @Test
+    fun depthLimitPrunesWithoutMarkingIncomplete() {
+        val adapter = CountingAdapter()
+        val list = NodeCollectors.ListContainerCollector(adapter, NodeCollectors.CLASS_LIST_VIEW)
+        val walker = NodeTreeWalker(adapter, TraversalBudget(null, Long.MAX_VALUE, 20, 10_000)).register(list)
+
+        walker.walk(deepTree(depth = 100))
+
+        assertTrue(walker.isComplete)
+        assertEquals(NodeTreeWalker.Stop.COMPLETE, walker.lastStop)
+        assertNull(list.take())
+        assertEquals(1, walker.depthPruned)
+    }
+
+    @Test
+    fun abandonRecyclesUnvisitedNodes() {
+        val clock = FakeClock()
+        val counting = CountingAdapter()
+        val adapter = object : NodeAdapter<FakeNode> by counting {
+            override fun getChild(node: FakeNode, index: Int): FakeNode {
+                clock.advance(1)
+                return counting.getChild(node, index)
+            }
+        }
+        val walker = NodeTreeWalker(adapter, TraversalBudget(clock, 5, 1000, 10_000))
+            .register(NodeCollectors.TitleTextCollector(adapter))
+
+        walker.walk(deepTree(depth = 50))
+        walker.abandon()
+
+        assertTrue(walker.isComplete)
+        // every child obtained is recycled, visited or not
+        assertEquals(counting.getChildCalls, counting.recycleCalls)
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.myapp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class SeenMessageIndexTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private fun fp(chat: String, message: String, time: String = "10:01 am", sender: String? = null) =
+        SeenMessageIndex.fingerprint(chat, sender, message, time)
+
+    @Test
+    fun repeatedRowsAreSuppressed() {
+        val index = SeenMessageIndex(10, 100)
+
+        assertTrue(index.markSeen("alice", fp("alice", "hi")))
+        repeat(20) { assertFalse(index.markSeen("alice", fp("alice", "hi"))) }
+        assertTrue(index.markSeen("alice", fp("alice", "hi", time = "10:02 am")))
+
+        assertEquals(2L, index.newItems)
+        assertEquals(20L, index.duplicatesSuppressed)
+    }
+
+    @Test
+    fun fingerprintSeparatesFields() {
+        assertNotEquals(
+            SeenMessageIndex.fingerprint("c", "ab", "c", null),
+            SeenMessageIndex.fingerprint("c", "a", "bc", null)
+        )
+        assertNotEquals(
+            SeenMessageIndex.fingerprint("c", null, "m", null),
+            SeenMessageIndex.fingerprint("c", "", "m", null)
+        )
+    }
+
+    @Test
+    fun perChatCapacityEvictsLeastRecentlySeen() {
+        val index = SeenMessageIndex(10, 3)
+        listOf("a", "b", "c").forEach { index.markSeen("chat", fp("chat", it)) }
+        // touch "a" so "b" is the eldest
+        index.markSeen("chat", fp("chat", "a"))
+        index.markSeen("chat", fp("chat", "d"))
+
+        assertFalse(index.markSeen("chat", fp("chat", "a")))
+        assertTrue(index.markSeen("chat", fp("chat", "b")))
+    }
+
+    @Test
+    fun chatCapacityEvictsLeastRecentChat() {
+        val index = SeenMessageIndex(2, 10)
+        index.markSeen("one", fp("one", "x"))
+        index.markSeen("two", fp("two", "x"))
+        index.markSeen("three", fp("three", "x"))
+
+        assertTrue(index.markSeen("one", fp("one", "x")))
+        assertFalse(index.markSeen("three", fp("three", "x")))
+    }
+
+    @Test
+    fun survivesSaveAndLoad() {
+        val file = tmp.root.resolve("seen.idx")
+        val index = SeenMessageIndex(10, 100)
+        (1..50).forEach { index.markSeen("group", fp("group", "message $it")) }
+        index.save(file)
+
+        assertEquals(0, index.changesSinceSave)
+        // magic + chat count + (utf length + "group") + entry count + 50 fingerprints
+        assertEquals(4L + 4 + 2 + 5 + 4 + 50 * 8, file.length())
+
+        val restored = SeenMessageIndex(10, 100)
+        restored.load(file)
+        (1..50).forEach { assertFalse(restored.markSeen("group", fp("group", "message $it"))) }
+        assertTrue(restored.markSeen("group", fp("group", "message 51")))
+    }
+
+    @Test
+    fun loadingMissingFileLeavesIndexEmpty() {
+        val index = SeenMessageIndex(10, 100)
+        index.load(tmp.root.resolve("absent.idx"))
+        assertTrue(index.markSeen("chat", fp("chat", "x")))
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.myapp
+
+import java.io.IOException
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TextClassifierTest {
+    private val classifier = TestRules.classifier
+
+    private fun rules(table: String) = TextClassifier.load(table.byteInputStream())
+
+    @Test
+    fun matchModes() {
+        val c = rules(
+            """
+            # comment
+            DATE_SEPARATOR equals Today
+            GROUP_INFO contains members
+            CALLS_HEADER prefix Add
+            CALL_TYPE suffix call
+            """.trimIndent()
+        )
+
+        assertTrue(c.matches("Today", TextCategory.DATE_SEPARATOR))
+        assertFalse(c.matches("Today at 5", TextCategory.DATE_SEPARATOR))
+        assertTrue(c.matches("12 members", TextCategory.GROUP_INFO))
+        assertTrue(c.matches("Add favourite", TextCategory.CALLS_HEADER))
+        assertFalse(c.matches("Re-Add", TextCategory.CALLS_HEADER))
+        assertTrue(c.matches("Missed voice call", TextCategory.CALL_TYPE))
+        assertFalse(c.matches("call me", TextCategory.CALL_TYPE))
+    }
+
+    @Test
+    fun overlappingPhrasesAllReported() {
+        val c = rules(
+            """
+            SYSTEM_MESSAGE contains changed the group
+            GROUP_INFO contains group name
+            CALL_NOTICE contains he
+            """.trimIndent()
+        )
+
+        val mask = c.classify("Bob changed the group name")
+        assertEquals(
+            TextCategory.SYSTEM_MESSAGE.bit or TextCategory.GROUP_INFO.bit or TextCategory.CALL_NOTICE.bit,
+            mask
+        )
+    }
+
+    @Test
+    fun bundledTableCoversParserPhrases() {
+        assertTrue(classifier.matches("Yesterday", TextCategory.DATE_SEPARATOR))
+        assertTrue(classifier.matches("Messages and calls are end-to-end encrypted. Tap to learn more.", TextCategory.ENCRYPTION_NOTICE))
+        assertTrue(classifier.matches("3 unread messages", TextCategory.UNREAD_BANNER))
+        assertTrue(classifier.matches("+91 93061 84110 added you", TextCategory.SYSTEM_MESSAGE))
+        assertTrue(classifier.matches("Group created by you", TextCategory.GROUP_INFO))
+        assertTrue(classifier.matches("Read", TextCategory.DELIVERY_STATUS))
+        assertFalse(classifier.matches("Reading list", TextCategory.DELIVERY_STATUS))
+        assertTrue(classifier.matches("MBA admissions 2025", TextCategory.CHAT_ID_HINT))
+        assertEquals(0, classifier.classify("See you at 5"))
+    }
+
+    @Test
+    fun digitsOnlyMatchesReplaceAll() {
+        listOf("3 unread messages", "12 UNREAD", "none", "").forEach {
+            assertEquals(it.replace(Regex("\\D+"), ""), TextClassifier.digitsOnly(it))
+        }
+    }
+
+    @Test(expected = IOException::class)
+    fun rejectsUnknownCategory() {
+        rules("NOT_A_CATEGORY contains x")
+    }
+
+    /** The checks parseNode, parseCallNode and findChatId used to run, one category at a time. */
+    private fun branchChain(text: String): Int {
+        var mask = 0
+        if (text == "Today" || text == "Yesterday") mask = mask or TextCategory.DATE_SEPARATOR.bit
+        if (text.contains("end-to-end encrypted")) mask = mask or TextCategory.ENCRYPTION_NOTICE.bit
+        if (text.contains("unread messages")) mask = mask or TextCategory.UNREAD_BANNER.bit
+        if (text.contains("added you") || text.contains("changed the group")) mask = mask or TextCategory.SYSTEM_MESSAGE.bit
+        if (text.contains("call")) mask = mask or TextCategory.CALL_NOTICE.bit
+        if (text.contains("members") || text.contains("Group created")) mask = mask or TextCategory.GROUP_INFO.bit
+        if (text == "Delivered" || text == "Read" || text == "Sent") mask = mask or TextCategory.DELIVERY_STATUS.bit
+        if (text.contains("Outgoing") || text.contains("Incoming") || text.contains("Missed")) mask = mask or TextCategory.CALL_TYPE.bit
+        if (text == "Favourites" || text == "Recent" || text == "Add favourite") mask = mask or TextCategory.CALLS_HEADER.bit
+        @Suppress("RegExpSimplifiable")
+        if (text.matches(Regex(".*admissions.*"))) mask = mask or TextCategory.CHAT_ID_HINT.bit
+        return mask
+    }
+
+    @Test
+    fun matchesTheBranchChain() {
+        val corpus = listOf(
+            "Today", "Yesterday", "Read", "Delivered", "Recent", "Favourites",
+            "Messages and calls are end-to-end encrypted. No one outside of this chat can read them.",
+            "5 unread messages", "+91 93061 84110 added you", "Ravi changed the group name to \"MBA 2025\"",
+            "Missed voice call", "Incoming video call", "Group created by +91 98765 43210", "256 members",
+            "Hi, I wanted to ask about the last date for the admission form submission",
+            "Please share the fee structure for the MBA programme", "ok", "Thank you so much!",
+            "Is the hostel compulsory for first year students or can we stay outside?",
+            "MBA admissions helpdesk"
+        )
+        corpus.forEach { assertEquals(it, branchChain(it), classifier.classify(it)) }
+    }
+}
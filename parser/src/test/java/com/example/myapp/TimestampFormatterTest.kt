@@ -0,0 +1,54 @@
+package com.example.myapp
+
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.TimeZone
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class TimestampFormatterTest {
+    private val utc = TimeZone.getTimeZone("UTC")
+    private val formatter = TimestampFormatter(utc)
+
+    private fun reference(millis: Long): String =
+        SimpleDateFormat(TimestampFormatter.PATTERN, Locale.getDefault()).apply { timeZone = utc }.format(Date(millis))
+
+    @Test
+    fun formatsInGivenZone() {
+        assertEquals("2025-09-20 23:50:19", formatter.format(1758412219000L))
+        assertEquals("1970-01-01 00:00:00", formatter.format(0L))
+        assertEquals("1969-12-31 23:59:59", formatter.format(-1L))
+    }
+
+    @Test
+    fun sameSecondIsServedFromCache() {
+        val first = formatter.format(1758412219000L)
+
+        assertSame(first, formatter.format(1758412219999L))
+        assertNotSame(first, formatter.format(1758412220000L))
+    }
+
+    @Test
+    fun safeUnderConcurrentUse() {
+        val pool = Executors.newFixedThreadPool(8)
+        val failures = java.util.concurrent.atomic.AtomicInteger()
+        repeat(8) { t ->
+            pool.execute {
+                for (i in 0 until 20_000) {
+                    // interleave a handful of seconds so threads keep replacing each other's cache entry
+                    val millis = 1758412219000L + ((i + t) % 5) * 1000L + i % 1000
+                    if (formatter.format(millis) != reference(millis)) failures.incrementAndGet()
+                }
+            }
+        }
+        pool.shutdown()
+        pool.awaitTermination(1, TimeUnit.MINUTES)
+
+        assertEquals(0, failures.get())
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.myapp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ViewIdSelectorRegistryTest {
+    private class MapStore : ViewIdSelectorRegistry.Store {
+        val values = HashMap<String, String>()
+        override fun get(key: String): String? = values[key]
+        override fun put(key: String, value: String) {
+            values[key] = value
+        }
+        override fun clear() = values.clear()
+    }
+
+    private val store = MapStore()
+    private val adapter = CountingAdapter()
+    private val callList = FakeNode(NodeCollectors.CLASS_RECYCLER_VIEW, viewId = "com.whatsapp:id/calls_list")
+    private val root = group(group(callList))
+
+    @Test
+    fun defaultSelectorHitsWithoutWalking() {
+        val list = FakeNode(NodeCollectors.CLASS_LIST_VIEW, viewId = "android:id/list")
+        val registry = ViewIdSelectorRegistry(store, 100)
+
+        assertSame(list, registry.findFirst(adapter, group(group(list)), ViewIdSelectorRegistry.Role.CONVERSATION_LIST))
+        assertEquals(1, registry.getHits(ViewIdSelectorRegistry.Role.CONVERSATION_LIST))
+        assertEquals(0, adapter.getChildCalls)
+    }
+
+    @Test
+    fun unknownRoleMissesUntilLearned() {
+        val registry = ViewIdSelectorRegistry(store, 100)
+        assertNull(registry.findFirst(adapter, root, ViewIdSelectorRegistry.Role.CALL_LIST))
+        assertEquals(0, adapter.findByViewIdCalls)
+
+        registry.learn(ViewIdSelectorRegistry.Role.CALL_LIST, callList.viewId)
+
+        assertSame(callList, registry.findFirst(adapter, root, ViewIdSelectorRegistry.Role.CALL_LIST))
+        assertEquals(1, registry.getHits(ViewIdSelectorRegistry.Role.CALL_LIST))
+        assertEquals(1, registry.getMisses(ViewIdSelectorRegistry.Role.CALL_LIST))
+    }
+
+    @Test
+    fun learnedIdsSurviveRestartForSameVersion() {
+        ViewIdSelectorRegistry(store, 100).learn(ViewIdSelectorRegistry.Role.CALL_LIST, callList.viewId)
+
+        val restarted = ViewIdSelectorRegistry(store, 100)
+
+        assertEquals(callList.viewId, restarted.viewIdFor(ViewIdSelectorRegistry.Role.CALL_LIST))
+    }
+
+    @Test
+    fun versionChangeDropsLearnedIds() {
+        ViewIdSelectorRegistry(store, 100).learn(ViewIdSelectorRegistry.Role.CONVERSATION_LIST, "com.whatsapp:id/old_list")
+
+        val updated = ViewIdSelectorRegistry(store, 101)
+
+        assertEquals("android:id/list", updated.viewIdFor(ViewIdSelectorRegistry.Role.CONVERSATION_LIST))
+        assertNull(updated.viewIdFor(ViewIdSelectorRegistry.Role.CALL_LIST))
+    }
+
+    @Test
+    fun extraMatchesAreRecycled() {
+        val rows = List(3) { FakeNode(NodeCollectors.CLASS_BUTTON, viewId = "com.whatsapp:id/voice_call") }
+        val registry = ViewIdSelectorRegistry(store, 100)
+        registry.learn(ViewIdSelectorRegistry.Role.CALL_BUTTON, "com.whatsapp:id/voice_call")
+
+        registry.findFirst(adapter, FakeNode("android.view.ViewGroup", children = rows), ViewIdSelectorRegistry.Role.CALL_BUTTON)
+
+        assertEquals(2, adapter.recycleCalls)
+        assertTrue(registry.stats().contains("CALL_BUTTON=1/0"))
+    }
+}
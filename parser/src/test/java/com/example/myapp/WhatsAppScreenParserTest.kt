@@ -0,0 +1,126 @@
+package com.example.myapp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/** Regression tests over the recorded screens in /fixtures. */
+class WhatsAppScreenParserTest {
+    private val parser = WhatsAppScreenParser(TestRules.classifier)
+
+    private fun messages(list: FlatSnapshot, chatId: String, isGroup: Boolean): List<ChatMessage?> {
+        val rows = ArrayList<ChatMessage?>()
+        var row = list.firstChild(0)
+        while (row != FlatSnapshot.NONE) {
+            rows.add(parser.parseMessageRow(list, row, chatId, isGroup, 1000L))
+            row = list.nextSibling(row)
+        }
+        return rows
+    }
+
+    private fun calls(list: FlatSnapshot): List<CallEntry?> {
+        val rows = ArrayList<CallEntry?>()
+        var row = list.firstChild(0)
+        while (row != FlatSnapshot.NONE) {
+            rows.add(parser.parseCallRow(list, row, 1000L))
+            row = list.nextSibling(row)
+        }
+        return rows
+    }
+
+    @Test
+    fun chatListHasNoConversationHeader() {
+        val screen = NodeFixtures.load(NodeFixtures.CHAT_LIST)
+        val list = NodeFixtures.listSnapshot(screen)
+
+        assertEquals(3, list.childCount(0))
+        assertEquals(3, (0 until list.size()).filter { list.parent(it) == 0 }.map { list.fingerprint(it) }.toSet().size)
+        assertNull(parser.findChatId(null, NodeFixtures.header(screen)))
+        assertFalse(parser.detectGroupChat(false, NodeFixtures.header(screen)))
+    }
+
+    @Test
+    fun privateChat() {
+        val screen = NodeFixtures.load(NodeFixtures.PRIVATE_CHAT)
+        val header = NodeFixtures.header(screen)
+        assertEquals("Ritik Sharma", parser.findChatId("Ritik Sharma", header))
+        assertFalse(parser.detectGroupChat(false, header))
+
+        val rows = messages(NodeFixtures.listSnapshot(screen), "Ritik Sharma", false)
+
+        assertEquals(9, rows.size)
+        assertNull(rows[0]) // encryption notice
+        assertNull(rows[1]) // date separator
+        assertEquals("Hi, is the admission form still open?", rows[2]!!.message)
+        assertFalse(rows[2]!!.isSent)
+        assertEquals("8:02 pm", rows[2]!!.messageTimestamp)
+        assertEquals("Yes, until Friday. I'll send the link.", rows[3]!!.message)
+        assertTrue(rows[3]!!.isSent)
+        assertEquals("Read", rows[3]!!.status)
+        assertEquals("Missed voice call at 8:30 pm", rows[4]!!.callInfo)
+        assertNull(rows[5])
+        assertEquals("2", rows[6]!!.unreadCount)
+        assertEquals("Thanks! Submitted it this morning.", rows[7]!!.message)
+        assertEquals("Delivered", rows[8]!!.status)
+        rows.filterNotNull().forEach { assertEquals("Ritik Sharma", it.chatId) }
+    }
+
+    @Test
+    fun groupChat() {
+        val screen = NodeFixtures.load(NodeFixtures.GROUP_CHAT)
+        val header = NodeFixtures.header(screen)
+        // Without the title view id the participant subtitle is the best id available
+        assertEquals("Priya, Ritik, +91 93061 84110, You", parser.findChatId(null, header))
+        assertTrue(parser.detectGroupChat(false, header))
+
+        val list = NodeFixtures.listSnapshot(screen)
+        val first = list.firstChild(0)
+        assertEquals("Group created by Ritik", parser.parseMessageRow(list, first, "g", true, 0L)!!.groupInfo)
+        assertTrue(parser.sawGroupButton())
+
+        val rows = messages(list, "g", true)
+        assertFalse(parser.sawGroupButton())
+        assertEquals(6, rows.size)
+        assertEquals("Ritik added you", rows[1]!!.systemMessage)
+        assertNull(rows[2])
+        assertEquals("Priya", rows[3]!!.sender)
+        assertEquals("Form deadline is Friday", rows[3]!!.message)
+        assertEquals("10:40 am", rows[3]!!.messageTimestamp)
+        assertEquals("+91 93061 84110", rows[4]!!.sender)
+        assertEquals("Does it need the marksheet too?", rows[4]!!.message)
+        assertNull(rows[5]!!.sender)
+        assertTrue(rows[5]!!.isSent)
+    }
+
+    @Test
+    fun callsTab() {
+        val rows = calls(NodeFixtures.listSnapshot(NodeFixtures.load(NodeFixtures.CALLS_TAB)))
+
+        assertEquals(6, rows.size)
+        assertNull(rows[0])
+        assertNull(rows[1])
+        assertNull(rows[2])
+        assertEquals("+91 93061 84110", rows[3]!!.phoneNumber)
+        assertEquals("Missed", rows[3]!!.callType)
+        assertEquals("Today, 10:12 am", rows[3]!!.callTimestamp)
+        assertEquals("Priya", rows[4]!!.name)
+        assertEquals("Outgoing", rows[4]!!.callType)
+        assertEquals("Incoming", rows[5]!!.callType)
+        assertEquals("18 September, 11:05 am", rows[5]!!.callTimestamp)
+    }
+
+    @Test
+    fun activeCall() {
+        val descriptions = NodeFixtures.callDescriptions(NodeFixtures.load(NodeFixtures.ACTIVE_CALL))
+        assertEquals(1, descriptions.size)
+
+        val call = parser.parseActiveCall(descriptions[0], 1000L)
+        assertEquals("Ritik Sharma", call.contact)
+        assertEquals("Incoming", call.callDirection)
+        assertNull(call.rawDescription)
+
+        assertEquals("End call", parser.parseActiveCall("End call", 0L).rawDescription)
+    }
+}
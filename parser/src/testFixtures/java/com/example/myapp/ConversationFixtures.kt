@@ -0,0 +1,24 @@
+package com.example.myapp
+
+/** Node trees shaped like what WhatsApp exposes for a conversation screen. */
+object ConversationFixtures {
+    fun messageRow(index: Int, sent: Boolean = index % 3 == 0): FakeNode {
+        val children = mutableListOf(
+            textView("Message number $index about the admission form"),
+            textView("${1 + index % 12}:${10 + index % 50} pm")
+        )
+        if (sent) {
+            children += FakeNode("android.widget.ImageView", contentDescription = "Read")
+        }
+        return FakeNode("android.view.ViewGroup", children = children)
+    }
+
+    /** [rows] consecutive message rows of a conversation, starting at message [first]. */
+    fun conversationNode(first: Int, rows: Int): FakeNode =
+        FakeNode(NodeCollectors.CLASS_LIST_VIEW, children = (first until first + rows).map { messageRow(it) })
+
+    fun conversation(first: Int, rows: Int): FlatSnapshot = snapshot(conversationNode(first, rows))
+
+    /** List container, rows and row children, as the service captures them. */
+    fun snapshot(root: FakeNode): FlatSnapshot = FlatSnapshot.capture(CountingAdapter(), root, 2)
+}
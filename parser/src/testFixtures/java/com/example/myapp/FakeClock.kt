@@ -0,0 +1,9 @@
+package com.example.myapp
+
+class FakeClock(var now: Long = 0L) : Clock {
+    override fun uptimeMillis(): Long = now
+
+    fun advance(millis: Long) {
+        now += millis
+    }
+}
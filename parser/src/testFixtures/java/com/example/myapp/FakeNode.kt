@@ -0,0 +1,51 @@
+package com.example.myapp
+
+/** In-memory stand-in for AccessibilityNodeInfo used by the JVM unit tests. */
+class FakeNode(
+    val className: String,
+    val text: String? = null,
+    val contentDescription: String? = null,
+    val viewId: String? = null,
+    val children: List<FakeNode> = emptyList()
+)
+
+/** Counts the binder-equivalent calls the production adapter would make. */
+class CountingAdapter : NodeAdapter<FakeNode> {
+    var getChildCalls = 0
+    var recycleCalls = 0
+    var findByViewIdCalls = 0
+
+    override fun getChildCount(node: FakeNode): Int = node.children.size
+
+    override fun getChild(node: FakeNode, index: Int): FakeNode {
+        getChildCalls++
+        return node.children[index]
+    }
+
+    override fun getClassName(node: FakeNode): CharSequence = node.className
+
+    override fun getText(node: FakeNode): CharSequence? = node.text
+
+    override fun getContentDescription(node: FakeNode): CharSequence? = node.contentDescription
+
+    override fun getViewIdResourceName(node: FakeNode): String? = node.viewId
+
+    override fun findByViewId(root: FakeNode, viewId: String): List<FakeNode> {
+        findByViewIdCalls++
+        val found = ArrayList<FakeNode>()
+        fun visit(node: FakeNode) {
+            if (node.viewId == viewId) found.add(node)
+            node.children.forEach(::visit)
+        }
+        visit(root)
+        return found
+    }
+
+    override fun recycle(node: FakeNode) {
+        recycleCalls++
+    }
+}
+
+fun textView(text: String) = FakeNode(NodeCollectors.CLASS_TEXT_VIEW, text = text)
+
+fun group(vararg children: FakeNode) = FakeNode("android.view.ViewGroup", children = children.toList())
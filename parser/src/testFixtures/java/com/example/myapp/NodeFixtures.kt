@@ -0,0 +1,71 @@
+package com.example.myapp
+
+import org.json.JSONObject
+
+/**
+ * Node trees recorded from WhatsApp screens, stored as JSON under /fixtures. Each node is an
+ * object with optional "class", "text", "desc", "id" and "children" keys.
+ */
+object NodeFixtures {
+    const val CHAT_LIST = "chat_list"
+    const val PRIVATE_CHAT = "private_chat"
+    const val GROUP_CHAT = "group_chat"
+    const val CALLS_TAB = "calls_tab"
+    const val ACTIVE_CALL = "active_call"
+
+    fun load(name: String): FakeNode {
+        val json = NodeFixtures::class.java.getResourceAsStream("/fixtures/$name.json")!!
+            .bufferedReader(Charsets.UTF_8).use { it.readText() }
+        return parse(JSONObject(json))
+    }
+
+    fun parse(json: JSONObject): FakeNode {
+        val children = json.optJSONArray("children")
+        return FakeNode(
+            className = json.optString("class", "android.view.View"),
+            text = json.optString("text", null),
+            contentDescription = json.optString("desc", null),
+            viewId = json.optString("id", null),
+            children = if (children == null) emptyList() else (0 until children.length()).map { parse(children.getJSONObject(it)) }
+        )
+    }
+
+    /** First node in pre-order whose view id or class name is [key]. */
+    fun find(root: FakeNode, key: String): FakeNode? {
+        if (root.viewId == key || root.className == key) return root
+        for (child in root.children) {
+            find(child, key)?.let { return it }
+        }
+        return null
+    }
+
+    /** The list container of a fixture screen captured as the service would: container, rows, row children. */
+    fun listSnapshot(root: FakeNode): FlatSnapshot =
+        FlatSnapshot.capture(CountingAdapter(), listContainer(root), 2)
+
+    fun listContainer(root: FakeNode): FakeNode =
+        find(root, "android:id/list")
+            ?: find(root, NodeCollectors.CLASS_RECYCLER_VIEW)
+            ?: error("no list container")
+
+    /** Conversation toolbar title and status, as the service builds the header snapshot. */
+    fun header(root: FakeNode): FlatSnapshot {
+        val builder = FlatSnapshot.Builder()
+        for (id in listOf("com.whatsapp:id/conversation_contact_name", "com.whatsapp:id/conversation_contact_status")) {
+            find(root, id)?.let { builder.add(FlatSnapshot.NONE, it.className, it.text, it.contentDescription, it.viewId) }
+        }
+        return builder.build()
+    }
+
+    /** Content descriptions of every node that looks like an ongoing-call button. */
+    fun callDescriptions(root: FakeNode): List<String> {
+        val found = ArrayList<String>()
+        fun visit(node: FakeNode) {
+            val desc = node.contentDescription
+            if (desc != null && NodeCollectors.isCallButtonDescription(desc)) found.add(desc)
+            node.children.forEach(::visit)
+        }
+        visit(root)
+        return found
+    }
+}
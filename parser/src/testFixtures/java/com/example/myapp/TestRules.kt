@@ -0,0 +1,8 @@
+package com.example.myapp
+
+/** The bundled phrase table, which the test fixtures put on the classpath. */
+object TestRules {
+    val classifier: TextClassifier by lazy {
+        TestRules::class.java.getResourceAsStream("/text_rules.txt")!!.use { TextClassifier.load(it) }
+    }
+}